@@ -48,6 +48,7 @@ import android.widget.Toast;
 import at.usmile.auth.framework.api.AuthenticationStatusData;
 import at.usmile.auth.module.face.FaceAuthenticationModule;
 import at.usmile.auth.module.face.R;
+import at.usmile.auth.module.face.service.TrainingService;
 import at.usmile.functional.FunApply;
 import at.usmile.functional.FunFilter;
 import at.usmile.functional.FunUtil;
@@ -56,6 +57,7 @@ import at.usmile.panshot.SharedPrefs;
 import at.usmile.panshot.Statics;
 import at.usmile.panshot.User;
 import at.usmile.panshot.recognition.RecognitionModule;
+import at.usmile.panshot.recognition.knn.DistanceMetrics;
 import at.usmile.panshot.sensor.PhotoGyroListener;
 import at.usmile.panshot.sensor.SensorComponent;
 import at.usmile.panshot.sensor.SensorValues;
@@ -122,6 +124,12 @@ public class FaceDetectionActivity extends Activity implements CvCameraViewListe
 
 	private static final String CSV_FILENAME_EXTENSION = ".csv.jpg";
 
+	/**
+	 * amount of perspectives whose classifiers stay loaded at most, others get
+	 * loaded again when needed.
+	 */
+	private static final int MAX_LOADED_CLASSIFIERS = 5;
+
 	/**
 	 * BAD: hard coded index of angle values in angle array (we are only looking
 	 * at one axis here).
@@ -328,7 +336,10 @@ public class FaceDetectionActivity extends Activity implements CvCameraViewListe
 				try {
 					File directory = DataUtil.getMediaStorageDirectory(FaceDetectionActivity.this.getResources().getString(
 							R.string.app_classifier_directory_name));
-					mRecognitionModule = DataUtil.deserializeRecognitiosModule(directory);
+					// profile classifiers load while the user pans the camera
+					mRecognitionModule = DataUtil.openRecognitionModule(directory, MAX_LOADED_CLASSIFIERS);
+					mRecognitionModule.loadClassifiersInBackground(SharedPrefs
+							.getRecognitionType(FaceDetectionActivity.this));
 				} catch (NotFoundException e1) {
 					e1.printStackTrace();
 					builder.setMessage(
@@ -356,7 +367,10 @@ public class FaceDetectionActivity extends Activity implements CvCameraViewListe
 				try {
 					File directory = DataUtil.getMediaStorageDirectory(FaceDetectionActivity.this.getResources().getString(
 							R.string.app_classifier_directory_name));
-					mRecognitionModule = DataUtil.deserializeRecognitiosModule(directory);
+					// profile classifiers load while the user pans the camera
+					mRecognitionModule = DataUtil.openRecognitionModule(directory, MAX_LOADED_CLASSIFIERS);
+					mRecognitionModule.loadClassifiersInBackground(SharedPrefs
+							.getRecognitionType(FaceDetectionActivity.this));
 				} catch (NotFoundException e1) {
 					e1.printStackTrace();
 					sendConfidenceToAuthFrameworkInvalid();
@@ -826,6 +840,13 @@ public class FaceDetectionActivity extends Activity implements CvCameraViewListe
 						// save images
 						DataUtil.savePanshotImages(this, mCurrentUser, mImages, CSV_FILENAME_EXTENSION, SESSION_ID,
 								SharedPrefs.isFrontalOnly(this), SharedPrefs.getAngleBetweenClassifiers(this));
+						// add the user's data to the trained classifiers, if
+						// they can be updated without a full training
+						Intent trainingIntent = new Intent(this, TrainingService.class);
+						trainingIntent.putExtra(Statics.TRAINING_SERVICE_USER_ID, mCurrentUser.getId());
+						trainingIntent.putExtra(Statics.TRAINING_SERVICE_USER_NAME, mCurrentUser.getName());
+						trainingIntent.putExtra(Statics.TRAINING_SERVICE_INCREMENTAL_ONLY, true);
+						startService(trainingIntent);
 						break;
 
 					case RECOGNITION_TEST:
@@ -911,7 +932,9 @@ public class FaceDetectionActivity extends Activity implements CvCameraViewListe
 								switch (SharedPrefs.getRecognitionType(FaceDetectionActivity.this)) {
 									case KNN: {
 										GenericTuple3<User, Integer, Map<User, Integer>> classificationResult = mRecognitionModule
-												.classifyKnn(imagesWithFaces, SharedPrefs.getKnnK(this), null,
+												.classifyKnn(imagesWithFaces, SharedPrefs.getKnnK(this), DistanceMetrics.create(
+														SharedPrefs.getKnnDistanceMetricType(this),
+														SharedPrefs.getKnnDistanceMetricLNormPower(this)),
 														SharedPrefs.usePca(this), SharedPrefs.getAmountOfPcaFeatures(this),
 														SharedPrefs.getAngleBetweenClassifiers(this),
 														SharedPrefs.getKnnDistanceMetricLNormPower(FaceDetectionActivity.this));
@@ -937,7 +960,9 @@ public class FaceDetectionActivity extends Activity implements CvCameraViewListe
 									switch (SharedPrefs.getRecognitionType(FaceDetectionActivity.this)) {
 										case KNN: {
 											GenericTuple3<User, Integer, Map<User, Integer>> classificationResult = mRecognitionModule
-													.classifyKnn(imagesWithFaces, SharedPrefs.getKnnK(this), null, SharedPrefs
+													.classifyKnn(imagesWithFaces, SharedPrefs.getKnnK(this), DistanceMetrics.create(
+															SharedPrefs.getKnnDistanceMetricType(this),
+															SharedPrefs.getKnnDistanceMetricLNormPower(this)), SharedPrefs
 															.usePca(this), SharedPrefs.getAmountOfPcaFeatures(this), SharedPrefs
 															.getAngleBetweenClassifiers(this), SharedPrefs
 															.getKnnDistanceMetricLNormPower(FaceDetectionActivity.this));
@@ -261,10 +261,20 @@ public class MainActivity extends Activity {
 			@Override
 			public void onReceive(Context context, Intent _intent) {
 				Log.d(TAG, "broadcastReceiver#onReceive()");
+				Bundle extras = _intent.getExtras();
+
+				// training still ongoing, only show progress
+				if (extras != null
+						&& Statics.TRAINING_SERVICE_STATUS_PROGRESS.equals(extras.getString(Statics.TRAINING_SERVICE_STATUS))) {
+					mTextviewTrainingOngoing.setText(MainActivity.this.getResources().getString(
+							R.string.textview_training_progress, extras.getInt(Statics.TRAINING_SERVICE_PROGRESS_FINISHED),
+							extras.getInt(Statics.TRAINING_SERVICE_PROGRESS_TOTAL)));
+					return;
+				}
 				setTrainingOngoingUIEnabled(true);
+				mTextviewTrainingOngoing.setText(R.string.textview_training_ongoing);
 
 				// get info from calling Activity
-				Bundle extras = _intent.getExtras();
 				if (extras != null) {
 					String status = extras.getString(Statics.TRAINING_SERVICE_STATUS);
 
@@ -282,6 +292,10 @@ public class MainActivity extends Activity {
 										}).show();
 					}
 
+					else if (status.equals(Statics.TRAINING_SERVICE_STATUS_UNCHANGED)) {
+						Toast.makeText(MainActivity.this, R.string.training_unchanged, Toast.LENGTH_LONG).show();
+					}
+
 					else if (status.equals(Statics.TRAINING_SERVICE_STATUS_TOO_LESS_DATA)) {
 						@SuppressWarnings("unchecked")
 						GenericTuple2<Boolean, Map<GenericTuple2<String, Integer>, Integer>> isEnoughTrainingDataPerPerspective = ((GenericTuple2<Boolean, Map<GenericTuple2<String, Integer>, Integer>>) extras
@@ -1,5 +1,7 @@
 package at.usmile.auth.module.face.activity;
 
+import java.util.Arrays;
+
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
@@ -8,13 +10,22 @@ import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemSelectedListener;
+import android.widget.ArrayAdapter;
 import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
+import android.widget.Spinner;
 import at.usmile.auth.module.face.R;
 import at.usmile.panshot.SharedPrefs;
+import at.usmile.panshot.recognition.knn.DistanceMetrics;
+import at.usmile.panshot.recognition.knn.KnnClassifier;
+import at.usmile.panshot.recognition.svm.SvmClassifier;
+import at.usmile.panshot.util.PCAUtil;
 import at.usmile.panshot.util.DataUtil;
 
 /**
@@ -145,6 +156,98 @@ public class SettingsActivity extends Activity {
 			}
 		});
 
+		// KNN DISTANCE METRIC TYPE
+		final Spinner spinnerKnnDistanceMetricType = setupEnumSpinner(R.id.spinnerKnnDistanceMetricType,
+				DistanceMetrics.Type.values(), SharedPrefs.getKnnDistanceMetricType(this),
+				SharedPrefs.KNN_DISTANCE_METRIC_TYPE);
+		spinnerKnnDistanceMetricType.setEnabled(SharedPrefs.useKnn(this));
+
+		// KNN INDEX TYPE
+		final Spinner spinnerKnnIndexType = setupEnumSpinner(R.id.spinnerKnnIndexType, KnnClassifier.IndexType.values(),
+				SharedPrefs.getKnnIndexType(this), SharedPrefs.KNN_INDEX_TYPE);
+		spinnerKnnIndexType.setEnabled(SharedPrefs.useKnn(this));
+
+		// KNN PQ FEATURES PER SUBSPACE
+		final EditText edittextKnnPqFeaturesPerSubspace = (EditText) findViewById(R.id.editTextKnnPqFeaturesPerSubspace);
+		edittextKnnPqFeaturesPerSubspace.setText("" + SharedPrefs.getKnnPqFeaturesPerSubspace(this));
+		edittextKnnPqFeaturesPerSubspace.setEnabled(SharedPrefs.useKnn(this));
+		edittextKnnPqFeaturesPerSubspace.addTextChangedListener(new TextWatcher() {
+			@Override
+			public void onTextChanged(CharSequence _s, int _start, int _before, int _count) {
+			}
+
+			@Override
+			public void beforeTextChanged(CharSequence _s, int _start, int _count, int _after) {
+			}
+
+			@Override
+			public void afterTextChanged(Editable _s) {
+				try {
+					reallyChangeSettingsDialog(new Runnable() {
+						public void run() {
+							// training needs at least one feature per code byte
+							int val = Math.max(1,
+									Integer.parseInt(edittextKnnPqFeaturesPerSubspace.getText().toString()));
+							getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).edit()
+									.putInt(SharedPrefs.KNN_PQ_FEATURES_PER_SUBSPACE, val).commit();
+						}
+					});
+				} catch (NumberFormatException e) {
+				} catch (NullPointerException e) {
+				}
+			}
+		});
+
+		// KNN PQ RERANK CANDIDATES
+		final EditText edittextKnnPqRerankCandidates = (EditText) findViewById(R.id.editTextKnnPqRerankCandidates);
+		edittextKnnPqRerankCandidates.setText("" + SharedPrefs.getKnnPqRerankCandidates(this));
+		edittextKnnPqRerankCandidates.setEnabled(SharedPrefs.useKnn(this));
+		edittextKnnPqRerankCandidates.addTextChangedListener(new TextWatcher() {
+			@Override
+			public void onTextChanged(CharSequence _s, int _start, int _before, int _count) {
+			}
+
+			@Override
+			public void beforeTextChanged(CharSequence _s, int _start, int _count, int _after) {
+			}
+
+			@Override
+			public void afterTextChanged(Editable _s) {
+				try {
+					reallyChangeSettingsDialog(new Runnable() {
+						public void run() {
+							int val = Integer.parseInt(edittextKnnPqRerankCandidates.getText().toString());
+							getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).edit()
+									.putInt(SharedPrefs.KNN_PQ_RERANK_CANDIDATES, val).commit();
+						}
+					});
+				} catch (NumberFormatException e) {
+				} catch (NullPointerException e) {
+				}
+			}
+		});
+
+		// SVM KERNEL TYPE
+		final Spinner spinnerSvmKernelType = setupEnumSpinner(R.id.spinnerSvmKernelType,
+				SvmClassifier.KernelType.values(), SharedPrefs.getSvmKernelType(this), SharedPrefs.SVM_KERNEL_TYPE);
+		spinnerSvmKernelType.setEnabled(!SharedPrefs.useKnn(this));
+
+		// SVM PARAMETER SEARCH
+		final CompoundButton compoundButtonSvmParameterSearch = (CompoundButton) findViewById(R.id.checkBoxSvmParameterSearch);
+		compoundButtonSvmParameterSearch.setChecked(SharedPrefs.useSvmParameterSearch(this));
+		compoundButtonSvmParameterSearch.setEnabled(!SharedPrefs.useKnn(this));
+		compoundButtonSvmParameterSearch.setOnCheckedChangeListener(new OnCheckedChangeListener() {
+			@Override
+			public void onCheckedChanged(final CompoundButton _buttonView, final boolean _isChecked) {
+				reallyChangeSettingsDialog(new Runnable() {
+					public void run() {
+						getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).edit()
+								.putBoolean(SharedPrefs.SVM_PARAMETER_SEARCH, _isChecked).commit();
+					}
+				});
+			}
+		});
+
 		// RADIOGROUP CLASSIFIER TYPE
 		final RadioGroup rGroupClassifierType = (RadioGroup) findViewById(R.id.radioGroupClassierType);
 		final RadioButton radiobuttonKnn = (RadioButton) findViewById(R.id.radioKnn);
@@ -160,6 +263,12 @@ public class SettingsActivity extends Activity {
 								.putBoolean(SharedPrefs.USE_CLASSIFIER_TYPE_KNN, checkedRadioButton == radiobuttonKnn).commit();
 						edittextKnnK.setEnabled(checkedRadioButton == radiobuttonKnn);
 						edittextKnnDistanceMetricLNormPower.setEnabled(checkedRadioButton == radiobuttonKnn);
+						spinnerKnnDistanceMetricType.setEnabled(checkedRadioButton == radiobuttonKnn);
+						spinnerKnnIndexType.setEnabled(checkedRadioButton == radiobuttonKnn);
+						edittextKnnPqFeaturesPerSubspace.setEnabled(checkedRadioButton == radiobuttonKnn);
+						edittextKnnPqRerankCandidates.setEnabled(checkedRadioButton == radiobuttonKnn);
+						spinnerSvmKernelType.setEnabled(checkedRadioButton == radiobuttonSvm);
+						compoundButtonSvmParameterSearch.setEnabled(checkedRadioButton == radiobuttonSvm);
 					}
 				});
 			}
@@ -241,6 +350,37 @@ public class SettingsActivity extends Activity {
 			}
 		});
 
+		// PCA ENGINE
+		final Spinner spinnerPcaEngine = setupEnumSpinner(R.id.spinnerPcaEngine, PCAUtil.PcaEngine.values(),
+				SharedPrefs.getPcaEngine(this), SharedPrefs.PCA_ENGINE);
+		spinnerPcaEngine.setEnabled(SharedPrefs.usePca(this));
+
+		// INCREMENTAL MAX EIGENSPACE DRIFT
+		final EditText edittextIncrementalMaxEigenspaceDrift = (EditText) findViewById(R.id.editTextIncrementalMaxEigenspaceDrift);
+		edittextIncrementalMaxEigenspaceDrift.setText("" + SharedPrefs.getIncrementalMaxEigenspaceDrift(this));
+		edittextIncrementalMaxEigenspaceDrift.setEnabled(SharedPrefs.usePca(this));
+		edittextIncrementalMaxEigenspaceDrift.addTextChangedListener(new TextWatcher() {
+			@Override
+			public void onTextChanged(CharSequence _s, int _start, int _before, int _count) {
+			}
+
+			@Override
+			public void beforeTextChanged(CharSequence _s, int _start, int _count, int _after) {
+			}
+
+			@Override
+			public void afterTextChanged(Editable _s) {
+				// only decides if later users get added without retraining,
+				// trained classifiers stay valid: no need to ask
+				try {
+					float drift = Float.parseFloat(edittextIncrementalMaxEigenspaceDrift.getText().toString());
+					getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).edit()
+							.putFloat(SharedPrefs.INCREMENTAL_MAX_EIGENSPACE_DRIFT, Math.min(1f, drift)).commit();
+				} catch (NumberFormatException e) {
+				}
+			}
+		});
+
 		// USE PCA
 		CompoundButton compoundButtonUsePca = (CompoundButton) findViewById(R.id.checkBoxUsePca);
 		compoundButtonUsePca.setChecked(SharedPrefs.usePca(this));
@@ -252,6 +392,8 @@ public class SettingsActivity extends Activity {
 						getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).edit()
 								.putBoolean(SharedPrefs.USE_PCA, _isChecked).commit();
 						edittextPcaFeatures.setEnabled(_isChecked);
+						spinnerPcaEngine.setEnabled(_isChecked);
+						edittextIncrementalMaxEigenspaceDrift.setEnabled(_isChecked);
 					}
 				});
 			}
@@ -259,6 +401,46 @@ public class SettingsActivity extends Activity {
 
 	}
 
+	/**
+	 * Lets the user chose the value of a preference storing the name of an
+	 * enum value. Choosing another value asks before storing it, like all
+	 * other settings.
+	 * 
+	 * @return the spinner, showing _selected.
+	 */
+	private Spinner setupEnumSpinner(int _spinnerId, final Enum<?>[] _values, Enum<?> _selected,
+			final String _preference) {
+		final Spinner spinner = (Spinner) findViewById(_spinnerId);
+		ArrayAdapter<Enum<?>> adapter = new ArrayAdapter<Enum<?>>(this, android.R.layout.simple_spinner_item, _values);
+		adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+		spinner.setAdapter(adapter);
+		spinner.setSelection(Arrays.asList(_values).indexOf(_selected));
+		// the spinner reports its initial selection too, which is no change
+		final Enum<?>[] stored = { _selected };
+		spinner.setOnItemSelectedListener(new OnItemSelectedListener() {
+			@Override
+			public void onItemSelected(AdapterView<?> _parent, View _view, int _position, long _id) {
+				final Enum<?> value = _values[_position];
+				if (value == stored[0]) {
+					return;
+				}
+				reallyChangeSettingsDialog(new Runnable() {
+					public void run() {
+						Log.d(TAG, _preference + ": " + value);
+						getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).edit()
+								.putString(_preference, value.name()).commit();
+						stored[0] = value;
+					}
+				});
+			}
+
+			@Override
+			public void onNothingSelected(AdapterView<?> _parent) {
+			}
+		});
+		return spinner;
+	}
+
 	public void reallyChangeSettingsDialog(final Runnable _r) {
 		if (!mAskBeforeSettingsChange) {
 			_r.run();
@@ -2,6 +2,7 @@ package at.usmile.auth.module.face.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import android.app.IntentService;
@@ -12,8 +13,11 @@ import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
 import at.usmile.auth.module.face.R;
 import at.usmile.panshot.SharedPrefs;
+import at.usmile.panshot.PanshotImage;
 import at.usmile.panshot.Statics;
+import at.usmile.panshot.User;
 import at.usmile.panshot.recognition.RecognitionModule;
+import at.usmile.panshot.recognition.TrainingProgressListener;
 import at.usmile.panshot.util.DataUtil;
 import at.usmile.panshot.util.ServiceUtil;
 import at.usmile.tuple.GenericTuple2;
@@ -47,10 +51,31 @@ public class TrainingService extends IntentService {
 		// prepare back-report intent
 		Intent localIntent = new Intent(Statics.TRAINING_SERVICE_BROADCAST_ACTION);
 
-		// load training data
 		float angleBetweenClassifiers = SharedPrefs.getAngleBetweenClassifiers(this);
 		int minAmountOfTrainingImagesPerSubjectAntClassifier = SharedPrefs
 				.getMinAmountOfTrainingImagesPerSubjectAntClassifier(this);
+
+		// single user: try to add to the existing classifiers first
+		String userId = workIntent.getStringExtra(Statics.TRAINING_SERVICE_USER_ID);
+		String userName = workIntent.getStringExtra(Statics.TRAINING_SERVICE_USER_NAME);
+		if (userId != null && userName != null) {
+			if (trainIncrementally(new User(userId, userName), angleBetweenClassifiers,
+					minAmountOfTrainingImagesPerSubjectAntClassifier)) {
+				localIntent.putExtra(Statics.TRAINING_SERVICE_STATUS, Statics.TRAINING_SERVICE_STATUS_FINISHED);
+				LocalBroadcastManager.getInstance(this).sendBroadcast(localIntent);
+				Log.d(TAG, "TrainingService#onHandleIntent() finished incrementally.");
+				return;
+			}
+			if (workIntent.getBooleanExtra(Statics.TRAINING_SERVICE_INCREMENTAL_ONLY, false)) {
+				// classifiers stay as they are until the next full training
+				localIntent.putExtra(Statics.TRAINING_SERVICE_STATUS, Statics.TRAINING_SERVICE_STATUS_UNCHANGED);
+				LocalBroadcastManager.getInstance(this).sendBroadcast(localIntent);
+				Log.d(TAG, "TrainingService#onHandleIntent() finished, classifiers unchanged.");
+				return;
+			}
+		}
+
+		// load training data
 		RecognitionModule recognitionModule = new RecognitionModule();
 		recognitionModule.loadTrainingData(this, angleBetweenClassifiers, minAmountOfTrainingImagesPerSubjectAntClassifier,
 				SharedPrefs.isFrontalOnly(this));
@@ -65,7 +90,17 @@ public class TrainingService extends IntentService {
 
 		// train and persist recognitionmodule
 		else {
-			recognitionModule.train(this, angleBetweenClassifiers, minAmountOfTrainingImagesPerSubjectAntClassifier);
+			recognitionModule.train(this, angleBetweenClassifiers, minAmountOfTrainingImagesPerSubjectAntClassifier,
+					new TrainingProgressListener() {
+						@Override
+						public void onPerspectiveTrained(int _classifierIndex, int _finishedPerspectives, int _totalPerspectives) {
+							Intent progressIntent = new Intent(Statics.TRAINING_SERVICE_BROADCAST_ACTION);
+							progressIntent.putExtra(Statics.TRAINING_SERVICE_STATUS, Statics.TRAINING_SERVICE_STATUS_PROGRESS);
+							progressIntent.putExtra(Statics.TRAINING_SERVICE_PROGRESS_FINISHED, _finishedPerspectives);
+							progressIntent.putExtra(Statics.TRAINING_SERVICE_PROGRESS_TOTAL, _totalPerspectives);
+							LocalBroadcastManager.getInstance(TrainingService.this).sendBroadcast(progressIntent);
+						}
+					});
 			try {
 				File directory = DataUtil.getMediaStorageDirectory(getResources().getString(
 						R.string.app_classifier_directory_name));
@@ -90,6 +125,36 @@ public class TrainingService extends IntentService {
 		Log.d(TAG, "TrainingService#onHandleIntent() finished.");
 	}
 
+	/**
+	 * Adds the user to the persisted classifiers without retraining them.
+	 * 
+	 * @return false if a full training is needed instead.
+	 */
+	private boolean trainIncrementally(User _user, float _angleBetweenClassifiers,
+			int _minAmountOfTrainingImagesPerSubjectAntClassifier) {
+		try {
+			File directory = DataUtil.getMediaStorageDirectory(getResources().getString(
+					R.string.app_classifier_directory_name));
+			RecognitionModule recognitionModule = DataUtil.deserializeRecognitiosModule(directory);
+			List<PanshotImage> images = DataUtil.loadTrainingData(this, SharedPrefs.isFrontalOnly(this),
+					_angleBetweenClassifiers, _user);
+			if (images == null || images.isEmpty()
+					|| !recognitionModule.addUserIncrementally(this, images, _angleBetweenClassifiers,
+							_minAmountOfTrainingImagesPerSubjectAntClassifier)) {
+				Log.i(TAG, "cannot add " + _user + " incrementally, training all users.");
+				return false;
+			}
+			DataUtil.serializeRecognitionModule(directory, recognitionModule);
+			return true;
+		} catch (IOException e) {
+			Log.w(TAG, "no recognition module to update: " + e);
+			return false;
+		} catch (ClassNotFoundException e) {
+			Log.w(TAG, "no recognition module to update: " + e);
+			return false;
+		}
+	}
+
 	public static boolean isServiceRunning(Context _context) {
 		return ServiceUtil.isServiceRunning(_context, TrainingService.class);
 	}
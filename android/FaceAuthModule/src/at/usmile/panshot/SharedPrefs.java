@@ -1,6 +1,10 @@
 package at.usmile.panshot;
 
 import android.content.Context;
+import at.usmile.panshot.recognition.knn.DistanceMetrics;
+import at.usmile.panshot.recognition.knn.KnnClassifier;
+import at.usmile.panshot.recognition.svm.SvmClassifier;
+import at.usmile.panshot.util.PCAUtil;
 
 /**
  * Provides access to shared preferences
@@ -49,11 +53,48 @@ public abstract class SharedPrefs {
 	public static final String KNN_K = SHARED_PREFENCES_ID + ".knn_k";
 	/** the L^n-norm power n that is used in the distance metric of KNN */
 	public static final String KNN_DISTANCE_METRIC_LNORM_POWER = SHARED_PREFENCES_ID + ".knn_distance_metric_lnorm_power";
+	/**
+	 * the kind of distance metric used by KNN, one of
+	 * {@link DistanceMetrics.Type}. the L^n-norm uses
+	 * {@link #KNN_DISTANCE_METRIC_LNORM_POWER}.
+	 */
+	public static final String KNN_DISTANCE_METRIC_TYPE = SHARED_PREFENCES_ID + ".knn_distance_metric_type";
+	/**
+	 * how KNN searches its training samples, one of
+	 * {@link KnnClassifier.IndexType}. applied when training.
+	 */
+	public static final String KNN_INDEX_TYPE = SHARED_PREFENCES_ID + ".knn_index_type";
+	/**
+	 * product quantisation index only: amount of features encoded into one
+	 * byte. codes need 4 times this value less memory than float features.
+	 */
+	public static final String KNN_PQ_FEATURES_PER_SUBSPACE = SHARED_PREFENCES_ID + ".knn_pq_features_per_subspace";
+	/**
+	 * product quantisation index only: amount of approximate nearest samples
+	 * that get re-ranked by their exact distance. 0 disables re-ranking and
+	 * drops the float features after training.
+	 */
+	public static final String KNN_PQ_RERANK_CANDIDATES = SHARED_PREFENCES_ID + ".knn_pq_rerank_candidates";
+	/** the SVM kernel, one of {@link SvmClassifier.KernelType}. */
+	public static final String SVM_KERNEL_TYPE = SHARED_PREFENCES_ID + ".svm_kernel_type";
+	/**
+	 * if SVM parameters (C, gamma for RBF) get chosen by cross-validation
+	 * during training.
+	 */
+	public static final String SVM_PARAMETER_SEARCH = SHARED_PREFENCES_ID + ".svm_parameter_search";
+	/**
+	 * adding a user without retraining is refused if the user's faces lose
+	 * more than this fraction of their energy when projected into the
+	 * existing eigenspace (see PCAUtil#residualEnergyFraction). in [0, 1].
+	 */
+	public static final String INCREMENTAL_MAX_EIGENSPACE_DRIFT = SHARED_PREFENCES_ID + ".incremental_max_eigenspace_drift";
 	/**
 	 * if PCA should be applied to transform and reduce the amount of features
 	 * before training / classification.
 	 */
 	public static final String USE_PCA = SHARED_PREFENCES_ID + ".use_pca";
+	/** the algorithm computing PCA, one of {@link PCAUtil.PcaEngine}. */
+	public static final String PCA_ENGINE = SHARED_PREFENCES_ID + ".pca_engine";
 	/** if the classifier used is a KNN. */
 	public static final String USE_CLASSIFIER_TYPE_KNN = SHARED_PREFENCES_ID + ".use_classifier_type_knn";
 	/**
@@ -129,6 +170,16 @@ public abstract class SharedPrefs {
 				SharedPrefs.PCA_AMOUNT_OF_FEATURES, 100);
 	}
 
+	public static PCAUtil.PcaEngine getPcaEngine(Context _context) {
+		String engine = _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getString(
+				SharedPrefs.PCA_ENGINE, PCAUtil.PcaEngine.AUTO.name());
+		try {
+			return PCAUtil.PcaEngine.valueOf(engine);
+		} catch (IllegalArgumentException e) {
+			return PCAUtil.PcaEngine.AUTO;
+		}
+	}
+
 	public static RecognitionType getRecognitionType(Context _context) {
 		if (SharedPrefs.useKnn(_context)) {
 			return RecognitionType.KNN;
@@ -146,6 +197,56 @@ public abstract class SharedPrefs {
 				SharedPrefs.KNN_DISTANCE_METRIC_LNORM_POWER, 2.0f);
 	}
 
+	public static DistanceMetrics.Type getKnnDistanceMetricType(Context _context) {
+		String type = _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getString(
+				SharedPrefs.KNN_DISTANCE_METRIC_TYPE, DistanceMetrics.Type.LNORM.name());
+		try {
+			return DistanceMetrics.Type.valueOf(type);
+		} catch (IllegalArgumentException e) {
+			return DistanceMetrics.Type.LNORM;
+		}
+	}
+
+	public static KnnClassifier.IndexType getKnnIndexType(Context _context) {
+		String type = _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getString(
+				SharedPrefs.KNN_INDEX_TYPE, KnnClassifier.IndexType.LINEAR_SCAN.name());
+		try {
+			return KnnClassifier.IndexType.valueOf(type);
+		} catch (IllegalArgumentException e) {
+			return KnnClassifier.IndexType.LINEAR_SCAN;
+		}
+	}
+
+	public static int getKnnPqFeaturesPerSubspace(Context _context) {
+		return _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getInt(
+				SharedPrefs.KNN_PQ_FEATURES_PER_SUBSPACE, 4);
+	}
+
+	public static int getKnnPqRerankCandidates(Context _context) {
+		return _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getInt(
+				SharedPrefs.KNN_PQ_RERANK_CANDIDATES, 0);
+	}
+
+	public static SvmClassifier.KernelType getSvmKernelType(Context _context) {
+		String type = _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getString(
+				SharedPrefs.SVM_KERNEL_TYPE, SvmClassifier.KernelType.LINEAR.name());
+		try {
+			return SvmClassifier.KernelType.valueOf(type);
+		} catch (IllegalArgumentException e) {
+			return SvmClassifier.KernelType.LINEAR;
+		}
+	}
+
+	public static boolean useSvmParameterSearch(Context _context) {
+		return _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getBoolean(
+				SharedPrefs.SVM_PARAMETER_SEARCH, false);
+	}
+
+	public static float getIncrementalMaxEigenspaceDrift(Context _context) {
+		return _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getFloat(
+				SharedPrefs.INCREMENTAL_MAX_EIGENSPACE_DRIFT, 0.5f);
+	}
+
 	public static int getKnnK(Context _context) {
 		return _context.getSharedPreferences(SharedPrefs.SHARED_PREFENCES_ID, Context.MODE_PRIVATE).getInt(SharedPrefs.KNN_K, 3);
 	}
@@ -31,4 +31,27 @@ public class Statics {
 	public static final String TRAINING_SERVICE_STATUS_ERROR_STRING = "error-string";
 	public static final String TRAINING_SERVICE_STATUS_TOO_LESS_DATA = "too-less-data";
 	public static final String TRAINING_SERVICE_STATUS_TOO_LESS_DATA_DETAILS = "details";
+	/**
+	 * sent if the user could not be added incrementally and
+	 * {@link #TRAINING_SERVICE_INCREMENTAL_ONLY} prevented a full training:
+	 * classifiers stay as they are.
+	 */
+	public static final String TRAINING_SERVICE_STATUS_UNCHANGED = "unchanged";
+	/** sent after each trained perspective, training is still ongoing. */
+	public static final String TRAINING_SERVICE_STATUS_PROGRESS = "progress";
+	public static final String TRAINING_SERVICE_PROGRESS_FINISHED = "progress-finished";
+	public static final String TRAINING_SERVICE_PROGRESS_TOTAL = "progress-total";
+	/**
+	 * optional: id and name of a single user to add to the existing
+	 * classifiers without retraining. falls back to a full training if not
+	 * possible.
+	 */
+	public static final String TRAINING_SERVICE_USER_ID = "TRAINING_SERVICE_USER_ID";
+	public static final String TRAINING_SERVICE_USER_NAME = "TRAINING_SERVICE_USER_NAME";
+	/**
+	 * optional, with a user only: if true, the service does nothing if the
+	 * user cannot be added to the existing classifiers (instead of a full
+	 * training). used after recording data of a user.
+	 */
+	public static final String TRAINING_SERVICE_INCREMENTAL_ONLY = "TRAINING_SERVICE_INCREMENTAL_ONLY";
 }
@@ -0,0 +1,150 @@
+package at.usmile.panshot.recognition;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Classifiers of a stored {@link RecognitionModule} that get loaded on first
+ * use, by classifier index. Only the most recently used classifiers stay
+ * loaded, least recently used ones get dropped and would be loaded again. The
+ * frontal classifier (index 0), needed by nearly every classification, never
+ * gets dropped.
+ * Loading a classifier happens on the thread that requests it first, others
+ * requesting the same classifier meanwhile wait for it. Thread safe.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+class LazyClassifierCache<C> {
+
+	/** loads the classifier of a classifier index. */
+	static interface Loader<C> {
+		C load(int _classifierIndex) throws Exception;
+	}
+
+	// ================================================================================================================
+	// MEMBERS
+
+	/** classifier index that never gets dropped. */
+	private static final int PINNED_CLASSIFIER_INDEX = 0;
+
+	private final Set<Integer> mClassifierIndices;
+	private final Loader<C> mLoader;
+	private final int mCapacity;
+	/** loading and loaded classifiers, least recently used first. */
+	private final LinkedHashMap<Integer, FutureTask<C>> mClassifiers;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _classifierIndices
+	 *            indices that have a classifier.
+	 * @param _loader
+	 * @param _capacity
+	 *            amount of classifiers to keep loaded at most, including the
+	 *            frontal one.
+	 */
+	LazyClassifierCache(Set<Integer> _classifierIndices, Loader<C> _loader, final int _capacity) {
+		if (_capacity < 1) {
+			throw new IllegalArgumentException("need a capacity of at least 1, got " + _capacity + ".");
+		}
+		mClassifierIndices = Collections.unmodifiableSet(new TreeSet<Integer>(_classifierIndices));
+		mLoader = _loader;
+		mCapacity = _capacity;
+		mClassifiers = new LinkedHashMap<Integer, FutureTask<C>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, FutureTask<C>> _eldest) {
+				if (size() <= _capacity) {
+					return false;
+				}
+				// drop the least recently used classifier that is not pinned
+				Iterator<Integer> classifierIndices = keySet().iterator();
+				while (classifierIndices.hasNext()) {
+					if (classifierIndices.next() != PINNED_CLASSIFIER_INDEX) {
+						classifierIndices.remove();
+						break;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return amount of classifiers that stay loaded at most.
+	 */
+	int getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * @return indices that have a classifier, ascending.
+	 */
+	Set<Integer> getClassifierIndices() {
+		return mClassifierIndices;
+	}
+
+	/**
+	 * @param _classifierIndex
+	 * @return the classifier, loaded now if it is not loaded yet. null if
+	 *         there is no classifier for the index.
+	 */
+	C get(final int _classifierIndex) {
+		if (!mClassifierIndices.contains(_classifierIndex)) {
+			return null;
+		}
+		FutureTask<C> task;
+		boolean load = false;
+		synchronized (mClassifiers) {
+			task = mClassifiers.get(_classifierIndex);
+			if (task == null) {
+				task = new FutureTask<C>(new Callable<C>() {
+					@Override
+					public C call() throws Exception {
+						return mLoader.load(_classifierIndex);
+					}
+				});
+				mClassifiers.put(_classifierIndex, task);
+				load = true;
+			}
+		}
+		if (load) {
+			// outside the lock, other classifiers can load meanwhile
+			task.run();
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading classifier " + _classifierIndex + ".", e);
+		} catch (ExecutionException e) {
+			synchronized (mClassifiers) {
+				// retry with the next request
+				if (mClassifiers.get(_classifierIndex) == task) {
+					mClassifiers.remove(_classifierIndex);
+				}
+			}
+			throw new RuntimeException("Cannot load classifier " + _classifierIndex + ".", e.getCause());
+		}
+	}
+
+	/**
+	 * @return true if the classifier is loaded or loading.
+	 */
+	boolean isLoaded(int _classifierIndex) {
+		synchronized (mClassifiers) {
+			return mClassifiers.containsKey(_classifierIndex);
+		}
+	}
+}
@@ -4,9 +4,17 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
@@ -20,12 +28,20 @@ import at.usmile.functional.FunApply;
 import at.usmile.functional.FunUtil;
 import at.usmile.panshot.PanshotImage;
 import at.usmile.panshot.SharedPrefs;
+import at.usmile.panshot.SharedPrefs.RecognitionType;
 import at.usmile.panshot.User;
 import at.usmile.panshot.recognition.knn.DistanceMetric;
+import at.usmile.panshot.recognition.knn.DistanceMetrics;
 import at.usmile.panshot.recognition.knn.KnnClassifier;
+import at.usmile.panshot.recognition.pca.IncrementalPca;
+import at.usmile.panshot.recognition.pca.PcaBasis;
 import at.usmile.panshot.recognition.svm.SvmClassifier;
+import at.usmile.panshot.util.ConcurrencyUtil;
 import at.usmile.panshot.util.DataUtil;
+import at.usmile.panshot.util.ModelContainer;
 import at.usmile.panshot.util.PCAUtil;
+import at.usmile.panshot.util.PanshotImageLoadListener;
+import at.usmile.panshot.util.PanshotImagePreprocessor;
 import at.usmile.panshot.util.PanshotUtil;
 import at.usmile.tuple.GenericTuple2;
 import at.usmile.tuple.GenericTuple3;
@@ -46,6 +62,12 @@ public class RecognitionModule implements Serializable {
 	 */
 	private Map<Integer, SvmClassifier> mSvmClassifiers = new HashMap<Integer, SvmClassifier>();
 	private Map<Integer, KnnClassifier> mKnnClassifiers = new HashMap<Integer, KnnClassifier>();
+	/**
+	 * lazily opened modules: classifiers that get loaded on demand, instead
+	 * of the maps above. null once all classifiers got loaded.
+	 */
+	private transient LazyClassifierCache<SvmClassifier> mLazySvmClassifiers = null;
+	private transient LazyClassifierCache<KnnClassifier> mLazyKnnClassifiers = null;
 
 	/**
 	 * training date splitted by classifier. gets filled after calling
@@ -60,6 +82,19 @@ public class RecognitionModule implements Serializable {
 	 */
 	private Map<GenericTuple2<String, Integer>, Integer> mImageAmount = null;
 
+	/** fraction of the maximum heap perspectives may use while training. */
+	private static final long TRAINING_MEMORY_BUDGET_FRACTION_PERCENT = 50;
+	/**
+	 * rough estimate of the bytes training needs per image and feature
+	 * (feature matrices, PCA projections, libsvm nodes).
+	 */
+	private static final long TRAINING_BYTES_PER_FEATURE = 32;
+
+	/** training work for a single perspective. */
+	private static interface PerspectiveTrainer {
+		void train(int _classifierIndex, TrainingData _trainingData);
+	}
+
 	// ================================================================================================================
 	// METHODS
 
@@ -71,39 +106,125 @@ public class RecognitionModule implements Serializable {
 		return (int) (_normalizedAngle / _classifierSeparationAngle);
 	}
 
-	public void trainKnn(Map<Integer, TrainingData> _trainingdataPerClassifier, boolean _usePca, int _pcaAmountOfFeatures) {
+	/**
+	 * @param _trainingdataPerClassifier
+	 * @param _usePca
+	 * @param _pcaAmountOfFeatures
+	 * @param _indexType
+	 *            how classifiers search their training samples.
+	 * @param _lNormPower
+	 *            the L^n-norm power of the KNN distance metric, used to build
+	 *            the index.
+	 * @param _pqFeaturesPerSubspace
+	 *            product quantisation index only: features per code byte.
+	 * @param _pqRerankCandidates
+	 *            product quantisation index only: amount of candidates that
+	 *            get re-ranked exactly, 0 to keep codes only.
+	 */
+	public void trainKnn(Map<Integer, TrainingData> _trainingdataPerClassifier, boolean _usePca, int _pcaAmountOfFeatures,
+			KnnClassifier.IndexType _indexType, float _lNormPower, int _pqFeaturesPerSubspace, int _pqRerankCandidates) {
+		prepareKnnClassifiers(_trainingdataPerClassifier.keySet(), _indexType, _lNormPower, _pqFeaturesPerSubspace,
+				_pqRerankCandidates);
+		trainPerspectives(_trainingdataPerClassifier, newKnnTrainer(_usePca, _pcaAmountOfFeatures), null,
+				estimateFeatureCount(_trainingdataPerClassifier));
+	}
+
+	/**
+	 * Ensures KNN classifiers exist for all indices and configures them.
+	 */
+	private void prepareKnnClassifiers(Set<Integer> _classifierIndices, KnnClassifier.IndexType _indexType,
+			float _lNormPower, int _pqFeaturesPerSubspace, int _pqRerankCandidates) {
+		for (Integer classifierIndex : _classifierIndices) {
+			if (!getKnnClassifiers().containsKey(classifierIndex)) {
+				getKnnClassifiers().put(classifierIndex, new KnnClassifier());
+			}
+			KnnClassifier classifier = getKnnClassifiers().get(classifierIndex);
+			classifier.setIndexType(_indexType, _lNormPower);
+			classifier.setProductQuantization(_pqFeaturesPerSubspace, _pqRerankCandidates);
+		}
+	}
+
+	private PerspectiveTrainer newKnnTrainer(final boolean _usePca, final int _pcaAmountOfFeatures) {
+		return new PerspectiveTrainer() {
+			@Override
+			public void train(int _classifierIndex, TrainingData _trainingData) {
+				getKnnClassifiers().get(_classifierIndex).train(_trainingData, _usePca, _pcaAmountOfFeatures);
+			}
+		};
+	}
+
+	/**
+	 * Measures the recall at K of the trained KNN classifiers against exact
+	 * KNN classifiers trained on the same training data, using the training
+	 * images as queries. Helps to choose the product quantisation parameters,
+	 * gets logged after each training with product quantisation.
+	 * 
+	 * @return per classifier index: the mean recall, in [0, 1].
+	 */
+	public Map<Integer, Double> measureKnnRecall(Map<Integer, TrainingData> _trainingdataPerClassifier, int _k,
+			boolean _usePca, int _pcaAmountOfFeatures) {
+		Map<Integer, Double> recalls = new HashMap<Integer, Double>();
 		for (Integer classifierIndex : _trainingdataPerClassifier.keySet()) {
-			// ensure classifier exists
-			TrainingData trainingData = _trainingdataPerClassifier.get(classifierIndex);
-			if (!mKnnClassifiers.containsKey(classifierIndex)) {
-				mKnnClassifiers.put(classifierIndex, new KnnClassifier());
+			if (!getKnnClassifiers().containsKey(classifierIndex)) {
+				continue;
 			}
-			KnnClassifier classifier = mKnnClassifiers.get(classifierIndex);
-			classifier.train(trainingData, _usePca, _pcaAmountOfFeatures);
+			TrainingData trainingData = _trainingdataPerClassifier.get(classifierIndex);
+			KnnClassifier exact = new KnnClassifier();
+			exact.train(trainingData, _usePca, _pcaAmountOfFeatures);
+			KnnClassifier approximate = getKnnClassifiers().get(classifierIndex);
+			double recall = KnnClassifier.measureRecall(exact, approximate, trainingData.images, _k, _usePca,
+					_pcaAmountOfFeatures);
+			LOGGER.info("knn classifier " + classifierIndex + ": recall@" + _k + "=" + recall + ", gallery bytes: "
+					+ approximate.getGalleryMemoryBytes() + " vs. " + exact.getGalleryMemoryBytes() + " exact");
+			recalls.put(classifierIndex, recall);
 		}
+		return recalls;
 	}
 
-	public GenericTuple3<User, Integer, Map<User, Integer>> classifyKnn(List<PanshotImage> _images, int _k,
-			DistanceMetric _distanceMetric, boolean _usePca, int _pcaAmountOfFeatures, float _classifierSeparationAngle,
-			final float _knnDistanceMetricLNormPower) {
-		// classify each image, combine votings
+	/**
+	 * @param _distanceMetric
+	 *            the distance metric to use. if null, an L^n-norm metric with
+	 *            power _knnDistanceMetricLNormPower is used.
+	 */
+	public GenericTuple3<User, Integer, Map<User, Integer>> classifyKnn(final List<PanshotImage> _images, final int _k,
+			DistanceMetric _distanceMetric, final boolean _usePca, final int _pcaAmountOfFeatures,
+			float _classifierSeparationAngle, float _knnDistanceMetricLNormPower) {
+		// pick the distance kernel once for all images
+		final DistanceMetric distanceMetric = _distanceMetric != null ? _distanceMetric : DistanceMetrics
+				.forLNormPower(_knnDistanceMetricLNormPower);
+		// group images by classifier, so each classifier handles all of its
+		// images in one batch. classifiers are independent and run in
+		// parallel.
+		Map<Integer, List<Integer>> imageNrsPerClassifier = groupImagesByClassifier(_images, getKnnClassifierIndices(),
+				_classifierSeparationAngle);
+		Map<Integer, Callable<List<GenericTuple2<User, Map<User, Integer>>>>> tasks = new HashMap<Integer, Callable<List<GenericTuple2<User, Map<User, Integer>>>>>();
+		final Map<Integer, KnnClassifier> classifiers = new HashMap<Integer, KnnClassifier>();
+		for (final Integer classifierIndex : imageNrsPerClassifier.keySet()) {
+			final List<PanshotImage> images = new ArrayList<PanshotImage>();
+			for (Integer imageNr : imageNrsPerClassifier.get(classifierIndex)) {
+				images.add(_images.get(imageNr));
+			}
+			tasks.put(classifierIndex, new Callable<List<GenericTuple2<User, Map<User, Integer>>>>() {
+				@Override
+				public List<GenericTuple2<User, Map<User, Integer>>> call() {
+					// lazily loaded classifiers load in parallel, too
+					KnnClassifier classifier = getKnnClassifier(classifierIndex);
+					synchronized (classifiers) {
+						classifiers.put(classifierIndex, classifier);
+					}
+					return classifier.classify(images, _k, distanceMetric, _usePca, _pcaAmountOfFeatures);
+				}
+			});
+		}
+		List<GenericTuple2<User, Map<User, Integer>>> results = scatterResults(_images.size(), imageNrsPerClassifier,
+				ConcurrencyUtil.invokeAll(tasks));
+		// combine votings in image order
 		Map<User, Integer> votings = new HashMap<User, Integer>();
 		GenericTuple2<User, Integer> mostVotedUser = null;
-		for (PanshotImage image : _images) {
-			int classifierIndex = getClassifierIndexForAngle(image.angleValues[image.rec.angleIndex], _classifierSeparationAngle);
-			if (!mKnnClassifiers.containsKey(classifierIndex)) {
-				// skip, we cannot classify images we have no classifier for
-				Log.d(TAG, "skipping face for clas. index " + classifierIndex + ": " + image.toString());
+		for (GenericTuple2<User, Map<User, Integer>> res : results) {
+			if (res == null) {
 				continue;
 			}
-			// classify and remember results
-			KnnClassifier classifier = mKnnClassifiers.get(classifierIndex);
-			GenericTuple2<User, Map<User, Integer>> res = classifier.classify(image, _k, new DistanceMetric() {
-				@Override
-				public double distance(double _sample1Feat, double _sample2Feat) {
-					return Math.pow(_sample1Feat - _sample2Feat, _knnDistanceMetricLNormPower);
-				}
-			}, _usePca, _pcaAmountOfFeatures);
 			for (User u : res.value2.keySet()) {
 				if (!votings.containsKey(u)) {
 					votings.put(u, res.value2.get(u));
@@ -116,41 +237,147 @@ public class RecognitionModule implements Serializable {
 			}
 		}
 		LOGGER.info("votings: " + votings.toString());
+		for (Integer classifierIndex : classifiers.keySet()) {
+			KnnClassifier classifier = classifiers.get(classifierIndex);
+			if (classifier.getTotalFeatureCount() > 0) {
+				LOGGER.debug("knn classifier " + classifierIndex + " evaluated " + classifier.getEvaluatedFeatureCount() + " of "
+						+ classifier.getTotalFeatureCount() + " features");
+			}
+		}
 		return new GenericTuple3<User, Integer, Map<User, Integer>>(mostVotedUser.value1, mostVotedUser.value2, votings);
 	}
 
 	public void trainSvm(Map<Integer, TrainingData> _trainingdataPerClassifier, boolean _usePca, int _pcaAmountOfFeatures) {
-		for (Integer classifierIndex : _trainingdataPerClassifier.keySet()) {
-			// ensure classifier exists
-			TrainingData trainingData = _trainingdataPerClassifier.get(classifierIndex);
-			if (!mSvmClassifiers.containsKey(classifierIndex)) {
+		trainSvm(_trainingdataPerClassifier, _usePca, _pcaAmountOfFeatures, SvmClassifier.KernelType.LINEAR, false);
+	}
+
+	/**
+	 * @param _kernelType
+	 * @param _searchParameters
+	 *            if C (and gamma) get chosen by cross-validation per
+	 *            perspective.
+	 */
+	public void trainSvm(Map<Integer, TrainingData> _trainingdataPerClassifier, boolean _usePca, int _pcaAmountOfFeatures,
+			SvmClassifier.KernelType _kernelType, boolean _searchParameters) {
+		prepareSvmClassifiers(_trainingdataPerClassifier.keySet(), _kernelType, _searchParameters);
+		trainPerspectives(_trainingdataPerClassifier, newSvmTrainer(_usePca, _pcaAmountOfFeatures), null,
+				estimateFeatureCount(_trainingdataPerClassifier));
+	}
+
+	/**
+	 * Ensures SVM classifiers exist for all indices and configures them.
+	 */
+	private void prepareSvmClassifiers(Set<Integer> _classifierIndices, SvmClassifier.KernelType _kernelType,
+			boolean _searchParameters) {
+		for (Integer classifierIndex : _classifierIndices) {
+			if (!getSvmClassifiers().containsKey(classifierIndex)) {
 				SvmClassifier c = new SvmClassifier(classifierIndex);
-				mSvmClassifiers.put(classifierIndex, c);
+				getSvmClassifiers().put(classifierIndex, c);
+			}
+			getSvmClassifiers().get(classifierIndex).setKernel(_kernelType, _searchParameters);
+		}
+	}
+
+	private PerspectiveTrainer newSvmTrainer(final boolean _usePca, final int _pcaAmountOfFeatures) {
+		return new PerspectiveTrainer() {
+			@Override
+			public void train(int _classifierIndex, TrainingData _trainingData) {
+				getSvmClassifiers().get(_classifierIndex).train(_trainingData, _usePca, _pcaAmountOfFeatures);
+			}
+		};
+	}
+
+	/**
+	 * Runs _trainer for all perspectives in parallel. Perspectives only start
+	 * if their estimated memory use fits into the training memory budget
+	 * together with the perspectives currently being trained.
+	 * 
+	 * @param _trainingdataPerClassifier
+	 * @param _trainer
+	 * @param _listener
+	 *            gets notified after each perspective, may be null.
+	 * @param _featureCount
+	 *            amount of pixels per (resized) face, used for memory
+	 *            estimation.
+	 */
+	private void trainPerspectives(Map<Integer, TrainingData> _trainingdataPerClassifier, final PerspectiveTrainer _trainer,
+			final TrainingProgressListener _listener, int _featureCount) {
+		final int totalPerspectives = _trainingdataPerClassifier.size();
+		final AtomicInteger finishedPerspectives = new AtomicInteger();
+		final int budgetKb = (int) Math.min(Integer.MAX_VALUE,
+				Math.max(1, Runtime.getRuntime().maxMemory() / 100 * TRAINING_MEMORY_BUDGET_FRACTION_PERCENT / 1024));
+		final Semaphore memory = new Semaphore(budgetKb, true);
+		Map<Integer, Callable<Void>> tasks = new HashMap<Integer, Callable<Void>>();
+		for (final Integer classifierIndex : _trainingdataPerClassifier.keySet()) {
+			final TrainingData trainingData = _trainingdataPerClassifier.get(classifierIndex);
+			// perspectives exceeding the budget on their own run alone
+			final int permits = (int) Math.min(budgetKb,
+					Math.max(1, (long) trainingData.images.size() * _featureCount * TRAINING_BYTES_PER_FEATURE / 1024));
+			tasks.put(classifierIndex, new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					memory.acquire(permits);
+					try {
+						_trainer.train(classifierIndex, trainingData);
+					} finally {
+						memory.release(permits);
+					}
+					int finished = finishedPerspectives.incrementAndGet();
+					LOGGER.debug("trained perspective " + classifierIndex + " (" + finished + "/" + totalPerspectives + ")");
+					if (_listener != null) {
+						_listener.onPerspectiveTrained(classifierIndex, finished, totalPerspectives);
+					}
+					return null;
+				}
+			});
+		}
+		ConcurrencyUtil.invokeAll(tasks);
+	}
+
+	/**
+	 * @return the amount of pixels of the first face of the training data.
+	 */
+	private static int estimateFeatureCount(Map<Integer, TrainingData> _trainingdataPerClassifier) {
+		for (TrainingData trainingData : _trainingdataPerClassifier.values()) {
+			if (!trainingData.images.isEmpty()) {
+				Mat face = trainingData.images.get(0).grayFace;
+				return face.rows() * face.cols();
 			}
-			SvmClassifier classifier = mSvmClassifiers.get(classifierIndex);
-			classifier.train(trainingData, _usePca, _pcaAmountOfFeatures);
 		}
+		return 1;
 	}
 
-	public GenericTuple3<User, Double, Map<User, Double>> classifySvm(List<PanshotImage> _images, boolean _usePca,
-			int _pcaAmountOfFeatures, float _classifierSeparationAngle) {
+	public GenericTuple3<User, Double, Map<User, Double>> classifySvm(final List<PanshotImage> _images,
+			final boolean _usePca, final int _pcaAmountOfFeatures, float _classifierSeparationAngle) {
 		Log.i("SVM", "start recognizeSvm - image count: " + _images.size());
-		// classify each image, combine votings
+		// classify images of independent classifiers in parallel
+		Map<Integer, List<Integer>> imageNrsPerClassifier = groupImagesByClassifier(_images, getSvmClassifierIndices(),
+				_classifierSeparationAngle);
+		Map<Integer, Callable<List<GenericTuple2<User, Map<User, Double>>>>> tasks = new HashMap<Integer, Callable<List<GenericTuple2<User, Map<User, Double>>>>>();
+		for (final Integer classifierIndex : imageNrsPerClassifier.keySet()) {
+			final List<Integer> imageNrs = imageNrsPerClassifier.get(classifierIndex);
+			tasks.put(classifierIndex, new Callable<List<GenericTuple2<User, Map<User, Double>>>>() {
+				@Override
+				public List<GenericTuple2<User, Map<User, Double>>> call() {
+					// lazily loaded classifiers load in parallel, too
+					SvmClassifier classifier = getSvmClassifier(classifierIndex);
+					List<GenericTuple2<User, Map<User, Double>>> results = new ArrayList<GenericTuple2<User, Map<User, Double>>>();
+					for (Integer imageNr : imageNrs) {
+						results.add(classifier.classify(_images.get(imageNr), _usePca, _pcaAmountOfFeatures));
+					}
+					return results;
+				}
+			});
+		}
+		List<GenericTuple2<User, Map<User, Double>>> results = scatterResults(_images.size(), imageNrsPerClassifier,
+				ConcurrencyUtil.invokeAll(tasks));
+		// combine probabilities in image order
 		Map<User, Double> probabilities = new HashMap<User, Double>();
 		GenericTuple2<User, Double> mostVotedUser = null;
-		for (PanshotImage image : _images) {
-			int classifierIndex = getClassifierIndexForAngle(image.angleValues[image.rec.angleIndex], _classifierSeparationAngle);
-			Log.d(TAG, "angle=" + image.angleValues[image.rec.angleIndex] + "_classifierSeparationAngle="
-					+ _classifierSeparationAngle + ", classifierIndex=" + classifierIndex);
-			if (!mSvmClassifiers.containsKey(classifierIndex)) {
-				// skip, we cannot classify images we have no classifier for
-				Log.i("SVM", "no classifier trained for index: " + classifierIndex);
+		for (GenericTuple2<User, Map<User, Double>> res : results) {
+			if (res == null) {
 				continue;
 			}
-			// get the trained classifier
-			SvmClassifier classifier = mSvmClassifiers.get(classifierIndex);
-			// classify
-			GenericTuple2<User, Map<User, Double>> res = classifier.classify(image, _usePca, _pcaAmountOfFeatures);
 			// remember probabilities for later images
 			for (User u : res.value2.keySet()) {
 				if (!probabilities.containsKey(u)) {
@@ -167,36 +394,142 @@ public class RecognitionModule implements Serializable {
 		return new GenericTuple3<User, Double, Map<User, Double>>(mostVotedUser.value1, mostVotedUser.value2, probabilities);
 	}
 
+	/**
+	 * Groups images by the index of the classifier responsible for them.
+	 * Images without classifier get skipped.
+	 * 
+	 * @return per classifier index (sorted): the indices of its images in
+	 *         _images, in ascending order.
+	 */
+	private static Map<Integer, List<Integer>> groupImagesByClassifier(List<PanshotImage> _images,
+			Set<Integer> _classifierIndices, float _classifierSeparationAngle) {
+		Map<Integer, List<Integer>> imageNrsPerClassifier = new TreeMap<Integer, List<Integer>>();
+		for (int imageNr = 0; imageNr < _images.size(); imageNr++) {
+			PanshotImage image = _images.get(imageNr);
+			int classifierIndex = getClassifierIndexForAngle(image.angleValues[image.rec.angleIndex], _classifierSeparationAngle);
+			Log.d(TAG, "angle=" + image.angleValues[image.rec.angleIndex] + "_classifierSeparationAngle="
+					+ _classifierSeparationAngle + ", classifierIndex=" + classifierIndex);
+			if (!_classifierIndices.contains(classifierIndex)) {
+				// skip, we cannot classify images we have no classifier for
+				Log.d(TAG, "skipping face for clas. index " + classifierIndex + ": " + image.toString());
+				continue;
+			}
+			if (!imageNrsPerClassifier.containsKey(classifierIndex)) {
+				imageNrsPerClassifier.put(classifierIndex, new ArrayList<Integer>());
+			}
+			imageNrsPerClassifier.get(classifierIndex).add(imageNr);
+		}
+		return imageNrsPerClassifier;
+	}
+
+	/**
+	 * Puts per-classifier results back into image order.
+	 * 
+	 * @return per image: its result, null for skipped images.
+	 */
+	private static <T> List<T> scatterResults(int _imageCount, Map<Integer, List<Integer>> _imageNrsPerClassifier,
+			Map<Integer, List<T>> _resultsPerClassifier) {
+		List<T> results = new ArrayList<T>(Collections.<T> nCopies(_imageCount, null));
+		for (Integer classifierIndex : _resultsPerClassifier.keySet()) {
+			List<Integer> imageNrs = _imageNrsPerClassifier.get(classifierIndex);
+			List<T> classifierResults = _resultsPerClassifier.get(classifierIndex);
+			for (int i = 0; i < imageNrs.size(); i++) {
+				results.set(imageNrs.get(i), classifierResults.get(i));
+			}
+		}
+		return results;
+	}
+
 	/**
 	 * Loads and caches training data. Necessary before calling training.
+	 * Images get energy normalised and resized on the loader's worker threads
+	 * (or come from the preprocessed faces cache). With PCA and
+	 * {@link PCAUtil.PcaEngine#STREAMING}, or {@link PCAUtil.PcaEngine#AUTO}
+	 * choosing it for a perspective's amount of images, they get streamed into
+	 * a per perspective {@link IncrementalPca} while loading, if every subject
+	 * has _minAmountImagesPerSubjectAndClassifier images per perspective.
 	 * 
 	 * @param _context
 	 * @param _angleBetweenPerspectives
 	 * @param _minAmountImagesPerSubjectAndClassifier
 	 * @param _useFronalOnly
 	 */
-	public void loadTrainingData(final Context _context, float _angleBetweenPerspectives,
+	public void loadTrainingData(final Context _context, final float _angleBetweenPerspectives,
 			int _minAmountImagesPerSubjectAndClassifier, boolean _useFronalOnly) {
 		// load training data
 		Log.d(TAG, "loading training panshot images...");
-		List<PanshotImage> trainingPanshotImages = DataUtil.loadTrainingData(_context, _useFronalOnly, _angleBetweenPerspectives);
-		// do image energy normalisation
-		if (SharedPrefs.useImageEnergyNormlization(_context)) {
-			final float subsamplingFactor = SharedPrefs.getImageEnergyNormalizationSubsamplingFactor(_context);
-			FunUtil.apply(trainingPanshotImages, new FunApply<PanshotImage, PanshotImage>() {
+		final boolean useEnergyNormalization = SharedPrefs.useImageEnergyNormlization(_context);
+		final float subsamplingFactor = SharedPrefs.getImageEnergyNormalizationSubsamplingFactor(_context);
+		final Size faceSize = new Size(SharedPrefs.getFaceWidth(_context), SharedPrefs.getFaceHeight(_context));
+		PanshotImagePreprocessor preprocessor = new PanshotImagePreprocessor() {
+			@Override
+			public void preprocess(PanshotImage _image) {
+				if (useEnergyNormalization) {
+					normalizeImageEnergy(_image, subsamplingFactor);
+				}
+				Imgproc.resize(_image.grayFace, _image.grayFace, faceSize);
+			}
+
+			@Override
+			public String getParameterKey() {
+				return "energyNormalization=" + useEnergyNormalization + ",subsamplingFactor=" + subsamplingFactor
+						+ ",faceSize=" + (int) faceSize.width + "x" + (int) faceSize.height;
+			}
+		};
+		final Map<Integer, IncrementalPca> streamingPcas = new HashMap<Integer, IncrementalPca>();
+		PanshotImageLoadListener listener = null;
+		final PCAUtil.PcaEngine pcaEngine = SharedPrefs.getPcaEngine(_context);
+		if (SharedPrefs.usePca(_context)
+				&& (pcaEngine == PCAUtil.PcaEngine.STREAMING || pcaEngine == PCAUtil.PcaEngine.AUTO)) {
+			final int featureCount = (int) (faceSize.width * faceSize.height);
+			final int pcaAmountOfFeatures = SharedPrefs.getAmountOfPcaFeatures(_context);
+			final int minAmountImages = _minAmountImagesPerSubjectAndClassifier;
+			final float[] sample = new float[featureCount];
+			listener = new PanshotImageLoadListener() {
 				@Override
-				public PanshotImage apply(PanshotImage panshotImage) {
-					// normalise the face's energy use convolution (kernel = 2D
-					// filter) to get image energy (brightness) distribution and
-					// normalise face with it
-					GenericTuple2<Mat, Mat> normalizedMatEnergy = PanshotUtil.normalizeMatEnergy(panshotImage.grayFace,
-							(int) (panshotImage.grayFace.rows() / subsamplingFactor),
-							(int) (panshotImage.grayFace.cols() / subsamplingFactor), 255.0);
-					panshotImage.grayFace = normalizedMatEnergy.value1;
-					return panshotImage;
+				public void onImagesListed(List<PanshotImage> _images) {
+					// stream only what training will use: with too less images
+					// for a (subject, perspective) training gets refused
+					Map<GenericTuple2<String, Integer>, Integer> amounts;
+					amounts = new HashMap<GenericTuple2<String, Integer>, Integer>();
+					Map<Integer, Integer> perspectiveAmounts = new HashMap<Integer, Integer>();
+					for (PanshotImage image : _images) {
+						int classifierIndex = RecognitionModule.getClassifierIndexForAngle(
+								image.angleValues[image.rec.angleIndex], _angleBetweenPerspectives);
+						GenericTuple2<String, Integer> key = new GenericTuple2<String, Integer>(image.rec.user.getName(),
+								classifierIndex);
+						amounts.put(key, amounts.containsKey(key) ? amounts.get(key) + 1 : 1);
+						perspectiveAmounts.put(classifierIndex, perspectiveAmounts.containsKey(classifierIndex)
+								? perspectiveAmounts.get(classifierIndex) + 1 : 1);
+					}
+					for (int amount : amounts.values()) {
+						if (amount < minAmountImages) {
+							Log.i(TAG, "not enough training data, not streaming PCA.");
+							return;
+						}
+					}
+					for (Map.Entry<Integer, Integer> perspectiveAmount : perspectiveAmounts.entrySet()) {
+						if (pcaEngine == PCAUtil.PcaEngine.STREAMING
+								|| PCAUtil.chooseEngine(perspectiveAmount.getValue(), featureCount, pcaAmountOfFeatures)
+								== PCAUtil.PcaEngine.STREAMING) {
+							streamingPcas.put(perspectiveAmount.getKey(), new IncrementalPca(featureCount,
+									pcaAmountOfFeatures));
+						}
+					}
 				}
-			});
+
+				@Override
+				public void onImageLoaded(PanshotImage _image) {
+					IncrementalPca incrementalPca = streamingPcas.get(RecognitionModule.getClassifierIndexForAngle(
+							_image.angleValues[_image.rec.angleIndex], _angleBetweenPerspectives));
+					if (incrementalPca != null) {
+						PCAUtil.addToIncrementalPca(incrementalPca, _image, sample);
+					}
+				}
+			};
 		}
+		List<PanshotImage> trainingPanshotImages = DataUtil.loadTrainingData(_context, _useFronalOnly,
+				_angleBetweenPerspectives, null, preprocessor, listener);
 		// separate images to perspectives...
 		Map<Integer, TrainingData> trainingdataPerClassifier = new HashMap<Integer, TrainingData>();
 		// ... and track amount of images per (subject, perspective)
@@ -205,7 +538,9 @@ public class RecognitionModule implements Serializable {
 			int classifierIndex = RecognitionModule.getClassifierIndexForAngle(image.angleValues[image.rec.angleIndex],
 					_angleBetweenPerspectives);
 			if (!trainingdataPerClassifier.containsKey(classifierIndex)) {
-				trainingdataPerClassifier.put(classifierIndex, new TrainingData());
+				TrainingData trainingData = new TrainingData();
+				trainingData.streamingPca = streamingPcas.get(classifierIndex);
+				trainingdataPerClassifier.put(classifierIndex, trainingData);
 			}
 			trainingdataPerClassifier.get(classifierIndex).images.add(image);
 
@@ -222,6 +557,34 @@ public class RecognitionModule implements Serializable {
 		mImageAmount = imageAmount;
 	}
 
+	/**
+	 * Image energy normalisation, if enabled.
+	 */
+	private static void normalizeImageEnergy(Context _context, List<PanshotImage> _images) {
+		if (SharedPrefs.useImageEnergyNormlization(_context)) {
+			final float subsamplingFactor = SharedPrefs.getImageEnergyNormalizationSubsamplingFactor(_context);
+			FunUtil.apply(_images, new FunApply<PanshotImage, PanshotImage>() {
+				@Override
+				public PanshotImage apply(PanshotImage panshotImage) {
+					normalizeImageEnergy(panshotImage, subsamplingFactor);
+					return panshotImage;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Normalises the face's energy: uses convolution (kernel = 2D filter) to
+	 * get the image energy (brightness) distribution and normalises the face
+	 * with it.
+	 */
+	private static void normalizeImageEnergy(PanshotImage _image, float _subsamplingFactor) {
+		GenericTuple2<Mat, Mat> normalizedMatEnergy = PanshotUtil.normalizeMatEnergy(_image.grayFace,
+				(int) (_image.grayFace.rows() / _subsamplingFactor), (int) (_image.grayFace.cols() / _subsamplingFactor),
+				255.0);
+		_image.grayFace = normalizedMatEnergy.value1;
+	}
+
 	/**
 	 * Checks for all users having enough training data for all perspectives.
 	 * 
@@ -258,70 +621,406 @@ public class RecognitionModule implements Serializable {
 	 * @param _minAmountImagesPerSubjectAndClassifier
 	 */
 	public void train(final Context _context, float _angleDiffOfPhotos, int _minAmountImagesPerSubjectAndClassifier) {
+		train(_context, _angleDiffOfPhotos, _minAmountImagesPerSubjectAndClassifier, null);
+	}
+
+	/**
+	 * Same as {@link #train(Context, float, int)}, but perspectives get
+	 * resized, PCA transformed and trained in parallel, reporting each
+	 * finished perspective to _listener (may be null).
+	 */
+	public void train(final Context _context, float _angleDiffOfPhotos, int _minAmountImagesPerSubjectAndClassifier,
+			TrainingProgressListener _listener) {
 		// TODO externalize context stuff
 
 		Map<Integer, TrainingData> trainingdataPerClassifier = mTrainingDataPerClassifier;
-
-		// RESIZE images as KNN, SVM etc need images that are of
-		// same size
-		for (TrainingData trainingData : trainingdataPerClassifier.values()) {
-			FunUtil.apply(trainingData.images, new FunApply<PanshotImage, PanshotImage>() {
-				@Override
-				public PanshotImage apply(PanshotImage _t) {
-					Imgproc.resize(_t.grayFace, _t.grayFace,
-							new Size(SharedPrefs.getFaceWidth(_context), SharedPrefs.getFaceHeight(_context)));
-					return _t;
-				}
-			});
-		}
-
-		// PCA
-		if (SharedPrefs.usePca(_context)) {
-			for (TrainingData trainingData : trainingdataPerClassifier.values()) {
-				GenericTuple3<Mat, Mat, Mat> pcaComponents = PCAUtil.pcaCompute(trainingData.images);
-				trainingData.pcaMean = pcaComponents.value1;
-				trainingData.pcaEigenvectors = pcaComponents.value2;
-				trainingData.pcaProjections = pcaComponents.value3;
-			}
-		}
+		final Size faceSize = new Size(SharedPrefs.getFaceWidth(_context), SharedPrefs.getFaceHeight(_context));
+		final boolean usePca = SharedPrefs.usePca(_context);
+		final int pcaAmountOfFeatures = SharedPrefs.getAmountOfPcaFeatures(_context);
+		final PCAUtil.PcaEngine pcaEngine = SharedPrefs.getPcaEngine(_context);
 
 		// we know we have sufficient training data for each
 		// classifier
+		final PerspectiveTrainer classifierTrainer;
 		switch (SharedPrefs.getRecognitionType(_context)) {
 			case KNN:
-				trainKnn(trainingdataPerClassifier, SharedPrefs.usePca(_context), SharedPrefs.getAmountOfPcaFeatures(_context));
+				prepareKnnClassifiers(trainingdataPerClassifier.keySet(), SharedPrefs.getKnnIndexType(_context),
+						SharedPrefs.getKnnDistanceMetricLNormPower(_context), SharedPrefs.getKnnPqFeaturesPerSubspace(_context),
+						SharedPrefs.getKnnPqRerankCandidates(_context));
+				classifierTrainer = newKnnTrainer(usePca, pcaAmountOfFeatures);
 				break;
 
 			case SVM:
-				trainSvm(trainingdataPerClassifier, SharedPrefs.usePca(_context), SharedPrefs.getAmountOfPcaFeatures(_context));
+				prepareSvmClassifiers(trainingdataPerClassifier.keySet(), SharedPrefs.getSvmKernelType(_context),
+						SharedPrefs.useSvmParameterSearch(_context));
+				classifierTrainer = newSvmTrainer(usePca, pcaAmountOfFeatures);
+				break;
 
 			default:
+				classifierTrainer = null;
 				break;
 		}
+
+		trainPerspectives(trainingdataPerClassifier, new PerspectiveTrainer() {
+			@Override
+			public void train(int _classifierIndex, TrainingData _trainingData) {
+				// RESIZE images as KNN, SVM etc need images that are of
+				// same size
+				FunUtil.apply(_trainingData.images, new FunApply<PanshotImage, PanshotImage>() {
+					@Override
+					public PanshotImage apply(PanshotImage _t) {
+						Imgproc.resize(_t.grayFace, _t.grayFace, faceSize);
+						return _t;
+					}
+				});
+
+				// PCA
+				if (usePca) {
+					GenericTuple3<Mat, Mat, Mat> pcaComponents;
+					if (_trainingData.streamingPca != null) {
+						// eigenspace got estimated while loading
+						pcaComponents = PCAUtil.pcaCompute(_trainingData.images, _trainingData.streamingPca);
+					} else {
+						pcaComponents = PCAUtil.pcaCompute(_trainingData.images, pcaAmountOfFeatures, pcaEngine);
+					}
+					_trainingData.pcaMean = pcaComponents.value1;
+					_trainingData.pcaEigenvectors = pcaComponents.value2;
+					_trainingData.pcaProjections = pcaComponents.value3;
+				}
+
+				if (classifierTrainer != null) {
+					classifierTrainer.train(_classifierIndex, _trainingData);
+				}
+			}
+		}, _listener, (int) (faceSize.width * faceSize.height));
+
+		if (SharedPrefs.getRecognitionType(_context) == SharedPrefs.RecognitionType.KNN
+				&& SharedPrefs.getKnnIndexType(_context) == KnnClassifier.IndexType.PRODUCT_QUANTIZATION) {
+			// approximate search: log how many true neighbours it finds
+			measureKnnRecall(trainingdataPerClassifier, SharedPrefs.getKnnK(_context), usePca, pcaAmountOfFeatures);
+		}
 	}
 
+	/**
+	 * Enrols a single user into the trained classifiers of the configured
+	 * recognition type without retraining them: faces get projected into the
+	 * existing eigenspaces, KNN galleries get extended and SVMs only train the
+	 * pairs of the new user. Data previously enrolled for the user gets
+	 * replaced. Perspectives get updated in parallel.
+	 * 
+	 * @param _context
+	 * @param _images
+	 *            all images of the user, as loaded from the FS (not
+	 *            normalised nor resized yet).
+	 * @param _angleDiffOfPhotos
+	 * @param _minAmountImagesPerSubjectAndClassifier
+	 * @return false if a full training is needed instead, nothing has been
+	 *         changed in this case: the user has too less images for a
+	 *         perspective, a perspective has no classifier that can be
+	 *         updated, or the user's faces drift too far from an eigenspace
+	 *         (see {@link SharedPrefs#getIncrementalMaxEigenspaceDrift(Context)}
+	 *         ).
+	 */
+	public boolean addUserIncrementally(Context _context, List<PanshotImage> _images, float _angleDiffOfPhotos,
+			int _minAmountImagesPerSubjectAndClassifier) {
+		if (_images.isEmpty()) {
+			return true;
+		}
+		final User user = _images.get(0).rec.user;
+		for (PanshotImage image : _images) {
+			if (image.rec == null || image.rec.user == null || !image.rec.user.equals(user)) {
+				throw new RuntimeException("All images have to contain user information of the same user.");
+			}
+		}
+		final boolean useKnn = SharedPrefs.getRecognitionType(_context) == SharedPrefs.RecognitionType.KNN;
+		final boolean usePca = SharedPrefs.usePca(_context);
+		final int pcaAmountOfFeatures = SharedPrefs.getAmountOfPcaFeatures(_context);
+		float maxDrift = SharedPrefs.getIncrementalMaxEigenspaceDrift(_context);
+
+		// same preprocessing as training
+		normalizeImageEnergy(_context, _images);
+		final Size faceSize = new Size(SharedPrefs.getFaceWidth(_context), SharedPrefs.getFaceHeight(_context));
+		for (PanshotImage image : _images) {
+			Imgproc.resize(image.grayFace, image.grayFace, faceSize);
+			image.pcaFace = null;
+		}
+		Map<Integer, List<PanshotImage>> imagesPerClassifier = new TreeMap<Integer, List<PanshotImage>>();
+		for (PanshotImage image : _images) {
+			int classifierIndex = getClassifierIndexForAngle(image.angleValues[image.rec.angleIndex], _angleDiffOfPhotos);
+			if (!imagesPerClassifier.containsKey(classifierIndex)) {
+				imagesPerClassifier.put(classifierIndex, new ArrayList<PanshotImage>());
+			}
+			imagesPerClassifier.get(classifierIndex).add(image);
+		}
+
+		// check all perspectives before changing anything
+		for (Integer classifierIndex : imagesPerClassifier.keySet()) {
+			List<PanshotImage> images = imagesPerClassifier.get(classifierIndex);
+			if (images.size() < _minAmountImagesPerSubjectAndClassifier) {
+				LOGGER.info("perspective " + classifierIndex + ": too less images (" + images.size() + ") for " + user);
+				return false;
+			}
+			List<User> users;
+			PcaBasis pcaBasis;
+			if (useKnn) {
+				KnnClassifier classifier = getKnnClassifiers().get(classifierIndex);
+				if (classifier == null || classifier.getSampleCount() == 0) {
+					LOGGER.info("perspective " + classifierIndex + ": no trained knn classifier");
+					return false;
+				}
+				users = classifier.getUsers();
+				pcaBasis = classifier.getPcaBasis();
+			} else {
+				SvmClassifier classifier = getSvmClassifiers().get(classifierIndex);
+				if (classifier == null || !classifier.isIncrementallyUpdatable()) {
+					LOGGER.info("perspective " + classifierIndex + ": no incrementally updatable svm classifier");
+					return false;
+				}
+				users = classifier.getUsers();
+				pcaBasis = classifier.getPcaBasis();
+			}
+			if (users.size() == 1 && users.contains(user)) {
+				LOGGER.info("perspective " + classifierIndex + ": " + user + " is the only user");
+				return false;
+			}
+			if (usePca) {
+				if (pcaBasis == null) {
+					return false;
+				}
+				double drift = PCAUtil.residualEnergyFraction(images, pcaBasis);
+				LOGGER.debug("perspective " + classifierIndex + ": eigenspace drift " + drift + " for " + user);
+				if (drift > maxDrift) {
+					LOGGER.info("perspective " + classifierIndex + ": eigenspace drift " + drift + " exceeds " + maxDrift);
+					return false;
+				}
+			}
+		}
+
+		// replace the user's previous data
+		removeUser(user);
+		Map<Integer, Callable<Void>> tasks = new HashMap<Integer, Callable<Void>>();
+		for (final Integer classifierIndex : imagesPerClassifier.keySet()) {
+			final List<PanshotImage> images = imagesPerClassifier.get(classifierIndex);
+			tasks.put(classifierIndex, new Callable<Void>() {
+				@Override
+				public Void call() {
+					if (useKnn) {
+						getKnnClassifiers().get(classifierIndex).addSamples(images, usePca);
+					} else {
+						getSvmClassifiers().get(classifierIndex).addUser(images, usePca, pcaAmountOfFeatures);
+					}
+					return null;
+				}
+			});
+		}
+		ConcurrencyUtil.invokeAll(tasks);
+		LOGGER.info("added " + user + " to " + tasks.size() + " perspectives without retraining");
+		return true;
+	}
+
+	/**
+	 * Removes a user from all classifiers without retraining them.
+	 * Classifiers without users left get dropped.
+	 * 
+	 * @param _user
+	 * @return true if the user was known to at least one classifier.
+	 */
+	public boolean removeUser(User _user) {
+		boolean removed = false;
+		for (Integer classifierIndex : new ArrayList<Integer>(getKnnClassifiers().keySet())) {
+			KnnClassifier classifier = getKnnClassifiers().get(classifierIndex);
+			removed |= classifier.removeUser(_user);
+			if (classifier.getSampleCount() == 0) {
+				getKnnClassifiers().remove(classifierIndex);
+			}
+		}
+		for (Integer classifierIndex : new ArrayList<Integer>(getSvmClassifiers().keySet())) {
+			SvmClassifier classifier = getSvmClassifiers().get(classifierIndex);
+			removed |= classifier.removeUser(_user);
+			if (classifier.getUsers().isEmpty()) {
+				getSvmClassifiers().remove(classifierIndex);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Opens a stored module without loading its classifiers: each classifier
+	 * gets loaded from the container when it is needed first (or by
+	 * {@link #loadClassifiersInBackground(RecognitionType)}). Only the
+	 * _maxLoadedClassifiers most recently used classifiers per type stay
+	 * loaded. Accessing the classifier maps, training or updating the module
+	 * loads all classifiers.
+	 * 
+	 * @param _container
+	 * @param _maxLoadedClassifiers
+	 * @return the module.
+	 */
+	public static RecognitionModule open(final ModelContainer _container, int _maxLoadedClassifiers) {
+		RecognitionModule recognitionModule = new RecognitionModule();
+		recognitionModule.mLazySvmClassifiers = new LazyClassifierCache<SvmClassifier>(
+				_container.getSvmClassifierIndices(), new LazyClassifierCache.Loader<SvmClassifier>() {
+					@Override
+					public SvmClassifier load(int _classifierIndex) throws IOException {
+						long start = System.nanoTime();
+						SvmClassifier classifier = _container.readSvmClassifier(_classifierIndex);
+						Log.d(TAG, "loaded svm classifier " + _classifierIndex + " in "
+								+ (System.nanoTime() - start) / 1000 + " us.");
+						return classifier;
+					}
+				}, _maxLoadedClassifiers);
+		recognitionModule.mLazyKnnClassifiers = new LazyClassifierCache<KnnClassifier>(
+				_container.getKnnClassifierIndices(), new LazyClassifierCache.Loader<KnnClassifier>() {
+					@Override
+					public KnnClassifier load(int _classifierIndex) throws IOException {
+						long start = System.nanoTime();
+						KnnClassifier classifier = _container.readKnnClassifier(_classifierIndex);
+						Log.d(TAG, "loaded knn classifier " + _classifierIndex + " in "
+								+ (System.nanoTime() - start) / 1000 + " us.");
+						return classifier;
+					}
+				}, _maxLoadedClassifiers);
+		return recognitionModule;
+	}
+
+	/**
+	 * Loads the classifiers of a lazily opened module (see
+	 * {@link #open(ModelContainer, int)}) on the worker pool, the frontal
+	 * classifier (index 0) first, then by increasing angle. Only as many as
+	 * stay loaded get prefetched, so prefetching never drops a classifier it
+	 * loaded before. Classifications meanwhile wait for the classifiers they
+	 * need only. Does nothing for modules that are loaded already.
+	 * 
+	 * @param _recognitionType
+	 *            the type of classifiers to load.
+	 */
+	public void loadClassifiersInBackground(RecognitionType _recognitionType) {
+		final LazyClassifierCache<?> lazyClassifiers = _recognitionType == RecognitionType.KNN ? mLazyKnnClassifiers
+				: mLazySvmClassifiers;
+		if (lazyClassifiers == null) {
+			return;
+		}
+		List<Integer> classifierIndices = new ArrayList<Integer>(lazyClassifiers.getClassifierIndices());
+		Collections.sort(classifierIndices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer _lhs, Integer _rhs) {
+				return Math.abs(_lhs) - Math.abs(_rhs);
+			}
+		});
+		for (final Integer classifierIndex : classifierIndices.subList(0,
+				Math.min(classifierIndices.size(), lazyClassifiers.getCapacity()))) {
+			ConcurrencyUtil.getExecutor().submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						lazyClassifiers.get(classifierIndex);
+					} catch (RuntimeException e) {
+						// gets reported to the classification needing it
+						Log.w(TAG, "cannot load classifier " + classifierIndex + " in background: " + e);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return true if the module got opened lazily and not all classifiers
+	 *         have been loaded yet.
+	 */
+	public boolean isLazy() {
+		return mLazySvmClassifiers != null || mLazyKnnClassifiers != null;
+	}
+
+	/**
+	 * Loads all classifiers of a lazily opened module into the classifier
+	 * maps, which makes it a regular module.
+	 */
+	private synchronized void loadAllClassifiers() {
+		if (mLazySvmClassifiers != null) {
+			for (Integer classifierIndex : mLazySvmClassifiers.getClassifierIndices()) {
+				mSvmClassifiers.put(classifierIndex, mLazySvmClassifiers.get(classifierIndex));
+			}
+			mLazySvmClassifiers = null;
+		}
+		if (mLazyKnnClassifiers != null) {
+			for (Integer classifierIndex : mLazyKnnClassifiers.getClassifierIndices()) {
+				mKnnClassifiers.put(classifierIndex, mLazyKnnClassifiers.get(classifierIndex));
+			}
+			mLazyKnnClassifiers = null;
+		}
+	}
+
+	private synchronized Set<Integer> getSvmClassifierIndices() {
+		return mLazySvmClassifiers != null ? mLazySvmClassifiers.getClassifierIndices() : mSvmClassifiers.keySet();
+	}
+
+	private SvmClassifier getSvmClassifier(int _classifierIndex) {
+		LazyClassifierCache<SvmClassifier> lazyClassifiers;
+		synchronized (this) {
+			lazyClassifiers = mLazySvmClassifiers;
+			if (lazyClassifiers == null) {
+				return mSvmClassifiers.get(_classifierIndex);
+			}
+		}
+		// loading does not block the module
+		return lazyClassifiers.get(_classifierIndex);
+	}
+
+	private synchronized Set<Integer> getKnnClassifierIndices() {
+		return mLazyKnnClassifiers != null ? mLazyKnnClassifiers.getClassifierIndices() : mKnnClassifiers.keySet();
+	}
+
+	private KnnClassifier getKnnClassifier(int _classifierIndex) {
+		LazyClassifierCache<KnnClassifier> lazyClassifiers;
+		synchronized (this) {
+			lazyClassifiers = mLazyKnnClassifiers;
+			if (lazyClassifiers == null) {
+				return mKnnClassifiers.get(_classifierIndex);
+			}
+		}
+		// loading does not block the module
+		return lazyClassifiers.get(_classifierIndex);
+	}
+
+	/**
+	 * @return all SVM classifiers, loads them if the module got opened
+	 *         lazily.
+	 */
 	public Map<Integer, SvmClassifier> getSvmClassifiers() {
+		loadAllClassifiers();
 		return mSvmClassifiers;
 	}
 
-	public void setSvmClassifiers(Map<Integer, SvmClassifier> _svmClassifiers) {
+	public synchronized void setSvmClassifiers(Map<Integer, SvmClassifier> _svmClassifiers) {
 		mSvmClassifiers = _svmClassifiers;
+		mLazySvmClassifiers = null;
 	}
 
+	/**
+	 * @return all KNN classifiers, loads them if the module got opened
+	 *         lazily.
+	 */
 	public Map<Integer, KnnClassifier> getKnnClassifiers() {
+		loadAllClassifiers();
 		return mKnnClassifiers;
 	}
 
-	public void setKnnClassifiers(Map<Integer, KnnClassifier> _knnClassifiers) {
+	public synchronized void setKnnClassifiers(Map<Integer, KnnClassifier> _knnClassifiers) {
 		mKnnClassifiers = _knnClassifiers;
+		mLazyKnnClassifiers = null;
 	}
 
 	@Override
 	public String toString() {
+		if (isLazy()) {
+			return "RecognitionModule [lazy, svm classifier indices=" + getSvmClassifierIndices()
+					+ ", knn classifier indices=" + getKnnClassifierIndices() + "]";
+		}
 		return "RecognitionModule [mSvmClassifiers=" + mSvmClassifiers + ", mKnnClassifiers=" + mKnnClassifiers + "]";
 	}
 
 	private void writeObject(ObjectOutputStream out) throws IOException {
+		loadAllClassifiers();
 		// out.defaultWriteObject();
 		out.writeObject(mSvmClassifiers);
 		out.writeObject(mKnnClassifiers);
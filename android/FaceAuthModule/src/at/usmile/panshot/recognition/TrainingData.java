@@ -6,6 +6,7 @@ import java.util.List;
 import org.opencv.core.Mat;
 
 import at.usmile.panshot.PanshotImage;
+import at.usmile.panshot.recognition.pca.IncrementalPca;
 
 /**
  * Aggregated training data.
@@ -23,6 +24,11 @@ public class TrainingData {
 	public Mat pcaMean = null;
 	public Mat pcaEigenvectors = null;
 	public Mat pcaProjections = null;
+	/**
+	 * eigenspace estimated while loading the images, null if PCA has to be
+	 * computed from the images.
+	 */
+	public IncrementalPca streamingPca = null;
 
 	// ================================================================================================================
 	// METHODS
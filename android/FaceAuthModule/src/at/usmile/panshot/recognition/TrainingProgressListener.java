@@ -0,0 +1,25 @@
+package at.usmile.panshot.recognition;
+
+/**
+ * Gets notified about the progress of
+ * {@link RecognitionModule#train(android.content.Context, float, int, TrainingProgressListener)}
+ * . Perspectives get trained in parallel, so callbacks come from worker
+ * threads and in no particular order.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public interface TrainingProgressListener {
+
+	/**
+	 * Called after the classifier of a perspective has been trained.
+	 *
+	 * @param _classifierIndex
+	 *            index of the perspective that finished.
+	 * @param _finishedPerspectives
+	 *            amount of perspectives finished so far, including this one.
+	 * @param _totalPerspectives
+	 */
+	void onPerspectiveTrained(int _classifierIndex, int _finishedPerspectives, int _totalPerspectives);
+}
@@ -0,0 +1,39 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * Chi-square distance: sum of (a - b)^2 / (|a| + |b|). Intended for
+ * non-negative features such as pixel intensities, the absolute values in the
+ * denominator keep it well defined for signed (e.g. PCA) features as well.
+ * Features that are zero in both vectors do not contribute.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class ChiSquareDistance implements DistanceMetric {
+
+	@Override
+	public double distance(float[] _samples, int _sampleOffset, float[] _query, int _queryOffset, int _length) {
+		double distance = 0;
+		for (int i = 0; i < _length; i++) {
+			float s = _samples[_sampleOffset + i];
+			float q = _query[_queryOffset + i];
+			double sum = Math.abs(s) + Math.abs(q);
+			if (sum > 0) {
+				double diff = s - q;
+				distance += diff * diff / sum;
+			}
+		}
+		return distance;
+	}
+
+	@Override
+	public boolean isAdditive() {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "ChiSquareDistance";
+	}
+}
@@ -0,0 +1,41 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * Cosine distance: 1 - cos(angle between the vectors). Ranges from 0
+ * (same direction) to 2 (opposite direction). Vectors of zero length have a
+ * distance of 1 to everything.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class CosineDistance implements DistanceMetric {
+
+	@Override
+	public double distance(float[] _samples, int _sampleOffset, float[] _query, int _queryOffset, int _length) {
+		double dot = 0;
+		double sampleNorm = 0;
+		double queryNorm = 0;
+		for (int i = 0; i < _length; i++) {
+			double s = _samples[_sampleOffset + i];
+			double q = _query[_queryOffset + i];
+			dot += s * q;
+			sampleNorm += s * s;
+			queryNorm += q * q;
+		}
+		if (sampleNorm == 0 || queryNorm == 0) {
+			return 1;
+		}
+		return 1 - dot / Math.sqrt(sampleNorm * queryNorm);
+	}
+
+	@Override
+	public boolean isAdditive() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "CosineDistance";
+	}
+}
@@ -1,5 +1,10 @@
 package at.usmile.panshot.recognition.knn;
 
+/**
+ * Distance between two feature vectors. Implementations are picked once per
+ * query (see {@link DistanceMetrics}) and evaluated on whole vectors, so that
+ * the inner loop over features stays inside a single (final) implementation.
+ */
 public interface DistanceMetric {
 
 	// ================================================================================================================
@@ -9,11 +14,28 @@ public interface DistanceMetric {
 	// METHODS
 
 	/**
-	 * Calculates the distance between the same feature of two different samples. Could e.g. be an Euclidean or squared distance.
+	 * Calculates the distance between two feature vectors stored in (packed)
+	 * float arrays. Could e.g. be an Euclidean or squared distance.
 	 * 
-	 * @param _sample1Feat
-	 * @param _sample2Feat
+	 * @param _samples
+	 *            array containing the first vector
+	 * @param _sampleOffset
+	 *            index of the first feature of the first vector in _samples
+	 * @param _query
+	 *            array containing the second vector
+	 * @param _queryOffset
+	 *            index of the first feature of the second vector in _query
+	 * @param _length
+	 *            amount of features to compare
 	 * @return
 	 */
-	public double distance(double _sample1Feat, double _sample2Feat);
+	public double distance(float[] _samples, int _sampleOffset, float[] _query, int _queryOffset, int _length);
+
+	/**
+	 * @return true if the distance of two vectors is the sum of the distances
+	 *         of their parts (e.g. L^n-norms without root). partial distances
+	 *         of such metrics never decrease when adding features, which allows
+	 *         to abandon a computation as soon as it exceeds a bound.
+	 */
+	public boolean isAdditive();
 }
@@ -0,0 +1,56 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * Selects a {@link DistanceMetric} implementation once per query.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public abstract class DistanceMetrics {
+
+	/** The kinds of distance metrics KNN can use. */
+	public static enum Type {
+		/** L^n-norm, with the power n configured separately. */
+		LNORM, COSINE, CHI_SQUARE
+	}
+
+	private static final L1Distance L1 = new L1Distance();
+	private static final SquaredL2Distance SQUARED_L2 = new SquaredL2Distance();
+	private static final CosineDistance COSINE = new CosineDistance();
+	private static final ChiSquareDistance CHI_SQUARE = new ChiSquareDistance();
+
+	/**
+	 * @param _power
+	 *            the L^n-norm power n.
+	 * @return specialised kernels for n = 1 and n = 2, a general L^n kernel
+	 *         otherwise.
+	 */
+	public static DistanceMetric forLNormPower(float _power) {
+		if (_power == 1f) {
+			return L1;
+		}
+		if (_power == 2f) {
+			return SQUARED_L2;
+		}
+		return new LpDistance(_power);
+	}
+
+	/**
+	 * @param _type
+	 * @param _lNormPower
+	 *            only used for {@link Type#LNORM}.
+	 * @return
+	 */
+	public static DistanceMetric create(Type _type, float _lNormPower) {
+		switch (_type) {
+			case COSINE:
+				return COSINE;
+			case CHI_SQUARE:
+				return CHI_SQUARE;
+			case LNORM:
+			default:
+				return forLNormPower(_lNormPower);
+		}
+	}
+}
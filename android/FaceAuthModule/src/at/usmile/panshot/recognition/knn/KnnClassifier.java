@@ -1,38 +1,181 @@
 package at.usmile.panshot.recognition.knn;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 
+import android.util.Log;
+
 import at.usmile.panshot.PanshotImage;
 import at.usmile.panshot.User;
 import at.usmile.panshot.recognition.FaceClassifier;
 import at.usmile.panshot.recognition.TrainingData;
+import at.usmile.panshot.recognition.pca.PcaBasis;
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
 import at.usmile.panshot.util.PCAUtil;
-import at.usmile.panshot.util.PanshotUtil;
+import at.usmile.panshot.util.RecognitionUtil;
 import at.usmile.tuple.GenericTuple2;
 
 public class KnnClassifier implements FaceClassifier, Serializable {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 4L;
+
+	/** How training samples are searched for neighbours. */
+	public static enum IndexType {
+		/** compare the query to every training sample. */
+		LINEAR_SCAN,
+		/** exact search in a {@link VpTree}, L^n-norms with n >= 1 only. */
+		VP_TREE,
+		/**
+		 * approximate search on {@link ProductQuantizer} codes, squared
+		 * Euclidean distance only. without re-ranking, galleries smaller than
+		 * the codebook use a linear scan instead.
+		 */
+		PRODUCT_QUANTIZATION
+	}
+
+	/**
+	 * amount of features that get compared before checking if a distance
+	 * computation can be abandoned.
+	 */
+	private static final int EARLY_ABANDONING_BLOCK_SIZE = 16;
+	/**
+	 * mapped galleries: amount of features that get copied from the mapping
+	 * per block of samples.
+	 */
+	private static final int MAPPED_BLOCK_FEATURES = 4096;
+
+	private static final String TAG = KnnClassifier.class.getSimpleName();
 
 	// ================================================================================================================
 	// MEMBERS
 
-	// private TrainingData mTrainingData = null;
-	private List<PanshotImage> mImages;
-	private Mat mPcaEigenvectors;
-	private Mat mPcaMean;
+	/** users known to this classifier, indexed by the values of {@link #mLabels}. */
+	private List<User> mUsers;
+	/**
+	 * feature vectors of all training images (raw pixels or PCA projections),
+	 * packed row by row: sample i occupies the range [i * mFeatureCount, (i +
+	 * 1) * mFeatureCount). null if only {@link #mProductQuantizer} codes are
+	 * kept.
+	 */
+	private float[] mFeatures;
+	/** per training sample: index of its user in {@link #mUsers}. */
+	private int[] mLabels;
+	private int mSampleCount;
+	private int mFeatureCount;
+	/**
+	 * pixel features only: the order in which pixels are stored in
+	 * {@link #mFeatures}, most varying pixels first. null if features are not
+	 * reordered (PCA features are already ordered by variance).
+	 */
+	private int[] mFeatureOrder;
+	/** PCA: the eigenspace truncated to {@link #mFeatureCount} components. */
+	private PcaBasis mPcaBasis;
+	/** metric tree over {@link #mFeatures}. null if not used. */
+	private VpTree mVpTree;
+	/** product quantised codes of {@link #mFeatures}. null if not used. */
+	private ProductQuantizer mProductQuantizer;
+	/**
+	 * amount of approximate neighbours that get re-ranked by their exact
+	 * distance. 0 if not re-ranking.
+	 */
+	private int mRerankCandidates = 0;
+	/**
+	 * features of a gallery opened by {@link #openGallery(File)}, stay in the
+	 * mapped file. null if {@link #mFeatures} is used.
+	 */
+	private transient FloatBuffer mMappedFeatures;
+	/**
+	 * the training images behind the samples, in sample order. only known to
+	 * classifiers trained in this process, null after loading.
+	 */
+	private transient List<PanshotImage> mSampleImages;
+
+	/** index to build during the next {@link #train(TrainingData, boolean, int)}. */
+	private transient IndexType mIndexType = IndexType.LINEAR_SCAN;
+	/** L^n-norm power the index gets built for. */
+	private transient float mIndexLNormPower = 2f;
+	/** product quantisation: features per one byte code. */
+	private transient int mPqFeaturesPerSubspace = 4;
+	/** product quantisation: see {@link #mRerankCandidates}. */
+	private transient int mPqRerankCandidates = 0;
+
+	/** reusable buffer holding the feature vector of the current query. */
+	private transient float[] mQueryFeatures;
+	/**
+	 * reusable neighbourhood of the current query. queries of the same
+	 * classifier must therefore not run concurrently.
+	 */
+	private transient KnnNeighbourhood mNeighbourhood;
+	/** reusable approximate neighbourhood for re-ranking. */
+	private transient KnnNeighbourhood mCandidates;
+	/** reusable buffer holding a whole PCA projection of an image. */
+	private transient float[] mPcaFaceBuffer;
+	/**
+	 * query pixels before reordering, or features of faces that are not 8 bit
+	 * for projection.
+	 */
+	private transient float[] mQueryPixels;
+	/** PCA only: raw pixels of the query that gets projected. */
+	private transient byte[] mQueryPixelBytes;
+	/** batch queries: squared norms of the gallery samples, lazily computed. */
+	private transient double[] mGalleryNorms;
+	/** amount of features {@link #mGalleryNorms} got computed on. */
+	private transient int mGalleryNormsFeatureCount = -1;
+	/** batch queries: reusable probe features, norms and distances. */
+	private transient float[] mBatchProbes;
+	private transient double[] mBatchProbeNorms;
+	private transient double[] mBatchDistances;
+	/** mapped galleries: the block of samples currently scanned. */
+	private transient float[] mMappedBlock;
+
+	/**
+	 * if distance computations get stopped as soon as a sample cannot become
+	 * a neighbour anymore. only applies to additive distance metrics.
+	 */
+	private transient boolean mEarlyAbandoning = true;
+	/** features compared by queries since the last statistics reset. */
+	private transient long mEvaluatedFeatureCount = 0;
+	/** features queries would have compared without early abandoning. */
+	private transient long mTotalFeatureCount = 0;
 
 	// ================================================================================================================
 	// METHODS
 
+	public KnnClassifier() {
+	}
+
+	/**
+	 * A trained classifier whose features stay in _mappedFeatures, see
+	 * {@link KnnGalleryFormat}.
+	 */
+	KnnClassifier(List<User> _users, int[] _labels, int _sampleCount, int _featureCount, int[] _featureOrder,
+			PcaBasis _pcaBasis, FloatBuffer _mappedFeatures) {
+		mUsers = _users;
+		mLabels = _labels;
+		mSampleCount = _sampleCount;
+		mFeatureCount = _featureCount;
+		mFeatureOrder = _featureOrder;
+		mPcaBasis = _pcaBasis;
+		mMappedFeatures = _mappedFeatures;
+	}
+
 	@Override
 	public void train(TrainingData _trainingData, boolean _usePca, int _pcaAmountOfFeatures) {
 		// check all train images contain users
@@ -41,10 +184,304 @@ public class KnnClassifier implements FaceClassifier, Serializable {
 				throw new RuntimeException("Not all training images contain training data (user information).");
 			}
 		}
-		// save data that we need later
-		mImages = _trainingData.images;
-		mPcaEigenvectors = _trainingData.pcaEigenvectors;
-		mPcaMean = _trainingData.pcaMean;
+		if (_pcaAmountOfFeatures < 1) {
+			throw new RuntimeException("_pcaAmountOfFeatures must be at least of size 1.");
+		}
+		// pack all training samples into one contiguous array
+		List<PanshotImage> images = _trainingData.images;
+		PanshotImage firstImage = images.get(0);
+		if (_usePca) {
+			mFeatureCount = Math.min(firstImage.pcaFace.cols(), _pcaAmountOfFeatures);
+		} else {
+			mFeatureCount = firstImage.grayFace.rows() * firstImage.grayFace.cols();
+		}
+		// save data that we need later, only the used components
+		mPcaBasis = null;
+		if (_usePca) {
+			mPcaBasis = PCAUtil.toPcaBasis(_trainingData.pcaMean, _trainingData.pcaEigenvectors, mFeatureCount);
+		}
+		mSampleCount = images.size();
+		mMappedFeatures = null;
+		mFeatures = new float[mSampleCount * mFeatureCount];
+		mLabels = new int[mSampleCount];
+		mUsers = new ArrayList<User>();
+		mSampleImages = new ArrayList<PanshotImage>(images);
+		for (int imageNr = 0; imageNr < mSampleCount; imageNr++) {
+			PanshotImage image = images.get(imageNr);
+			if (_usePca) {
+				copyPcaFeatures(image.pcaFace, mFeatures, imageNr * mFeatureCount, mFeatureCount);
+			} else {
+				if (image.grayFace.rows() * image.grayFace.cols() != mFeatureCount) {
+					throw new RuntimeException("Cannot train on faces of different size.");
+				}
+				RecognitionUtil.transformImageToFeatureVector(image.grayFace, mFeatures, imageNr * mFeatureCount);
+			}
+			int userIndex = mUsers.indexOf(image.rec.user);
+			if (userIndex < 0) {
+				userIndex = mUsers.size();
+				mUsers.add(image.rec.user);
+			}
+			mLabels[imageNr] = userIndex;
+		}
+		// store most varying pixels first so early abandoning can reject
+		// samples after few features
+		mFeatureOrder = null;
+		if (!_usePca) {
+			mFeatureOrder = orderFeaturesByVariance(mFeatures, mSampleCount, mFeatureCount);
+			float[] sample = new float[mFeatureCount];
+			for (int offset = 0; offset < mFeatures.length; offset += mFeatureCount) {
+				System.arraycopy(mFeatures, offset, sample, 0, mFeatureCount);
+				for (int featureNr = 0; featureNr < mFeatureCount; featureNr++) {
+					mFeatures[offset + featureNr] = sample[mFeatureOrder[featureNr]];
+				}
+			}
+		}
+		// index
+		mGalleryNorms = null;
+		mGalleryNormsFeatureCount = -1;
+		mVpTree = null;
+		mProductQuantizer = null;
+		mRerankCandidates = 0;
+		if (mIndexType == IndexType.VP_TREE) {
+			if (mIndexLNormPower >= 1) {
+				mVpTree = new VpTree(mFeatures, mSampleCount, mFeatureCount, mIndexLNormPower);
+			} else {
+				Log.w(TAG, "cannot build VP-tree for L^n-norm with n=" + mIndexLNormPower + ", using linear scan.");
+			}
+		} else if (mIndexType == IndexType.PRODUCT_QUANTIZATION) {
+			if (mIndexLNormPower == 2) {
+				mProductQuantizer = new ProductQuantizer(mFeatures, mSampleCount, mFeatureCount, mPqFeaturesPerSubspace);
+				mRerankCandidates = mPqRerankCandidates;
+				Log.d(TAG, "product quantisation needs " + mProductQuantizer.getMemoryBytes() + " bytes, features need "
+						+ 4L * mFeatures.length + " bytes.");
+				if (mRerankCandidates <= 0) {
+					if (mProductQuantizer.getMemoryBytes() >= 4L * mFeatures.length) {
+						// tiny galleries: the codebook alone is as large as
+						// the features, approximation would not pay off
+						Log.w(TAG, "product quantisation needs " + mProductQuantizer.getMemoryBytes() + " bytes for "
+								+ mSampleCount + " samples, more than the features, using linear scan.");
+						mProductQuantizer = null;
+					} else {
+						// codes only
+						mFeatures = null;
+					}
+				}
+			} else {
+				Log.w(TAG, "product quantisation only supports the L^2-norm, not n=" + mIndexLNormPower + ", using linear scan.");
+			}
+		}
+		Log.d(TAG, "trained on " + mSampleCount + " samples, gallery uses " + getGalleryMemoryBytes() + " bytes.");
+	}
+
+	/**
+	 * Appends the images of a user to the trained gallery without retraining:
+	 * images get projected into the existing eigenspace (PCA) or use the
+	 * existing pixel order, product quantised codes use the existing
+	 * centroids and the VP-tree gets rebuilt over all samples.
+	 * 
+	 * @param _images
+	 *            images of a single perspective, all containing user
+	 *            information.
+	 * @param _usePca
+	 *            same as for training.
+	 */
+	public void addSamples(List<PanshotImage> _images, boolean _usePca) {
+		for (PanshotImage i : _images) {
+			if (i.rec == null || i.rec.user == null) {
+				throw new RuntimeException("Not all training images contain training data (user information).");
+			}
+		}
+		if (mLabels == null) {
+			throw new RuntimeException("Cannot add samples to an untrained classifier.");
+		}
+		loadMappedFeatures();
+		int addedCount = _images.size();
+		float[] added = new float[addedCount * mFeatureCount];
+		int[] labels = Arrays.copyOf(mLabels, mSampleCount + addedCount);
+		for (int imageNr = 0; imageNr < addedCount; imageNr++) {
+			PanshotImage image = _images.get(imageNr);
+			float[] features = extractQueryFeatures(image, _usePca);
+			System.arraycopy(features, 0, added, imageNr * mFeatureCount, mFeatureCount);
+			int userIndex = mUsers.indexOf(image.rec.user);
+			if (userIndex < 0) {
+				userIndex = mUsers.size();
+				mUsers.add(image.rec.user);
+			}
+			labels[mSampleCount + imageNr] = userIndex;
+		}
+		if (mFeatures != null) {
+			float[] features = Arrays.copyOf(mFeatures, (mSampleCount + addedCount) * mFeatureCount);
+			System.arraycopy(added, 0, features, mSampleCount * mFeatureCount, added.length);
+			mFeatures = features;
+		}
+		if (mProductQuantizer != null) {
+			mProductQuantizer.add(added, addedCount);
+		}
+		mLabels = labels;
+		mSampleCount += addedCount;
+		if (mSampleImages != null) {
+			mSampleImages.addAll(_images);
+		}
+		rebuildIndex();
+		Log.d(TAG, "added " + addedCount + " samples, now " + mSampleCount + " samples.");
+	}
+
+	/**
+	 * Removes all samples of a user from the gallery without retraining.
+	 * 
+	 * @param _user
+	 * @return false if the user is not known to this classifier.
+	 */
+	public boolean removeUser(User _user) {
+		int removedLabel = mUsers == null ? -1 : mUsers.indexOf(_user);
+		if (removedLabel < 0) {
+			return false;
+		}
+		loadMappedFeatures();
+		boolean[] keep = new boolean[mSampleCount];
+		int keptCount = 0;
+		for (int sampleNr = 0; sampleNr < mSampleCount; sampleNr++) {
+			if (mLabels[sampleNr] == removedLabel) {
+				continue;
+			}
+			keep[sampleNr] = true;
+			if (mFeatures != null) {
+				System.arraycopy(mFeatures, sampleNr * mFeatureCount, mFeatures, keptCount * mFeatureCount, mFeatureCount);
+			}
+			if (mSampleImages != null) {
+				mSampleImages.set(keptCount, mSampleImages.get(sampleNr));
+			}
+			// users after the removed one move down by one
+			int label = mLabels[sampleNr];
+			mLabels[keptCount] = label > removedLabel ? label - 1 : label;
+			keptCount++;
+		}
+		if (mFeatures != null) {
+			mFeatures = Arrays.copyOf(mFeatures, keptCount * mFeatureCount);
+		}
+		if (mProductQuantizer != null) {
+			mProductQuantizer.retain(keep);
+		}
+		mLabels = Arrays.copyOf(mLabels, keptCount);
+		if (mSampleImages != null) {
+			mSampleImages.subList(keptCount, mSampleCount).clear();
+		}
+		mSampleCount = keptCount;
+		mUsers.remove(removedLabel);
+		rebuildIndex();
+		Log.d(TAG, "removed user " + _user + ", " + mSampleCount + " samples left.");
+		return true;
+	}
+
+	/**
+	 * Rebuilds the VP-tree (if used) after samples changed.
+	 */
+	private void rebuildIndex() {
+		mGalleryNorms = null;
+		mGalleryNormsFeatureCount = -1;
+		if (mVpTree != null) {
+			mVpTree = mSampleCount > 0 ? new VpTree(mFeatures, mSampleCount, mFeatureCount, mVpTree.getPower()) : null;
+		}
+	}
+
+	/**
+	 * Sets the index that gets built by the next training, see
+	 * {@link IndexType}.
+	 * 
+	 * @param _indexType
+	 * @param _lNormPower
+	 *            the L^n-norm power queries will use. queries with other
+	 *            distance metrics fall back to a linear scan.
+	 */
+	public void setIndexType(IndexType _indexType, float _lNormPower) {
+		mIndexType = _indexType;
+		mIndexLNormPower = _lNormPower;
+	}
+
+	/**
+	 * Configures {@link IndexType#PRODUCT_QUANTIZATION} for the next
+	 * training.
+	 * 
+	 * @param _featuresPerSubspace
+	 *            amount of features encoded into one byte.
+	 * @param _rerankCandidates
+	 *            amount of approximate neighbours that get re-ranked by their
+	 *            exact distance (at least K are used). 0 disables re-ranking
+	 *            and keeps only the codes after training.
+	 */
+	public void setProductQuantization(int _featuresPerSubspace, int _rerankCandidates) {
+		if (_featuresPerSubspace < 1) {
+			throw new RuntimeException("_featuresPerSubspace must be at least of size 1.");
+		}
+		mPqFeaturesPerSubspace = _featuresPerSubspace;
+		mPqRerankCandidates = _rerankCandidates;
+	}
+
+	/**
+	 * @return bytes used by the stored training samples (features and / or
+	 *         codes). mapped features do not count.
+	 */
+	public long getGalleryMemoryBytes() {
+		long bytes = 0;
+		if (mFeatures != null) {
+			bytes += 4L * mFeatures.length;
+		}
+		if (mProductQuantizer != null) {
+			bytes += mProductQuantizer.getMemoryBytes();
+		}
+		return bytes;
+	}
+
+	public int getSampleCount() {
+		return mSampleCount;
+	}
+
+	/**
+	 * @return users known to this classifier.
+	 */
+	public List<User> getUsers() {
+		return mUsers;
+	}
+
+	/**
+	 * @return the truncated eigenspace, null if PCA is not used.
+	 */
+	public PcaBasis getPcaBasis() {
+		return mPcaBasis;
+	}
+
+	/**
+	 * @return feature indices sorted by decreasing variance of the feature
+	 *         over all samples.
+	 */
+	private static int[] orderFeaturesByVariance(float[] _features, int _sampleCount, int _featureCount) {
+		final double[] sum = new double[_featureCount];
+		final double[] sumOfSquares = new double[_featureCount];
+		for (int offset = 0; offset < _sampleCount * _featureCount; offset += _featureCount) {
+			for (int featureNr = 0; featureNr < _featureCount; featureNr++) {
+				double v = _features[offset + featureNr];
+				sum[featureNr] += v;
+				sumOfSquares[featureNr] += v * v;
+			}
+		}
+		Integer[] order = new Integer[_featureCount];
+		final double[] variance = new double[_featureCount];
+		for (int featureNr = 0; featureNr < _featureCount; featureNr++) {
+			order[featureNr] = featureNr;
+			double mean = sum[featureNr] / _sampleCount;
+			variance[featureNr] = sumOfSquares[featureNr] / _sampleCount - mean * mean;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer _lhs, Integer _rhs) {
+				return Double.compare(variance[_rhs], variance[_lhs]);
+			}
+		});
+		int[] result = new int[_featureCount];
+		for (int i = 0; i < _featureCount; i++) {
+			result[i] = order[i];
+		}
+		return result;
 	}
 
 	/**
@@ -52,87 +489,632 @@ public class KnnClassifier implements FaceClassifier, Serializable {
 	 * @param _k
 	 * @param _i
 	 * @param _b
-	 * @return (mostSelectedUser, votingsPerUser)
+	 * @return (mostSelectedUser, votingsPerUser). ties between users go to
+	 *         the user added to the training data first.
 	 */
 	public GenericTuple2<User, Map<User, Integer>> classify(PanshotImage _image, int _k, DistanceMetric _distanceMetric,
 			boolean _usePca, int _pcaAmountOfFeatures) {
-		List<GenericTuple2<PanshotImage, Double>> neighbours = getNeighbours(_image, _k, _distanceMetric, _usePca,
-				_pcaAmountOfFeatures);
+		return vote(findNeighbours(_image, _k, _distanceMetric, _usePca, _pcaAmountOfFeatures));
+	}
+
+	/**
+	 * Classifies several images at once. For the squared Euclidean distance on
+	 * stored features, all probe-to-gallery distances get computed in one
+	 * blocked pass over the gallery (see {@link SquaredL2Batch}), otherwise
+	 * images get classified one by one.
+	 * 
+	 * @return per image (same order as _images): (mostSelectedUser,
+	 *         votingsPerUser)
+	 */
+	public List<GenericTuple2<User, Map<User, Integer>>> classify(List<PanshotImage> _images, int _k,
+			DistanceMetric _distanceMetric, boolean _usePca, int _pcaAmountOfFeatures) {
+		List<GenericTuple2<User, Map<User, Integer>>> results = new ArrayList<GenericTuple2<User, Map<User, Integer>>>();
+		if (_images.size() < 2 || !(_distanceMetric instanceof SquaredL2Distance) || mFeatures == null
+				|| mProductQuantizer != null) {
+			for (PanshotImage image : _images) {
+				results.add(classify(image, _k, _distanceMetric, _usePca, _pcaAmountOfFeatures));
+			}
+			return results;
+		}
+		if (_k < 1) {
+			throw new RuntimeException("_k must be at least of size 1.");
+		}
+		if (_pcaAmountOfFeatures < 1) {
+			throw new RuntimeException("_pcaAmountOfFeatures must be at least of size 1.");
+		}
+		int featureCount = _usePca ? Math.min(mFeatureCount, _pcaAmountOfFeatures) : mFeatureCount;
+		int probeCount = _images.size();
+		// pack probes
+		if (mBatchProbes == null || mBatchProbes.length < probeCount * featureCount) {
+			mBatchProbes = new float[probeCount * featureCount];
+		}
+		if (mBatchProbeNorms == null || mBatchProbeNorms.length < probeCount) {
+			mBatchProbeNorms = new double[probeCount];
+		}
+		for (int probe = 0; probe < probeCount; probe++) {
+			float[] query = extractQueryFeatures(_images.get(probe), _usePca);
+			System.arraycopy(query, 0, mBatchProbes, probe * featureCount, featureCount);
+		}
+		SquaredL2Batch.norms(mBatchProbes, probeCount, featureCount, featureCount, mBatchProbeNorms);
+		if (mGalleryNorms == null || mGalleryNormsFeatureCount != featureCount) {
+			mGalleryNorms = new double[mSampleCount];
+			SquaredL2Batch.norms(mFeatures, mSampleCount, mFeatureCount, featureCount, mGalleryNorms);
+			mGalleryNormsFeatureCount = featureCount;
+		}
+		// all distances
+		if (mBatchDistances == null || mBatchDistances.length < probeCount * mSampleCount) {
+			mBatchDistances = new double[probeCount * mSampleCount];
+		}
+		SquaredL2Batch.distances(mFeatures, mGalleryNorms, mSampleCount, mFeatureCount, mBatchProbes, mBatchProbeNorms,
+				probeCount, featureCount, mBatchDistances);
+		// neighbours and votes per probe
+		if (mNeighbourhood == null) {
+			mNeighbourhood = new KnnNeighbourhood(_k);
+		}
+		for (int probe = 0; probe < probeCount; probe++) {
+			mNeighbourhood.reset(_k);
+			for (int sampleNr = 0, offset = probe * mSampleCount; sampleNr < mSampleCount; sampleNr++) {
+				mNeighbourhood.offer(sampleNr, mBatchDistances[offset + sampleNr]);
+			}
+			results.add(vote(mNeighbourhood));
+		}
+		mEvaluatedFeatureCount += (long) probeCount * mSampleCount * featureCount;
+		mTotalFeatureCount += (long) probeCount * mSampleCount * featureCount;
+		return results;
+	}
+
+	/**
+	 * Majority vote of the neighbours. If several users get the most votes,
+	 * the one with the lowest label (the one added to the training data
+	 * first) wins, independent of the order in which neighbours were found.
+	 * 
+	 * @return (mostSelectedUser, votingsPerUser) of the neighbours.
+	 */
+	private GenericTuple2<User, Map<User, Integer>> vote(KnnNeighbourhood _neighbours) {
+		int[] votes = new int[mUsers.size()];
+		for (int i = 0; i < _neighbours.size(); i++) {
+			votes[mLabels[_neighbours.getIndex(i)]]++;
+		}
 		Map<User, Integer> voting = new HashMap<User, Integer>();
-		GenericTuple2<User, Integer> mostVotedUser = null;
-		for (GenericTuple2<PanshotImage, Double> n : neighbours) {
-			if (!voting.containsKey(n.value1.rec.user)) {
-				voting.put(n.value1.rec.user, 0);
+		int mostVotedLabel = -1;
+		for (int label = 0; label < votes.length; label++) {
+			if (votes[label] > 0) {
+				voting.put(mUsers.get(label), votes[label]);
+				if (mostVotedLabel < 0 || votes[mostVotedLabel] < votes[label]) {
+					mostVotedLabel = label;
+				}
+			}
+		}
+		return new GenericTuple2<User, Map<User, Integer>>(mUsers.get(mostVotedLabel), voting);
+	}
+
+	/**
+	 * @return the K nearest training samples as (image, distance), nearest
+	 *         first. classifiers that got loaded instead of trained no longer
+	 *         know the training images; their neighbours are images without
+	 *         pixels that only carry the user.
+	 */
+	public List<GenericTuple2<PanshotImage, Double>> getNeighbours(PanshotImage _image, int _k,
+			DistanceMetric _distanceMetric, boolean _usePca, int _pcaAmountOfFeatures) {
+		KnnNeighbourhood neighbours = findNeighbours(_image, _k, _distanceMetric, _usePca, _pcaAmountOfFeatures);
+		List<GenericTuple2<PanshotImage, Double>> result = new ArrayList<GenericTuple2<PanshotImage, Double>>();
+		for (int i = 0; i < neighbours.size(); i++) {
+			int sampleNr = neighbours.getIndex(i);
+			PanshotImage image;
+			if (mSampleImages != null) {
+				image = mSampleImages.get(sampleNr);
+			} else {
+				image = new PanshotImage(null, null, null, null, null, 0);
+				image.rec.user = mUsers.get(mLabels[sampleNr]);
 			}
-			voting.put(n.value1.rec.user, voting.get(n.value1.rec.user) + 1);
-			if (mostVotedUser == null || mostVotedUser.value2 < voting.get(n.value1.rec.user)) {
-				mostVotedUser = new GenericTuple2<User, Integer>(n.value1.rec.user, voting.get(n.value1.rec.user));
+			result.add(new GenericTuple2<PanshotImage, Double>(image, neighbours.getDistance(i)));
+		}
+		Collections.sort(result, new Comparator<GenericTuple2<PanshotImage, Double>>() {
+			@Override
+			public int compare(GenericTuple2<PanshotImage, Double> _lhs, GenericTuple2<PanshotImage, Double> _rhs) {
+				return _lhs.value2.compareTo(_rhs.value2);
 			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the K nearest training samples as (user, distance), nearest
+	 *         first.
+	 */
+	public List<GenericTuple2<User, Double>> getNeighbourUsers(PanshotImage _image, int _k,
+			DistanceMetric _distanceMetric, boolean _usePca, int _pcaAmountOfFeatures) {
+		KnnNeighbourhood neighbours = findNeighbours(_image, _k, _distanceMetric, _usePca, _pcaAmountOfFeatures);
+		List<GenericTuple2<User, Double>> result = new ArrayList<GenericTuple2<User, Double>>();
+		for (int i = 0; i < neighbours.size(); i++) {
+			result.add(new GenericTuple2<User, Double>(mUsers.get(mLabels[neighbours.getIndex(i)]), neighbours.getDistance(i)));
 		}
-		return new GenericTuple2<User, Map<User, Integer>>(mostVotedUser.value1, voting);
+		Collections.sort(result, new Comparator<GenericTuple2<User, Double>>() {
+			@Override
+			public int compare(GenericTuple2<User, Double> _lhs, GenericTuple2<User, Double> _rhs) {
+				return _lhs.value2.compareTo(_rhs.value2);
+			}
+		});
+		return result;
 	}
 
-	public List<GenericTuple2<PanshotImage, Double>> getNeighbours(PanshotImage _image, int _k, DistanceMetric _distanceMetric,
-			boolean _usePca, int _pcaAmountOfFeatures) {
+	/**
+	 * Search for the K nearest training samples, using the index if it
+	 * supports _distanceMetric.
+	 * 
+	 * @return the neighbourhood of the query. the returned instance is reused
+	 *         by the next query of this classifier.
+	 */
+	private KnnNeighbourhood findNeighbours(PanshotImage _image, int _k, DistanceMetric _distanceMetric, boolean _usePca,
+			int _pcaAmountOfFeatures) {
 		if (_k < 1) {
 			throw new RuntimeException("_k must be at least of size 1.");
 		}
 		if (_pcaAmountOfFeatures < 1) {
 			throw new RuntimeException("_pcaAmountOfFeatures must be at least of size 1.");
 		}
+		float[] query = extractQueryFeatures(_image, _usePca);
+		int featureCount = _usePca ? Math.min(mFeatureCount, _pcaAmountOfFeatures) : mFeatureCount;
 
-		// (imageIndex,distance)
-		List<GenericTuple2<PanshotImage, Double>> neighbours = new ArrayList<GenericTuple2<PanshotImage, Double>>();
-		GenericTuple2<PanshotImage, Double> mostDistantNeightbour = null;
-		for (PanshotImage image : mImages) {
-			// calc distance
-			double distance = 0;
-			if (!_usePca) {
-				// measure distance in pixel space
-				for (int row = 0; row < image.grayFace.rows(); row++) {
-					for (int col = 0; col < image.grayFace.cols(); col++) {
-						double mine = image.grayFace.get(row, col)[0];
-						double other = _image.grayFace.get(row, col)[0];
-						distance += _distanceMetric.distance(mine, other);
-					}
+		if (mNeighbourhood == null) {
+			mNeighbourhood = new KnnNeighbourhood(_k);
+		} else {
+			mNeighbourhood.reset(_k);
+		}
+		final KnnNeighbourhood neighbourhood = mNeighbourhood;
+		final float[] features = mFeatures;
+		long evaluatedFeatures = 0;
+		if (mProductQuantizer != null && mProductQuantizer.supports(_distanceMetric, featureCount)) {
+			evaluatedFeatures = searchProductQuantizer(query, _k, _distanceMetric, neighbourhood);
+		} else if (mMappedFeatures != null) {
+			evaluatedFeatures = scanMapped(query, featureCount, _distanceMetric, neighbourhood);
+		} else if (features == null) {
+			throw new RuntimeException("Only product quantised codes are stored, which support the L^2-norm on all "
+					+ mFeatureCount + " features only.");
+		} else if (mVpTree != null && mVpTree.supports(_distanceMetric, featureCount)) {
+			mVpTree.resetStatistics();
+			mVpTree.search(features, query, _distanceMetric, neighbourhood);
+			evaluatedFeatures = mVpTree.getDistanceComputations() * featureCount;
+		} else {
+			evaluatedFeatures = scan(features, 0, mSampleCount, query, featureCount, _distanceMetric, neighbourhood);
+		}
+		mEvaluatedFeatureCount += evaluatedFeatures;
+		mTotalFeatureCount += (long) mSampleCount * featureCount;
+		return neighbourhood;
+	}
+
+	/**
+	 * Linear scan: offers _sampleCount packed samples to the neighbourhood.
+	 * 
+	 * @param _features
+	 *            the samples, starting at index 0.
+	 * @param _firstSampleNr
+	 *            sample number of the first sample in _features.
+	 * @return amount of compared features.
+	 */
+	private long scan(float[] _features, int _firstSampleNr, int _sampleCount, float[] _query, int _featureCount,
+			DistanceMetric _distanceMetric, KnnNeighbourhood _neighbourhood) {
+		long evaluatedFeatures = 0;
+		int lastSampleNr = _firstSampleNr + _sampleCount;
+		if (mEarlyAbandoning && _distanceMetric.isAdditive()) {
+			for (int sampleNr = _firstSampleNr, offset = 0; sampleNr < lastSampleNr; sampleNr++,
+					offset += mFeatureCount) {
+				// sum up the distance block by block, stop as soon as the
+				// sample cannot become a neighbour anymore
+				double maxDistance = _neighbourhood.getMaxDistance();
+				double distance = 0;
+				int featureNr = 0;
+				while (featureNr < _featureCount && distance < maxDistance) {
+					int length = Math.min(EARLY_ABANDONING_BLOCK_SIZE, _featureCount - featureNr);
+					distance += _distanceMetric.distance(_features, offset + featureNr, _query, featureNr, length);
+					featureNr += length;
+				}
+				evaluatedFeatures += featureNr;
+				// abandoned samples have distance >= maxDistance and get
+				// rejected
+				_neighbourhood.offer(sampleNr, distance);
+			}
+		} else {
+			for (int sampleNr = _firstSampleNr, offset = 0; sampleNr < lastSampleNr; sampleNr++,
+					offset += mFeatureCount) {
+				_neighbourhood.offer(sampleNr, _distanceMetric.distance(_features, offset, _query, 0, _featureCount));
+			}
+			evaluatedFeatures = (long) _sampleCount * _featureCount;
+		}
+		return evaluatedFeatures;
+	}
+
+	/**
+	 * Linear scan over {@link #mMappedFeatures}: samples get copied block by
+	 * block from the mapping into a small reused buffer (a bulk copy from the
+	 * page cache) and scanned there, so the distance metrics keep working on
+	 * float arrays.
+	 * 
+	 * @return amount of compared features.
+	 */
+	private long scanMapped(float[] _query, int _featureCount, DistanceMetric _distanceMetric,
+			KnnNeighbourhood _neighbourhood) {
+		int blockSamples = Math.max(1, MAPPED_BLOCK_FEATURES / mFeatureCount);
+		if (mMappedBlock == null || mMappedBlock.length != blockSamples * mFeatureCount) {
+			mMappedBlock = new float[blockSamples * mFeatureCount];
+		}
+		// own position, the mapping is shared with other classifiers
+		FloatBuffer mapped = mMappedFeatures.duplicate();
+		mapped.rewind();
+		long evaluatedFeatures = 0;
+		for (int sampleNr = 0; sampleNr < mSampleCount; sampleNr += blockSamples) {
+			int sampleCount = Math.min(blockSamples, mSampleCount - sampleNr);
+			mapped.get(mMappedBlock, 0, sampleCount * mFeatureCount);
+			evaluatedFeatures += scan(mMappedBlock, sampleNr, sampleCount, _query, _featureCount, _distanceMetric,
+					_neighbourhood);
+		}
+		return evaluatedFeatures;
+	}
+
+	/**
+	 * Copies mapped features (if any) to {@link #mFeatures}, before the
+	 * gallery gets modified or serialized.
+	 */
+	private void loadMappedFeatures() {
+		if (mMappedFeatures == null) {
+			return;
+		}
+		mFeatures = new float[mSampleCount * mFeatureCount];
+		FloatBuffer mapped = mMappedFeatures.duplicate();
+		mapped.rewind();
+		mapped.get(mFeatures);
+		mMappedFeatures = null;
+	}
+
+	/**
+	 * @return true if queries use a VP-tree or product quantised codes
+	 *         instead of a linear scan. galleries (see
+	 *         {@link #writeGallery(File)}) do not store these indices.
+	 */
+	public boolean hasIndex() {
+		return mVpTree != null || mProductQuantizer != null;
+	}
+
+	/**
+	 * @return true if the features of this classifier stay in a mapped
+	 *         gallery file, see {@link #openGallery(File)}.
+	 */
+	public boolean isMapped() {
+		return mMappedFeatures != null;
+	}
+
+	/**
+	 * Writes the trained gallery to a file that {@link #openGallery(File)}
+	 * can map (see {@link KnnGalleryFormat}). Only the features get stored,
+	 * not the VP-tree or product quantised codes: the opened gallery gets
+	 * scanned linearly, which gives the same neighbours as the VP-tree.
+	 * Writes to a temporary file first, so readers never see a partial file.
+	 * 
+	 * @param _file
+	 * @throws IOException
+	 */
+	public void writeGallery(File _file) throws IOException {
+		File tmpFile = new File(_file.getParentFile(), _file.getName() + ".tmp");
+		long size = getGallerySize();
+		RandomAccessFile file = new RandomAccessFile(tmpFile, "rw");
+		try {
+			file.setLength(size);
+			writeGallery(file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+		} finally {
+			file.close();
+		}
+		if (!tmpFile.renameTo(_file)) {
+			tmpFile.delete();
+			throw new IOException("Cannot replace " + _file + ".");
+		}
+	}
+
+	/**
+	 * @return bytes {@link #writeGallery(ByteBuffer)} writes.
+	 * @throws IOException
+	 */
+	public long getGallerySize() throws IOException {
+		checkGalleryWritable();
+		return KnnGalleryFormat.getSize(mUsers, mSampleCount, mFeatureCount, mFeatureOrder, mPcaBasis);
+	}
+
+	/**
+	 * Writes the gallery at the position of _dst (e.g. a section of a larger
+	 * file) and advances it, see {@link #writeGallery(File)}.
+	 * 
+	 * @param _dst
+	 *            needs {@link #getGallerySize()} bytes remaining. features
+	 *            are aligned if its position is a multiple of 16.
+	 * @throws IOException
+	 */
+	public void writeGallery(ByteBuffer _dst) throws IOException {
+		checkGalleryWritable();
+		KnnGalleryFormat.write(_dst, mUsers, mLabels, mFeatures, mSampleCount, mFeatureCount, mFeatureOrder, mPcaBasis);
+	}
+
+	private void checkGalleryWritable() {
+		if (mLabels == null) {
+			throw new RuntimeException("Cannot write the gallery of an untrained classifier.");
+		}
+		loadMappedFeatures();
+		if (mFeatures == null) {
+			throw new RuntimeException("Cannot write a gallery that only keeps product quantised codes.");
+		}
+	}
+
+	/**
+	 * Opens a gallery written by {@link #writeGallery(File)}. Only the header,
+	 * labels, users and PCA basis get read, the feature rows stay in the
+	 * mapped file and queries scan them from there. Costs therefore do not
+	 * depend on the gallery size.
+	 * 
+	 * @param _file
+	 * @return a trained classifier using a linear scan.
+	 * @throws IOException
+	 *             if the file cannot be read or contains no valid gallery.
+	 */
+	public static KnnClassifier openGallery(File _file) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(_file, "r");
+		try {
+			return readGallery(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+		} finally {
+			// the mapping stays valid
+			file.close();
+		}
+	}
+
+	/**
+	 * Reads a gallery written by {@link #writeGallery(ByteBuffer)} at the
+	 * position of _src and advances it. The feature rows stay in _src.
+	 * 
+	 * @param _src
+	 * @return a trained classifier using a linear scan.
+	 * @throws IOException
+	 *             if _src contains no valid gallery.
+	 */
+	public static KnnClassifier readGallery(ByteBuffer _src) throws IOException {
+		return KnnGalleryFormat.read(_src);
+	}
+
+	/**
+	 * Stores a classifier with a VP-tree or product quantised codes, which
+	 * galleries cannot hold, see {@link #readBinary(LittleEndianInput)}.
+	 * Features get copied, unlike with galleries they do not stay mapped.
+	 */
+	public void writeBinary(LittleEndianOutput _out) throws IOException {
+		if (mLabels == null) {
+			throw new RuntimeException("Cannot store an untrained classifier.");
+		}
+		loadMappedFeatures();
+		_out.putInt(mUsers.size());
+		for (User user : mUsers) {
+			_out.putString(user.getId());
+			_out.putString(user.getName());
+		}
+		_out.putInt(mSampleCount);
+		_out.putInt(mFeatureCount);
+		_out.putFloats(mFeatures);
+		_out.putInts(mLabels);
+		_out.putInts(mFeatureOrder);
+		_out.putInt(mRerankCandidates);
+		_out.putBoolean(mVpTree != null);
+		if (mVpTree != null) {
+			mVpTree.write(_out);
+		}
+		_out.putBoolean(mProductQuantizer != null);
+		if (mProductQuantizer != null) {
+			mProductQuantizer.write(_out);
+		}
+		_out.putBoolean(mPcaBasis != null);
+		if (mPcaBasis != null) {
+			mPcaBasis.write(_out);
+		}
+	}
+
+	/**
+	 * @return the classifier stored by {@link #writeBinary(LittleEndianOutput)}.
+	 */
+	public static KnnClassifier readBinary(LittleEndianInput _in) throws IOException {
+		KnnClassifier classifier = new KnnClassifier();
+		int userCount = _in.getInt();
+		if (userCount < 0 || userCount > _in.remaining() / 8) {
+			throw new IOException("invalid user count " + userCount + ".");
+		}
+		classifier.mUsers = new ArrayList<User>();
+		for (int userNr = 0; userNr < userCount; userNr++) {
+			classifier.mUsers.add(new User(_in.getString(), _in.getString()));
+		}
+		classifier.mSampleCount = _in.getInt();
+		classifier.mFeatureCount = _in.getInt();
+		classifier.mFeatures = _in.getFloats();
+		classifier.mLabels = _in.getInts();
+		classifier.mFeatureOrder = _in.getInts();
+		classifier.mRerankCandidates = _in.getInt();
+		if (classifier.mSampleCount < 0 || classifier.mFeatureCount < 0 || classifier.mLabels == null
+				|| classifier.mLabels.length != classifier.mSampleCount
+				|| (classifier.mFeatures != null
+						&& (long) classifier.mSampleCount * classifier.mFeatureCount != classifier.mFeatures.length)) {
+			throw new IOException("invalid KNN classifier.");
+		}
+		if (_in.getBoolean()) {
+			classifier.mVpTree = VpTree.read(_in, classifier.mSampleCount);
+		}
+		if (_in.getBoolean()) {
+			classifier.mProductQuantizer = ProductQuantizer.read(_in);
+		}
+		if (classifier.mFeatures == null && classifier.mProductQuantizer == null) {
+			throw new IOException("KNN classifier without features.");
+		}
+		if (_in.getBoolean()) {
+			classifier.mPcaBasis = PcaBasis.read(_in);
+		}
+		return classifier;
+	}
+
+	/**
+	 * Approximate search on the product quantised codes, optionally followed
+	 * by an exact re-rank of the best candidates.
+	 * 
+	 * @return amount of exactly compared features.
+	 */
+	private long searchProductQuantizer(float[] _query, int _k, DistanceMetric _distanceMetric,
+			KnnNeighbourhood _neighbourhood) {
+		if (mRerankCandidates <= 0 || mFeatures == null) {
+			mProductQuantizer.search(_query, _neighbourhood);
+			return 0;
+		}
+		int candidateCount = Math.max(_k, mRerankCandidates);
+		if (mCandidates == null) {
+			mCandidates = new KnnNeighbourhood(candidateCount);
+		} else {
+			mCandidates.reset(candidateCount);
+		}
+		mProductQuantizer.search(_query, mCandidates);
+		for (int i = 0; i < mCandidates.size(); i++) {
+			int sampleNr = mCandidates.getIndex(i);
+			_neighbourhood.offer(sampleNr,
+					_distanceMetric.distance(mFeatures, sampleNr * mFeatureCount, _query, 0, mFeatureCount));
+		}
+		return (long) mCandidates.size() * mFeatureCount;
+	}
+
+	/**
+	 * Measures how many of the exact K nearest neighbours an approximate
+	 * classifier finds (recall at K) using the squared Euclidean distance.
+	 * Both classifiers must have been trained on the same
+	 * {@link TrainingData}.
+	 * 
+	 * @param _exact
+	 *            a classifier without approximate index.
+	 * @param _approximate
+	 * @param _queries
+	 * @param _k
+	 * @param _usePca
+	 * @param _pcaAmountOfFeatures
+	 * @return the mean recall over all queries, in [0, 1].
+	 */
+	public static double measureRecall(KnnClassifier _exact, KnnClassifier _approximate, List<PanshotImage> _queries,
+			int _k, boolean _usePca, int _pcaAmountOfFeatures) {
+		if (_exact.mSampleCount != _approximate.mSampleCount) {
+			throw new RuntimeException("Classifiers were not trained on the same training data.");
+		}
+		if (_queries.isEmpty()) {
+			return 1;
+		}
+		DistanceMetric metric = DistanceMetrics.forLNormPower(2f);
+		boolean[] exactNeighbour = new boolean[_exact.mSampleCount];
+		double recallSum = 0;
+		for (PanshotImage query : _queries) {
+			KnnNeighbourhood exact = _exact.findNeighbours(query, _k, metric, _usePca, _pcaAmountOfFeatures);
+			for (int i = 0; i < exact.size(); i++) {
+				exactNeighbour[exact.getIndex(i)] = true;
+			}
+			int exactSize = exact.size();
+			KnnNeighbourhood approximate = _approximate.findNeighbours(query, _k, metric, _usePca, _pcaAmountOfFeatures);
+			int found = 0;
+			for (int i = 0; i < approximate.size(); i++) {
+				if (exactNeighbour[approximate.getIndex(i)]) {
+					found++;
 				}
+			}
+			Arrays.fill(exactNeighbour, false);
+			recallSum += exactSize == 0 ? 1 : (double) found / exactSize;
+		}
+		return recallSum / _queries.size();
+	}
+
+	/**
+	 * Extracts the feature vector of the query image (pixels or PCA
+	 * projection) into {@link #mQueryFeatures}.
+	 */
+	private float[] extractQueryFeatures(PanshotImage _image, boolean _usePca) {
+		if (mQueryFeatures == null || mQueryFeatures.length != mFeatureCount) {
+			mQueryFeatures = new float[mFeatureCount];
+		}
+		if (_usePca) {
+			if (_image.pcaFace != null) {
+				copyPcaFeatures(_image.pcaFace, mQueryFeatures, 0, mFeatureCount);
 			} else {
-				// project data into eigenspace
-				if (_image.pcaFace == null) {
-					_image.pcaFace = PCAUtil.pcaProject(_image, mPcaMean, mPcaEigenvectors);
+				// project data into eigenspace, straight into the query buffer
+				if (mPcaBasis == null) {
+					throw new RuntimeException("Cannot project data into Eigenspace of a classifier trained without PCA.");
 				}
-				// measure distance in eigenspace
-				for (int row = 0; row < image.pcaFace.rows() && row < _pcaAmountOfFeatures; row++) {
-					for (int col = 0; col < image.pcaFace.cols(); col++) {
-						double mine = image.pcaFace.get(row, col)[0];
-						double other = _image.pcaFace.get(row, col)[0];
-						distance += _distanceMetric.distance(mine, other);
+				int pixelCount = mPcaBasis.getFeatureCount();
+				if (_image.grayFace.depth() == CvType.CV_8U && _image.grayFace.channels() == 1) {
+					if (mQueryPixelBytes == null || mQueryPixelBytes.length != pixelCount) {
+						mQueryPixelBytes = new byte[pixelCount];
 					}
+				} else if (mQueryPixels == null || mQueryPixels.length != pixelCount) {
+					mQueryPixels = new float[pixelCount];
 				}
+				PCAUtil.pcaProject(_image.grayFace, mPcaBasis, mQueryPixelBytes, mQueryPixels, mQueryFeatures);
+			}
+		} else {
+			if (_image.grayFace.rows() * _image.grayFace.cols() != mFeatureCount) {
+				throw new RuntimeException("Face size does not match the size of the training faces.");
 			}
-			GenericTuple2<PanshotImage, Double> n = new GenericTuple2<PanshotImage, Double>(image, distance);
-			if (neighbours.size() < _k) {
-				neighbours.add(n);
-				if (mostDistantNeightbour == null || mostDistantNeightbour.value2 < n.value2) {
-					// as long as we don't have a full neighbourhood: remember
-					// most distant neighbour
-					mostDistantNeightbour = n;
+			if (mFeatureOrder == null) {
+				RecognitionUtil.transformImageToFeatureVector(_image.grayFace, mQueryFeatures, 0);
+			} else {
+				if (mQueryPixels == null || mQueryPixels.length != mFeatureCount) {
+					mQueryPixels = new float[mFeatureCount];
 				}
-			} else if (mostDistantNeightbour.value2 > n.value2) {
-				// we have full neighbourhood, but this sample is nearer
-				neighbours.remove(mostDistantNeightbour);
-				neighbours.add(n);
-				// search for new most distant neighbour
-				mostDistantNeightbour = neighbours.get(0);
-				for (int i = 1; i < neighbours.size(); i++) {
-					GenericTuple2<PanshotImage, Double> n2 = neighbours.get(i);
-					if (n2.value2 > mostDistantNeightbour.value2) {
-						mostDistantNeightbour = n2;
-					}
+				RecognitionUtil.transformImageToFeatureVector(_image.grayFace, mQueryPixels, 0);
+				for (int featureNr = 0; featureNr < mFeatureCount; featureNr++) {
+					mQueryFeatures[featureNr] = mQueryPixels[mFeatureOrder[featureNr]];
 				}
 			}
 		}
-		return neighbours;
+		return mQueryFeatures;
+	}
+
+	/**
+	 * Copies the first _amount PCA features of a (1 x N, CV_32F) projection to
+	 * _dst, via {@link #mPcaFaceBuffer}.
+	 */
+	private void copyPcaFeatures(Mat _pcaFace, float[] _dst, int _offset, int _amount) {
+		if (mPcaFaceBuffer == null || mPcaFaceBuffer.length != _pcaFace.cols()) {
+			mPcaFaceBuffer = new float[_pcaFace.cols()];
+		}
+		_pcaFace.get(0, 0, mPcaFaceBuffer);
+		System.arraycopy(mPcaFaceBuffer, 0, _dst, _offset, _amount);
+	}
+
+	/**
+	 * Enables or disables early abandoning of distance computations (enabled
+	 * by default). Results are equivalent up to floating point rounding: with
+	 * early abandoning, distances get summed block by block, which can round
+	 * differently than one sum over all features, so samples at (nearly) equal
+	 * distances can swap places in the neighbourhood.
+	 */
+	public void setEarlyAbandoning(boolean _earlyAbandoning) {
+		mEarlyAbandoning = _earlyAbandoning;
+	}
+
+	public boolean isEarlyAbandoning() {
+		return mEarlyAbandoning;
+	}
+
+	/**
+	 * @return amount of features compared by all queries since the last
+	 *         {@link #resetFeatureStatistics()}.
+	 */
+	public long getEvaluatedFeatureCount() {
+		return mEvaluatedFeatureCount;
+	}
+
+	/**
+	 * @return amount of features all queries since the last
+	 *         {@link #resetFeatureStatistics()} would have compared without
+	 *         early abandoning.
+	 */
+	public long getTotalFeatureCount() {
+		return mTotalFeatureCount;
+	}
+
+	public void resetFeatureStatistics() {
+		mEvaluatedFeatureCount = 0;
+		mTotalFeatureCount = 0;
 	}
 
 	// ========================================================================================================================
@@ -142,17 +1124,17 @@ public class KnnClassifier implements FaceClassifier, Serializable {
 	 * We need custom serialization as we can't serialize opencv members.
 	 */
 	private void writeObject(ObjectOutputStream out) throws IOException {
-		out.writeObject(mImages);
-		if (mPcaMean == null) {
-			out.writeObject(null);
-		} else {
-			out.writeObject(PanshotUtil.matToMapFloat(mPcaMean));
-		}
-		if (mPcaEigenvectors == null) {
-			out.writeObject(null);
-		} else {
-			out.writeObject(PanshotUtil.matToMapFloat(mPcaEigenvectors));
-		}
+		loadMappedFeatures();
+		out.writeObject(mUsers);
+		out.writeInt(mSampleCount);
+		out.writeInt(mFeatureCount);
+		out.writeObject(mFeatures);
+		out.writeObject(mLabels);
+		out.writeObject(mFeatureOrder);
+		out.writeObject(mVpTree);
+		out.writeObject(mProductQuantizer);
+		out.writeInt(mRerankCandidates);
+		out.writeObject(mPcaBasis);
 	}
 
 	/**
@@ -160,14 +1142,20 @@ public class KnnClassifier implements FaceClassifier, Serializable {
 	 */
 	@SuppressWarnings("unchecked")
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-		mImages = (List<PanshotImage>) in.readObject();
-		Object tmp = in.readObject();
-		if (tmp != null) {
-			mPcaMean = PanshotUtil.matFromMapFloat((Map<String, Object>) tmp);
-		}
-		tmp = in.readObject();
-		if (tmp != null) {
-			mPcaEigenvectors = PanshotUtil.matFromMapFloat((Map<String, Object>) tmp);
-		}
+		mUsers = (List<User>) in.readObject();
+		mSampleCount = in.readInt();
+		mFeatureCount = in.readInt();
+		mFeatures = (float[]) in.readObject();
+		mLabels = (int[]) in.readObject();
+		mFeatureOrder = (int[]) in.readObject();
+		mVpTree = (VpTree) in.readObject();
+		mProductQuantizer = (ProductQuantizer) in.readObject();
+		mRerankCandidates = in.readInt();
+		mIndexType = IndexType.LINEAR_SCAN;
+		mIndexLNormPower = 2f;
+		mPqFeaturesPerSubspace = 4;
+		mPqRerankCandidates = 0;
+		mEarlyAbandoning = true;
+		mPcaBasis = (PcaBasis) in.readObject();
 	}
 }
@@ -0,0 +1,254 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.usmile.panshot.User;
+import at.usmile.panshot.recognition.pca.PcaBasis;
+
+/**
+ * Binary gallery format of a trained {@link KnnClassifier}, meant to be
+ * memory mapped: the feature rows are stored contiguously at the end, so
+ * queries can scan them straight from the mapping and opening a gallery only
+ * reads the small parts in front of them.
+ * <p>
+ * Layout (little endian, native on Android devices), offsets relative to the
+ * start of the gallery:
+ * <ul>
+ * <li>header: magic, version, sample count n, feature count d, user count,
+ * flags (bit 0: feature order, bit 1: PCA basis), offset of the features.</li>
+ * <li>label table: per user its id and name (length + UTF-8 bytes, length -1
+ * for null), then n labels (index into the users).</li>
+ * <li>optional feature order: d ints.</li>
+ * <li>optional PCA basis: its feature count D, component count d, mean (D
+ * floats), eigenvectors (d x D floats).</li>
+ * <li>padding up to {@link #FEATURES_ALIGNMENT}, then n x d floats, row by
+ * row.</li>
+ * </ul>
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+final class KnnGalleryFormat {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final int MAGIC = 0x50534b47;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 7 * 4;
+	private static final int FLAG_FEATURE_ORDER = 1;
+	private static final int FLAG_PCA_BASIS = 2;
+	/** feature rows start at multiples of this many bytes. */
+	static final int FEATURES_ALIGNMENT = 16;
+
+	// ================================================================================================================
+	// METHODS
+
+	private KnnGalleryFormat() {
+	}
+
+	/**
+	 * @return bytes {@link #write(ByteBuffer, List, int[], float[], int, int, int[], PcaBasis)}
+	 *         needs for the gallery.
+	 */
+	static long getSize(List<User> _users, int _sampleCount, int _featureCount, int[] _featureOrder, PcaBasis _pcaBasis)
+			throws UnsupportedEncodingException {
+		return getFeaturesOffset(_users, _sampleCount, _featureOrder, _pcaBasis) + 4L * _sampleCount * _featureCount;
+	}
+
+	/**
+	 * Writes a gallery at the position of _dst and advances it.
+	 *
+	 * @param _dst
+	 *            needs at least {@link #getSize(List, int, int, int[], PcaBasis)}
+	 *            bytes remaining. its position has to be a multiple of
+	 *            {@link #FEATURES_ALIGNMENT} for the features to be aligned.
+	 * @param _users
+	 * @param _labels
+	 * @param _features
+	 *            packed feature rows.
+	 * @param _sampleCount
+	 * @param _featureCount
+	 * @param _featureOrder
+	 *            null if not used.
+	 * @param _pcaBasis
+	 *            null if not used.
+	 */
+	static void write(ByteBuffer _dst, List<User> _users, int[] _labels, float[] _features, int _sampleCount,
+			int _featureCount, int[] _featureOrder, PcaBasis _pcaBasis) throws UnsupportedEncodingException {
+		ByteBuffer dst = _dst.slice().order(ByteOrder.LITTLE_ENDIAN);
+		int featuresOffset = getFeaturesOffset(_users, _sampleCount, _featureOrder, _pcaBasis);
+		dst.putInt(MAGIC);
+		dst.putInt(VERSION);
+		dst.putInt(_sampleCount);
+		dst.putInt(_featureCount);
+		dst.putInt(_users.size());
+		dst.putInt((_featureOrder != null ? FLAG_FEATURE_ORDER : 0) | (_pcaBasis != null ? FLAG_PCA_BASIS : 0));
+		dst.putInt(featuresOffset);
+		for (User user : _users) {
+			putString(dst, user.getId());
+			putString(dst, user.getName());
+		}
+		putInts(dst, _labels, _sampleCount);
+		if (_featureOrder != null) {
+			putInts(dst, _featureOrder, _featureCount);
+		}
+		if (_pcaBasis != null) {
+			dst.putInt(_pcaBasis.getFeatureCount());
+			dst.putInt(_pcaBasis.getComponentCount());
+			putFloats(dst, _pcaBasis.getMean(), _pcaBasis.getMean().length);
+			putFloats(dst, _pcaBasis.getEigenvectors(), _pcaBasis.getEigenvectors().length);
+		}
+		dst.position(featuresOffset);
+		putFloats(dst, _features, _sampleCount * _featureCount);
+		_dst.position(_dst.position() + dst.position());
+	}
+
+	/**
+	 * Reads a gallery at the position of _src. Everything but the feature
+	 * rows gets copied, the rows stay a view of _src.
+	 *
+	 * @param _src
+	 *            e.g. a mapped file.
+	 * @return the classifier, querying the feature rows in _src.
+	 * @throws IOException
+	 *             if _src contains no valid gallery.
+	 */
+	static KnnClassifier read(ByteBuffer _src) throws IOException {
+		ByteBuffer src = _src.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (src.remaining() < HEADER_SIZE || src.getInt() != MAGIC) {
+			throw new IOException("not a KNN gallery.");
+		}
+		int version = src.getInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported KNN gallery version " + version + ".");
+		}
+		int sampleCount = src.getInt();
+		int featureCount = src.getInt();
+		int userCount = src.getInt();
+		int flags = src.getInt();
+		int featuresOffset = src.getInt();
+		if (sampleCount < 0 || featureCount <= 0 || userCount < 0 || featuresOffset < HEADER_SIZE
+				|| (src.capacity() - (long) featuresOffset) / 4 / featureCount < sampleCount) {
+			throw new IOException("invalid KNN gallery header.");
+		}
+		List<User> users = new ArrayList<User>();
+		for (int userNr = 0; userNr < userCount; userNr++) {
+			users.add(new User(getString(src), getString(src)));
+		}
+		int[] labels = getInts(src, sampleCount);
+		for (int label : labels) {
+			if (label < 0 || label >= userCount) {
+				throw new IOException("invalid KNN gallery label " + label + ".");
+			}
+		}
+		int[] featureOrder = null;
+		if ((flags & FLAG_FEATURE_ORDER) != 0) {
+			featureOrder = getInts(src, featureCount);
+		}
+		PcaBasis pcaBasis = null;
+		if ((flags & FLAG_PCA_BASIS) != 0) {
+			int pcaFeatureCount = src.getInt();
+			int componentCount = src.getInt();
+			if (pcaFeatureCount <= 0 || componentCount != featureCount
+					|| (src.remaining() / 4 - pcaFeatureCount) / pcaFeatureCount < componentCount) {
+				throw new IOException("invalid KNN gallery PCA basis.");
+			}
+			float[] mean = getFloats(src, pcaFeatureCount);
+			float[] eigenvectors = getFloats(src, componentCount * pcaFeatureCount);
+			pcaBasis = new PcaBasis(mean, eigenvectors, componentCount);
+		}
+		if (src.position() > featuresOffset) {
+			throw new IOException("invalid KNN gallery features offset.");
+		}
+		src.position(featuresOffset);
+		FloatBuffer features = src.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		features.limit(sampleCount * featureCount);
+		_src.position(_src.position() + featuresOffset + 4 * sampleCount * featureCount);
+		return new KnnClassifier(users, labels, sampleCount, featureCount, featureOrder, pcaBasis, features.slice());
+	}
+
+	private static int getFeaturesOffset(List<User> _users, int _sampleCount, int[] _featureOrder, PcaBasis _pcaBasis)
+			throws UnsupportedEncodingException {
+		long size = HEADER_SIZE;
+		for (User user : _users) {
+			size += getStringSize(user.getId()) + getStringSize(user.getName());
+		}
+		size += 4L * _sampleCount;
+		if (_featureOrder != null) {
+			size += 4L * _featureOrder.length;
+		}
+		if (_pcaBasis != null) {
+			size += 8 + 4L * (_pcaBasis.getMean().length + _pcaBasis.getEigenvectors().length);
+		}
+		size = (size + FEATURES_ALIGNMENT - 1) / FEATURES_ALIGNMENT * FEATURES_ALIGNMENT;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("KNN gallery too large.");
+		}
+		return (int) size;
+	}
+
+	private static int getStringSize(String _string) throws UnsupportedEncodingException {
+		return 4 + (_string == null ? 0 : _string.getBytes("UTF-8").length);
+	}
+
+	private static void putString(ByteBuffer _dst, String _string) throws UnsupportedEncodingException {
+		if (_string == null) {
+			_dst.putInt(-1);
+			return;
+		}
+		byte[] bytes = _string.getBytes("UTF-8");
+		_dst.putInt(bytes.length);
+		_dst.put(bytes);
+	}
+
+	private static String getString(ByteBuffer _src) throws IOException {
+		int length = _src.getInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > _src.remaining()) {
+			throw new IOException("invalid string length " + length + ".");
+		}
+		byte[] bytes = new byte[length];
+		_src.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void putInts(ByteBuffer _dst, int[] _values, int _length) {
+		_dst.asIntBuffer().put(_values, 0, _length);
+		_dst.position(_dst.position() + 4 * _length);
+	}
+
+	private static int[] getInts(ByteBuffer _src, int _length) throws IOException {
+		if (_length > _src.remaining() / 4) {
+			throw new IOException("KNN gallery truncated.");
+		}
+		int[] values = new int[_length];
+		_src.asIntBuffer().get(values);
+		_src.position(_src.position() + 4 * _length);
+		return values;
+	}
+
+	private static void putFloats(ByteBuffer _dst, float[] _values, int _length) {
+		_dst.asFloatBuffer().put(_values, 0, _length);
+		_dst.position(_dst.position() + 4 * _length);
+	}
+
+	private static float[] getFloats(ByteBuffer _src, int _length) throws IOException {
+		if (_length > _src.remaining() / 4) {
+			throw new IOException("KNN gallery truncated.");
+		}
+		float[] values = new float[_length];
+		_src.asFloatBuffer().get(values);
+		_src.position(_src.position() + 4 * _length);
+		return values;
+	}
+}
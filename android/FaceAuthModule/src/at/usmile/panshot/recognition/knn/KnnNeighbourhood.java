@@ -0,0 +1,132 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * The K nearest neighbours found so far during a KNN query: a fixed-size
+ * max-heap of (sample index, distance) pairs with the most distant neighbour
+ * at the root. Offering a sample costs O(log K) and allocates nothing, so one
+ * instance can be reused for all queries of a classifier. Not thread-safe.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class KnnNeighbourhood {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private int[] mIndices;
+	private double[] mDistances;
+	private int mCapacity = 0;
+	private int mSize = 0;
+
+	// ================================================================================================================
+	// METHODS
+
+	public KnnNeighbourhood(int _capacity) {
+		reset(_capacity);
+	}
+
+	/**
+	 * Removes all neighbours and sets the amount of neighbours to keep. Only
+	 * reallocates if _capacity exceeds the capacity this instance ever had.
+	 */
+	public void reset(int _capacity) {
+		if (_capacity < 1) {
+			throw new IllegalArgumentException("_capacity must be at least of size 1.");
+		}
+		if (mIndices == null || mIndices.length < _capacity) {
+			mIndices = new int[_capacity];
+			mDistances = new double[_capacity];
+		}
+		mCapacity = _capacity;
+		mSize = 0;
+	}
+
+	/**
+	 * Adds a sample if the neighbourhood is not full yet or if the sample is
+	 * nearer than the currently most distant neighbour (which then gets
+	 * dropped).
+	 * 
+	 * @return true if the sample was added.
+	 */
+	public boolean offer(int _index, double _distance) {
+		if (mSize < mCapacity) {
+			// sift up
+			int pos = mSize++;
+			while (pos > 0) {
+				int parent = (pos - 1) >>> 1;
+				if (mDistances[parent] >= _distance) {
+					break;
+				}
+				mIndices[pos] = mIndices[parent];
+				mDistances[pos] = mDistances[parent];
+				pos = parent;
+			}
+			mIndices[pos] = _index;
+			mDistances[pos] = _distance;
+			return true;
+		}
+		if (_distance >= mDistances[0]) {
+			return false;
+		}
+		// replace root, sift down
+		int pos = 0;
+		int half = mSize >>> 1;
+		while (pos < half) {
+			int child = 2 * pos + 1;
+			int right = child + 1;
+			if (right < mSize && mDistances[right] > mDistances[child]) {
+				child = right;
+			}
+			if (mDistances[child] <= _distance) {
+				break;
+			}
+			mIndices[pos] = mIndices[child];
+			mDistances[pos] = mDistances[child];
+			pos = child;
+		}
+		mIndices[pos] = _index;
+		mDistances[pos] = _distance;
+		return true;
+	}
+
+	public boolean isFull() {
+		return mSize == mCapacity;
+	}
+
+	/**
+	 * @return the distance of the most distant neighbour, or
+	 *         {@link Double#POSITIVE_INFINITY} as long as the neighbourhood is
+	 *         not full (every sample could still become a neighbour).
+	 */
+	public double getMaxDistance() {
+		return mSize < mCapacity ? Double.POSITIVE_INFINITY : mDistances[0];
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * @param _i
+	 *            position in the heap, 0 <= _i < {@link #size()}. positions are
+	 *            not ordered by distance.
+	 */
+	public int getIndex(int _i) {
+		return mIndices[_i];
+	}
+
+	/**
+	 * @param _i
+	 *            position in the heap, 0 <= _i < {@link #size()}. positions are
+	 *            not ordered by distance.
+	 */
+	public double getDistance(int _i) {
+		return mDistances[_i];
+	}
+}
@@ -0,0 +1,35 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * Manhattan distance: sum of absolute feature differences.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class L1Distance implements LNormDistance {
+
+	@Override
+	public double distance(float[] _samples, int _sampleOffset, float[] _query, int _queryOffset, int _length) {
+		double distance = 0;
+		for (int i = 0; i < _length; i++) {
+			distance += Math.abs(_samples[_sampleOffset + i] - _query[_queryOffset + i]);
+		}
+		return distance;
+	}
+
+	@Override
+	public boolean isAdditive() {
+		return true;
+	}
+
+	@Override
+	public double getPower() {
+		return 1;
+	}
+
+	@Override
+	public String toString() {
+		return "L1Distance";
+	}
+}
@@ -0,0 +1,19 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * A {@link DistanceMetric} that computes the L^n-norm of the difference of two
+ * vectors without the final root, i.e. sum of |difference|^n. Taking the n-th
+ * root of such a distance yields a true metric for n >= 1, which metric trees
+ * like {@link VpTree} rely on.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public interface LNormDistance extends DistanceMetric {
+
+	/**
+	 * @return the power n of the L^n-norm.
+	 */
+	public double getPower();
+}
@@ -0,0 +1,52 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * L^p-norm distance without the final root: sum of |difference|^p. Yields the
+ * same neighbour ordering as the L^p-norm.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class LpDistance implements LNormDistance {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private final double mPower;
+
+	// ================================================================================================================
+	// METHODS
+
+	public LpDistance(double _power) {
+		if (_power <= 0) {
+			throw new IllegalArgumentException("_power must be positive.");
+		}
+		mPower = _power;
+	}
+
+	@Override
+	public double distance(float[] _samples, int _sampleOffset, float[] _query, int _queryOffset, int _length) {
+		final double power = mPower;
+		double distance = 0;
+		for (int i = 0; i < _length; i++) {
+			distance += Math.pow(Math.abs(_samples[_sampleOffset + i] - _query[_queryOffset + i]), power);
+		}
+		return distance;
+	}
+
+	@Override
+	public double getPower() {
+		return mPower;
+	}
+
+	@Override
+	public boolean isAdditive() {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "LpDistance [mPower=" + mPower + "]";
+	}
+}
@@ -0,0 +1,334 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
+
+/**
+ * Product quantisation of packed feature vectors for approximate KNN search
+ * with the squared Euclidean distance. Features get split into subspaces of a
+ * few consecutive features each. Per subspace, k-means learns up to 256
+ * centroids and every sample is stored as one byte (its nearest centroid) per
+ * subspace. A query first computes a table of its distances to all centroids
+ * of all subspaces (asymmetric distance computation), the approximate distance
+ * to a sample then is the sum of one table lookup per subspace.
+ * <p>
+ * Compared to float features, codes need 4 * (features per subspace) times
+ * less memory. The codebook adds one float per feature and centroid, so the
+ * amount of centroids grows with the gallery (one per 4 samples, at most 256):
+ * n samples of d features take n * d / (features per subspace) + 4 * min(256,
+ * n / 4) * d bytes instead of 4 * n * d. With 4 features per subspace this is
+ * about 3.2x less memory up to 1024 samples and about 8x for 4000 samples.
+ * Small codebooks approximate distances coarsely though, so small galleries
+ * should re-rank candidates by their exact distance.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class ProductQuantizer implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final int MAX_CENTROIDS = 256;
+	/**
+	 * the codebook gets sized to the gallery: one centroid per this many
+	 * samples, up to {@link #MAX_CENTROIDS}.
+	 */
+	static final int SAMPLES_PER_CENTROID = 4;
+	private static final int KMEANS_ITERATIONS = 10;
+
+	private final int mFeatureCount;
+	private final int mSubspaceCount;
+	/** subspace j covers features [mSubspaceStart[j], mSubspaceStart[j + 1]). */
+	private final int[] mSubspaceStart;
+	/** centroids per subspace. */
+	private final int mCentroidCount;
+	/**
+	 * all centroids, laid out as mCentroidCount rows of mFeatureCount
+	 * features: centroid c of subspace j occupies the subspace's features of
+	 * row c.
+	 */
+	private final float[] mCentroids;
+	/** per sample and subspace: the index of the nearest centroid. */
+	private byte[] mCodes;
+	private int mSampleCount;
+
+	/** reusable distance table of the current query. */
+	private transient double[] mDistanceTable;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * Learns the centroids and encodes all samples.
+	 *
+	 * @param _features
+	 *            packed feature vectors, see {@link KnnClassifier}.
+	 * @param _sampleCount
+	 * @param _featureCount
+	 * @param _featuresPerSubspace
+	 *            amount of consecutive features quantised together (the last
+	 *            subspace may be smaller).
+	 */
+	public ProductQuantizer(float[] _features, int _sampleCount, int _featureCount, int _featuresPerSubspace) {
+		if (_featuresPerSubspace < 1) {
+			throw new IllegalArgumentException("_featuresPerSubspace must be at least of size 1.");
+		}
+		mFeatureCount = _featureCount;
+		mSampleCount = _sampleCount;
+		mSubspaceCount = (_featureCount + _featuresPerSubspace - 1) / _featuresPerSubspace;
+		mSubspaceStart = new int[mSubspaceCount + 1];
+		for (int j = 0; j <= mSubspaceCount; j++) {
+			mSubspaceStart[j] = Math.min(j * _featuresPerSubspace, _featureCount);
+		}
+		mCentroidCount = Math.max(1, Math.min(MAX_CENTROIDS, _sampleCount / SAMPLES_PER_CENTROID));
+		mCentroids = new float[mCentroidCount * _featureCount];
+		mCodes = new byte[_sampleCount * mSubspaceCount];
+		Random random = new Random(0);
+		for (int j = 0; j < mSubspaceCount; j++) {
+			trainSubspace(_features, j, random);
+		}
+	}
+
+	private ProductQuantizer(int _featureCount, int[] _subspaceStart, int _centroidCount, float[] _centroids,
+			byte[] _codes, int _sampleCount) {
+		mFeatureCount = _featureCount;
+		mSubspaceCount = _subspaceStart.length - 1;
+		mSubspaceStart = _subspaceStart;
+		mCentroidCount = _centroidCount;
+		mCentroids = _centroids;
+		mCodes = _codes;
+		mSampleCount = _sampleCount;
+	}
+
+	/**
+	 * k-means on the features of subspace _subspace. assigns the codes of all
+	 * samples for this subspace.
+	 */
+	private void trainSubspace(float[] _features, int _subspace, Random _random) {
+		int start = mSubspaceStart[_subspace];
+		int end = mSubspaceStart[_subspace + 1];
+		// init: centroids are distinct random samples
+		int[] samples = new int[mSampleCount];
+		for (int i = 0; i < mSampleCount; i++) {
+			samples[i] = i;
+		}
+		for (int c = 0; c < mCentroidCount; c++) {
+			int swap = c + _random.nextInt(mSampleCount - c);
+			int tmp = samples[c];
+			samples[c] = samples[swap];
+			samples[swap] = tmp;
+			System.arraycopy(_features, samples[c] * mFeatureCount + start, mCentroids, c * mFeatureCount + start, end - start);
+		}
+		int[] assignment = new int[mSampleCount];
+		for (int i = 0; i < mSampleCount; i++) {
+			assignment[i] = -1;
+		}
+		double[] sums = new double[mCentroidCount * (end - start)];
+		int[] counts = new int[mCentroidCount];
+		for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+			// assign samples to nearest centroids
+			boolean changed = false;
+			for (int i = 0; i < mSampleCount; i++) {
+				int nearest = nearestCentroid(_features, i * mFeatureCount, start, end);
+				if (assignment[i] != nearest) {
+					assignment[i] = nearest;
+					changed = true;
+				}
+			}
+			if (!changed) {
+				break;
+			}
+			// move centroids to the mean of their samples
+			Arrays.fill(sums, 0);
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < mSampleCount; i++) {
+				int c = assignment[i];
+				counts[c]++;
+				for (int f = start; f < end; f++) {
+					sums[c * (end - start) + f - start] += _features[i * mFeatureCount + f];
+				}
+			}
+			for (int c = 0; c < mCentroidCount; c++) {
+				if (counts[c] == 0) {
+					// empty cluster: restart at a random sample
+					int sample = _random.nextInt(mSampleCount);
+					System.arraycopy(_features, sample * mFeatureCount + start, mCentroids, c * mFeatureCount + start, end
+							- start);
+					continue;
+				}
+				for (int f = start; f < end; f++) {
+					mCentroids[c * mFeatureCount + f] = (float) (sums[c * (end - start) + f - start] / counts[c]);
+				}
+			}
+		}
+		// final codes
+		for (int i = 0; i < mSampleCount; i++) {
+			mCodes[i * mSubspaceCount + _subspace] = (byte) nearestCentroid(_features, i * mFeatureCount, start, end);
+		}
+	}
+
+	private int nearestCentroid(float[] _features, int _offset, int _start, int _end) {
+		int nearest = 0;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < mCentroidCount; c++) {
+			int centroidOffset = c * mFeatureCount;
+			double distance = 0;
+			for (int f = _start; f < _end; f++) {
+				double diff = _features[_offset + f] - mCentroids[centroidOffset + f];
+				distance += diff * diff;
+			}
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = c;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Encodes additional samples with the existing centroids, without
+	 * retraining them. New samples get appended after the existing ones.
+	 *
+	 * @param _features
+	 *            packed feature vectors of the new samples.
+	 * @param _sampleCount
+	 *            amount of new samples.
+	 */
+	public void add(float[] _features, int _sampleCount) {
+		byte[] codes = new byte[(mSampleCount + _sampleCount) * mSubspaceCount];
+		System.arraycopy(mCodes, 0, codes, 0, mSampleCount * mSubspaceCount);
+		for (int i = 0; i < _sampleCount; i++) {
+			int codeOffset = (mSampleCount + i) * mSubspaceCount;
+			for (int j = 0; j < mSubspaceCount; j++) {
+				codes[codeOffset + j] = (byte) nearestCentroid(_features, i * mFeatureCount, mSubspaceStart[j],
+						mSubspaceStart[j + 1]);
+			}
+		}
+		mCodes = codes;
+		mSampleCount += _sampleCount;
+	}
+
+	/**
+	 * Drops the codes of all samples not to keep. Remaining samples keep
+	 * their order.
+	 *
+	 * @param _keep
+	 *            per sample: if it is kept.
+	 */
+	public void retain(boolean[] _keep) {
+		int keptCount = 0;
+		for (int i = 0; i < mSampleCount; i++) {
+			if (_keep[i]) {
+				System.arraycopy(mCodes, i * mSubspaceCount, mCodes, keptCount * mSubspaceCount, mSubspaceCount);
+				keptCount++;
+			}
+		}
+		mCodes = Arrays.copyOf(mCodes, keptCount * mSubspaceCount);
+		mSampleCount = keptCount;
+	}
+
+	/**
+	 * @return true if this quantiser approximates _metric on _featureCount
+	 *         features.
+	 */
+	public boolean supports(DistanceMetric _metric, int _featureCount) {
+		return _featureCount == mFeatureCount && _metric instanceof SquaredL2Distance;
+	}
+
+	/**
+	 * Approximate KNN search: offers all samples with their approximate
+	 * squared Euclidean distance to _neighbourhood.
+	 *
+	 * @param _query
+	 * @param _neighbourhood
+	 */
+	public void search(float[] _query, KnnNeighbourhood _neighbourhood) {
+		// distance table: query subvector to every centroid
+		int tableSize = mSubspaceCount * mCentroidCount;
+		if (mDistanceTable == null || mDistanceTable.length != tableSize) {
+			mDistanceTable = new double[tableSize];
+		}
+		final double[] table = mDistanceTable;
+		for (int j = 0; j < mSubspaceCount; j++) {
+			int start = mSubspaceStart[j];
+			int end = mSubspaceStart[j + 1];
+			for (int c = 0; c < mCentroidCount; c++) {
+				int centroidOffset = c * mFeatureCount;
+				double distance = 0;
+				for (int f = start; f < end; f++) {
+					double diff = _query[f] - mCentroids[centroidOffset + f];
+					distance += diff * diff;
+				}
+				table[j * mCentroidCount + c] = distance;
+			}
+		}
+		// scan codes
+		final byte[] codes = mCodes;
+		final int subspaceCount = mSubspaceCount;
+		final int centroidCount = mCentroidCount;
+		for (int i = 0, offset = 0; i < mSampleCount; i++, offset += subspaceCount) {
+			double distance = 0;
+			for (int j = 0, tableOffset = 0; j < subspaceCount; j++, tableOffset += centroidCount) {
+				distance += table[tableOffset + (codes[offset + j] & 0xFF)];
+			}
+			_neighbourhood.offer(i, distance);
+		}
+	}
+
+	/**
+	 * @return bytes used by codes and centroids.
+	 */
+	public long getMemoryBytes() {
+		return mCodes.length + 4L * mCentroids.length;
+	}
+
+	public int getSubspaceCount() {
+		return mSubspaceCount;
+	}
+
+	/**
+	 * Stores centroids and codes, see {@link #read(LittleEndianInput)}.
+	 */
+	public void write(LittleEndianOutput _out) {
+		_out.putInt(mFeatureCount);
+		_out.putInt(mSampleCount);
+		_out.putInt(mCentroidCount);
+		_out.putInts(mSubspaceStart);
+		_out.putFloats(mCentroids);
+		_out.putBytes(mCodes);
+	}
+
+	/**
+	 * @return the quantiser stored by {@link #write(LittleEndianOutput)}.
+	 */
+	public static ProductQuantizer read(LittleEndianInput _in) throws IOException {
+		int featureCount = _in.getInt();
+		int sampleCount = _in.getInt();
+		int centroidCount = _in.getInt();
+		int[] subspaceStart = _in.getInts();
+		float[] centroids = _in.getFloats();
+		byte[] codes = _in.getBytes();
+		if (subspaceStart == null || subspaceStart.length < 1 || centroids == null || codes == null
+				|| centroidCount < 1 || centroidCount > MAX_CENTROIDS
+				|| (long) centroidCount * featureCount != centroids.length
+				|| (long) sampleCount * (subspaceStart.length - 1) != codes.length
+				|| subspaceStart[subspaceStart.length - 1] != featureCount) {
+			throw new IOException("invalid product quantiser.");
+		}
+		return new ProductQuantizer(featureCount, subspaceStart, centroidCount, centroids, codes, sampleCount);
+	}
+
+	@Override
+	public String toString() {
+		return "ProductQuantizer [mFeatureCount=" + mFeatureCount + ", mSubspaceCount=" + mSubspaceCount
+				+ ", mCentroidCount=" + mCentroidCount + ", mSampleCount=" + mSampleCount + "]";
+	}
+}
@@ -0,0 +1,121 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * Squared Euclidean distances between many probes and all samples of a
+ * gallery at once, computed as ||a||^2 + ||b||^2 - 2 a.b with precomputed
+ * norms. The dot products are computed in blocks: a block of gallery samples
+ * stays in cache while it gets multiplied with tiles of several probes, and
+ * each gallery feature loaded is used for all probes of a tile.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class SquaredL2Batch {
+
+	/** gallery samples per block. */
+	private static final int GALLERY_BLOCK_SIZE = 64;
+	/** probes multiplied with a gallery sample at once. */
+	private static final int PROBE_TILE_SIZE = 4;
+
+	private SquaredL2Batch() {
+	}
+
+	/**
+	 * Computes the squared norm of the first _length features of _rows
+	 * feature vectors.
+	 *
+	 * @param _data
+	 *            packed feature vectors, vector i starts at i * _stride.
+	 * @param _rows
+	 * @param _stride
+	 * @param _length
+	 * @param _dst
+	 *            gets the norm of vector i at index i.
+	 */
+	public static void norms(float[] _data, int _rows, int _stride, int _length, double[] _dst) {
+		for (int row = 0, offset = 0; row < _rows; row++, offset += _stride) {
+			double norm = 0;
+			for (int i = 0; i < _length; i++) {
+				double v = _data[offset + i];
+				norm += v * v;
+			}
+			_dst[row] = norm;
+		}
+	}
+
+	/**
+	 * Computes the squared Euclidean distances of all probes to all gallery
+	 * samples on the first _length features.
+	 *
+	 * @param _gallery
+	 *            packed gallery feature vectors, sample i starts at i *
+	 *            _galleryStride.
+	 * @param _galleryNorms
+	 *            see {@link #norms(float[], int, int, int, double[])}.
+	 * @param _sampleCount
+	 * @param _galleryStride
+	 * @param _probes
+	 *            packed probe feature vectors, probe p starts at p * _length.
+	 * @param _probeNorms
+	 * @param _probeCount
+	 * @param _length
+	 * @param _dst
+	 *            gets the distance of probe p to sample i at index p *
+	 *            _sampleCount + i.
+	 */
+	public static void distances(float[] _gallery, double[] _galleryNorms, int _sampleCount, int _galleryStride,
+			float[] _probes, double[] _probeNorms, int _probeCount, int _length, double[] _dst) {
+		for (int blockStart = 0; blockStart < _sampleCount; blockStart += GALLERY_BLOCK_SIZE) {
+			int blockEnd = Math.min(blockStart + GALLERY_BLOCK_SIZE, _sampleCount);
+			int probe = 0;
+			// full tiles of probes
+			for (; probe + PROBE_TILE_SIZE <= _probeCount; probe += PROBE_TILE_SIZE) {
+				int p0 = probe * _length;
+				int p1 = p0 + _length;
+				int p2 = p1 + _length;
+				int p3 = p2 + _length;
+				for (int sample = blockStart; sample < blockEnd; sample++) {
+					int offset = sample * _galleryStride;
+					double dot0 = 0;
+					double dot1 = 0;
+					double dot2 = 0;
+					double dot3 = 0;
+					for (int i = 0; i < _length; i++) {
+						double g = _gallery[offset + i];
+						dot0 += g * _probes[p0 + i];
+						dot1 += g * _probes[p1 + i];
+						dot2 += g * _probes[p2 + i];
+						dot3 += g * _probes[p3 + i];
+					}
+					double galleryNorm = _galleryNorms[sample];
+					_dst[probe * _sampleCount + sample] = distance(galleryNorm, _probeNorms[probe], dot0);
+					_dst[(probe + 1) * _sampleCount + sample] = distance(galleryNorm, _probeNorms[probe + 1], dot1);
+					_dst[(probe + 2) * _sampleCount + sample] = distance(galleryNorm, _probeNorms[probe + 2], dot2);
+					_dst[(probe + 3) * _sampleCount + sample] = distance(galleryNorm, _probeNorms[probe + 3], dot3);
+				}
+			}
+			// remaining probes
+			for (; probe < _probeCount; probe++) {
+				int p = probe * _length;
+				for (int sample = blockStart; sample < blockEnd; sample++) {
+					int offset = sample * _galleryStride;
+					double dot = 0;
+					for (int i = 0; i < _length; i++) {
+						dot += _gallery[offset + i] * (double) _probes[p + i];
+					}
+					_dst[probe * _sampleCount + sample] = distance(_galleryNorms[sample], _probeNorms[probe], dot);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the squared distance from norms and dot product, clamped to 0
+	 *         against rounding errors.
+	 */
+	private static double distance(double _galleryNorm, double _probeNorm, double _dot) {
+		double distance = _galleryNorm + _probeNorm - 2 * _dot;
+		return distance < 0 ? 0 : distance;
+	}
+}
@@ -0,0 +1,37 @@
+package at.usmile.panshot.recognition.knn;
+
+/**
+ * Squared Euclidean distance: sum of squared feature differences. Yields the
+ * same neighbour ordering as the Euclidean distance without taking the root.
+ * 
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class SquaredL2Distance implements LNormDistance {
+
+	@Override
+	public double distance(float[] _samples, int _sampleOffset, float[] _query, int _queryOffset, int _length) {
+		double distance = 0;
+		for (int i = 0; i < _length; i++) {
+			double diff = _samples[_sampleOffset + i] - _query[_queryOffset + i];
+			distance += diff * diff;
+		}
+		return distance;
+	}
+
+	@Override
+	public boolean isAdditive() {
+		return true;
+	}
+
+	@Override
+	public double getPower() {
+		return 2;
+	}
+
+	@Override
+	public String toString() {
+		return "SquaredL2Distance";
+	}
+}
@@ -0,0 +1,315 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Random;
+
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
+
+/**
+ * Vantage-point tree over the packed feature vectors of a {@link KnnClassifier}
+ * for exact KNN queries in sub-linear average time. Each inner node holds a
+ * vantage sample and the median distance of its remaining samples to it:
+ * samples nearer than the median go to the inside subtree, the others to the
+ * outside subtree. Queries skip subtrees that, by the triangle inequality,
+ * cannot contain a sample nearer than the current K-th neighbour.
+ * <p>
+ * The tree is built for one L^n-norm (n >= 1) and can only answer queries
+ * that use an {@link LNormDistance} of the same power and all features.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class VpTree implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// ================================================================================================================
+	// MEMBERS
+
+	/** ranges of at most this amount of samples are not split any further. */
+	private static final int LEAF_SIZE = 8;
+	/**
+	 * relative slack for pruning decisions so that rounding errors (root vs.
+	 * power form of distances) never prune a true neighbour.
+	 */
+	private static final double PRUNING_SLACK = 1e-6;
+
+	private final double mPower;
+	private final int mFeatureCount;
+	/** sample indices, permuted such that each node covers a range. */
+	private final int[] mOrder;
+	/** per node: index of the vantage sample, -1 for leaves. */
+	private final int[] mVantage;
+	/** per node: median distance (L^n-norm, with root) to the vantage sample. */
+	private final double[] mRadius;
+	/** per node: inside child node or -1. leaves: start of their range in mOrder. */
+	private final int[] mInside;
+	/** per node: outside child node or -1. leaves: end of their range in mOrder. */
+	private final int[] mOutside;
+	private int mNodeCount = 0;
+	private final int mRoot;
+
+	/** distance computations done by queries since the last reset. */
+	private transient long mDistanceComputations = 0;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * Builds the tree.
+	 *
+	 * @param _features
+	 *            packed feature vectors, see {@link KnnClassifier}.
+	 * @param _sampleCount
+	 * @param _featureCount
+	 * @param _power
+	 *            the L^n-norm power n, must be at least 1.
+	 */
+	public VpTree(float[] _features, int _sampleCount, int _featureCount, double _power) {
+		if (_power < 1) {
+			throw new IllegalArgumentException("L^n-norms are only metrics for n >= 1.");
+		}
+		mPower = _power;
+		mFeatureCount = _featureCount;
+		mOrder = new int[_sampleCount];
+		for (int i = 0; i < _sampleCount; i++) {
+			mOrder[i] = i;
+		}
+		// each node consumes at least one sample
+		int maxNodes = Math.max(1, _sampleCount);
+		mVantage = new int[maxNodes];
+		mRadius = new double[maxNodes];
+		mInside = new int[maxNodes];
+		mOutside = new int[maxNodes];
+		DistanceMetric metric = DistanceMetrics.forLNormPower((float) _power);
+		mRoot = build(_features, metric, new double[_sampleCount], 0, _sampleCount, new Random(0));
+	}
+
+	private VpTree(double _power, int _featureCount, int[] _order, int[] _vantage, double[] _radius, int[] _inside,
+			int[] _outside, int _nodeCount, int _root) {
+		mPower = _power;
+		mFeatureCount = _featureCount;
+		mOrder = _order;
+		mVantage = _vantage;
+		mRadius = _radius;
+		mInside = _inside;
+		mOutside = _outside;
+		mNodeCount = _nodeCount;
+		mRoot = _root;
+	}
+
+	private int build(float[] _features, DistanceMetric _metric, double[] _distances, int _start, int _end, Random _random) {
+		if (_start >= _end) {
+			return -1;
+		}
+		int node = mNodeCount++;
+		if (_end - _start <= LEAF_SIZE) {
+			mVantage[node] = -1;
+			mInside[node] = _start;
+			mOutside[node] = _end;
+			return node;
+		}
+		// random vantage point, moved to the start of the range
+		swap(_distances, _start, _start + _random.nextInt(_end - _start));
+		int vantage = mOrder[_start];
+		int vantageOffset = vantage * mFeatureCount;
+		for (int i = _start + 1; i < _end; i++) {
+			_distances[i] = root(_metric.distance(_features, mOrder[i] * mFeatureCount, _features, vantageOffset,
+					mFeatureCount));
+		}
+		// split remaining samples at the median distance
+		int median = _start + 1 + (_end - _start - 1) / 2;
+		select(_distances, _start + 1, _end - 1, median);
+		mVantage[node] = vantage;
+		mRadius[node] = _distances[median];
+		mInside[node] = build(_features, _metric, _distances, _start + 1, median, _random);
+		mOutside[node] = build(_features, _metric, _distances, median, _end, _random);
+		return node;
+	}
+
+	/**
+	 * Quickselect: reorders [_left, _right] such that position _n holds the
+	 * element that would be there if the range was sorted, with smaller or
+	 * equal elements before and greater or equal elements after it.
+	 */
+	private void select(double[] _distances, int _left, int _right, int _n) {
+		while (_right > _left) {
+			double pivot = _distances[(_left + _right) >>> 1];
+			int i = _left;
+			int j = _right;
+			while (i <= j) {
+				while (_distances[i] < pivot) {
+					i++;
+				}
+				while (_distances[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(_distances, i, j);
+					i++;
+					j--;
+				}
+			}
+			if (_n <= j) {
+				_right = j;
+			} else if (_n >= i) {
+				_left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(double[] _distances, int _i, int _j) {
+		double d = _distances[_i];
+		_distances[_i] = _distances[_j];
+		_distances[_j] = d;
+		int o = mOrder[_i];
+		mOrder[_i] = mOrder[_j];
+		mOrder[_j] = o;
+	}
+
+	/**
+	 * @return true if this tree can answer queries using _metric on
+	 *         _featureCount features.
+	 */
+	public boolean supports(DistanceMetric _metric, int _featureCount) {
+		return _featureCount == mFeatureCount && _metric instanceof LNormDistance
+				&& ((LNormDistance) _metric).getPower() == mPower;
+	}
+
+	/**
+	 * Exact KNN search. Distances offered to _neighbourhood are those of
+	 * _metric (without root), just as for a linear scan.
+	 *
+	 * @param _features
+	 *            the packed feature vectors this tree was built on.
+	 * @param _query
+	 * @param _metric
+	 *            must be {@link #supports(DistanceMetric, int)}ed.
+	 * @param _neighbourhood
+	 *            gets filled with the K nearest samples.
+	 */
+	public void search(float[] _features, float[] _query, DistanceMetric _metric, KnnNeighbourhood _neighbourhood) {
+		search(mRoot, _features, _query, _metric, _neighbourhood);
+	}
+
+	private void search(int _node, float[] _features, float[] _query, DistanceMetric _metric, KnnNeighbourhood _neighbourhood) {
+		if (_node < 0) {
+			return;
+		}
+		if (mVantage[_node] < 0) {
+			// leaf: linear scan
+			for (int i = mInside[_node]; i < mOutside[_node]; i++) {
+				int sample = mOrder[i];
+				_neighbourhood.offer(sample, _metric.distance(_features, sample * mFeatureCount, _query, 0, mFeatureCount));
+			}
+			mDistanceComputations += mOutside[_node] - mInside[_node];
+			return;
+		}
+		int vantage = mVantage[_node];
+		double distance = _metric.distance(_features, vantage * mFeatureCount, _query, 0, mFeatureCount);
+		mDistanceComputations++;
+		_neighbourhood.offer(vantage, distance);
+		double queryDistance = root(distance);
+		double radius = mRadius[_node];
+		// visit the side the query lies on first, it most likely shrinks the
+		// search radius
+		if (queryDistance < radius) {
+			search(mInside[_node], _features, _query, _metric, _neighbourhood);
+			if (radius - queryDistance <= searchRadius(_neighbourhood)) {
+				search(mOutside[_node], _features, _query, _metric, _neighbourhood);
+			}
+		} else {
+			search(mOutside[_node], _features, _query, _metric, _neighbourhood);
+			if (queryDistance - radius <= searchRadius(_neighbourhood)) {
+				search(mInside[_node], _features, _query, _metric, _neighbourhood);
+			}
+		}
+	}
+
+	/**
+	 * @return the distance (with root) a sample must undercut to become a
+	 *         neighbour, plus some slack.
+	 */
+	private double searchRadius(KnnNeighbourhood _neighbourhood) {
+		double radius = root(_neighbourhood.getMaxDistance());
+		return radius + PRUNING_SLACK * Math.max(1, radius);
+	}
+
+	/**
+	 * @return the n-th root of an L^n distance without root.
+	 */
+	private double root(double _distance) {
+		if (mPower == 1) {
+			return _distance;
+		}
+		if (mPower == 2) {
+			return Math.sqrt(_distance);
+		}
+		return Math.pow(_distance, 1.0 / mPower);
+	}
+
+	/**
+	 * @return amount of distance computations done by queries since the last
+	 *         {@link #resetStatistics()}.
+	 */
+	public long getDistanceComputations() {
+		return mDistanceComputations;
+	}
+
+	public void resetStatistics() {
+		mDistanceComputations = 0;
+	}
+
+	public double getPower() {
+		return mPower;
+	}
+
+	/**
+	 * Stores the tree, see {@link #read(LittleEndianInput, int)}.
+	 */
+	public void write(LittleEndianOutput _out) {
+		_out.putDouble(mPower);
+		_out.putInt(mFeatureCount);
+		_out.putInt(mNodeCount);
+		_out.putInt(mRoot);
+		_out.putInts(mOrder);
+		_out.putInts(mVantage);
+		_out.putDoubles(mRadius);
+		_out.putInts(mInside);
+		_out.putInts(mOutside);
+	}
+
+	/**
+	 * @param _sampleCount
+	 *            amount of samples of the classifier the tree belongs to.
+	 * @return the tree stored by {@link #write(LittleEndianOutput)}.
+	 */
+	public static VpTree read(LittleEndianInput _in, int _sampleCount) throws IOException {
+		double power = _in.getDouble();
+		int featureCount = _in.getInt();
+		int nodeCount = _in.getInt();
+		int root = _in.getInt();
+		int[] order = _in.getInts();
+		int[] vantage = _in.getInts();
+		double[] radius = _in.getDoubles();
+		int[] inside = _in.getInts();
+		int[] outside = _in.getInts();
+		if (order == null || order.length != _sampleCount || vantage == null || radius == null || inside == null
+				|| outside == null || radius.length != vantage.length || inside.length != vantage.length
+				|| outside.length != vantage.length || nodeCount < 0 || nodeCount > vantage.length
+				|| root < -1 || root >= nodeCount) {
+			throw new IOException("invalid VP-tree.");
+		}
+		return new VpTree(power, featureCount, order, vantage, radius, inside, outside, nodeCount, root);
+	}
+
+	@Override
+	public String toString() {
+		return "VpTree [mPower=" + mPower + ", mFeatureCount=" + mFeatureCount + ", samples=" + mOrder.length + ", nodes="
+				+ mNodeCount + "]";
+	}
+}
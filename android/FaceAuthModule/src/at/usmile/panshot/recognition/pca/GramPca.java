@@ -0,0 +1,112 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Arrays;
+
+import at.usmile.tuple.GenericTuple3;
+
+/**
+ * PCA via the Gram matrix ("snapshot" method) for few samples with many
+ * features, as for faces: instead of the d x d covariance matrix, the n x n
+ * matrix G = X X^T of the mean-centred samples X gets decomposed. For an
+ * eigenvector v of G with eigenvalue l, X^T v / sqrt(l) is a unit
+ * eigenvector of the covariance with the same eigenvalue (up to 1/n), and the
+ * samples' projections onto it are sqrt(l) v. Costs O(n^2 d + n^3) instead
+ * of O(d^2 n + d^3), only the leading components get expanded to d
+ * features.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class GramPca {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	/** eigenvalues below this fraction of the largest one count as 0. */
+	private static final double RELATIVE_EIGENVALUE_TOLERANCE = 1e-10;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _samples
+	 *            packed samples, sample i occupies [i * _featureCount, (i + 1)
+	 *            * _featureCount). stays unchanged.
+	 * @param _sampleCount
+	 * @param _featureCount
+	 * @param _maxComponents
+	 *            amount of leading components to keep at most. less are kept
+	 *            if the samples span less dimensions.
+	 * @return in this order: the mean (_featureCount), the eigenvectors (k x
+	 *         _featureCount, one per row, sorted by decreasing variance) and
+	 *         the projections of the samples (_sampleCount x k).
+	 */
+	public static GenericTuple3<float[], float[], float[]> compute(float[] _samples, int _sampleCount, int _featureCount,
+			int _maxComponents) {
+		int n = _sampleCount;
+		int d = _featureCount;
+		// mean and centred samples
+		double[] meanSum = new double[d];
+		for (int i = 0; i < n; i++) {
+			for (int f = 0; f < d; f++) {
+				meanSum[f] += _samples[i * d + f];
+			}
+		}
+		float[] mean = new float[d];
+		for (int f = 0; f < d; f++) {
+			mean[f] = (float) (meanSum[f] / n);
+		}
+		float[] centred = new float[n * d];
+		for (int i = 0; i < n; i++) {
+			for (int f = 0; f < d; f++) {
+				centred[i * d + f] = _samples[i * d + f] - mean[f];
+			}
+		}
+		// Gram matrix
+		double[][] gram = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				double dot = 0;
+				for (int f = 0, oi = i * d, oj = j * d; f < d; f++) {
+					dot += centred[oi + f] * (double) centred[oj + f];
+				}
+				gram[i][j] = dot;
+				gram[j][i] = dot;
+			}
+		}
+		double[][] v = new double[n][n];
+		double[] eigenvalues = JacobiEigen.decompose(gram, v);
+		// components with (numerically) non-zero variance
+		int k = 0;
+		while (k < Math.min(n, _maxComponents) && eigenvalues[k] > 0
+				&& eigenvalues[k] > eigenvalues[0] * RELATIVE_EIGENVALUE_TOLERANCE) {
+			k++;
+		}
+		// expand to covariance eigenvectors: u = X^T v / sqrt(l)
+		float[] eigenvectors = new float[k * d];
+		double[] u = new double[d];
+		for (int c = 0; c < k; c++) {
+			Arrays.fill(u, 0);
+			for (int i = 0; i < n; i++) {
+				double weight = v[c][i];
+				for (int f = 0, oi = i * d; f < d; f++) {
+					u[f] += weight * centred[oi + f];
+				}
+			}
+			double scale = 1 / Math.sqrt(eigenvalues[c]);
+			for (int f = 0; f < d; f++) {
+				eigenvectors[c * d + f] = (float) (u[f] * scale);
+			}
+		}
+		// projections: sqrt(l) v
+		float[] projections = new float[n * k];
+		for (int c = 0; c < k; c++) {
+			double scale = Math.sqrt(eigenvalues[c]);
+			for (int i = 0; i < n; i++) {
+				projections[i * k + c] = (float) (v[c][i] * scale);
+			}
+		}
+		return new GenericTuple3<float[], float[], float[]>(mean, eigenvectors, projections);
+	}
+}
@@ -0,0 +1,182 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Streaming PCA by candid covariance-free incremental PCA (CCIPCA, Weng, Zhang
+ * and Hwang, 2003): samples get added one at a time and are not kept. Only the
+ * running mean and k unnormalised component estimates v_i are stored, with
+ * ||v_i|| estimating the variance along v_i. Each sample u updates
+ * v_i = (n - 1 - l) / n * v_i + (1 + l) / n * (u . v_i / ||v_i||) u and then
+ * gets deflated by v_i for the next component. The estimate itself takes
+ * O(k d) memory, independent of the amount of samples, and costs O(k d) per
+ * sample. Callers that project the samples afterwards still hold them.
+ * <p>
+ * Results are approximate, the leading components converge fastest.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class IncrementalPca {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	/**
+	 * amnesic parameter l: weights recent samples higher, which speeds up
+	 * convergence of the early, inaccurate estimates.
+	 */
+	private static final double AMNESIC = 2;
+	/** components below this fraction of the largest variance count as 0. */
+	private static final double RELATIVE_VARIANCE_TOLERANCE = 1e-10;
+
+	private final int mFeatureCount;
+	private final double[] mMean;
+	/** unnormalised component estimates, one per row, 0 until initialised. */
+	private final double[][] mComponents;
+	private final double[] mResidual;
+	private int mSampleCount = 0;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _featureCount
+	 *            amount of features per sample.
+	 * @param _maxComponents
+	 *            amount of leading components to estimate.
+	 */
+	public IncrementalPca(int _featureCount, int _maxComponents) {
+		if (_featureCount <= 0 || _maxComponents <= 0) {
+			throw new IllegalArgumentException("need positive feature and component counts, got " + _featureCount + " and "
+					+ _maxComponents + ".");
+		}
+		mFeatureCount = _featureCount;
+		mMean = new double[_featureCount];
+		mComponents = new double[Math.min(_maxComponents, _featureCount)][_featureCount];
+		mResidual = new double[_featureCount];
+	}
+
+	/**
+	 * Adds a sample, which can be reused afterwards.
+	 *
+	 * @param _samples
+	 *            packed samples, the sample occupies [_offset, _offset +
+	 *            featureCount).
+	 * @param _offset
+	 */
+	public synchronized void add(float[] _samples, int _offset) {
+		mSampleCount++;
+		int n = mSampleCount;
+		double[] u = mResidual;
+		for (int f = 0; f < mFeatureCount; f++) {
+			mMean[f] += (_samples[_offset + f] - mMean[f]) / n;
+			u[f] = _samples[_offset + f] - mMean[f];
+		}
+		// too strong amnesia makes the first updates negative
+		double amnesic = Math.min(AMNESIC, Math.max(0, n - 2));
+		double keep = (n - 1 - amnesic) / n;
+		double learn = (1 + amnesic) / n;
+		for (double[] v : mComponents) {
+			double norm = Math.sqrt(dot(v, v));
+			if (norm == 0) {
+				// the residual initialises the next component
+				System.arraycopy(u, 0, v, 0, mFeatureCount);
+				return;
+			}
+			double weight = learn * dot(u, v) / norm;
+			for (int f = 0; f < mFeatureCount; f++) {
+				v[f] = keep * v[f] + weight * u[f];
+			}
+			// deflate: remove the part along v for the next component
+			double vv = dot(v, v);
+			if (vv == 0) {
+				return;
+			}
+			double along = dot(u, v) / vv;
+			for (int f = 0; f < mFeatureCount; f++) {
+				u[f] -= along * v[f];
+			}
+		}
+	}
+
+	public int getSampleCount() {
+		return mSampleCount;
+	}
+
+	public int getFeatureCount() {
+		return mFeatureCount;
+	}
+
+	/**
+	 * @return the mean of all samples added so far.
+	 */
+	public synchronized float[] getMean() {
+		float[] mean = new float[mFeatureCount];
+		for (int f = 0; f < mFeatureCount; f++) {
+			mean[f] = (float) mMean[f];
+		}
+		return mean;
+	}
+
+	/**
+	 * @return the current eigenvector estimates (k x featureCount, one per
+	 *         row, sorted by decreasing variance), orthonormalised. less than
+	 *         the requested amount if the samples span less dimensions.
+	 */
+	public synchronized float[] getEigenvectors() {
+		final double[] variances = new double[mComponents.length];
+		Integer[] order = new Integer[mComponents.length];
+		for (int c = 0; c < mComponents.length; c++) {
+			variances[c] = Math.sqrt(dot(mComponents[c], mComponents[c]));
+			order[c] = c;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer _lhs, Integer _rhs) {
+				return Double.compare(variances[_rhs], variances[_lhs]);
+			}
+		});
+		// the estimates are only approximately orthogonal: Gram-Schmidt in
+		// order of decreasing variance
+		double[][] basis = new double[mComponents.length][];
+		int k = 0;
+		for (int c = 0; c < mComponents.length; c++) {
+			if (variances[order[c]] <= variances[order[0]] * RELATIVE_VARIANCE_TOLERANCE) {
+				break;
+			}
+			double[] vector = mComponents[order[c]].clone();
+			for (int prev = 0; prev < k; prev++) {
+				double along = dot(vector, basis[prev]);
+				for (int f = 0; f < mFeatureCount; f++) {
+					vector[f] -= along * basis[prev][f];
+				}
+			}
+			double norm = Math.sqrt(dot(vector, vector));
+			if (norm <= variances[order[c]] * 1e-6) {
+				continue;
+			}
+			for (int f = 0; f < mFeatureCount; f++) {
+				vector[f] /= norm;
+			}
+			basis[k++] = vector;
+		}
+		float[] eigenvectors = new float[k * mFeatureCount];
+		for (int c = 0; c < k; c++) {
+			for (int f = 0; f < mFeatureCount; f++) {
+				eigenvectors[c * mFeatureCount + f] = (float) basis[c][f];
+			}
+		}
+		return eigenvectors;
+	}
+
+	private static double dot(double[] _a, double[] _b) {
+		double dot = 0;
+		for (int i = 0; i < _a.length; i++) {
+			dot += _a[i] * _b[i];
+		}
+		return dot;
+	}
+}
@@ -0,0 +1,121 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Eigendecomposition of small symmetric matrices by cyclic Jacobi rotations.
+ * Each rotation zeroes one off-diagonal entry, sweeps over all entries get
+ * repeated until the off-diagonal part vanishes. Accurate and simple, costs
+ * O(n^3) per sweep - intended for matrices of up to a few hundred rows.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class JacobiEigen {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final int MAX_SWEEPS = 50;
+	/** off-diagonal energy, relative to the total energy, treated as 0. */
+	private static final double RELATIVE_TOLERANCE = 1e-24;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _matrix
+	 *            symmetric n x n matrix, stays unchanged.
+	 * @param _eigenvectors
+	 *            n x n, gets eigenvector i in row i (unit length).
+	 * @return the n eigenvalues, sorted descending. eigenvector i belongs to
+	 *         eigenvalue i.
+	 */
+	public static double[] decompose(double[][] _matrix, double[][] _eigenvectors) {
+		int n = _matrix.length;
+		double[][] a = new double[n][];
+		double[][] v = new double[n][n];
+		double total = 0;
+		for (int i = 0; i < n; i++) {
+			a[i] = _matrix[i].clone();
+			v[i][i] = 1;
+			for (int j = 0; j < n; j++) {
+				total += a[i][j] * a[i][j];
+			}
+		}
+		for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+			double off = 0;
+			for (int p = 0; p < n; p++) {
+				for (int q = p + 1; q < n; q++) {
+					off += a[p][q] * a[p][q];
+				}
+			}
+			if (off <= total * RELATIVE_TOLERANCE) {
+				break;
+			}
+			for (int p = 0; p < n; p++) {
+				for (int q = p + 1; q < n; q++) {
+					if (a[p][q] != 0) {
+						rotate(a, v, p, q);
+					}
+				}
+			}
+		}
+		// sort by eigenvalue
+		final double[] diagonal = new double[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			diagonal[i] = a[i][i];
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer _lhs, Integer _rhs) {
+				return Double.compare(diagonal[_rhs], diagonal[_lhs]);
+			}
+		});
+		double[] eigenvalues = new double[n];
+		for (int i = 0; i < n; i++) {
+			eigenvalues[i] = diagonal[order[i]];
+			for (int k = 0; k < n; k++) {
+				_eigenvectors[i][k] = v[k][order[i]];
+			}
+		}
+		return eigenvalues;
+	}
+
+	/**
+	 * Applies the rotation that zeroes a[p][q] to a (from both sides) and
+	 * accumulates it in v.
+	 */
+	private static void rotate(double[][] _a, double[][] _v, int _p, int _q) {
+		int n = _a.length;
+		double theta = (_a[_q][_q] - _a[_p][_p]) / (2 * _a[_p][_q]);
+		double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+		if (theta == 0) {
+			t = 1;
+		}
+		double c = 1 / Math.sqrt(t * t + 1);
+		double s = t * c;
+		for (int k = 0; k < n; k++) {
+			double akp = _a[k][_p];
+			double akq = _a[k][_q];
+			_a[k][_p] = c * akp - s * akq;
+			_a[k][_q] = s * akp + c * akq;
+		}
+		for (int k = 0; k < n; k++) {
+			double apk = _a[_p][k];
+			double aqk = _a[_q][k];
+			_a[_p][k] = c * apk - s * aqk;
+			_a[_q][k] = s * apk + c * aqk;
+		}
+		for (int k = 0; k < n; k++) {
+			double vkp = _v[k][_p];
+			double vkq = _v[k][_q];
+			_v[k][_p] = c * vkp - s * vkq;
+			_v[k][_q] = s * vkp + c * vkq;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
+
+/**
+ * A truncated eigenspace as classifiers keep it: the mean and the k leading
+ * eigenvectors, packed into contiguous float arrays. Projecting a sample
+ * costs k dot products of d features. Samples get centred on the fly and
+ * the dot products accumulate in double: x . e - mean . e over raw pixels
+ * would cancel most significant digits.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class PcaBasis implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private final int mFeatureCount;
+	private final int mComponentCount;
+	private final float[] mMean;
+	/** eigenvector c occupies [c * mFeatureCount, (c + 1) * mFeatureCount). */
+	private final float[] mEigenvectors;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _mean
+	 *            the mean, its length defines the amount of features d.
+	 * @param _eigenvectors
+	 *            packed eigenvectors, one per row, sorted by decreasing
+	 *            variance. only the first _componentCount rows get kept.
+	 * @param _componentCount
+	 *            amount of leading components k to keep.
+	 */
+	public PcaBasis(float[] _mean, float[] _eigenvectors, int _componentCount) {
+		mFeatureCount = _mean.length;
+		if (_componentCount < 0 || _componentCount * mFeatureCount > _eigenvectors.length) {
+			throw new IllegalArgumentException("cannot keep " + _componentCount + " components of "
+					+ _eigenvectors.length / Math.max(1, mFeatureCount) + ".");
+		}
+		mComponentCount = _componentCount;
+		mMean = _mean.clone();
+		mEigenvectors = new float[_componentCount * mFeatureCount];
+		System.arraycopy(_eigenvectors, 0, mEigenvectors, 0, mEigenvectors.length);
+	}
+
+	/**
+	 * Projects a sample into the eigenspace.
+	 *
+	 * @param _samples
+	 *            the sample occupies [_offset, _offset + featureCount).
+	 * @param _offset
+	 * @param _dst
+	 *            gets the componentCount projections at [_dstOffset, ...).
+	 * @param _dstOffset
+	 */
+	public void project(float[] _samples, int _offset, float[] _dst, int _dstOffset) {
+		for (int c = 0; c < mComponentCount; c++) {
+			double dot = 0;
+			for (int f = 0, e = c * mFeatureCount; f < mFeatureCount; f++, e++) {
+				dot += (_samples[_offset + f] - (double) mMean[f]) * mEigenvectors[e];
+			}
+			_dst[_dstOffset + c] = (float) dot;
+		}
+	}
+
+	/**
+	 * Projects 8 bit pixels (unsigned) into the eigenspace in a single pass
+	 * per block of 4 components: each pixel gets centred once per block and
+	 * feeds 4 independent sums, which keeps the pipeline busy.
+	 *
+	 * @param _pixels
+	 *            featureCount pixels.
+	 * @param _dst
+	 *            gets the componentCount projections at [_dstOffset, ...).
+	 * @param _dstOffset
+	 */
+	public void project(byte[] _pixels, float[] _dst, int _dstOffset) {
+		int d = mFeatureCount;
+		float[] mean = mMean;
+		float[] e = mEigenvectors;
+		int c = 0;
+		for (; c + 4 <= mComponentCount; c += 4) {
+			int e0 = c * d;
+			int e1 = e0 + d;
+			int e2 = e1 + d;
+			int e3 = e2 + d;
+			double dot0 = 0, dot1 = 0, dot2 = 0, dot3 = 0;
+			for (int f = 0; f < d; f++) {
+				double x = (_pixels[f] & 0xFF) - (double) mean[f];
+				dot0 += x * e[e0 + f];
+				dot1 += x * e[e1 + f];
+				dot2 += x * e[e2 + f];
+				dot3 += x * e[e3 + f];
+			}
+			_dst[_dstOffset + c] = (float) dot0;
+			_dst[_dstOffset + c + 1] = (float) dot1;
+			_dst[_dstOffset + c + 2] = (float) dot2;
+			_dst[_dstOffset + c + 3] = (float) dot3;
+		}
+		for (; c < mComponentCount; c++) {
+			double dot = 0;
+			for (int f = 0, ec = c * d; f < d; f++) {
+				dot += ((_pixels[f] & 0xFF) - (double) mean[f]) * e[ec + f];
+			}
+			_dst[_dstOffset + c] = (float) dot;
+		}
+	}
+
+	public int getFeatureCount() {
+		return mFeatureCount;
+	}
+
+	public int getComponentCount() {
+		return mComponentCount;
+	}
+
+	/**
+	 * @return the mean, must not be modified.
+	 */
+	public float[] getMean() {
+		return mMean;
+	}
+
+	/**
+	 * @return the packed k x d eigenvectors, must not be modified.
+	 */
+	public float[] getEigenvectors() {
+		return mEigenvectors;
+	}
+
+	/**
+	 * @return memory used by the basis' arrays.
+	 */
+	public long getMemoryBytes() {
+		return 4L * (mMean.length + mEigenvectors.length);
+	}
+
+	/**
+	 * Stores the mean and eigenvectors, see {@link #read(LittleEndianInput)}.
+	 */
+	public void write(LittleEndianOutput _out) {
+		_out.putInt(mComponentCount);
+		_out.putFloats(mMean);
+		_out.putFloats(mEigenvectors);
+	}
+
+	/**
+	 * @return the basis stored by {@link #write(LittleEndianOutput)}.
+	 */
+	public static PcaBasis read(LittleEndianInput _in) throws IOException {
+		int componentCount = _in.getInt();
+		float[] mean = _in.getFloats();
+		float[] eigenvectors = _in.getFloats();
+		if (mean == null || eigenvectors == null || componentCount < 0
+				|| (long) componentCount * mean.length != eigenvectors.length) {
+			throw new IOException("invalid PCA basis.");
+		}
+		return new PcaBasis(mean, eigenvectors, componentCount);
+	}
+}
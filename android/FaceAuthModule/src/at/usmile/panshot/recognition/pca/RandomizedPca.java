@@ -0,0 +1,187 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import at.usmile.tuple.GenericTuple3;
+
+/**
+ * Truncated PCA by randomised SVD (Halko, Martinsson and Tropp, 2011): the
+ * range of the mean-centred samples X gets sampled by multiplying X with a
+ * few random vectors, refined by power iterations (X X^T)^q and
+ * orthonormalised to Q. The small matrix B = Q^T X then gets decomposed
+ * exactly via its Gram matrix B B^T. Costs O(n d (k + p) (2q + 2)) - linear
+ * in the amount of kept components k rather than in min(n, d).
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class RandomizedPca {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	/** additional random vectors sampled to capture the range accurately. */
+	private static final int OVERSAMPLING = 10;
+	/** power iterations, sharpen the spectrum for slowly decaying variances. */
+	private static final int POWER_ITERATIONS = 2;
+	/** singular values below this fraction of the largest one count as 0. */
+	private static final double RELATIVE_SINGULAR_VALUE_TOLERANCE = 1e-5;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * Same parameters and result as
+	 * {@link GramPca#compute(float[], int, int, int)}. Results are
+	 * approximate but deterministic.
+	 */
+	public static GenericTuple3<float[], float[], float[]> compute(float[] _samples, int _sampleCount, int _featureCount,
+			int _maxComponents) {
+		int n = _sampleCount;
+		int d = _featureCount;
+		// mean and centred samples
+		double[] meanSum = new double[d];
+		for (int i = 0; i < n; i++) {
+			for (int f = 0; f < d; f++) {
+				meanSum[f] += _samples[i * d + f];
+			}
+		}
+		float[] mean = new float[d];
+		for (int f = 0; f < d; f++) {
+			mean[f] = (float) (meanSum[f] / n);
+		}
+		float[] x = new float[n * d];
+		for (int i = 0; i < n; i++) {
+			for (int f = 0; f < d; f++) {
+				x[i * d + f] = _samples[i * d + f] - mean[f];
+			}
+		}
+		int rank = Math.min(_maxComponents, Math.min(n, d));
+		int l = Math.min(rank + OVERSAMPLING, Math.min(n, d));
+
+		// range finder: columns of Q (n entries each) span X * omega
+		Random random = new Random(0);
+		double[][] omega = new double[l][d];
+		for (int c = 0; c < l; c++) {
+			for (int f = 0; f < d; f++) {
+				omega[c][f] = random.nextGaussian();
+			}
+		}
+		double[][] q = new double[l][n];
+		multiply(x, n, d, omega, q);
+		orthonormalize(q);
+		double[][] z = new double[l][d];
+		for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+			multiplyTransposed(x, n, d, q, z);
+			orthonormalize(z);
+			multiply(x, n, d, z, q);
+			orthonormalize(q);
+		}
+
+		// B = Q^T X (l x d), decomposed via B B^T = W S^2 W^T
+		double[][] b = new double[l][d];
+		multiplyTransposed(x, n, d, q, b);
+		double[][] gram = new double[l][l];
+		for (int i = 0; i < l; i++) {
+			for (int j = i; j < l; j++) {
+				double dot = 0;
+				for (int f = 0; f < d; f++) {
+					dot += b[i][f] * b[j][f];
+				}
+				gram[i][j] = dot;
+				gram[j][i] = dot;
+			}
+		}
+		double[][] w = new double[l][l];
+		double[] eigenvalues = JacobiEigen.decompose(gram, w);
+		int k = 0;
+		while (k < rank && eigenvalues[k] > 0
+				&& Math.sqrt(eigenvalues[k]) > Math.sqrt(eigenvalues[0]) * RELATIVE_SINGULAR_VALUE_TOLERANCE) {
+			k++;
+		}
+		// right singular vectors v = B^T w / s, projections X v = Q w s
+		float[] eigenvectors = new float[k * d];
+		float[] projections = new float[n * k];
+		for (int c = 0; c < k; c++) {
+			double s = Math.sqrt(eigenvalues[c]);
+			for (int f = 0; f < d; f++) {
+				double v = 0;
+				for (int r = 0; r < l; r++) {
+					v += b[r][f] * w[c][r];
+				}
+				eigenvectors[c * d + f] = (float) (v / s);
+			}
+			for (int i = 0; i < n; i++) {
+				double p = 0;
+				for (int r = 0; r < l; r++) {
+					p += q[r][i] * w[c][r];
+				}
+				projections[i * k + c] = (float) (p * s);
+			}
+		}
+		return new GenericTuple3<float[], float[], float[]>(mean, eigenvectors, projections);
+	}
+
+	/**
+	 * _dst[c] = X * _vectors[c] for packed n x d X.
+	 */
+	private static void multiply(float[] _x, int _n, int _d, double[][] _vectors, double[][] _dst) {
+		for (int c = 0; c < _vectors.length; c++) {
+			double[] vector = _vectors[c];
+			for (int i = 0; i < _n; i++) {
+				double dot = 0;
+				for (int f = 0, offset = i * _d; f < _d; f++) {
+					dot += _x[offset + f] * vector[f];
+				}
+				_dst[c][i] = dot;
+			}
+		}
+	}
+
+	/**
+	 * _dst[c] = X^T * _vectors[c] for packed n x d X.
+	 */
+	private static void multiplyTransposed(float[] _x, int _n, int _d, double[][] _vectors, double[][] _dst) {
+		for (int c = 0; c < _vectors.length; c++) {
+			double[] vector = _vectors[c];
+			double[] dst = _dst[c];
+			Arrays.fill(dst, 0);
+			for (int i = 0; i < _n; i++) {
+				double weight = vector[i];
+				for (int f = 0, offset = i * _d; f < _d; f++) {
+					dst[f] += weight * _x[offset + f];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Modified Gram-Schmidt on the rows of _vectors. Rows that are linearly
+	 * dependent on previous ones become 0.
+	 */
+	private static void orthonormalize(double[][] _vectors) {
+		for (int c = 0; c < _vectors.length; c++) {
+			double[] vector = _vectors[c];
+			for (int prev = 0; prev < c; prev++) {
+				double[] other = _vectors[prev];
+				double dot = 0;
+				for (int i = 0; i < vector.length; i++) {
+					dot += vector[i] * other[i];
+				}
+				for (int i = 0; i < vector.length; i++) {
+					vector[i] -= dot * other[i];
+				}
+			}
+			double norm = 0;
+			for (double v : vector) {
+				norm += v * v;
+			}
+			norm = Math.sqrt(norm);
+			for (int i = 0; i < vector.length; i++) {
+				vector[i] = norm > 1e-12 ? vector[i] / norm : 0;
+			}
+		}
+	}
+}
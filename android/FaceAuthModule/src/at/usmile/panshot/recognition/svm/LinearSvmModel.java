@@ -0,0 +1,252 @@
+package at.usmile.panshot.recognition.svm;
+
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+
+/**
+ * Dense form of a linear-kernel libsvm classification model. For a linear
+ * kernel, the one-vs-one decision function of each pair of classes sums up
+ * coef * (sv . x) over its support vectors, which equals w . x with w being
+ * the coef-weighted sum of the support vectors. This model stores one such
+ * weight vector and bias per pair, so predicting costs one dot product per
+ * pair instead of one per support vector. Probabilities get computed from the
+ * decision values the same way as libsvm does (Platt sigmoid per pair,
+ * combined by pairwise coupling).
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class LinearSvmModel {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	/** lower bound of pairwise probabilities, as in libsvm. */
+	private static final double MIN_PROBABILITY = 1e-7;
+
+	private final int mClassCount;
+	/** weight vectors are defined for feature indices [0, mFeatureCount). */
+	private final int mFeatureCount;
+	/**
+	 * weight vectors of all pairs (i, j), i < j, in libsvm order, packed: pair
+	 * p occupies [p * mFeatureCount, (p + 1) * mFeatureCount).
+	 */
+	private final double[] mWeights;
+	/** per pair: the bias (-rho). */
+	private final double[] mBias;
+	/** per pair: Platt sigmoid parameters. */
+	private final double[] mProbA;
+	private final double[] mProbB;
+	/** per class: its label. */
+	private final int[] mLabels;
+
+	/**
+	 * reusable buffers of {@link #predictProbability(double[], int, double[])}
+	 * , which therefore must not run concurrently.
+	 */
+	private final double[][] mPairwise;
+	private final double[][] mQ;
+	private final double[] mQp;
+
+	// ================================================================================================================
+	// METHODS
+
+	private LinearSvmModel(int _classCount, int _featureCount, double[] _weights, double[] _bias, double[] _probA,
+			double[] _probB, int[] _labels) {
+		mClassCount = _classCount;
+		mFeatureCount = _featureCount;
+		mWeights = _weights;
+		mBias = _bias;
+		mProbA = _probA;
+		mProbB = _probB;
+		mLabels = _labels;
+		mPairwise = new double[_classCount][_classCount];
+		mQ = new double[_classCount][_classCount];
+		mQp = new double[_classCount];
+	}
+
+	/**
+	 * Folds the support vectors of a trained model into dense weight vectors.
+	 *
+	 * @param _model
+	 * @return the dense model or null if _model is not a linear-kernel
+	 *         classification model with probability information.
+	 */
+	public static LinearSvmModel compile(svm_model _model) {
+		if (_model == null || _model.param.kernel_type != svm_parameter.LINEAR
+				|| (_model.param.svm_type != svm_parameter.C_SVC && _model.param.svm_type != svm_parameter.NU_SVC)) {
+			return null;
+		}
+		int classCount = _model.nr_class;
+		int pairCount = classCount * (classCount - 1) / 2;
+		if (pairCount > 0 && (_model.probA == null || _model.probB == null)) {
+			return null;
+		}
+		// dimension: highest feature index used by any support vector
+		int featureCount = 0;
+		for (int sv = 0; sv < _model.l; sv++) {
+			for (int n = 0; n < _model.SV[sv].length; n++) {
+				if (_model.SV[sv][n].index < 0) {
+					return null;
+				}
+				featureCount = Math.max(featureCount, _model.SV[sv][n].index + 1);
+			}
+		}
+		// support vectors of class i start at start[i]
+		int[] start = new int[classCount];
+		for (int i = 1; i < classCount; i++) {
+			start[i] = start[i - 1] + _model.nSV[i - 1];
+		}
+		double[] weights = new double[pairCount * featureCount];
+		double[] bias = new double[pairCount];
+		int pair = 0;
+		for (int i = 0; i < classCount; i++) {
+			for (int j = i + 1; j < classCount; j++) {
+				int offset = pair * featureCount;
+				// see libsvm's svm_predict_values
+				addSupportVectors(_model, _model.sv_coef[j - 1], start[i], _model.nSV[i], weights, offset);
+				addSupportVectors(_model, _model.sv_coef[i], start[j], _model.nSV[j], weights, offset);
+				bias[pair] = -_model.rho[pair];
+				pair++;
+			}
+		}
+		return new LinearSvmModel(classCount, featureCount, weights, bias, pairCount > 0 ? _model.probA.clone()
+				: new double[0], pairCount > 0 ? _model.probB.clone() : new double[0], _model.label.clone());
+	}
+
+	private static void addSupportVectors(svm_model _model, double[] _coef, int _start, int _count, double[] _weights,
+			int _offset) {
+		for (int sv = _start; sv < _start + _count; sv++) {
+			double coef = _coef[sv];
+			for (int n = 0; n < _model.SV[sv].length; n++) {
+				_weights[_offset + _model.SV[sv][n].index] += coef * _model.SV[sv][n].value;
+			}
+		}
+	}
+
+	/**
+	 * Same as libsvm's svm_predict_probability. Allocates nothing.
+	 *
+	 * @param _features
+	 *            dense feature vector, feature i at index i. features beyond
+	 *            {@link #getFeatureCount()} are ignored.
+	 * @param _length
+	 *            amount of features in _features.
+	 * @param _probabilities
+	 *            gets the probability of each class, in class order (see
+	 *            {@link #getLabels()}). needs at least
+	 *            {@link #getClassCount()} entries.
+	 * @return the label of the most probable class.
+	 */
+	public int predictProbability(double[] _features, int _length, double[] _probabilities) {
+		int length = Math.min(_length, mFeatureCount);
+		double[][] pairwise = mPairwise;
+		int pair = 0;
+		for (int i = 0; i < mClassCount; i++) {
+			for (int j = i + 1; j < mClassCount; j++) {
+				double decision = mBias[pair];
+				int offset = pair * mFeatureCount;
+				for (int f = 0; f < length; f++) {
+					decision += mWeights[offset + f] * _features[f];
+				}
+				double p = sigmoidPredict(decision, mProbA[pair], mProbB[pair]);
+				pairwise[i][j] = Math.min(Math.max(p, MIN_PROBABILITY), 1 - MIN_PROBABILITY);
+				pairwise[j][i] = 1 - pairwise[i][j];
+				pair++;
+			}
+		}
+		multiclassProbability(mClassCount, pairwise, _probabilities, mQ, mQp);
+		int mostProbable = 0;
+		for (int i = 1; i < mClassCount; i++) {
+			if (_probabilities[i] > _probabilities[mostProbable]) {
+				mostProbable = i;
+			}
+		}
+		return mLabels[mostProbable];
+	}
+
+	/**
+	 * Same as libsvm's sigmoid_predict.
+	 */
+	private static double sigmoidPredict(double _decisionValue, double _a, double _b) {
+		double fApB = _decisionValue * _a + _b;
+		// 1-p used later; avoid catastrophic cancellation
+		if (fApB >= 0) {
+			return Math.exp(-fApB) / (1.0 + Math.exp(-fApB));
+		} else {
+			return 1.0 / (1 + Math.exp(fApB));
+		}
+	}
+
+	/**
+	 * Same as libsvm's multiclass_probability: pairwise coupling (method 2 of
+	 * Wu, Lin and Weng, 2004). _q and _qp are working memory of size _k x _k
+	 * and _k.
+	 */
+	private static void multiclassProbability(int _k, double[][] _r, double[] _p, double[][] _q, double[] _qp) {
+		int maxIterations = Math.max(100, _k);
+		double[][] q = _q;
+		double[] qp = _qp;
+		double eps = 0.005 / _k;
+		for (int t = 0; t < _k; t++) {
+			_p[t] = 1.0 / _k;
+			q[t][t] = 0;
+			for (int j = 0; j < t; j++) {
+				q[t][t] += _r[j][t] * _r[j][t];
+				q[t][j] = q[j][t];
+			}
+			for (int j = t + 1; j < _k; j++) {
+				q[t][t] += _r[j][t] * _r[j][t];
+				q[t][j] = -_r[j][t] * _r[t][j];
+			}
+		}
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			// stopping condition, recalculate QP,pQP for numerical accuracy
+			double pQp = 0;
+			for (int t = 0; t < _k; t++) {
+				qp[t] = 0;
+				for (int j = 0; j < _k; j++) {
+					qp[t] += q[t][j] * _p[j];
+				}
+				pQp += _p[t] * qp[t];
+			}
+			double maxError = 0;
+			for (int t = 0; t < _k; t++) {
+				double error = Math.abs(qp[t] - pQp);
+				if (error > maxError) {
+					maxError = error;
+				}
+			}
+			if (maxError < eps) {
+				break;
+			}
+			for (int t = 0; t < _k; t++) {
+				double diff = (-qp[t] + pQp) / q[t][t];
+				_p[t] += diff;
+				pQp = (pQp + diff * (diff * q[t][t] + 2 * qp[t])) / (1 + diff) / (1 + diff);
+				for (int j = 0; j < _k; j++) {
+					qp[j] = (qp[j] + diff * q[t][j]) / (1 + diff);
+					_p[j] /= (1 + diff);
+				}
+			}
+		}
+	}
+
+	public int getClassCount() {
+		return mClassCount;
+	}
+
+	public int getFeatureCount() {
+		return mFeatureCount;
+	}
+
+	public int[] getLabels() {
+		return mLabels;
+	}
+
+	@Override
+	public String toString() {
+		return "LinearSvmModel [mClassCount=" + mClassCount + ", mFeatureCount=" + mFeatureCount + "]";
+	}
+}
@@ -1,14 +1,17 @@
 package at.usmile.panshot.recognition.svm;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import libsvm.svm;
 import libsvm.svm_model;
@@ -16,15 +19,18 @@ import libsvm.svm_node;
 import libsvm.svm_parameter;
 import libsvm.svm_problem;
 
-import org.opencv.core.Mat;
+import org.opencv.core.CvType;
 
 import android.util.Log;
 import at.usmile.panshot.PanshotImage;
 import at.usmile.panshot.User;
 import at.usmile.panshot.recognition.FaceClassifier;
 import at.usmile.panshot.recognition.TrainingData;
+import at.usmile.panshot.recognition.pca.PcaBasis;
+import at.usmile.panshot.util.ConcurrencyUtil;
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
 import at.usmile.panshot.util.PCAUtil;
-import at.usmile.panshot.util.PanshotUtil;
 import at.usmile.panshot.util.RecognitionUtil;
 import at.usmile.tuple.GenericTuple2;
 
@@ -38,13 +44,30 @@ import at.usmile.tuple.GenericTuple2;
  * @version 1
  */
 public class SvmClassifier implements FaceClassifier, Serializable {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 4L;
+
+	/** Supported SVM kernels. */
+	public static enum KernelType {
+		LINEAR, RBF
+	}
 
 	// ================================================================================================================
 	// MEMBERS
 
 	private static final String FILE_PREFIX = "svm";
 
+	/** cache size used if the problem size is unknown (libsvm's default). */
+	private static final double DEFAULT_CACHE_SIZE_MB = 100;
+	/** minimum kernel cache size. */
+	private static final double MIN_CACHE_SIZE_MB = 1;
+	/** fraction of the currently free heap the kernel cache may use. */
+	private static final double CACHE_SIZE_HEAP_FRACTION = 0.25;
+	/**
+	 * galleries up to this size get trained on a precomputed kernel matrix if
+	 * it has less entries than the feature vectors.
+	 */
+	private static final int PRECOMPUTED_KERNEL_MAX_SAMPLES = 500;
+
 	/** The angle index this classifier covers (e.g. 0 = frontal) */
 	private Integer mClassifierIndex = null;
 
@@ -57,11 +80,52 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 	/** the actual SVM classifier. null if not trained yet. */
 	private svm_model mSvmModel = null;
 
-	/** PCA: the mean of all pixels of training images. null if PCA is not used. */
-	private Mat mPcaMean = null;
+	/**
+	 * dense form of {@link #mSvmModel} used for prediction. null if the model
+	 * cannot be compiled (e.g. non-linear kernel).
+	 */
+	private LinearSvmModel mLinearModel = null;
 
-	/** PCA: the eigenvectors of the training images. null if PCA is not used. */
-	private Mat mPcaEigenvectors = null;
+	/**
+	 * reusable buffers for feature extraction and prediction. training and
+	 * classification of the same classifier must therefore not run
+	 * concurrently.
+	 */
+	private transient double[] mFeatureBuffer;
+	private transient float[] mFloatBuffer;
+	/** PCA: raw pixels of the 8 bit face that gets projected. */
+	private transient byte[] mPixelBuffer;
+	/** PCA: features of a face that is not 8 bit and gets projected. */
+	private transient float[] mPixelFeatureBuffer;
+	private transient svm_node[] mNodeBuffer;
+	private transient double[] mProbabilityBuffer;
+
+	private KernelType mKernelType = KernelType.LINEAR;
+	/** SVM parameter C, tuned by the parameter search if enabled. */
+	private double mC = 1;
+	/** RBF kernel parameter gamma, tuned by the parameter search if enabled. */
+	private double mGamma = 0.5;
+	/**
+	 * if the next training searches C (and gamma) by cross-validation instead
+	 * of using the current values.
+	 */
+	private transient boolean mSearchParameters = false;
+
+	/**
+	 * feature vectors the model got trained on, packed row by row: sample i
+	 * occupies [i * mTrainingFeatureCount, (i + 1) * mTrainingFeatureCount).
+	 * kept for training the pairs of users added later.
+	 */
+	private float[] mTrainingFeatures = null;
+	private int mTrainingFeatureCount = 0;
+	/** per training sample: index of its user in {@link #mUsers}. */
+	private int[] mTrainingLabels = null;
+
+	/**
+	 * PCA: mean and eigenvectors of the training images, truncated to the
+	 * components the model uses. null if PCA is not used.
+	 */
+	private PcaBasis mPcaBasis = null;
 
 	// ================================================================================================================
 	// METHODS
@@ -91,17 +155,18 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 				throw new RuntimeException("Not all training images contain training data (user information).");
 			}
 		}
-		// PCA
+		// PCA: keep only the components the model uses
+		mPcaBasis = null;
 		if (_usePca) {
-			mPcaMean = _trainingData.pcaMean;
-			mPcaEigenvectors = _trainingData.pcaEigenvectors;
+			mPcaBasis = PCAUtil.toPcaBasis(_trainingData.pcaMean, _trainingData.pcaEigenvectors, _pcaAmountOfFeatures);
 		}
 
 		// create a new svm-problem for all images of the current angel
+		int sampleCount = _trainingData.images.size();
 		svm_problem svmProblem = new svm_problem();
-		svmProblem.x = new svm_node[_trainingData.images.size()][];
-		svmProblem.y = new double[_trainingData.images.size()];
-		svmProblem.l = _trainingData.images.size();
+		svmProblem.y = new double[sampleCount];
+		svmProblem.l = sampleCount;
+		double[][] features = new double[sampleCount][];
 
 		// assign images to classifier
 		for (int imageNr = 0; imageNr < _trainingData.images.size(); imageNr++) {
@@ -112,50 +177,340 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 			}
 			Log.i("SVM", "train next image - userId: " + user.getId() + " name: " + user.getName());
 
-			if (!_usePca) {
-				// use pixel features directly
-				// get the pixel data from the detected face data
-				double[] features = RecognitionUtil.transformImageToFeatureVector(panshotImage.grayFace);
-				// create a node value for every pixel
-				svmProblem.x[imageNr] = new svm_node[features.length];
-				for (int featureNr = 0; featureNr < features.length; featureNr++) {
-					svm_node node = new svm_node();
-					node.index = featureNr;
-					node.value = features[featureNr];
-					svmProblem.x[imageNr][featureNr] = node;
-				}
-			} else {
-				// use PCA transformed values of pixel values
-				// create a node value for every pixel
-				svmProblem.x[imageNr] = new svm_node[Math.min(panshotImage.pcaFace.cols(), _pcaAmountOfFeatures)];
-				for (int featureNr = 0; featureNr < panshotImage.pcaFace.cols() && featureNr < _pcaAmountOfFeatures; featureNr++) {
-					svm_node node = new svm_node();
-					node.index = featureNr;
-					double[] d = panshotImage.pcaFace.get(0, featureNr);
-					node.value = d[0];
-					svmProblem.x[imageNr][featureNr] = node;
-				}
-			}
+			// pixel features or PCA transformed values of pixel values
+			int featureCount = extractFeatures(panshotImage, _usePca, _pcaAmountOfFeatures);
+			features[imageNr] = Arrays.copyOf(mFeatureBuffer, featureCount);
 			// save the classId from the current user to be able to
 			// identify the user in the prediction results
 			int userIndex = mUsers.indexOf(user);
 			svmProblem.y[imageNr] = userIndex;
 		}
 
+		// small galleries: the kernel matrix is smaller than the features. it
+		// is shared by the parameter search and training
+		boolean precomputed = sampleCount <= PRECOMPUTED_KERNEL_MAX_SAMPLES && sampleCount < features[0].length;
+		double[][] gram = null;
+		if (precomputed || mSearchParameters && sampleCount <= PRECOMPUTED_KERNEL_MAX_SAMPLES) {
+			gram = SvmParameterSearch.gramMatrix(features);
+		}
+		if (mSearchParameters) {
+			if (gram != null) {
+				GenericTuple2<Double, Double> parameters = SvmParameterSearch.search(gram, svmProblem.y,
+						getSvmParams(sampleCount));
+				mC = parameters.value1;
+				mGamma = parameters.value2;
+			} else {
+				Log.w("SVM", "too many samples (" + sampleCount + ") for parameter search, using C=" + mC + ", gamma="
+						+ mGamma);
+			}
+		}
+		svm_parameter params = getSvmParams(sampleCount);
+		int kernelType = params.kernel_type;
+		if (precomputed) {
+			svmProblem.x = SvmParameterSearch.precomputedRows(gram, kernelType, params.gamma);
+			params.kernel_type = svm_parameter.PRECOMPUTED;
+		} else {
+			// libsvm needs a node per feature
+			svmProblem.x = new svm_node[sampleCount][];
+			for (int imageNr = 0; imageNr < sampleCount; imageNr++) {
+				svmProblem.x[imageNr] = toNodes(features[imageNr]);
+			}
+		}
+		Log.d("SVM", "training " + sampleCount + " samples, precomputed kernel: " + precomputed + ", cache: "
+				+ params.cache_size + " MB");
+
 		// train the classifier with all the images from the current angel
-		mSvmModel = svm.svm_train(svmProblem, getSvmParams());
+		mSvmModel = svm.svm_train(svmProblem, params);
+		if (precomputed) {
+			restoreSupportVectors(mSvmModel, features, kernelType);
+		}
+		mLinearModel = LinearSvmModel.compile(mSvmModel);
+
+		// keep training vectors for incremental updates
+		mTrainingFeatureCount = features[0].length;
+		mTrainingFeatures = new float[sampleCount * mTrainingFeatureCount];
+		mTrainingLabels = new int[sampleCount];
+		for (int imageNr = 0; imageNr < sampleCount; imageNr++) {
+			for (int featureNr = 0; featureNr < mTrainingFeatureCount; featureNr++) {
+				mTrainingFeatures[imageNr * mTrainingFeatureCount + featureNr] = (float) features[imageNr][featureNr];
+			}
+			mTrainingLabels[imageNr] = (int) svmProblem.y[imageNr];
+		}
+	}
+
+	/**
+	 * @return true if users can be added or removed without retraining, which
+	 *         needs a trained model and its training vectors.
+	 */
+	public boolean isIncrementallyUpdatable() {
+		return mSvmModel != null && mTrainingFeatures != null;
+	}
+
+	/**
+	 * Adds a new user without retraining the existing pairs of users: only
+	 * the binary classifiers of the new user against each existing user get
+	 * trained (in parallel) and merged into the one-vs-one model, see
+	 * {@link SvmModelUpdate}. Images get projected into the existing
+	 * eigenspace when using PCA. C and gamma stay as they are.
+	 * 
+	 * @param _images
+	 *            images of a single user unknown to this classifier.
+	 * @param _usePca
+	 *            same as for training.
+	 * @param _pcaAmountOfFeatures
+	 *            same as for training.
+	 */
+	public void addUser(List<PanshotImage> _images, boolean _usePca, int _pcaAmountOfFeatures) {
+		if (!isIncrementallyUpdatable()) {
+			throw new RuntimeException("Classifier has no model or training vectors to update.");
+		}
+		if (_images.isEmpty()) {
+			return;
+		}
+		User user = _images.get(0).rec == null ? null : _images.get(0).rec.user;
+		for (PanshotImage i : _images) {
+			if (i.rec == null || i.rec.user == null || !i.rec.user.equals(user)) {
+				throw new RuntimeException("All images have to contain user information of the same user.");
+			}
+		}
+		if (mUsers.contains(user)) {
+			throw new RuntimeException("User " + user + " is already known, remove the user first.");
+		}
+		if (_usePca && mPcaBasis == null) {
+			throw new RuntimeException("Cannot project data into Eigenspace if the mean or eigenvalue matrix are null.");
+		}
+		// features of the new samples, nodes get shared by all pairs
+		int addedCount = _images.size();
+		float[] added = new float[addedCount * mTrainingFeatureCount];
+		final svm_node[][] addedNodes = new svm_node[addedCount][];
+		for (int imageNr = 0; imageNr < addedCount; imageNr++) {
+			PanshotImage image = _images.get(imageNr);
+			if (_usePca && image.pcaFace == null) {
+				image.pcaFace = PCAUtil.pcaProject(image, mPcaBasis);
+			}
+			int featureCount = extractFeatures(image, _usePca, _pcaAmountOfFeatures);
+			if (featureCount != mTrainingFeatureCount) {
+				throw new RuntimeException("Got " + featureCount + " features instead of " + mTrainingFeatureCount + ".");
+			}
+			addedNodes[imageNr] = toNodes(Arrays.copyOf(mFeatureBuffer, featureCount));
+			for (int featureNr = 0; featureNr < featureCount; featureNr++) {
+				added[imageNr * featureCount + featureNr] = (float) mFeatureBuffer[featureNr];
+			}
+		}
+		// one binary classifier per existing user
+		final int newLabel = mUsers.size();
+		Map<Integer, Callable<svm_model>> tasks = new HashMap<Integer, Callable<svm_model>>();
+		for (int classNr = 0; classNr < mSvmModel.nr_class; classNr++) {
+			final int label = mSvmModel.label[classNr];
+			tasks.put(classNr, new Callable<svm_model>() {
+				@Override
+				public svm_model call() {
+					return trainPair(label, newLabel, addedNodes);
+				}
+			});
+		}
+		List<svm_model> binaryModels = new ArrayList<svm_model>(ConcurrencyUtil.invokeAll(tasks).values());
+		mSvmModel = SvmModelUpdate.addClass(mSvmModel, newLabel, binaryModels);
+		mLinearModel = LinearSvmModel.compile(mSvmModel);
+		mUsers.add(user);
+
+		int sampleCount = mTrainingLabels.length;
+		mTrainingFeatures = Arrays.copyOf(mTrainingFeatures, (sampleCount + addedCount) * mTrainingFeatureCount);
+		System.arraycopy(added, 0, mTrainingFeatures, sampleCount * mTrainingFeatureCount, added.length);
+		mTrainingLabels = Arrays.copyOf(mTrainingLabels, sampleCount + addedCount);
+		Arrays.fill(mTrainingLabels, sampleCount, sampleCount + addedCount, newLabel);
+		Log.d("SVM", "added user " + user + " with " + addedCount + " samples, trained " + binaryModels.size() + " pairs");
+	}
+
+	/**
+	 * Trains the binary classifier between the training samples of _label
+	 * (first class) and the new samples (_newLabel).
+	 */
+	private svm_model trainPair(int _label, int _newLabel, svm_node[][] _added) {
+		int count = 0;
+		for (int l : mTrainingLabels) {
+			if (l == _label) {
+				count++;
+			}
+		}
+		svm_problem problem = new svm_problem();
+		problem.l = count + _added.length;
+		problem.x = new svm_node[problem.l][];
+		problem.y = new double[problem.l];
+		double[] features = new double[mTrainingFeatureCount];
+		for (int sampleNr = 0, i = 0; sampleNr < mTrainingLabels.length; sampleNr++) {
+			if (mTrainingLabels[sampleNr] != _label) {
+				continue;
+			}
+			for (int featureNr = 0; featureNr < mTrainingFeatureCount; featureNr++) {
+				features[featureNr] = mTrainingFeatures[sampleNr * mTrainingFeatureCount + featureNr];
+			}
+			problem.x[i] = toNodes(features);
+			problem.y[i] = _label;
+			i++;
+		}
+		for (int i = 0; i < _added.length; i++) {
+			problem.x[count + i] = _added[i];
+			problem.y[count + i] = _newLabel;
+		}
+		return svm.svm_train(problem, getSvmParams(problem.l));
+	}
+
+	/**
+	 * Removes a user without retraining: drops the pairs of the user from the
+	 * one-vs-one model. Users after the removed one move down by one index.
+	 * 
+	 * @param _user
+	 * @return false if the user is not known to this classifier.
+	 */
+	public boolean removeUser(User _user) {
+		int removedLabel = mUsers.indexOf(_user);
+		if (removedLabel < 0) {
+			return false;
+		}
+		if (mSvmModel != null) {
+			if (mSvmModel.nr_class > 1) {
+				mSvmModel = SvmModelUpdate.removeClass(mSvmModel, removedLabel);
+				for (int classNr = 0; classNr < mSvmModel.nr_class; classNr++) {
+					if (mSvmModel.label[classNr] > removedLabel) {
+						mSvmModel.label[classNr]--;
+					}
+				}
+			} else {
+				mSvmModel = null;
+			}
+			mLinearModel = LinearSvmModel.compile(mSvmModel);
+		}
+		if (mTrainingFeatures != null) {
+			int keptCount = 0;
+			for (int sampleNr = 0; sampleNr < mTrainingLabels.length; sampleNr++) {
+				int label = mTrainingLabels[sampleNr];
+				if (label == removedLabel) {
+					continue;
+				}
+				System.arraycopy(mTrainingFeatures, sampleNr * mTrainingFeatureCount, mTrainingFeatures, keptCount
+						* mTrainingFeatureCount, mTrainingFeatureCount);
+				mTrainingLabels[keptCount] = label > removedLabel ? label - 1 : label;
+				keptCount++;
+			}
+			mTrainingFeatures = Arrays.copyOf(mTrainingFeatures, keptCount * mTrainingFeatureCount);
+			mTrainingLabels = Arrays.copyOf(mTrainingLabels, keptCount);
+		}
+		mUsers.remove(removedLabel);
+		Log.d("SVM", "removed user " + _user + ", " + mUsers.size() + " users left");
+		return true;
+	}
+
+	/**
+	 * @return users known to this classifier.
+	 */
+	public List<User> getUsers() {
+		return mUsers;
+	}
+
+	/**
+	 * @return the truncated eigenspace, null if PCA is not used.
+	 */
+	public PcaBasis getPcaBasis() {
+		return mPcaBasis;
+	}
+
+	/**
+	 * Swaps the serial numbers of a model trained on a precomputed kernel for
+	 * the actual training vectors, so the model is a regular linear / RBF one
+	 * (for storage and prediction).
+	 * 
+	 * @param _model
+	 *            trained with {@link svm_parameter#PRECOMPUTED}.
+	 * @param _features
+	 *            the training vectors, in the order of the kernel matrix.
+	 * @param _kernelType
+	 *            the kernel the matrix was computed with.
+	 */
+	static void restoreSupportVectors(svm_model _model, double[][] _features, int _kernelType) {
+		for (int sv = 0; sv < _model.l; sv++) {
+			int sampleNr = (int) _model.SV[sv][0].value - 1;
+			_model.SV[sv] = toNodes(_features[sampleNr]);
+		}
+		_model.param.kernel_type = _kernelType;
+	}
+
+	/**
+	 * @return a node per feature, indexed from 0.
+	 */
+	private static svm_node[] toNodes(double[] _features) {
+		svm_node[] nodes = new svm_node[_features.length];
+		for (int featureNr = 0; featureNr < _features.length; featureNr++) {
+			svm_node node = new svm_node();
+			node.index = featureNr;
+			node.value = _features[featureNr];
+			nodes[featureNr] = node;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Kernel cache sizing policy: enough to hold the whole kernel matrix
+	 * (libsvm caches floats), but at most {@link #CACHE_SIZE_HEAP_FRACTION}
+	 * of the currently free heap.
+	 * 
+	 * @param _sampleCount
+	 * @return the cache size in MB.
+	 */
+	public static double computeCacheSizeMb(int _sampleCount) {
+		double neededMb = 4.0 * _sampleCount * _sampleCount / (1 << 20) + 1;
+		Runtime runtime = Runtime.getRuntime();
+		long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		double budgetMb = freeHeap * CACHE_SIZE_HEAP_FRACTION / (1 << 20);
+		return Math.max(MIN_CACHE_SIZE_MB, Math.min(neededMb, budgetMb));
+	}
+
+	/**
+	 * Sets the kernel for the next training.
+	 * 
+	 * @param _kernelType
+	 * @param _searchParameters
+	 *            if C (and gamma for RBF) get chosen by cross-validation
+	 *            during training. only done for galleries of up to
+	 *            {@link #PRECOMPUTED_KERNEL_MAX_SAMPLES} samples.
+	 */
+	public void setKernel(KernelType _kernelType, boolean _searchParameters) {
+		mKernelType = _kernelType;
+		mSearchParameters = _searchParameters;
+	}
+
+	public KernelType getKernelType() {
+		return mKernelType;
+	}
+
+	public double getC() {
+		return mC;
+	}
+
+	public double getGamma() {
+		return mGamma;
+	}
+
+	/**
+	 * @return the SVM parameters with a kernel cache sized for _sampleCount
+	 *         training samples, see {@link #computeCacheSizeMb(int)}.
+	 */
+	public svm_parameter getSvmParams(int _sampleCount) {
+		svm_parameter param = getSvmParams();
+		param.cache_size = computeCacheSizeMb(_sampleCount);
+		return param;
 	}
 
 	// get the SVM parameters
 	public svm_parameter getSvmParams() {
 		svm_parameter param = new svm_parameter();
 		param.probability = 1;
-		param.gamma = 0.5;
+		param.gamma = mGamma;
 		param.nu = 0.5;
-		param.C = 1;
+		param.C = mC;
 		param.svm_type = svm_parameter.C_SVC;
-		param.kernel_type = svm_parameter.LINEAR;
-		param.cache_size = 20000;
+		param.kernel_type = mKernelType == KernelType.RBF ? svm_parameter.RBF : svm_parameter.LINEAR;
+		param.cache_size = DEFAULT_CACHE_SIZE_MB;
 		param.eps = 0.001;
 		return param;
 	}
@@ -166,55 +521,113 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 	 */
 	public GenericTuple2<User, Map<User, Double>> classify(PanshotImage _image, boolean _usePca, int _pcaAmountOfFeatures) {
 		Log.d("SVM", "classify, usePCA=" + _usePca + ", pcaFeat=" + _pcaAmountOfFeatures);
-		svm_node[] nodes = null;
-		if (!_usePca) {
-			// get the pixel data from the recognized face
-			double[] features = RecognitionUtil.transformImageToFeatureVector(_image.grayFace);
-			// creates nodes from features
-			nodes = new svm_node[features.length];
-			for (int featureNr = 0; featureNr < features.length; featureNr++) {
-				svm_node node = new svm_node();
-				node.index = featureNr;
-				node.value = features[featureNr];
-				nodes[featureNr] = node;
-			}
-		} else {
-			if (mPcaMean == null || mPcaEigenvectors == null) {
+		if (_usePca) {
+			if (mPcaBasis == null) {
 				throw new RuntimeException("Cannot project data into Eigenspace if the mean or eigenvalue matrix are null.");
 			}
-			// project data into eigenspace
-			_image.pcaFace = PCAUtil.pcaProject(_image, mPcaMean, mPcaEigenvectors);
-			// creates nodes from features
-			nodes = new svm_node[Math.min(_image.pcaFace.cols(), _pcaAmountOfFeatures)];
-			for (int featureNr = 0; featureNr < _image.pcaFace.cols() && featureNr < _pcaAmountOfFeatures; featureNr++) {
-				svm_node node = new svm_node();
-				node.index = featureNr;
-				double[] d = _image.pcaFace.get(0, featureNr);
-				node.value = d[0];
-				nodes[featureNr] = node;
-			}
 		}
+		// with PCA: project data into eigenspace
+		int featureCount = _usePca ? projectFeatures(_image, _pcaAmountOfFeatures) : extractFeatures(_image, false,
+				_pcaAmountOfFeatures);
 
 		// get probability per user
-		double[] probResults = new double[mUsers.size()];
-		double v = svm.svm_predict_probability(mSvmModel, nodes, probResults);
-		// DEBUG
-		int[] labels = mSvmModel.label;
+		if (mProbabilityBuffer == null || mProbabilityBuffer.length != mUsers.size()) {
+			mProbabilityBuffer = new double[mUsers.size()];
+		}
+		double[] probResults = mProbabilityBuffer;
+		if (mLinearModel != null) {
+			// one dot product per pair of users
+			mLinearModel.predictProbability(mFeatureBuffer, featureCount, probResults);
+		} else {
+			// reuse nodes, only their values change between queries
+			if (mNodeBuffer == null || mNodeBuffer.length != featureCount) {
+				mNodeBuffer = new svm_node[featureCount];
+				for (int featureNr = 0; featureNr < featureCount; featureNr++) {
+					mNodeBuffer[featureNr] = new svm_node();
+					mNodeBuffer[featureNr].index = featureNr;
+				}
+			}
+			for (int featureNr = 0; featureNr < featureCount; featureNr++) {
+				mNodeBuffer[featureNr].value = mFeatureBuffer[featureNr];
+			}
+			svm.svm_predict_probability(mSvmModel, mNodeBuffer, probResults);
+		}
 
-		// assign probability to user
+		// assign probability to user. probabilities are in class order
+		int[] labels = mLinearModel != null ? mLinearModel.getLabels() : mSvmModel.label;
 		Map<User, Double> probabilities = new HashMap<User, Double>();
 		GenericTuple2<User, Double> highestProbUser = null;
-		for (int labelIndex = 0; labelIndex < mSvmModel.label.length; labelIndex++) {
-			int label = mSvmModel.label[labelIndex];
-			User u = mUsers.get(label);
-			probabilities.put(u, probResults[label]);
-			if (highestProbUser == null || highestProbUser.value2 < probResults[label]) {
-				highestProbUser = new GenericTuple2<User, Double>(u, probResults[label]);
+		for (int labelIndex = 0; labelIndex < labels.length; labelIndex++) {
+			User u = mUsers.get(labels[labelIndex]);
+			probabilities.put(u, probResults[labelIndex]);
+			if (highestProbUser == null || highestProbUser.value2 < probResults[labelIndex]) {
+				highestProbUser = new GenericTuple2<User, Double>(u, probResults[labelIndex]);
 			}
 		}
 		return new GenericTuple2<User, Map<User, Double>>(highestProbUser.value1, probabilities);
 	}
 
+	/**
+	 * Bulk copies the features of an image (pixels or the first
+	 * _pcaAmountOfFeatures PCA features) to {@link #mFeatureBuffer}.
+	 * 
+	 * @return the amount of features.
+	 */
+	private int extractFeatures(PanshotImage _image, boolean _usePca, int _pcaAmountOfFeatures) {
+		int featureCount;
+		if (!_usePca) {
+			featureCount = _image.grayFace.rows() * _image.grayFace.cols();
+			ensureBufferSize(featureCount);
+			RecognitionUtil.transformImageToFeatureVector(_image.grayFace, mFeatureBuffer, 0);
+			return featureCount;
+		}
+		int cols = _image.pcaFace.cols();
+		featureCount = Math.min(cols, _pcaAmountOfFeatures);
+		ensureBufferSize(cols);
+		_image.pcaFace.get(0, 0, mFloatBuffer);
+		for (int featureNr = 0; featureNr < featureCount; featureNr++) {
+			mFeatureBuffer[featureNr] = mFloatBuffer[featureNr];
+		}
+		return featureCount;
+	}
+
+	/**
+	 * Projects the face of an image into the eigenspace and copies the first
+	 * _pcaAmountOfFeatures features to {@link #mFeatureBuffer}, without
+	 * intermediate Mats.
+	 * 
+	 * @return the amount of features.
+	 */
+	private int projectFeatures(PanshotImage _image, int _pcaAmountOfFeatures) {
+		int componentCount = mPcaBasis.getComponentCount();
+		ensureBufferSize(componentCount);
+		int pixelCount = mPcaBasis.getFeatureCount();
+		if (_image.grayFace.depth() == CvType.CV_8U && _image.grayFace.channels() == 1) {
+			if (mPixelBuffer == null || mPixelBuffer.length != pixelCount) {
+				mPixelBuffer = new byte[pixelCount];
+			}
+		} else if (mPixelFeatureBuffer == null || mPixelFeatureBuffer.length != pixelCount) {
+			mPixelFeatureBuffer = new float[pixelCount];
+		}
+		PCAUtil.pcaProject(_image.grayFace, mPcaBasis, mPixelBuffer, mPixelFeatureBuffer, mFloatBuffer);
+		int featureCount = Math.min(componentCount, _pcaAmountOfFeatures);
+		for (int featureNr = 0; featureNr < featureCount; featureNr++) {
+			mFeatureBuffer[featureNr] = mFloatBuffer[featureNr];
+		}
+		return featureCount;
+	}
+
+	/**
+	 * Ensures {@link #mFloatBuffer} and {@link #mFeatureBuffer} have exactly
+	 * _size entries (Mat.get fills the whole float array).
+	 */
+	private void ensureBufferSize(int _size) {
+		if (mFloatBuffer == null || mFloatBuffer.length != _size) {
+			mFloatBuffer = new float[_size];
+			mFeatureBuffer = new double[_size];
+		}
+	}
+
 	// @Override
 	// public String toString() {
 	// return "SvmClassifier [mClassifierIndex=" + mClassifierIndex +
@@ -228,7 +641,8 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 	@Override
 	public String toString() {
 		return "SvmClassifier [mClassifierIndex=" + mClassifierIndex + ", mUsers=" + mUsers + ", mSvmModel=" + mSvmModel
-				+ ", mPcaMean=" + mPcaMean + ", mPcaEigenvectors=" + mPcaEigenvectors + "]";
+				+ ", mPcaBasis=" + (mPcaBasis == null ? "null" : mPcaBasis.getComponentCount() + "x" + mPcaBasis.getFeatureCount())
+				+ "]";
 	}
 
 	// ========================================================================================================================
@@ -250,16 +664,13 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 		// out.defaultWriteObject();
 		out.writeObject(mUsers);
 		out.writeInt(mClassifierIndex);
-		if (mPcaMean == null) {
-			out.writeObject(null);
-		} else {
-			out.writeObject(PanshotUtil.matToMapFloat(mPcaMean));
-		}
-		if (mPcaEigenvectors == null) {
-			out.writeObject(null);
-		} else {
-			out.writeObject(PanshotUtil.matToMapFloat(mPcaEigenvectors));
-		}
+		out.writeObject(mKernelType.name());
+		out.writeDouble(mC);
+		out.writeDouble(mGamma);
+		out.writeInt(mTrainingFeatureCount);
+		out.writeObject(mTrainingFeatures);
+		out.writeObject(mTrainingLabels);
+		out.writeObject(mPcaBasis);
 	}
 
 	/**
@@ -270,14 +681,14 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 		// in.defaultReadObject();
 		mUsers = (List<User>) in.readObject();
 		mClassifierIndex = in.readInt();
-		Object tmp = in.readObject();
-		if (tmp != null) {
-			mPcaMean = PanshotUtil.matFromMapFloat((Map<String, Object>) tmp);
-		}
-		tmp = in.readObject();
-		if (tmp != null) {
-			mPcaEigenvectors = PanshotUtil.matFromMapFloat((Map<String, Object>) tmp);
-		}
+		mKernelType = KernelType.valueOf((String) in.readObject());
+		mC = in.readDouble();
+		mGamma = in.readDouble();
+		mTrainingFeatureCount = in.readInt();
+		mTrainingFeatures = (float[]) in.readObject();
+		mTrainingLabels = (int[]) in.readObject();
+		mSearchParameters = false;
+		mPcaBasis = (PcaBasis) in.readObject();
 	}
 
 	/**
@@ -304,6 +715,86 @@ public class SvmClassifier implements FaceClassifier, Serializable {
 		mSvmModel = svm.svm_load_model(new File(_folder, FILE_PREFIX + "_model_"
 				+ getSerializationClassifierName(mClassifierIndex)).getAbsolutePath()
 				+ ".bin");
+		mLinearModel = LinearSvmModel.compile(mSvmModel);
+	}
+
+	/**
+	 * Deletes the files written by {@link #storeNativeData(File)} of all
+	 * classifiers in _folder.
+	 */
+	public static void deleteNativeData(File _folder) {
+		File[] files = _folder.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File _dir, String _filename) {
+				return _filename.startsWith(FILE_PREFIX + "_model_");
+			}
+		});
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Stores the classifier including its libsvm model in binary form, see
+	 * {@link SvmModelFormat}. Unlike Java serialization and
+	 * {@link #storeNativeData(File)}, this needs no separate model file.
+	 */
+	public void writeBinary(LittleEndianOutput _out) throws IOException {
+		_out.putInt(mClassifierIndex);
+		_out.putInt(mUsers.size());
+		for (User user : mUsers) {
+			_out.putString(user.getId());
+			_out.putString(user.getName());
+		}
+		_out.putString(mKernelType.name());
+		_out.putDouble(mC);
+		_out.putDouble(mGamma);
+		_out.putInt(mTrainingFeatureCount);
+		_out.putFloats(mTrainingFeatures);
+		_out.putInts(mTrainingLabels);
+		_out.putBoolean(mPcaBasis != null);
+		if (mPcaBasis != null) {
+			mPcaBasis.write(_out);
+		}
+		_out.putBoolean(mSvmModel != null);
+		if (mSvmModel != null) {
+			SvmModelFormat.write(mSvmModel, _out);
+		}
+	}
+
+	/**
+	 * @return the classifier stored by {@link #writeBinary(LittleEndianOutput)}.
+	 */
+	public static SvmClassifier readBinary(LittleEndianInput _in) throws IOException {
+		SvmClassifier classifier = new SvmClassifier(_in.getInt());
+		int userCount = _in.getInt();
+		if (userCount < 0 || userCount > _in.remaining() / 8) {
+			throw new IOException("invalid user count " + userCount + ".");
+		}
+		for (int userNr = 0; userNr < userCount; userNr++) {
+			classifier.mUsers.add(new User(_in.getString(), _in.getString()));
+		}
+		try {
+			classifier.mKernelType = KernelType.valueOf(_in.getString());
+		} catch (RuntimeException e) {
+			throw new IOException("unknown kernel type.");
+		}
+		classifier.mC = _in.getDouble();
+		classifier.mGamma = _in.getDouble();
+		classifier.mTrainingFeatureCount = _in.getInt();
+		classifier.mTrainingFeatures = _in.getFloats();
+		classifier.mTrainingLabels = _in.getInts();
+		if (_in.getBoolean()) {
+			classifier.mPcaBasis = PcaBasis.read(_in);
+		}
+		if (_in.getBoolean()) {
+			classifier.mSvmModel = SvmModelFormat.read(_in);
+			classifier.mLinearModel = LinearSvmModel.compile(classifier.mSvmModel);
+		}
+		return classifier;
 	}
 
 	public Integer getClassifierIndex() {
@@ -0,0 +1,159 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.io.IOException;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
+
+/**
+ * Binary encoding of libsvm models, replacing libsvm's text format (which
+ * prints and parses every support vector value as decimal string). Support
+ * vectors with consecutive node indices (as {@link SvmClassifier} creates
+ * them) get stored as first index and values only, others with an index per
+ * value. Values are stored as doubles, so models survive unchanged.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public final class SvmModelFormat {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final byte NODES_CONSECUTIVE = 0;
+	private static final byte NODES_INDEXED = 1;
+
+	// ================================================================================================================
+	// METHODS
+
+	private SvmModelFormat() {
+	}
+
+	public static void write(svm_model _model, LittleEndianOutput _out) {
+		svm_parameter param = _model.param;
+		_out.putInt(param.svm_type);
+		_out.putInt(param.kernel_type);
+		_out.putInt(param.degree);
+		_out.putDouble(param.gamma);
+		_out.putDouble(param.coef0);
+		_out.putDouble(param.cache_size);
+		_out.putDouble(param.eps);
+		_out.putDouble(param.C);
+		_out.putInt(param.nr_weight);
+		_out.putInts(param.weight_label);
+		_out.putDoubles(param.weight);
+		_out.putDouble(param.nu);
+		_out.putDouble(param.p);
+		_out.putInt(param.shrinking);
+		_out.putInt(param.probability);
+
+		_out.putInt(_model.nr_class);
+		_out.putInt(_model.l);
+		_out.putDoubles(_model.rho);
+		_out.putInts(_model.label);
+		_out.putDoubles(_model.probA);
+		_out.putDoubles(_model.probB);
+		_out.putInts(_model.nSV);
+		for (int classNr = 0; classNr < _model.nr_class - 1; classNr++) {
+			_out.putDoubles(_model.sv_coef[classNr], 0, _model.l);
+		}
+		double[] values = new double[0];
+		for (int sv = 0; sv < _model.l; sv++) {
+			svm_node[] nodes = _model.SV[sv];
+			_out.putInt(nodes.length);
+			if (values.length < nodes.length) {
+				values = new double[nodes.length];
+			}
+			boolean consecutive = true;
+			for (int nodeNr = 0; nodeNr < nodes.length; nodeNr++) {
+				values[nodeNr] = nodes[nodeNr].value;
+				consecutive &= nodes[nodeNr].index == nodes[0].index + nodeNr;
+			}
+			if (consecutive) {
+				_out.putByte(NODES_CONSECUTIVE);
+				_out.putInt(nodes.length == 0 ? 0 : nodes[0].index);
+			} else {
+				_out.putByte(NODES_INDEXED);
+				for (svm_node node : nodes) {
+					_out.putInt(node.index);
+				}
+			}
+			_out.putDoubles(values, 0, nodes.length);
+		}
+	}
+
+	public static svm_model read(LittleEndianInput _in) throws IOException {
+		svm_parameter param = new svm_parameter();
+		param.svm_type = _in.getInt();
+		param.kernel_type = _in.getInt();
+		param.degree = _in.getInt();
+		param.gamma = _in.getDouble();
+		param.coef0 = _in.getDouble();
+		param.cache_size = _in.getDouble();
+		param.eps = _in.getDouble();
+		param.C = _in.getDouble();
+		param.nr_weight = _in.getInt();
+		param.weight_label = _in.getInts();
+		param.weight = _in.getDoubles();
+		param.nu = _in.getDouble();
+		param.p = _in.getDouble();
+		param.shrinking = _in.getInt();
+		param.probability = _in.getInt();
+
+		svm_model model = new svm_model();
+		model.param = param;
+		model.nr_class = _in.getInt();
+		model.l = _in.getInt();
+		if (model.nr_class < 1 || model.l < 0 || model.l > _in.remaining() / 5) {
+			throw new IOException("invalid SVM model with " + model.nr_class + " classes and " + model.l
+					+ " support vectors.");
+		}
+		model.rho = _in.getDoubles();
+		model.label = _in.getInts();
+		model.probA = _in.getDoubles();
+		model.probB = _in.getDoubles();
+		model.nSV = _in.getInts();
+		model.sv_coef = new double[model.nr_class - 1][model.l];
+		for (int classNr = 0; classNr < model.nr_class - 1; classNr++) {
+			_in.getDoubles(model.sv_coef[classNr], 0, model.l);
+		}
+		model.SV = new svm_node[model.l][];
+		double[] values = new double[0];
+		for (int sv = 0; sv < model.l; sv++) {
+			int nodeCount = _in.getInt();
+			if (nodeCount < 0 || nodeCount > _in.remaining() / 8) {
+				throw new IOException("invalid support vector length " + nodeCount + ".");
+			}
+			svm_node[] nodes = new svm_node[nodeCount];
+			for (int nodeNr = 0; nodeNr < nodeCount; nodeNr++) {
+				nodes[nodeNr] = new svm_node();
+			}
+			byte encoding = _in.getByte();
+			if (encoding == NODES_CONSECUTIVE) {
+				int firstIndex = _in.getInt();
+				for (int nodeNr = 0; nodeNr < nodeCount; nodeNr++) {
+					nodes[nodeNr].index = firstIndex + nodeNr;
+				}
+			} else if (encoding == NODES_INDEXED) {
+				for (int nodeNr = 0; nodeNr < nodeCount; nodeNr++) {
+					nodes[nodeNr].index = _in.getInt();
+				}
+			} else {
+				throw new IOException("unknown support vector encoding " + encoding + ".");
+			}
+			if (values.length < nodeCount) {
+				values = new double[nodeCount];
+			}
+			_in.getDoubles(values, 0, nodeCount);
+			for (int nodeNr = 0; nodeNr < nodeCount; nodeNr++) {
+				nodes[nodeNr].value = values[nodeNr];
+			}
+			model.SV[sv] = nodes;
+		}
+		return model;
+	}
+}
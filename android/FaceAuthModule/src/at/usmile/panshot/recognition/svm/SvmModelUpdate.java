@@ -0,0 +1,291 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+
+/**
+ * Adds classes to and removes classes from trained one-vs-one libsvm models.
+ * libsvm trains one binary classifier per pair of classes, and the pairs only
+ * share support vectors for storage. Adding a class therefore only needs the
+ * binary classifiers of the new class against each existing class, removing
+ * a class only drops its pairs - all other pairs stay as they are.
+ * <p>
+ * The decision functions of the pairs are the ones a full training on the
+ * same data would give (each pair is trained on its two classes only). Their
+ * probability estimates are not: libsvm fits each pair's sigmoid (probA,
+ * probB) on a randomly shuffled internal cross-validation, so these vary
+ * between any two trainings, incremental or full.
+ * <p>
+ * In a libsvm model, the support vectors of class i are stored consecutively.
+ * A support vector of class c has a coefficient per other class o in row
+ * (o < c ? o : o - 1) of sv_coef, which is 0 if it is no support vector of
+ * the pair (c, o). Pairs (i, j), i < j, are ordered by i, then j.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class SvmModelUpdate {
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * Appends a class to a model.
+	 *
+	 * @param _model
+	 *            a trained classification model, stays unchanged.
+	 * @param _label
+	 *            the label of the new class, must not be used by _model.
+	 * @param _binaryModels
+	 *            per class of _model (in its class order): a model trained on
+	 *            that class and the new class only.
+	 * @return a model with the classes of _model followed by the new class.
+	 *         support vectors are shared with _model and _binaryModels.
+	 */
+	public static svm_model addClass(svm_model _model, int _label, List<svm_model> _binaryModels) {
+		int oldClassCount = _model.nr_class;
+		int classCount = oldClassCount + 1;
+		if (_binaryModels.size() != oldClassCount) {
+			throw new IllegalArgumentException("need one binary model per class, got " + _binaryModels.size() + " for "
+					+ oldClassCount + " classes.");
+		}
+		List<List<svm_node[]>> svs = new ArrayList<List<svm_node[]>>();
+		List<List<double[]>> coefs = new ArrayList<List<double[]>>();
+		for (int c = 0; c < classCount; c++) {
+			svs.add(new ArrayList<svm_node[]>());
+			coefs.add(new ArrayList<double[]>());
+		}
+		// existing support vectors keep their coefficients, they get none for
+		// the new class (row oldClassCount - 1)
+		int[] start = svStart(_model);
+		for (int c = 0; c < oldClassCount; c++) {
+			for (int sv = start[c]; sv < start[c] + _model.nSV[c]; sv++) {
+				double[] coef = new double[classCount - 1];
+				for (int row = 0; row < oldClassCount - 1; row++) {
+					coef[row] = _model.sv_coef[row][sv];
+				}
+				svs.get(c).add(_model.SV[sv]);
+				coefs.get(c).add(coef);
+			}
+		}
+		// support vectors of the new pairs. vectors of the new class shared
+		// by several binary models are stored once
+		double[] sign = new double[oldClassCount];
+		Map<svm_node[], Integer> newClassSvs = new IdentityHashMap<svm_node[], Integer>();
+		for (int c = 0; c < oldClassCount; c++) {
+			svm_model binary = _binaryModels.get(c);
+			if (binary.nr_class != 2) {
+				throw new IllegalArgumentException("binary model " + c + " has " + binary.nr_class + " classes.");
+			}
+			int oldClassNr;
+			if (binary.label[0] == _model.label[c] && binary.label[1] == _label) {
+				oldClassNr = 0;
+			} else if (binary.label[1] == _model.label[c] && binary.label[0] == _label) {
+				oldClassNr = 1;
+			} else {
+				throw new IllegalArgumentException("binary model " + c + " does not separate labels " + _model.label[c]
+						+ " and " + _label + ".");
+			}
+			// decision values are positive for the first class. the existing
+			// class comes first in the merged pair, so flip if necessary
+			sign[c] = oldClassNr == 0 ? 1 : -1;
+			for (int sv = 0; sv < binary.l; sv++) {
+				int classNr = sv < binary.nSV[0] ? 0 : 1;
+				double value = sign[c] * binary.sv_coef[0][sv];
+				if (classNr == oldClassNr) {
+					double[] coef = new double[classCount - 1];
+					coef[coefRow(c, oldClassCount)] = value;
+					svs.get(c).add(binary.SV[sv]);
+					coefs.get(c).add(coef);
+				} else {
+					Integer position = newClassSvs.get(binary.SV[sv]);
+					if (position == null) {
+						position = svs.get(oldClassCount).size();
+						newClassSvs.put(binary.SV[sv], position);
+						svs.get(oldClassCount).add(binary.SV[sv]);
+						coefs.get(oldClassCount).add(new double[classCount - 1]);
+					}
+					coefs.get(oldClassCount).get(position)[coefRow(oldClassCount, c)] = value;
+				}
+			}
+		}
+		// pairs: existing ones in their order, (c, new class) last for each c
+		boolean probability = hasProbability(_model);
+		for (svm_model binary : _binaryModels) {
+			probability &= hasProbability(binary);
+		}
+		int pairCount = classCount * (classCount - 1) / 2;
+		double[] rho = new double[pairCount];
+		double[] probA = probability ? new double[pairCount] : null;
+		double[] probB = probability ? new double[pairCount] : null;
+		for (int i = 0, pair = 0, oldPair = 0; i < classCount; i++) {
+			for (int j = i + 1; j < classCount; j++, pair++) {
+				if (j < oldClassCount) {
+					rho[pair] = _model.rho[oldPair];
+					if (probability) {
+						probA[pair] = _model.probA[oldPair];
+						probB[pair] = _model.probB[oldPair];
+					}
+					oldPair++;
+				} else {
+					svm_model binary = _binaryModels.get(i);
+					rho[pair] = sign[i] * binary.rho[0];
+					if (probability) {
+						// P(i) = 1 - P(new class) flips the sign of B only
+						probA[pair] = binary.probA[0];
+						probB[pair] = sign[i] * binary.probB[0];
+					}
+				}
+			}
+		}
+		int[] labels = new int[classCount];
+		System.arraycopy(_model.label, 0, labels, 0, oldClassCount);
+		labels[oldClassCount] = _label;
+		return assemble(_model, labels, svs, coefs, rho, probA, probB);
+	}
+
+	/**
+	 * Removes a class and all of its pairs from a model.
+	 *
+	 * @param _model
+	 *            a trained classification model with at least 2 classes,
+	 *            stays unchanged.
+	 * @param _label
+	 *            the label of the class to remove.
+	 * @return a model with the remaining classes in their order. support
+	 *         vectors only used by pairs of the removed class get dropped.
+	 */
+	public static svm_model removeClass(svm_model _model, int _label) {
+		int oldClassCount = _model.nr_class;
+		int removed = -1;
+		for (int c = 0; c < oldClassCount; c++) {
+			if (_model.label[c] == _label) {
+				removed = c;
+			}
+		}
+		if (removed < 0) {
+			throw new IllegalArgumentException("label " + _label + " is not part of the model.");
+		}
+		if (oldClassCount < 2) {
+			throw new IllegalArgumentException("cannot remove the only class of a model.");
+		}
+		int classCount = oldClassCount - 1;
+		List<List<svm_node[]>> svs = new ArrayList<List<svm_node[]>>();
+		List<List<double[]>> coefs = new ArrayList<List<double[]>>();
+		int[] labels = new int[classCount];
+		int[] start = svStart(_model);
+		for (int c = 0; c < classCount; c++) {
+			int oldC = c < removed ? c : c + 1;
+			labels[c] = _model.label[oldC];
+			List<svm_node[]> classSvs = new ArrayList<svm_node[]>();
+			List<double[]> classCoefs = new ArrayList<double[]>();
+			for (int sv = start[oldC]; sv < start[oldC] + _model.nSV[oldC]; sv++) {
+				double[] coef = new double[Math.max(0, classCount - 1)];
+				boolean used = false;
+				for (int o = 0; o < classCount; o++) {
+					if (o == c) {
+						continue;
+					}
+					int oldO = o < removed ? o : o + 1;
+					coef[coefRow(c, o)] = _model.sv_coef[coefRow(oldC, oldO)][sv];
+					used |= coef[coefRow(c, o)] != 0;
+				}
+				// with a single class left, support vectors are not needed
+				if (used) {
+					classSvs.add(_model.SV[sv]);
+					classCoefs.add(coef);
+				}
+			}
+			svs.add(classSvs);
+			coefs.add(classCoefs);
+		}
+		boolean probability = hasProbability(_model);
+		int pairCount = classCount * (classCount - 1) / 2;
+		double[] rho = new double[pairCount];
+		double[] probA = probability ? new double[pairCount] : null;
+		double[] probB = probability ? new double[pairCount] : null;
+		for (int i = 0, pair = 0, oldPair = 0; i < oldClassCount; i++) {
+			for (int j = i + 1; j < oldClassCount; j++, oldPair++) {
+				if (i == removed || j == removed) {
+					continue;
+				}
+				rho[pair] = _model.rho[oldPair];
+				if (probability) {
+					probA[pair] = _model.probA[oldPair];
+					probB[pair] = _model.probB[oldPair];
+				}
+				pair++;
+			}
+		}
+		return assemble(_model, labels, svs, coefs, rho, probA, probB);
+	}
+
+	/**
+	 * @return row in sv_coef of the coefficients of class _class's support
+	 *         vectors for the pair with class _partner.
+	 */
+	private static int coefRow(int _class, int _partner) {
+		return _partner < _class ? _partner : _partner - 1;
+	}
+
+	/**
+	 * @return per class: index of its first support vector.
+	 */
+	private static int[] svStart(svm_model _model) {
+		int[] start = new int[_model.nr_class];
+		for (int c = 1; c < _model.nr_class; c++) {
+			start[c] = start[c - 1] + _model.nSV[c - 1];
+		}
+		return start;
+	}
+
+	/**
+	 * @return true if the model contains Platt sigmoid parameters for all of
+	 *         its pairs.
+	 */
+	private static boolean hasProbability(svm_model _model) {
+		int pairCount = _model.nr_class * (_model.nr_class - 1) / 2;
+		return _model.probA != null && _model.probB != null && _model.probA.length >= pairCount
+				&& _model.probB.length >= pairCount;
+	}
+
+	/**
+	 * Builds a model from per-class support vectors and their coefficients.
+	 */
+	private static svm_model assemble(svm_model _template, int[] _labels, List<List<svm_node[]>> _svs,
+			List<List<double[]>> _coefs, double[] _rho, double[] _probA, double[] _probB) {
+		int classCount = _labels.length;
+		svm_model model = new svm_model();
+		model.param = _template.param;
+		model.nr_class = classCount;
+		model.label = _labels;
+		model.nSV = new int[classCount];
+		int l = 0;
+		for (int c = 0; c < classCount; c++) {
+			model.nSV[c] = _svs.get(c).size();
+			l += model.nSV[c];
+		}
+		model.l = l;
+		model.SV = new svm_node[l][];
+		model.sv_coef = new double[Math.max(0, classCount - 1)][l];
+		for (int c = 0, sv = 0; c < classCount; c++) {
+			for (int n = 0; n < model.nSV[c]; n++, sv++) {
+				model.SV[sv] = _svs.get(c).get(n);
+				double[] coef = _coefs.get(c).get(n);
+				for (int row = 0; row < classCount - 1; row++) {
+					model.sv_coef[row][sv] = coef[row];
+				}
+			}
+		}
+		model.rho = _rho;
+		model.probA = _probA;
+		model.probB = _probB;
+		return model;
+	}
+}
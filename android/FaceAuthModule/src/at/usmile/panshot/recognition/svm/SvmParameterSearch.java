@@ -0,0 +1,217 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+import android.util.Log;
+import at.usmile.panshot.util.ConcurrencyUtil;
+import at.usmile.tuple.GenericTuple2;
+
+/**
+ * Cross-validated grid search over the SVM parameters C and (RBF kernel only)
+ * gamma. Samples get split into stratified folds deterministically, all folds
+ * of all C values of a gamma are trained in parallel (also when the search
+ * runs within a per perspective training task, see
+ * {@link ConcurrencyUtil#invokeAll(Map)}). The kernel matrix gets computed once
+ * and handed to libsvm as precomputed kernel, so kernel evaluations are
+ * shared by all folds and grid points (RBF: the squared distances are shared,
+ * only exp(-gamma * d) is recomputed per gamma).
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class SvmParameterSearch {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final String TAG = SvmParameterSearch.class.getSimpleName();
+
+	private static final int FOLD_COUNT = 5;
+	/** C = 2^-5, 2^-3, ..., 2^15, as recommended by the libsvm guide. */
+	private static final double[] C_EXPONENTS = { -5, -3, -1, 1, 3, 5, 7, 9, 11, 13, 15 };
+	/** gamma = 2^-15, 2^-13, ..., 2^3, as recommended by the libsvm guide. */
+	private static final double[] GAMMA_EXPONENTS = { -15, -13, -11, -9, -7, -5, -3, -1, 1, 3 };
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _gram
+	 *            all pairwise dot products of the samples' feature vectors,
+	 *            see {@link #gramMatrix(double[][])}.
+	 * @param _labels
+	 *            per sample: its class label.
+	 * @param _params
+	 *            base parameters. kernel_type must be LINEAR or RBF.
+	 * @return (C, gamma) with the highest cross-validation accuracy. ties get
+	 *         resolved to the smallest gamma, then the smallest C. gamma is
+	 *         the one of _params for the linear kernel.
+	 */
+	public static GenericTuple2<Double, Double> search(double[][] _gram, final double[] _labels, svm_parameter _params) {
+		if (_params.kernel_type != svm_parameter.LINEAR && _params.kernel_type != svm_parameter.RBF) {
+			throw new IllegalArgumentException("only linear and RBF kernels are supported.");
+		}
+		final int sampleCount = _gram.length;
+		final int[] folds = stratifiedFolds(_labels);
+
+		double bestC = _params.C;
+		double bestGamma = _params.gamma;
+		int bestCorrect = -1;
+		double[] gammaExponents = _params.kernel_type == svm_parameter.RBF ? GAMMA_EXPONENTS : new double[] { Double.NaN };
+		for (double gammaExponent : gammaExponents) {
+			double gamma = Double.isNaN(gammaExponent) ? _params.gamma : Math.pow(2, gammaExponent);
+			final svm_node[][] rows = precomputedRows(_gram, _params.kernel_type, gamma);
+			// all folds of all C values of this gamma in parallel, keyed by
+			// C index * FOLD_COUNT + fold
+			Map<Integer, Callable<Integer>> tasks = new HashMap<Integer, Callable<Integer>>();
+			for (int cNr = 0; cNr < C_EXPONENTS.length; cNr++) {
+				final svm_parameter params = (svm_parameter) _params.clone();
+				params.kernel_type = svm_parameter.PRECOMPUTED;
+				params.C = Math.pow(2, C_EXPONENTS[cNr]);
+				params.probability = 0;
+				for (int fold = 0; fold < FOLD_COUNT; fold++) {
+					final int testFold = fold;
+					tasks.put(cNr * FOLD_COUNT + fold, new Callable<Integer>() {
+						@Override
+						public Integer call() {
+							return countCorrect(rows, _labels, folds, testFold, params);
+						}
+					});
+				}
+			}
+			int[] correctPerC = new int[C_EXPONENTS.length];
+			for (Map.Entry<Integer, Integer> result : ConcurrencyUtil.invokeAll(tasks).entrySet()) {
+				correctPerC[result.getKey() / FOLD_COUNT] += result.getValue();
+			}
+			for (int cNr = 0; cNr < C_EXPONENTS.length; cNr++) {
+				double c = Math.pow(2, C_EXPONENTS[cNr]);
+				Log.d(TAG, "C=" + c + ", gamma=" + gamma + ": " + correctPerC[cNr] + "/" + sampleCount + " correct");
+				if (correctPerC[cNr] > bestCorrect) {
+					bestCorrect = correctPerC[cNr];
+					bestC = c;
+					bestGamma = gamma;
+				}
+			}
+		}
+		Log.i(TAG, "best: C=" + bestC + ", gamma=" + bestGamma + " with " + bestCorrect + "/" + sampleCount + " correct");
+		return new GenericTuple2<Double, Double>(bestC, bestGamma);
+	}
+
+	/**
+	 * @return per sample: its fold. samples of each class get assigned to
+	 *         folds round robin, in sample order.
+	 */
+	private static int[] stratifiedFolds(double[] _labels) {
+		int[] folds = new int[_labels.length];
+		Map<Double, Integer> nextFold = new HashMap<Double, Integer>();
+		for (int i = 0; i < _labels.length; i++) {
+			Integer fold = nextFold.get(_labels[i]);
+			if (fold == null) {
+				fold = 0;
+			}
+			folds[i] = fold;
+			nextFold.put(_labels[i], (fold + 1) % FOLD_COUNT);
+		}
+		return folds;
+	}
+
+	/**
+	 * @return all pairwise dot products.
+	 */
+	public static double[][] gramMatrix(double[][] _features) {
+		int sampleCount = _features.length;
+		double[][] gram = new double[sampleCount][sampleCount];
+		for (int i = 0; i < sampleCount; i++) {
+			double[] a = _features[i];
+			for (int j = i; j < sampleCount; j++) {
+				double[] b = _features[j];
+				double dot = 0;
+				for (int featureNr = 0; featureNr < a.length; featureNr++) {
+					dot += a[featureNr] * b[featureNr];
+				}
+				gram[i][j] = dot;
+				gram[j][i] = dot;
+			}
+		}
+		return gram;
+	}
+
+	/**
+	 * Converts the gram matrix to kernel values in libsvm's precomputed
+	 * format: row i starts with node (0, i + 1), followed by nodes (j + 1,
+	 * K(x_i, x_j)).
+	 *
+	 * @param _gram
+	 * @param _kernelType
+	 *            LINEAR (K = gram) or RBF (K = exp(-gamma * |x_i - x_j|^2)).
+	 * @param _gamma
+	 */
+	public static svm_node[][] precomputedRows(double[][] _gram, int _kernelType, double _gamma) {
+		int sampleCount = _gram.length;
+		svm_node[][] rows = new svm_node[sampleCount][sampleCount + 1];
+		for (int i = 0; i < sampleCount; i++) {
+			rows[i][0] = new svm_node();
+			rows[i][0].index = 0;
+			rows[i][0].value = i + 1;
+			for (int j = 0; j < sampleCount; j++) {
+				double value = _gram[i][j];
+				if (_kernelType == svm_parameter.RBF) {
+					double squaredDistance = Math.max(0, _gram[i][i] + _gram[j][j] - 2 * _gram[i][j]);
+					value = Math.exp(-_gamma * squaredDistance);
+				}
+				svm_node node = new svm_node();
+				node.index = j + 1;
+				node.value = value;
+				rows[i][j + 1] = node;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Trains on all folds but _testFold and classifies the samples of
+	 * _testFold.
+	 *
+	 * @return the amount of correctly classified samples.
+	 */
+	private static int countCorrect(svm_node[][] _rows, double[] _labels, int[] _folds, int _testFold,
+			svm_parameter _params) {
+		int trainCount = 0;
+		for (int fold : _folds) {
+			if (fold != _testFold) {
+				trainCount++;
+			}
+		}
+		if (trainCount == 0 || trainCount == _folds.length) {
+			return 0;
+		}
+		svm_problem problem = new svm_problem();
+		problem.l = trainCount;
+		problem.x = new svm_node[trainCount][];
+		problem.y = new double[trainCount];
+		for (int i = 0, trainNr = 0; i < _folds.length; i++) {
+			if (_folds[i] != _testFold) {
+				// rows keep their serial number, kernel values stay valid
+				problem.x[trainNr] = _rows[i];
+				problem.y[trainNr] = _labels[i];
+				trainNr++;
+			}
+		}
+		svm_model model = svm.svm_train(problem, _params);
+		int correct = 0;
+		for (int i = 0; i < _folds.length; i++) {
+			if (_folds[i] == _testFold && svm.svm_predict(model, _rows[i]) == _labels[i]) {
+				correct++;
+			}
+		}
+		return correct;
+	}
+}
@@ -0,0 +1,137 @@
+package at.usmile.panshot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared bounded worker pool for running independent recognition tasks (e.g.
+ * one per classifier index) in parallel.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class ConcurrencyUtil {
+
+	/** upper bound of worker threads, regardless of the amount of cores. */
+	private static final int MAX_THREADS = 4;
+
+	private static ExecutorService sExecutor = null;
+	private static int sThreadCount = 0;
+
+	/** worker threads of {@link #sExecutor}. */
+	private static class WorkerThread extends Thread {
+		public WorkerThread(Runnable _runnable, String _name) {
+			super(_runnable, _name);
+		}
+	}
+
+	/**
+	 * @return the shared pool of daemon worker threads, created on first use.
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+			sThreadCount = threads;
+			sExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger mThreadNr = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable _runnable) {
+					Thread thread = new WorkerThread(_runnable, "panshot-worker-" + mThreadNr.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sExecutor;
+	}
+
+	/**
+	 * @return amount of worker threads of the shared pool.
+	 */
+	public static synchronized int getThreadCount() {
+		getExecutor();
+		return sThreadCount;
+	}
+
+	/**
+	 * @return true if the calling thread is a worker of the shared pool. such
+	 *         callers must not block on tasks they submitted to the pool
+	 *         themselves ({@link #invokeAll(Map)} takes care of this).
+	 */
+	public static boolean isWorkerThread() {
+		return Thread.currentThread() instanceof WorkerThread;
+	}
+
+	/**
+	 * Runs all tasks on the shared pool and waits for them to finish. The
+	 * calling thread works along: it runs all tasks no pool thread has started
+	 * yet itself, and only then waits for the ones still running elsewhere.
+	 * Therefore tasks can call this again (e.g. a per perspective task running
+	 * its cross-validation folds in parallel) without waiting for busy pool
+	 * threads forever, and nested tasks still use idle pool threads.
+	 *
+	 * @param _tasks
+	 *            tasks by key.
+	 * @return results by key, sorted by key so that iterating them is
+	 *         independent of the order tasks finished in.
+	 */
+	public static <K extends Comparable<K>, V> SortedMap<K, V> invokeAll(Map<K, ? extends Callable<V>> _tasks) {
+		SortedMap<K, V> results = new TreeMap<K, V>();
+		if (_tasks.size() <= 1) {
+			for (K key : _tasks.keySet()) {
+				try {
+					results.put(key, _tasks.get(key).call());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException("Task " + key + " failed.", e);
+				}
+			}
+			return results;
+		}
+		ExecutorService executor = getExecutor();
+		List<K> keys = new ArrayList<K>(new TreeMap<K, Callable<V>>(_tasks).keySet());
+		List<FutureTask<V>> futures = new ArrayList<FutureTask<V>>();
+		for (K key : keys) {
+			FutureTask<V> future = new FutureTask<V>(_tasks.get(key));
+			futures.add(future);
+			executor.execute(future);
+		}
+		// tasks already started (or finished) by pool threads do nothing here
+		for (FutureTask<V> future : futures) {
+			future.run();
+		}
+		try {
+			for (int i = 0; i < keys.size(); i++) {
+				results.put(keys.get(i), futures.get(i).get());
+			}
+		} catch (InterruptedException e) {
+			for (FutureTask<V> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for tasks.", e);
+		} catch (ExecutionException e) {
+			for (FutureTask<V> future : futures) {
+				future.cancel(true);
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Task failed.", e.getCause());
+		}
+		return results;
+	}
+}
@@ -1,9 +1,8 @@
 package at.usmile.panshot.util;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileNotFoundException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
@@ -11,16 +10,21 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opencv.android.Utils;
 import org.opencv.core.Mat;
@@ -60,6 +64,22 @@ public class DataUtil {
 
 	private static final String TAG = DataUtil.class.getSimpleName();
 
+	/**
+	 * loading training data: images decoded ahead of the consumer, per worker
+	 * thread. bounds the memory of decoded but not yet consumed faces.
+	 */
+	private static final int LOADER_IMAGES_IN_FLIGHT_PER_THREAD = 2;
+
+	/**
+	 * directory (in the media directory) of the preprocessed faces caches,
+	 * see {@link FaceCache}. not a user directory, as it starts with "_".
+	 */
+	private static final String FACE_CACHE_DIRECTORY_NAME = "_face_cache";
+	/** binary model container, see {@link ModelContainer}. */
+	private static final String RECOGNITION_MODULE_FILE_NAME = "recognition_module.bin";
+	/** Java serialized model of earlier versions. */
+	private static final String LEGACY_RECOGNITION_MODULE_FILE_NAME = "recognition_module.ser";
+
 	/**
 	 * in our panshot data folder: filters for dirctories that contain user
 	 * (class) face data.
@@ -297,6 +317,51 @@ public class DataUtil {
 	 * @return
 	 */
 	public static List<PanshotImage> loadTrainingData(Context _context, boolean _useFrontalOnly, float _angleBetweenPerspectives) {
+		return loadTrainingData(_context, _useFrontalOnly, _angleBetweenPerspectives, null);
+	}
+
+	/**
+	 * Same as {@link #loadTrainingData(Context, boolean, float)}, but loads
+	 * the data of a single user only.
+	 * 
+	 * @param _user
+	 *            the user to load data of, null for all users.
+	 */
+	public static List<PanshotImage> loadTrainingData(Context _context, boolean _useFrontalOnly,
+			float _angleBetweenPerspectives, User _user) {
+		return loadTrainingData(_context, _useFrontalOnly, _angleBetweenPerspectives, _user, null);
+	}
+
+	/**
+	 * Same as {@link #loadTrainingData(Context, boolean, float, User)}, but
+	 * reports each image to _listener as soon as it has been loaded.
+	 * 
+	 * @param _listener
+	 *            may be null.
+	 */
+	public static List<PanshotImage> loadTrainingData(Context _context, boolean _useFrontalOnly,
+			float _angleBetweenPerspectives, User _user, PanshotImageLoadListener _listener) {
+		return loadTrainingData(_context, _useFrontalOnly, _angleBetweenPerspectives, _user, null, _listener);
+	}
+
+	/**
+	 * Same as {@link #loadTrainingData(Context, boolean, float, User)}, as a
+	 * pipeline: directories get listed and CSV files parsed once on the
+	 * calling thread, then faces get decoded, converted to gray and
+	 * preprocessed on the shared worker pool. At most
+	 * {@link #LOADER_IMAGES_IN_FLIGHT_PER_THREAD} images per worker are in
+	 * flight, so decoding waits for a slow _listener. Images get reported to
+	 * _listener and returned in a deterministic order (users, panshots and
+	 * images sorted by name / number). Per stage timings get logged.
+	 * 
+	 * @param _preprocessor
+	 *            applied to each image on the worker threads, may be null.
+	 * @param _listener
+	 *            may be null.
+	 */
+	public static List<PanshotImage> loadTrainingData(Context _context, boolean _useFrontalOnly,
+			float _angleBetweenPerspectives, User _user, PanshotImagePreprocessor _preprocessor,
+			PanshotImageLoadListener _listener) {
 		// store images to sd card
 		if (!isSdCardAvailableRW()) {
 			Toast.makeText(_context, _context.getResources().getString(R.string.sd_card_not_available), Toast.LENGTH_SHORT)
@@ -319,13 +384,35 @@ public class DataUtil {
 			return null;
 		}
 		Log.d(DataUtil.class.getSimpleName(), "mediaDir=" + mediaDir.getAbsolutePath());
-		// load all images of all panshots of all users
-		List<PanshotImage> panshotImages = new ArrayList<PanshotImage>();
+		// list all images of all panshots of all users
+		long listingStart = System.nanoTime();
+		List<GenericTuple2<File, PanshotImage>> faceFiles = new ArrayList<GenericTuple2<File, PanshotImage>>();
+		// preprocessed faces cache per user, parallel to faceFiles
+		String parameterKey = _preprocessor == null ? null : _preprocessor.getParameterKey();
+		List<FaceCache> faceCaches = new ArrayList<FaceCache>();
+		Map<FaceCache, Integer> faceCountPerCache = new LinkedHashMap<FaceCache, Integer>();
 		File[] userDirectories = mediaDir.listFiles(PANSHOT_USER_FOLDER_FILE_FILTER);
+		Arrays.sort(userDirectories);
 		for (File userDir : userDirectories) {
 			String[] userDirNameParts = userDir.getName().split("_");
 			User user = new User(userDirNameParts[1], userDirNameParts[0]);
+			if (_user != null && !_user.equals(user)) {
+				continue;
+			}
+			FaceCache faceCache = null;
+			if (parameterKey != null) {
+				// frontal only loading caches a subset: own file, so switching
+				// between both does not rewrite the caches each time
+				try {
+					faceCache = new FaceCache(new File(ensureDirectoryExists(mediaDir, FACE_CACHE_DIRECTORY_NAME),
+							userDir.getName() + (_useFrontalOnly ? "_frontal.bin" : ".bin")), parameterKey);
+					faceCountPerCache.put(faceCache, 0);
+				} catch (IOException e) {
+					Log.w(TAG, "cannot create face cache directory, not caching faces.", e);
+				}
+			}
 			File[] panshotDirectories = userDir.listFiles();
+			Arrays.sort(panshotDirectories);
 			for (File panshotDir : panshotDirectories) {
 				Map<Integer, PanshotImage> panshotimagesOfThisPanshot = new HashMap<Integer, PanshotImage>();
 				// load angle values from CSV file
@@ -371,15 +458,18 @@ public class DataUtil {
 					e.printStackTrace();
 					return null;
 				}
-				// load face images
+				// face images, by image number
 				File[] images = panshotDir.listFiles(new FilenameFilter() {
 					@Override
 					public boolean accept(File _dir, String _filename) {
 						return _filename.endsWith("_face.jpg");
 					}
 				});
+				Map<Integer, File> imagesByNr = new TreeMap<Integer, File>();
 				for (File image : images) {
-					int imageNr = Integer.parseInt(image.getName().replaceAll(".jpg", "").split("_")[3]);
+					imagesByNr.put(Integer.parseInt(image.getName().replaceAll(".jpg", "").split("_")[3]), image);
+				}
+				for (Integer imageNr : imagesByNr.keySet()) {
 					PanshotImage panshotImage = panshotimagesOfThisPanshot.get(imageNr);
 					panshotImage.angleValues[angleIndex] -= angleNormalizer;
 					// if we use fronal only: only load is image is
@@ -392,64 +482,185 @@ public class DataUtil {
 							continue;
 						}
 					}
-					Mat face = Highgui.imread(image.getAbsolutePath());
-					// convert to 1 channel = gray
-					Mat tmp = new Mat(face.rows(), face.cols(), face.type());
-					Imgproc.cvtColor(face, tmp, Imgproc.COLOR_RGBA2GRAY);
-					face = tmp;
-					panshotImage.grayFace = face;
 					panshotImage.rec.angleIndex = angleIndex;
-					Log.d(TAG, "loaded image has channels=" + panshotImage.grayFace.channels() + ", depth="
-							+ panshotImage.grayFace.depth() + ", type=" + panshotImage.grayFace.type());
-					panshotImages.add(panshotImage);
+					faceFiles.add(new GenericTuple2<File, PanshotImage>(imagesByNr.get(imageNr), panshotImage));
+					faceCaches.add(faceCache);
+					if (faceCache != null) {
+						faceCountPerCache.put(faceCache, faceCountPerCache.get(faceCache) + 1);
+					}
+				}
+			}
+		}
+		long listingNs = System.nanoTime() - listingStart;
+		if (_listener != null) {
+			List<PanshotImage> listedImages = new ArrayList<PanshotImage>(faceFiles.size());
+			for (GenericTuple2<File, PanshotImage> faceFile : faceFiles) {
+				listedImages.add(faceFile.value2);
+			}
+			_listener.onImagesListed(listedImages);
+		}
+
+		// decode (and preprocess) in parallel, deliver in order
+		final AtomicLong decodeNs = new AtomicLong();
+		final AtomicLong preprocessNs = new AtomicLong();
+		long waitNs = 0;
+		long listenerNs = 0;
+		long pipelineStart = System.nanoTime();
+		List<PanshotImage> panshotImages = new ArrayList<PanshotImage>();
+		boolean parallel = !ConcurrencyUtil.isWorkerThread() && faceFiles.size() > 1;
+		int threads = parallel ? ConcurrencyUtil.getThreadCount() : 1;
+		int window = LOADER_IMAGES_IN_FLIGHT_PER_THREAD * threads;
+		LinkedList<Future<PanshotImage>> inFlight = new LinkedList<Future<PanshotImage>>();
+		int submitted = 0;
+		try {
+			for (int imageNr = 0; imageNr < faceFiles.size(); imageNr++) {
+				// keep the window full
+				while (parallel && submitted < faceFiles.size() && inFlight.size() < window) {
+					inFlight.add(ConcurrencyUtil.getExecutor().submit(
+							new FaceLoader(faceFiles.get(submitted), faceCaches.get(submitted), _preprocessor,
+									decodeNs, preprocessNs)));
+					submitted++;
+				}
+				PanshotImage panshotImage;
+				long waitStart = System.nanoTime();
+				if (parallel) {
+					panshotImage = inFlight.removeFirst().get();
+				} else {
+					panshotImage = new FaceLoader(faceFiles.get(imageNr), faceCaches.get(imageNr), _preprocessor, decodeNs,
+							preprocessNs).call();
+				}
+				waitNs += System.nanoTime() - waitStart;
+				panshotImages.add(panshotImage);
+				if (_listener != null) {
+					long listenerStart = System.nanoTime();
+					_listener.onImageLoaded(panshotImage);
+					listenerNs += System.nanoTime() - listenerStart;
+				}
+			}
+		} catch (InterruptedException e) {
+			cancelAll(inFlight);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading training data.", e);
+		} catch (ExecutionException e) {
+			cancelAll(inFlight);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Loading training data failed.", e.getCause());
+		} catch (RuntimeException e) {
+			cancelAll(inFlight);
+			throw e;
+		}
+		// update caches of users with new, changed or removed faces
+		long cacheStart = System.nanoTime();
+		int cacheHits = 0;
+		for (FaceCache faceCache : faceCountPerCache.keySet()) {
+			cacheHits += faceCache.getHitCount();
+			if (faceCache.isUpToDate(faceCountPerCache.get(faceCache))) {
+				continue;
+			}
+			List<GenericTuple2<File, Mat>> faces = new ArrayList<GenericTuple2<File, Mat>>();
+			for (int imageNr = 0; imageNr < faceFiles.size(); imageNr++) {
+				if (faceCaches.get(imageNr) == faceCache) {
+					faces.add(new GenericTuple2<File, Mat>(faceFiles.get(imageNr).value1, panshotImages.get(imageNr).grayFace));
 				}
 			}
+			try {
+				faceCache.write(faces);
+			} catch (IOException e) {
+				Log.w(TAG, "cannot write face cache.", e);
+			}
 		}
+		long cacheNs = System.nanoTime() - cacheStart;
+		Log.i(TAG, "loaded " + panshotImages.size() + " images (" + cacheHits + " cached) in "
+				+ (System.nanoTime() - listingStart) / 1000000 + " ms: listing+csv " + listingNs / 1000000
+				+ " ms, decoding " + decodeNs.get() / 1000000 + " ms, preprocessing " + preprocessNs.get() / 1000000
+				+ " ms (summed over " + threads + " threads), waiting for workers " + waitNs / 1000000 + " ms, listener "
+				+ listenerNs / 1000000 + " ms, pipeline " + (cacheStart - pipelineStart) / 1000000
+				+ " ms, cache update " + cacheNs / 1000000 + " ms");
 		return panshotImages;
 	}
 
 	/**
-	 * Serialize a {@link RecognitionModule} to the given file. Attention: not
-	 * all SVM data can be serialized (LibSVM provides its own load and save
-	 * method for trained SVM modules - you have to call these for each
-	 * {@link SvmClassifier} yourself.
+	 * Takes the preprocessed face of a listed image from the cache or decodes
+	 * it to gray and preprocesses it.
+	 */
+	private static class FaceLoader implements Callable<PanshotImage> {
+		private final GenericTuple2<File, PanshotImage> mFaceFile;
+		private final FaceCache mFaceCache;
+		private final PanshotImagePreprocessor mPreprocessor;
+		private final AtomicLong mDecodeNs;
+		private final AtomicLong mPreprocessNs;
+
+		public FaceLoader(GenericTuple2<File, PanshotImage> _faceFile, FaceCache _faceCache,
+				PanshotImagePreprocessor _preprocessor, AtomicLong _decodeNs, AtomicLong _preprocessNs) {
+			mFaceFile = _faceFile;
+			mFaceCache = _faceCache;
+			mPreprocessor = _preprocessor;
+			mDecodeNs = _decodeNs;
+			mPreprocessNs = _preprocessNs;
+		}
+
+		@Override
+		public PanshotImage call() {
+			PanshotImage panshotImage = mFaceFile.value2;
+			if (mFaceCache != null) {
+				Mat cached = mFaceCache.get(mFaceFile.value1);
+				if (cached != null) {
+					panshotImage.grayFace = cached;
+					return panshotImage;
+				}
+			}
+			long start = System.nanoTime();
+			Mat face = Highgui.imread(mFaceFile.value1.getAbsolutePath());
+			if (face.empty()) {
+				throw new RuntimeException("Cannot decode face image " + mFaceFile.value1.getAbsolutePath() + ".");
+			}
+			// convert to 1 channel = gray
+			Mat tmp = new Mat(face.rows(), face.cols(), face.type());
+			Imgproc.cvtColor(face, tmp, Imgproc.COLOR_RGBA2GRAY);
+			panshotImage.grayFace = tmp;
+			long decoded = System.nanoTime();
+			mDecodeNs.addAndGet(decoded - start);
+			if (mPreprocessor != null) {
+				mPreprocessor.preprocess(panshotImage);
+				mPreprocessNs.addAndGet(System.nanoTime() - decoded);
+			}
+			return panshotImage;
+		}
+	}
+
+	private static void cancelAll(List<Future<PanshotImage>> _futures) {
+		for (Future<PanshotImage> future : _futures) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Stores a {@link RecognitionModule} in the given directory as binary
+	 * {@link ModelContainer}, including the libsvm models. Files of the
+	 * former Java serialized format get removed afterwards.
 	 * 
 	 * @param _directory
 	 * @param _recognitionModule
 	 * @throws IOException
 	 */
 	public static void serializeRecognitionModule(File _directory, RecognitionModule _recognitionModule) throws IOException {
-		ObjectOutputStream objectOutputStream = null;
 		if (!_directory.exists()) {
 			_directory.mkdir();
 		}
-		try {
-			// serialize recognition module
-			objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(new File(_directory,
-					"recognition_module.ser"))));
-			objectOutputStream.writeObject(_recognitionModule);
-
-			// store native data
-			for (SvmClassifier c : _recognitionModule.getSvmClassifiers().values()) {
-				c.storeNativeData(_directory);
-			}
-
-		} finally {
-			if (objectOutputStream != null) {
-				try {
-					objectOutputStream.close();
-				} catch (IOException e) {
-				}
-			}
-		}
+		long start = System.nanoTime();
+		ModelContainer.write(new File(_directory, RECOGNITION_MODULE_FILE_NAME), _recognitionModule);
+		Log.d(TAG, "stored recognition module in " + (System.nanoTime() - start) / 1000000 + " ms.");
+		new File(_directory, LEGACY_RECOGNITION_MODULE_FILE_NAME).delete();
+		SvmClassifier.deleteNativeData(_directory);
 	}
 
 	/**
-	 * 
-	 * Deserialize a {@link RecognitionModule} from the given file. Attention:
-	 * not all SVM data can be serialized (LibSVM provides its own load and save
-	 * method for trained SVM modules - you have to call these for each
-	 * {@link SvmClassifier} yourself.
+	 * Loads a {@link RecognitionModule} from the given directory: from its
+	 * {@link ModelContainer}. Modules stored by Java serialization in earlier
+	 * versions cannot be loaded, see
+	 * {@link #rejectLegacyRecognitionModule(File)}.
 	 * 
 	 * @param _directory
 	 * @return
@@ -459,33 +670,64 @@ public class DataUtil {
 	 */
 	public static RecognitionModule deserializeRecognitiosModule(File _directory) throws NotFoundException, IOException,
 			ClassNotFoundException {
-		ObjectInputStream objectInputStream = null;
-		RecognitionModule r = null;
-		try {
-			// deserialize
-			objectInputStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(new File(_directory,
-					"recognition_module.ser"))));
-			r = (RecognitionModule) objectInputStream.readObject();
-
-			// load ivm native data
-			if (r.getSvmClassifiers() != null) {
-				for (SvmClassifier c : r.getSvmClassifiers().values()) {
-					c.loadNativeData(_directory);
-				}
-			}
-			Log.d(TAG, "deserialized recognitionmodule: " + r);
+		File containerFile = new File(_directory, RECOGNITION_MODULE_FILE_NAME);
+		if (!containerFile.exists()) {
+			return rejectLegacyRecognitionModule(_directory);
+		}
+		long start = System.nanoTime();
+		RecognitionModule r = new ModelContainer(containerFile).readRecognitionModule();
+		Log.d(TAG, "loaded recognitionmodule in " + (System.nanoTime() - start) / 1000000 + " ms: " + r);
+		return r;
+	}
 
-		} finally {
-			if (objectInputStream != null) {
-				try {
-					objectInputStream.close();
-				} catch (IOException e) {
-				}
-			}
+	/**
+	 * Opens a {@link RecognitionModule} for classification: classifiers get
+	 * loaded from its {@link ModelContainer} when needed first, see
+	 * {@link RecognitionModule#open(ModelContainer, int)}. Modules stored by
+	 * Java serialization in earlier versions cannot be opened, see
+	 * {@link #rejectLegacyRecognitionModule(File)}.
+	 * 
+	 * @param _directory
+	 * @param _maxLoadedClassifiers
+	 *            amount of classifiers per type that stay loaded at most.
+	 * @return
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static RecognitionModule openRecognitionModule(File _directory, int _maxLoadedClassifiers)
+			throws IOException, ClassNotFoundException {
+		File containerFile = new File(_directory, RECOGNITION_MODULE_FILE_NAME);
+		if (!containerFile.exists()) {
+			return rejectLegacyRecognitionModule(_directory);
 		}
+		long start = System.nanoTime();
+		RecognitionModule r = RecognitionModule.open(new ModelContainer(containerFile), _maxLoadedClassifiers);
+		Log.d(TAG, "opened recognitionmodule in " + (System.nanoTime() - start) / 1000 + " us: " + r);
 		return r;
 	}
 
+	/**
+	 * Called if there is no {@link ModelContainer}. Modules of earlier versions
+	 * (Java serialization plus libsvm model files of each
+	 * {@link SvmClassifier}) cannot be read any more, as their classes
+	 * changed: the user gets asked to train again. Their files stay until
+	 * {@link #serializeRecognitionModule(File, RecognitionModule)} replaced
+	 * them.
+	 * 
+	 * @param _directory
+	 * @throws FileNotFoundException
+	 *             always, there is no readable module.
+	 */
+	private static RecognitionModule rejectLegacyRecognitionModule(File _directory) throws FileNotFoundException {
+		File legacyFile = new File(_directory, LEGACY_RECOGNITION_MODULE_FILE_NAME);
+		if (!legacyFile.exists()) {
+			throw new FileNotFoundException("No recognition module in " + _directory + ".");
+		}
+		Log.w(TAG, "recognition module of an earlier version found, it needs to be trained again.");
+		throw new FileNotFoundException("Recognition module in " + _directory
+				+ " is of an earlier version, retraining required.");
+	}
+
 	/**
 	 * @return true if sd card is available (mounted) with read/write access.
 	 */
@@ -0,0 +1,247 @@
+package at.usmile.panshot.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import android.util.Log;
+import at.usmile.tuple.GenericTuple2;
+
+/**
+ * Cache of preprocessed (e.g. energy normalised and resized) gray faces of a
+ * single user, so retraining does not need to decode and preprocess
+ * unchanged face images again. The cache is a single file that gets memory
+ * mapped: cached faces are copied from the mapping, without any decoding.
+ * <p>
+ * Faces are addressed by their source file (panshot directory, name, size
+ * and modification time). The file is only valid for the preprocessing
+ * parameters it was written with, for other parameters it counts as empty.
+ * Format (big endian): magic, version, parameter key (length + UTF-8 bytes),
+ * face width, face height, entry count, then per entry its key (length +
+ * UTF-8 bytes) followed by width * height pixels (8 bit, row by row).
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class FaceCache {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final String TAG = FaceCache.class.getSimpleName();
+	private static final int MAGIC = 0x50534643;
+	private static final int VERSION = 1;
+
+	private final File mFile;
+	private final String mParameterKey;
+	/** the mapped file, null if there is no valid cache. */
+	private ByteBuffer mMapped = null;
+	private int mWidth = 0;
+	private int mHeight = 0;
+	/** per entry key: offset of its pixels in {@link #mMapped}. */
+	private final Map<String, Integer> mPixelOffsets = new HashMap<String, Integer>();
+	private final AtomicInteger mHits = new AtomicInteger();
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * Opens the cache file, if it exists and was written with the same
+	 * parameters. Broken files count as empty caches.
+	 *
+	 * @param _file
+	 * @param _parameterKey
+	 *            identifies the preprocessing parameters.
+	 */
+	public FaceCache(File _file, String _parameterKey) {
+		mFile = _file;
+		mParameterKey = _parameterKey;
+		if (!_file.exists()) {
+			return;
+		}
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(_file, "r");
+			ByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION || !_parameterKey.equals(readString(mapped))) {
+				Log.d(TAG, "cache " + _file + " does not match, ignoring it.");
+				return;
+			}
+			mWidth = mapped.getInt();
+			mHeight = mapped.getInt();
+			int entryCount = mapped.getInt();
+			int pixelCount = mWidth * mHeight;
+			for (int entryNr = 0; entryNr < entryCount; entryNr++) {
+				String key = readString(mapped);
+				if (mapped.remaining() < pixelCount) {
+					throw new BufferUnderflowException();
+				}
+				mPixelOffsets.put(key, mapped.position());
+				mapped.position(mapped.position() + pixelCount);
+			}
+			mMapped = mapped;
+		} catch (IOException e) {
+			Log.w(TAG, "cannot read cache " + _file + ", ignoring it.", e);
+			mPixelOffsets.clear();
+		} catch (RuntimeException e) {
+			// truncated or otherwise broken file
+			Log.w(TAG, "broken cache " + _file + ", ignoring it.", e);
+			mPixelOffsets.clear();
+		} finally {
+			if (file != null) {
+				try {
+					// the mapping stays valid
+					file.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param _faceFile
+	 *            the face image the preprocessed face stems from.
+	 * @return the preprocessed face (CV_8UC1), null if not cached. Thread
+	 *         safe.
+	 */
+	public Mat get(File _faceFile) {
+		if (mMapped == null) {
+			return null;
+		}
+		Integer offset = mPixelOffsets.get(getEntryKey(_faceFile));
+		if (offset == null) {
+			return null;
+		}
+		byte[] pixels = new byte[mWidth * mHeight];
+		// own view per call, the position is not shared
+		ByteBuffer view = mMapped.duplicate();
+		view.position(offset);
+		view.get(pixels);
+		Mat face = new Mat(mHeight, mWidth, CvType.CV_8UC1);
+		face.put(0, 0, pixels);
+		mHits.incrementAndGet();
+		return face;
+	}
+
+	/**
+	 * @return amount of faces {@link #get(File)} found so far.
+	 */
+	public int getHitCount() {
+		return mHits.get();
+	}
+
+	/**
+	 * @return amount of faces in the cache file.
+	 */
+	public int getEntryCount() {
+		return mPixelOffsets.size();
+	}
+
+	/**
+	 * @param _faceCount
+	 *            amount of faces currently belonging to the user.
+	 * @return true if all of them came from the cache and the cache holds
+	 *         nothing else, so rewriting it would not change it.
+	 */
+	public boolean isUpToDate(int _faceCount) {
+		return getHitCount() == _faceCount && getEntryCount() == _faceCount;
+	}
+
+	/**
+	 * Replaces the cache file with the given faces. Writes to a temporary file
+	 * first, so readers never see a partial cache. Without faces, or with
+	 * faces that cannot be cached, the cache file gets removed.
+	 *
+	 * @param _faces
+	 *            per face: its source file and the preprocessed face. all
+	 *            faces need to be CV_8UC1 and of the same size.
+	 * @return false if the faces cannot be cached (other types or sizes).
+	 * @throws IOException
+	 */
+	public boolean write(List<GenericTuple2<File, Mat>> _faces) throws IOException {
+		if (_faces.isEmpty()) {
+			delete();
+			return true;
+		}
+		Mat first = _faces.get(0).value2;
+		for (GenericTuple2<File, Mat> face : _faces) {
+			Mat m = face.value2;
+			if (m.type() != CvType.CV_8UC1 || m.rows() != first.rows() || m.cols() != first.cols()) {
+				delete();
+				return false;
+			}
+		}
+		File tmpFile = new File(mFile.getParentFile(), mFile.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, mParameterKey);
+			out.writeInt(first.cols());
+			out.writeInt(first.rows());
+			out.writeInt(_faces.size());
+			byte[] pixels = new byte[first.rows() * first.cols()];
+			for (GenericTuple2<File, Mat> face : _faces) {
+				writeString(out, getEntryKey(face.value1));
+				RecognitionUtil.transformImageToPixels(face.value2, pixels);
+				out.write(pixels);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(mFile)) {
+			tmpFile.delete();
+			throw new IOException("Cannot replace " + mFile + ".");
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the cache file, if there is one.
+	 */
+	private void delete() throws IOException {
+		if (mFile.exists() && !mFile.delete()) {
+			throw new IOException("Cannot delete " + mFile + ".");
+		}
+	}
+
+	/**
+	 * @return the key of a face file: its panshot directory and name, size
+	 *         and modification time. changes if the file changes.
+	 */
+	private static String getEntryKey(File _faceFile) {
+		return _faceFile.getParentFile().getName() + "/" + _faceFile.getName() + ":" + _faceFile.length() + ":"
+				+ _faceFile.lastModified();
+	}
+
+	private static String readString(ByteBuffer _buffer) throws IOException {
+		int length = _buffer.getInt();
+		if (length < 0 || length > _buffer.remaining()) {
+			throw new IOException("invalid string length " + length + ".");
+		}
+		byte[] bytes = new byte[length];
+		_buffer.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeString(DataOutputStream _out, String _string) throws IOException {
+		byte[] bytes = _string.getBytes("UTF-8");
+		_out.writeInt(bytes.length);
+		_out.write(bytes);
+	}
+}
@@ -0,0 +1,151 @@
+package at.usmile.panshot.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads what {@link LittleEndianOutput} wrote, e.g. from a memory mapped
+ * file. Arrays get copied in bulk. Lengths get checked against the remaining
+ * bytes, so broken data fails with an {@link IOException} instead of huge
+ * allocations.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class LittleEndianInput {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private final ByteBuffer mBuffer;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _buffer
+	 *            data between its position and limit get read. _buffer itself
+	 *            does not get modified.
+	 */
+	public LittleEndianInput(ByteBuffer _buffer) {
+		mBuffer = _buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public byte getByte() {
+		return mBuffer.get();
+	}
+
+	public boolean getBoolean() {
+		return mBuffer.get() != 0;
+	}
+
+	public int getInt() {
+		return mBuffer.getInt();
+	}
+
+	public long getLong() {
+		return mBuffer.getLong();
+	}
+
+	public double getDouble() {
+		return mBuffer.getDouble();
+	}
+
+	/**
+	 * @return the string, can be null.
+	 */
+	public String getString() throws IOException {
+		int length = getLength(1);
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		mBuffer.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * @return the array, can be null.
+	 */
+	public byte[] getBytes() throws IOException {
+		int length = getLength(1);
+		if (length < 0) {
+			return null;
+		}
+		byte[] values = new byte[length];
+		mBuffer.get(values);
+		return values;
+	}
+
+	/**
+	 * @return the array, can be null.
+	 */
+	public int[] getInts() throws IOException {
+		int length = getLength(4);
+		if (length < 0) {
+			return null;
+		}
+		int[] values = new int[length];
+		mBuffer.asIntBuffer().get(values);
+		mBuffer.position(mBuffer.position() + 4 * length);
+		return values;
+	}
+
+	/**
+	 * @return the array, can be null.
+	 */
+	public float[] getFloats() throws IOException {
+		int length = getLength(4);
+		if (length < 0) {
+			return null;
+		}
+		float[] values = new float[length];
+		mBuffer.asFloatBuffer().get(values);
+		mBuffer.position(mBuffer.position() + 4 * length);
+		return values;
+	}
+
+	/**
+	 * @return the array, can be null.
+	 */
+	public double[] getDoubles() throws IOException {
+		int length = getLength(8);
+		if (length < 0) {
+			return null;
+		}
+		double[] values = new double[length];
+		getDoubles(values, 0, length);
+		return values;
+	}
+
+	/**
+	 * Reads _length elements stored without length.
+	 */
+	public void getDoubles(double[] _dst, int _offset, int _length) throws IOException {
+		if (_length > mBuffer.remaining() / 8) {
+			throw new IOException("data truncated.");
+		}
+		mBuffer.asDoubleBuffer().get(_dst, _offset, _length);
+		mBuffer.position(mBuffer.position() + 8 * _length);
+	}
+
+	/**
+	 * @return bytes left to read.
+	 */
+	public int remaining() {
+		return mBuffer.remaining();
+	}
+
+	/**
+	 * @return the length of the following array, -1 for null.
+	 */
+	private int getLength(int _elementSize) throws IOException {
+		int length = mBuffer.getInt();
+		if (length < -1 || length > mBuffer.remaining() / _elementSize) {
+			throw new IOException("invalid array length " + length + ".");
+		}
+		return length;
+	}
+}
@@ -0,0 +1,174 @@
+package at.usmile.panshot.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Growing in-memory buffer for binary model data: primitives and primitive
+ * arrays in little endian byte order, arrays in bulk. Arrays and strings are
+ * stored as their length (-1 for null) followed by their elements, see
+ * {@link LittleEndianInput} for reading them.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class LittleEndianOutput {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private ByteBuffer mBuffer;
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * @param _initialCapacity
+	 *            bytes to allocate initially, grows as needed.
+	 */
+	public LittleEndianOutput(int _initialCapacity) {
+		mBuffer = ByteBuffer.allocate(Math.max(16, _initialCapacity)).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void ensureRemaining(long _bytes) {
+		if (mBuffer.remaining() >= _bytes) {
+			return;
+		}
+		long capacity = Math.max(2L * mBuffer.capacity(), (long) mBuffer.position() + _bytes);
+		if (capacity > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("cannot buffer more than " + Integer.MAX_VALUE + " bytes.");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+		mBuffer.flip();
+		buffer.put(mBuffer);
+		mBuffer = buffer;
+	}
+
+	public void putByte(byte _value) {
+		ensureRemaining(1);
+		mBuffer.put(_value);
+	}
+
+	public void putBoolean(boolean _value) {
+		putByte((byte) (_value ? 1 : 0));
+	}
+
+	public void putInt(int _value) {
+		ensureRemaining(4);
+		mBuffer.putInt(_value);
+	}
+
+	public void putLong(long _value) {
+		ensureRemaining(8);
+		mBuffer.putLong(_value);
+	}
+
+	public void putDouble(double _value) {
+		ensureRemaining(8);
+		mBuffer.putDouble(_value);
+	}
+
+	/**
+	 * @param _value
+	 *            gets stored as UTF-8, can be null.
+	 */
+	public void putString(String _value) throws UnsupportedEncodingException {
+		if (_value == null) {
+			putInt(-1);
+			return;
+		}
+		byte[] bytes = _value.getBytes("UTF-8");
+		putInt(bytes.length);
+		ensureRemaining(bytes.length);
+		mBuffer.put(bytes);
+	}
+
+	/**
+	 * @param _values
+	 *            can be null.
+	 */
+	public void putBytes(byte[] _values) {
+		if (_values == null) {
+			putInt(-1);
+			return;
+		}
+		putInt(_values.length);
+		ensureRemaining(_values.length);
+		mBuffer.put(_values);
+	}
+
+	/**
+	 * @param _values
+	 *            can be null.
+	 */
+	public void putInts(int[] _values) {
+		if (_values == null) {
+			putInt(-1);
+			return;
+		}
+		putInt(_values.length);
+		ensureRemaining(4L * _values.length);
+		mBuffer.asIntBuffer().put(_values);
+		mBuffer.position(mBuffer.position() + 4 * _values.length);
+	}
+
+	/**
+	 * @param _values
+	 *            can be null.
+	 */
+	public void putFloats(float[] _values) {
+		if (_values == null) {
+			putInt(-1);
+			return;
+		}
+		putInt(_values.length);
+		ensureRemaining(4L * _values.length);
+		mBuffer.asFloatBuffer().put(_values);
+		mBuffer.position(mBuffer.position() + 4 * _values.length);
+	}
+
+	/**
+	 * @param _values
+	 *            can be null.
+	 */
+	public void putDoubles(double[] _values) {
+		if (_values == null) {
+			putInt(-1);
+			return;
+		}
+		putInt(_values.length);
+		putDoubles(_values, 0, _values.length);
+	}
+
+	/**
+	 * Stores the elements only, without length.
+	 */
+	public void putDoubles(double[] _values, int _offset, int _length) {
+		ensureRemaining(8L * _length);
+		mBuffer.asDoubleBuffer().put(_values, _offset, _length);
+		mBuffer.position(mBuffer.position() + 8 * _length);
+	}
+
+	/**
+	 * @return amount of bytes written so far.
+	 */
+	public int getSize() {
+		return mBuffer.position();
+	}
+
+	/**
+	 * @return the backing array, valid in [0, {@link #getSize()}) until the
+	 *         next put.
+	 */
+	public byte[] getArray() {
+		return mBuffer.array();
+	}
+
+	public void writeTo(OutputStream _out) throws IOException {
+		_out.write(mBuffer.array(), 0, mBuffer.position());
+	}
+}
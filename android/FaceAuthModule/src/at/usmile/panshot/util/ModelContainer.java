@@ -0,0 +1,337 @@
+package at.usmile.panshot.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import at.usmile.panshot.recognition.RecognitionModule;
+import at.usmile.panshot.recognition.knn.KnnClassifier;
+import at.usmile.panshot.recognition.svm.SvmClassifier;
+
+/**
+ * Versioned binary container of a trained {@link RecognitionModule}, with one
+ * section per classifier (SVM or KNN) and classifier index. The file gets
+ * memory mapped, sections get decoded independently and only when needed.
+ * <p>
+ * Format (little endian): magic, version, section count, per section its
+ * type, classifier index, offset, length and CRC32, then the CRC32 of all
+ * preceding header bytes. Sections start at multiples of
+ * {@link #SECTION_ALIGNMENT}. SVM sections are written by
+ * {@link SvmClassifier#writeBinary(LittleEndianOutput)}, KNN sections are
+ * galleries written by {@link KnnClassifier#writeGallery(java.nio.ByteBuffer)}
+ * whose features stay in the mapping. KNN classifiers with an index get
+ * written by {@link KnnClassifier#writeBinary(LittleEndianOutput)} instead.
+ * A section's checksum gets verified each time it gets read. Containers of
+ * version 1 stored indexed KNN classifiers by Java serialization and are not
+ * read any more.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class ModelContainer {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	private static final int MAGIC = 0x5053524d;
+	private static final int VERSION = 2;
+	private static final int SECTION_SVM = 1;
+	private static final int SECTION_KNN = 2;
+	/**
+	 * KNN classifiers with a VP-tree or product quantised codes, which
+	 * galleries cannot hold.
+	 */
+	private static final int SECTION_KNN_INDEXED = 3;
+	/** bytes of a section's entry in the header. */
+	private static final int SECTION_ENTRY_SIZE = 4 + 4 + 8 + 8 + 4;
+	private static final int SECTION_ALIGNMENT = 16;
+	private static final int CHECKSUM_CHUNK_SIZE = 64 * 1024;
+
+	/** a section's entry in the header. */
+	private static class Section {
+		int type;
+		int classifierIndex;
+		long offset;
+		long length;
+		int checksum;
+	}
+
+	private final File mFile;
+	private final ByteBuffer mMapped;
+	/** sections by classifier index, per type. */
+	private final Map<Integer, Section> mSvmSections = new HashMap<Integer, Section>();
+	private final Map<Integer, Section> mKnnSections = new HashMap<Integer, Section>();
+
+	// ================================================================================================================
+	// METHODS
+
+	/**
+	 * Maps the container and reads its header. Sections get read by the
+	 * read methods.
+	 *
+	 * @param _file
+	 * @throws IOException
+	 *             if the file cannot be read or is no valid container.
+	 */
+	public ModelContainer(File _file) throws IOException {
+		mFile = _file;
+		RandomAccessFile file = new RandomAccessFile(_file, "r");
+		try {
+			mMapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} finally {
+			// the mapping stays valid
+			file.close();
+		}
+		try {
+			ByteBuffer header = mMapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC) {
+				throw new IOException(_file + " is no model container.");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported model container version " + version + ".");
+			}
+			int sectionCount = header.getInt();
+			if (sectionCount < 0 || sectionCount > header.remaining() / SECTION_ENTRY_SIZE) {
+				throw new IOException("invalid section count " + sectionCount + ".");
+			}
+			for (int sectionNr = 0; sectionNr < sectionCount; sectionNr++) {
+				Section section = new Section();
+				section.type = header.getInt();
+				section.classifierIndex = header.getInt();
+				section.offset = header.getLong();
+				section.length = header.getLong();
+				section.checksum = header.getInt();
+				if (section.offset < 0 || section.length < 0 || section.offset + section.length > mMapped.capacity()) {
+					throw new IOException("section " + sectionNr + " exceeds the container.");
+				}
+				if (section.type == SECTION_SVM) {
+					mSvmSections.put(section.classifierIndex, section);
+				} else if (section.type == SECTION_KNN || section.type == SECTION_KNN_INDEXED) {
+					mKnnSections.put(section.classifierIndex, section);
+				}
+				// unknown sections of later versions get ignored
+			}
+			int headerChecksum = header.getInt();
+			if (headerChecksum != checksum(mMapped, 0, header.position() - 4)) {
+				throw new IOException("header checksum mismatch.");
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("broken model container " + _file + ": " + e);
+		}
+	}
+
+	/**
+	 * Writes all classifiers of the module to a container, via a temporary
+	 * file, so readers never see a partial container.
+	 *
+	 * @param _file
+	 * @param _recognitionModule
+	 * @throws IOException
+	 */
+	public static void write(File _file, RecognitionModule _recognitionModule) throws IOException {
+		// encode all sections first, their sizes define the header
+		List<Section> sections = new ArrayList<Section>();
+		List<byte[]> contents = new ArrayList<byte[]>();
+		for (Map.Entry<Integer, SvmClassifier> entry : _recognitionModule.getSvmClassifiers().entrySet()) {
+			LittleEndianOutput out = new LittleEndianOutput(64 * 1024);
+			entry.getValue().writeBinary(out);
+			addSection(sections, contents, SECTION_SVM, entry.getKey(), out.getArray(), out.getSize());
+		}
+		for (Map.Entry<Integer, KnnClassifier> entry : _recognitionModule.getKnnClassifiers().entrySet()) {
+			if (entry.getValue().hasIndex()) {
+				LittleEndianOutput out = new LittleEndianOutput(64 * 1024);
+				entry.getValue().writeBinary(out);
+				addSection(sections, contents, SECTION_KNN_INDEXED, entry.getKey(), out.getArray(), out.getSize());
+				continue;
+			}
+			long size = entry.getValue().getGallerySize();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("KNN gallery of classifier " + entry.getKey() + " too large.");
+			}
+			ByteBuffer gallery = ByteBuffer.allocate((int) size);
+			entry.getValue().writeGallery(gallery);
+			addSection(sections, contents, SECTION_KNN, entry.getKey(), gallery.array(), gallery.capacity());
+		}
+		long offset = align(12 + sections.size() * SECTION_ENTRY_SIZE + 4);
+		for (Section section : sections) {
+			section.offset = offset;
+			offset = align(offset + section.length);
+		}
+		LittleEndianOutput header = new LittleEndianOutput(12 + sections.size() * SECTION_ENTRY_SIZE + 4);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(sections.size());
+		for (Section section : sections) {
+			header.putInt(section.type);
+			header.putInt(section.classifierIndex);
+			header.putLong(section.offset);
+			header.putLong(section.length);
+			header.putInt(section.checksum);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(header.getArray(), 0, header.getSize());
+		header.putInt((int) crc.getValue());
+
+		File tmpFile = new File(_file.getParentFile(), _file.getName() + ".tmp");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+		try {
+			header.writeTo(out);
+			long position = header.getSize();
+			for (int sectionNr = 0; sectionNr < sections.size(); sectionNr++) {
+				Section section = sections.get(sectionNr);
+				for (; position < section.offset; position++) {
+					out.write(0);
+				}
+				out.write(contents.get(sectionNr), 0, (int) section.length);
+				position += section.length;
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(_file)) {
+			tmpFile.delete();
+			throw new IOException("Cannot replace " + _file + ".");
+		}
+	}
+
+	private static void addSection(List<Section> _sections, List<byte[]> _contents, int _type, int _classifierIndex,
+			byte[] _content, int _length) {
+		Section section = new Section();
+		section.type = _type;
+		section.classifierIndex = _classifierIndex;
+		section.length = _length;
+		CRC32 crc = new CRC32();
+		crc.update(_content, 0, _length);
+		section.checksum = (int) crc.getValue();
+		_sections.add(section);
+		_contents.add(_content);
+	}
+
+	private static long align(long _offset) {
+		return (_offset + SECTION_ALIGNMENT - 1) / SECTION_ALIGNMENT * SECTION_ALIGNMENT;
+	}
+
+	/**
+	 * @return CRC32 of _length bytes of _buffer starting at _offset.
+	 */
+	private static int checksum(ByteBuffer _buffer, long _offset, long _length) {
+		ByteBuffer view = _buffer.duplicate();
+		view.position((int) _offset);
+		byte[] chunk = new byte[(int) Math.min(CHECKSUM_CHUNK_SIZE, _length)];
+		CRC32 crc = new CRC32();
+		for (long remaining = _length; remaining > 0;) {
+			int length = (int) Math.min(chunk.length, remaining);
+			view.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+			remaining -= length;
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * @return a view of the section's content, after verifying its checksum.
+	 */
+	private ByteBuffer getContent(Section _section) throws IOException {
+		if (checksum(mMapped, _section.offset, _section.length) != _section.checksum) {
+			throw new IOException("checksum mismatch in " + mFile + " at classifier " + _section.classifierIndex + ".");
+		}
+		ByteBuffer content = mMapped.duplicate();
+		content.position((int) _section.offset);
+		content.limit((int) (_section.offset + _section.length));
+		return content.slice();
+	}
+
+	/**
+	 * @return classifier indices of all SVM classifiers, ascending.
+	 */
+	public Set<Integer> getSvmClassifierIndices() {
+		return new TreeSet<Integer>(mSvmSections.keySet());
+	}
+
+	/**
+	 * @return classifier indices of all KNN classifiers, ascending.
+	 */
+	public Set<Integer> getKnnClassifierIndices() {
+		return new TreeSet<Integer>(mKnnSections.keySet());
+	}
+
+	/**
+	 * Decodes the SVM classifier of a classifier index. Thread safe.
+	 *
+	 * @param _classifierIndex
+	 * @return the classifier, null if the container has none for the index.
+	 * @throws IOException
+	 *             if the section is broken.
+	 */
+	public SvmClassifier readSvmClassifier(int _classifierIndex) throws IOException {
+		Section section = mSvmSections.get(_classifierIndex);
+		if (section == null) {
+			return null;
+		}
+		try {
+			return SvmClassifier.readBinary(new LittleEndianInput(getContent(section)));
+		} catch (RuntimeException e) {
+			throw new IOException("broken SVM classifier " + _classifierIndex + " in " + mFile + ": " + e);
+		}
+	}
+
+	/**
+	 * Opens the KNN classifier of a classifier index, its features stay in
+	 * the mapped container. Thread safe.
+	 *
+	 * @param _classifierIndex
+	 * @return the classifier, null if the container has none for the index.
+	 * @throws IOException
+	 *             if the section is broken.
+	 */
+	public KnnClassifier readKnnClassifier(int _classifierIndex) throws IOException {
+		Section section = mKnnSections.get(_classifierIndex);
+		if (section == null) {
+			return null;
+		}
+		try {
+			ByteBuffer content = getContent(section);
+			if (section.type == SECTION_KNN) {
+				return KnnClassifier.readGallery(content);
+			}
+			return KnnClassifier.readBinary(new LittleEndianInput(content));
+		} catch (RuntimeException e) {
+			throw new IOException("broken KNN classifier " + _classifierIndex + " in " + mFile + ": " + e);
+		}
+	}
+
+	/**
+	 * @return a module containing all classifiers of the container.
+	 * @throws IOException
+	 *             if a section is broken.
+	 */
+	public RecognitionModule readRecognitionModule() throws IOException {
+		Map<Integer, SvmClassifier> svmClassifiers = new HashMap<Integer, SvmClassifier>();
+		for (Integer classifierIndex : mSvmSections.keySet()) {
+			svmClassifiers.put(classifierIndex, readSvmClassifier(classifierIndex));
+		}
+		Map<Integer, KnnClassifier> knnClassifiers = new HashMap<Integer, KnnClassifier>();
+		for (Integer classifierIndex : mKnnSections.keySet()) {
+			knnClassifiers.put(classifierIndex, readKnnClassifier(classifierIndex));
+		}
+		RecognitionModule recognitionModule = new RecognitionModule();
+		recognitionModule.setSvmClassifiers(svmClassifiers);
+		recognitionModule.setKnnClassifiers(knnClassifiers);
+		return recognitionModule;
+	}
+}
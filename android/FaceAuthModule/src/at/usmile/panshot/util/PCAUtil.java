@@ -12,6 +12,10 @@ import android.util.Log;
 import at.usmile.functional.FunApply;
 import at.usmile.functional.FunUtil;
 import at.usmile.panshot.PanshotImage;
+import at.usmile.panshot.recognition.pca.GramPca;
+import at.usmile.panshot.recognition.pca.IncrementalPca;
+import at.usmile.panshot.recognition.pca.PcaBasis;
+import at.usmile.panshot.recognition.pca.RandomizedPca;
 import at.usmile.tuple.GenericTuple3;
 
 /**
@@ -23,6 +27,49 @@ import at.usmile.tuple.GenericTuple3;
  */
 public class PCAUtil {
 
+	/** Algorithms computing PCA. */
+	public static enum PcaEngine {
+		/**
+		 * {@link #GRAM} for less images than pixels (up to
+		 * {@link PCAUtil#GRAM_PCA_MAX_SAMPLES}), {@link #STREAMING} if the
+		 * images' features would exceed {@link PCAUtil#SAMPLE_MATRIX_MAX_BYTES},
+		 * else {@link #RANDOMIZED} if only few components are kept (see
+		 * {@link PCAUtil#RANDOMIZED_PCA_MIN_RANK_RATIO}), else {@link #OPENCV}.
+		 */
+		AUTO,
+		/** OpenCV's PCACompute. */
+		OPENCV,
+		/** exact, via the images' Gram matrix, see {@link GramPca}. */
+		GRAM,
+		/** approximate, via randomised SVD, see {@link RandomizedPca}. */
+		RANDOMIZED,
+		/**
+		 * approximate, streaming images one at a time into an
+		 * {@link IncrementalPca}, which overlaps the PCA with loading. Needs
+		 * no n x d sample matrix, images get projected one by one. The images
+		 * themselves stay loaded for training the classifiers though.
+		 */
+		STREAMING
+	}
+
+	/**
+	 * {@link PcaEngine#AUTO} uses the Gram matrix engine up to this amount of
+	 * images. Its eigendecomposition grows cubically with the images.
+	 */
+	private static final int GRAM_PCA_MAX_SAMPLES = 200;
+	/**
+	 * {@link PcaEngine#AUTO} uses the randomised engine beyond
+	 * {@link #GRAM_PCA_MAX_SAMPLES} images if min(images, pixels) is at least
+	 * this many times the amount of kept components. Its cost grows with the
+	 * kept components instead of with min(images, pixels) like OpenCV's.
+	 */
+	private static final int RANDOMIZED_PCA_MIN_RANK_RATIO = 8;
+	/**
+	 * {@link PcaEngine#AUTO} streams images if their features as floats (the
+	 * n x d sample matrix all other engines build) would need more bytes.
+	 */
+	private static final long SAMPLE_MATRIX_MAX_BYTES = 16 * 1024 * 1024;
+
 	/**
 	 * PCA transformation of pan shot images. the indexing of images and pca
 	 * transformed features is the same (e.g. image nr 1 in _images corresponds
@@ -59,6 +106,184 @@ public class PCAUtil {
 		return pcaCompute;
 	}
 
+	/**
+	 * Same as {@link #pcaCompute(List)}, but keeps only the leading
+	 * _maxComponents components, using {@link PcaEngine#AUTO}.
+	 * 
+	 * @param _images
+	 * @param _maxComponents
+	 * @return in this order: mean of data (1 x d), eigenvectors of data (k x
+	 *         d), projections of data into eigenspace (n x k).
+	 */
+	public static GenericTuple3<Mat, Mat, Mat> pcaCompute(List<PanshotImage> _images, int _maxComponents) {
+		return pcaCompute(_images, _maxComponents, PcaEngine.AUTO);
+	}
+
+	/**
+	 * Same as {@link #pcaCompute(List, int)}, using the given engine.
+	 */
+	public static GenericTuple3<Mat, Mat, Mat> pcaCompute(List<PanshotImage> _images, int _maxComponents,
+			PcaEngine _engine) {
+		GenericTuple3<Mat, Mat, Mat> pca = computeWithEngine(_images, _maxComponents, _engine);
+		setPcaFaces(_images, pca.value3);
+		return pca;
+	}
+
+	/**
+	 * Computes PCA without touching the images' PCA faces.
+	 */
+	private static GenericTuple3<Mat, Mat, Mat> computeWithEngine(List<PanshotImage> _images, int _maxComponents,
+			PcaEngine _engine) {
+		Mat firstFace = _images.get(0).grayFace;
+		int sampleCount = _images.size();
+		int featureCount = firstFace.rows() * firstFace.cols();
+		PcaEngine engine = _engine;
+		if (engine == PcaEngine.AUTO) {
+			// the Gram matrix is the smaller one for less images than pixels
+			engine = chooseEngine(sampleCount, featureCount, _maxComponents);
+		}
+		if (engine == PcaEngine.OPENCV) {
+			List<Mat> samplesList = FunUtil.apply(_images, new FunApply<PanshotImage, Mat>() {
+				@Override
+				public Mat apply(PanshotImage _t) {
+					return _t.grayFace;
+				}
+			});
+			Mat samplesMat = RecognitionUtil.transformImagesToFeatureMatrix(samplesList);
+			Mat mean = new Mat();
+			Mat eigenvectors = new Mat();
+			Core.PCACompute(samplesMat, mean, eigenvectors, _maxComponents);
+			Mat projections = new Mat();
+			Core.PCAProject(samplesMat, mean, eigenvectors, projections);
+			return new GenericTuple3<Mat, Mat, Mat>(mean, eigenvectors, projections);
+		}
+		if (engine == PcaEngine.STREAMING) {
+			IncrementalPca incrementalPca = new IncrementalPca(featureCount, _maxComponents);
+			float[] sample = new float[featureCount];
+			for (PanshotImage image : _images) {
+				addToIncrementalPca(incrementalPca, image, sample);
+			}
+			return pcaCompute(_images, incrementalPca, false);
+		}
+		float[] samples = new float[sampleCount * featureCount];
+		for (int imageNr = 0; imageNr < sampleCount; imageNr++) {
+			Mat face = _images.get(imageNr).grayFace;
+			if (face.rows() != firstFace.rows() || face.cols() != firstFace.cols()) {
+				throw new RuntimeException("Cannot compute PCA of faces of different size.");
+			}
+			RecognitionUtil.transformImageToFeatureVector(face, samples, imageNr * featureCount);
+		}
+		GenericTuple3<float[], float[], float[]> pca;
+		if (engine == PcaEngine.RANDOMIZED) {
+			pca = RandomizedPca.compute(samples, sampleCount, featureCount, _maxComponents);
+		} else {
+			pca = GramPca.compute(samples, sampleCount, featureCount, _maxComponents);
+		}
+		int componentCount = pca.value2.length / featureCount;
+		Mat mean = toMat(pca.value1, 1, featureCount);
+		Mat eigenvectors = toMat(pca.value2, componentCount, featureCount);
+		Mat projections = toMat(pca.value3, sampleCount, componentCount);
+		return new GenericTuple3<Mat, Mat, Mat>(mean, eigenvectors, projections);
+	}
+
+	/**
+	 * @return the engine {@link PcaEngine#AUTO} uses for _sampleCount images
+	 *         of _featureCount pixels, keeping _maxComponents components.
+	 */
+	public static PcaEngine chooseEngine(int _sampleCount, int _featureCount, int _maxComponents) {
+		// the Gram matrix is the smaller one for less images than pixels
+		if (_sampleCount < _featureCount && _sampleCount <= GRAM_PCA_MAX_SAMPLES) {
+			return PcaEngine.GRAM;
+		}
+		if (4L * _sampleCount * _featureCount > SAMPLE_MATRIX_MAX_BYTES) {
+			return PcaEngine.STREAMING;
+		}
+		if ((long) _maxComponents * RANDOMIZED_PCA_MIN_RANK_RATIO <= Math.min(_sampleCount, _featureCount)) {
+			return PcaEngine.RANDOMIZED;
+		}
+		return PcaEngine.OPENCV;
+	}
+
+	/**
+	 * Adds the face of an image to a streaming PCA.
+	 * 
+	 * @param _incrementalPca
+	 * @param _image
+	 * @param _buffer
+	 *            reused for the face's features, featureCount entries.
+	 */
+	public static void addToIncrementalPca(IncrementalPca _incrementalPca, PanshotImage _image, float[] _buffer) {
+		Mat face = _image.grayFace;
+		if (face.rows() * face.cols() != _incrementalPca.getFeatureCount()) {
+			throw new RuntimeException("Cannot compute PCA of faces of different size.");
+		}
+		RecognitionUtil.transformImageToFeatureVector(face, _buffer, 0);
+		_incrementalPca.add(_buffer, 0);
+	}
+
+	/**
+	 * Finishes a streaming PCA the images have been added to: the images get
+	 * projected into its eigenspace one by one and their PCA faces get set.
+	 * 
+	 * @param _images
+	 *            the images added to _incrementalPca.
+	 * @param _incrementalPca
+	 * @return in this order: mean of data (1 x d), eigenvectors of data (k x
+	 *         d), projections of data into eigenspace (n x k).
+	 */
+	public static GenericTuple3<Mat, Mat, Mat> pcaCompute(List<PanshotImage> _images, IncrementalPca _incrementalPca) {
+		return pcaCompute(_images, _incrementalPca, true);
+	}
+
+	private static GenericTuple3<Mat, Mat, Mat> pcaCompute(List<PanshotImage> _images, IncrementalPca _incrementalPca,
+			boolean _setPcaFaces) {
+		int featureCount = _incrementalPca.getFeatureCount();
+		float[] eigenvectorValues = _incrementalPca.getEigenvectors();
+		if (eigenvectorValues.length == 0) {
+			throw new RuntimeException("Cannot compute PCA of " + _images.size() + " images without variance.");
+		}
+		int componentCount = eigenvectorValues.length / featureCount;
+		float[] meanValues = _incrementalPca.getMean();
+		PcaBasis basis = new PcaBasis(meanValues, eigenvectorValues, componentCount);
+		// project image by image, without a sample matrix
+		int sampleCount = _images.size();
+		float[] projectionValues = new float[sampleCount * componentCount];
+		byte[] pixelBuffer = new byte[featureCount];
+		float[] featureBuffer = new float[featureCount];
+		float[] projection = new float[componentCount];
+		for (int imageNr = 0; imageNr < sampleCount; imageNr++) {
+			pcaProject(_images.get(imageNr).grayFace, basis, pixelBuffer, featureBuffer, projection);
+			System.arraycopy(projection, 0, projectionValues, imageNr * componentCount, componentCount);
+		}
+		Mat mean = toMat(meanValues, 1, featureCount);
+		Mat eigenvectors = toMat(eigenvectorValues, componentCount, featureCount);
+		Mat projections = toMat(projectionValues, sampleCount, componentCount);
+		if (_setPcaFaces) {
+			setPcaFaces(_images, projections);
+		}
+		return new GenericTuple3<Mat, Mat, Mat>(mean, eigenvectors, projections);
+	}
+
+	/**
+	 * Sets row i of _projections as PCA face of image i.
+	 */
+	private static void setPcaFaces(List<PanshotImage> _images, Mat _projections) {
+		for (int imageNr = 0; imageNr < _projections.rows(); imageNr++) {
+			_images.get(imageNr).pcaFace = _projections.submat(imageNr, imageNr + 1, 0, _projections.cols());
+		}
+	}
+
+	/**
+	 * @return a CV_32F Mat holding the packed rows of _data.
+	 */
+	private static Mat toMat(float[] _data, int _rows, int _cols) {
+		Mat mat = new Mat(_rows, _cols, CvType.CV_32F);
+		if (_data.length > 0) {
+			mat.put(0, 0, _data);
+		}
+		return mat;
+	}
+
 	public static GenericTuple3<Mat, Mat, Mat> pcaCompute(Mat _samplesMat) {
 		// calculate mean and vectors
 		Mat mean = new Mat();
@@ -118,6 +343,119 @@ public class PCAUtil {
 		}, _mean, _eigenvectors);
 	}
 
+	/**
+	 * Truncates an eigenspace to the leading components, as classifiers keep
+	 * it.
+	 * 
+	 * @param _mean
+	 *            1 x d.
+	 * @param _eigenvectors
+	 *            one per row, sorted by decreasing variance.
+	 * @param _maxComponents
+	 *            amount of components to keep at most.
+	 */
+	public static PcaBasis toPcaBasis(Mat _mean, Mat _eigenvectors, int _maxComponents) {
+		Mat mean = new Mat();
+		_mean.convertTo(mean, CvType.CV_32F);
+		int componentCount = Math.min(_eigenvectors.rows(), _maxComponents);
+		Mat eigenvectors = new Mat();
+		_eigenvectors.rowRange(0, componentCount).convertTo(eigenvectors, CvType.CV_32F);
+		float[] meanValues = new float[(int) mean.total()];
+		mean.get(0, 0, meanValues);
+		float[] eigenvectorValues = new float[componentCount * meanValues.length];
+		if (eigenvectorValues.length > 0) {
+			eigenvectors.get(0, 0, eigenvectorValues);
+		}
+		return new PcaBasis(meanValues, eigenvectorValues, componentCount);
+	}
+
+	/**
+	 * Projects an image into a truncated eigenspace: one dot product per kept
+	 * component.
+	 * 
+	 * @return the 1 x k CV_32F projection.
+	 */
+	public static Mat pcaProject(PanshotImage _image, PcaBasis _basis) {
+		float[] projection = new float[_basis.getComponentCount()];
+		if (_image.grayFace.depth() == CvType.CV_8U && _image.grayFace.channels() == 1) {
+			pcaProject(_image.grayFace, _basis, new byte[_basis.getFeatureCount()], null, projection);
+		} else {
+			pcaProject(_image.grayFace, _basis, null, new float[_basis.getFeatureCount()], projection);
+		}
+		return toMat(projection, 1, projection.length);
+	}
+
+	/**
+	 * Single probe projection without intermediate Mats: the face's pixels
+	 * get read once (a single native call for continuous 8 bit faces), then
+	 * get projected by {@link PcaBasis#project(byte[], float[], int)}. Other
+	 * faces get read to features and projected by
+	 * {@link PcaBasis#project(float[], int, float[], int)}.
+	 * 
+	 * @param _face
+	 *            the resized gray face.
+	 * @param _basis
+	 * @param _pixelBuffer
+	 *            reused for the pixels of 8 bit faces, featureCount entries.
+	 *            may be null for other faces.
+	 * @param _featureBuffer
+	 *            reused for the features of other faces, featureCount
+	 *            entries. may be null for 8 bit faces.
+	 * @param _dst
+	 *            gets the componentCount projections, starting at 0.
+	 */
+	public static void pcaProject(Mat _face, PcaBasis _basis, byte[] _pixelBuffer, float[] _featureBuffer,
+			float[] _dst) {
+		if (_face.rows() * _face.cols() != _basis.getFeatureCount()) {
+			throw new RuntimeException("Face size does not match the size of the eigenvectors.");
+		}
+		if (_face.depth() == CvType.CV_8U && _face.channels() == 1) {
+			RecognitionUtil.transformImageToPixels(_face, _pixelBuffer);
+			_basis.project(_pixelBuffer, _dst, 0);
+		} else {
+			RecognitionUtil.transformImageToFeatureVector(_face, _featureBuffer, 0);
+			_basis.project(_featureBuffer, 0, _dst, 0);
+		}
+	}
+
+	/**
+	 * Measures how well an eigenspace represents images: the fraction of the
+	 * images' energy (squared distance to the mean) that gets lost when
+	 * projecting them into the eigenspace.
+	 * 
+	 * @param _images
+	 * @param _basis
+	 * @return 0 if the eigenspace captures the images completely, 1 if it
+	 *         captures nothing of them.
+	 */
+	public static double residualEnergyFraction(List<PanshotImage> _images, PcaBasis _basis) {
+		int featureCount = _basis.getFeatureCount();
+		float[] mean = _basis.getMean();
+		float[] pixels = new float[featureCount];
+		float[] projection = new float[_basis.getComponentCount()];
+		// energy around the mean vs. energy captured by the projections
+		double energy = 0;
+		double capturedEnergy = 0;
+		for (PanshotImage image : _images) {
+			if (image.grayFace.rows() * image.grayFace.cols() != featureCount) {
+				throw new RuntimeException("Face size does not match the size of the eigenvectors.");
+			}
+			RecognitionUtil.transformImageToFeatureVector(image.grayFace, pixels, 0);
+			for (int f = 0; f < featureCount; f++) {
+				double diff = pixels[f] - mean[f];
+				energy += diff * diff;
+			}
+			_basis.project(pixels, 0, projection, 0);
+			for (float v : projection) {
+				capturedEnergy += v * v;
+			}
+		}
+		if (energy == 0) {
+			return 0;
+		}
+		return Math.max(0, 1 - capturedEnergy / energy);
+	}
+
 	public static void testPCAComputeMatMatMat() {
 		// test data
 		Mat data = new Mat(3, 6, CvType.CV_32F) {
@@ -0,0 +1,37 @@
+package at.usmile.panshot.util;
+
+import java.util.List;
+
+import at.usmile.panshot.PanshotImage;
+
+/**
+ * Gets notified by
+ * {@link DataUtil#loadTrainingData(android.content.Context, boolean, float, at.usmile.panshot.User, PanshotImageLoadListener)}
+ * about each image as soon as it has been loaded, e.g. to process training
+ * data while it streams in.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public interface PanshotImageLoadListener {
+
+	/**
+	 * Called once on the loading thread after listing, before any image gets
+	 * loaded.
+	 * 
+	 * @param _images
+	 *            all images that will be loaded, in loading order, with
+	 *            angles, angle index and user set but no face yet.
+	 */
+	void onImagesListed(List<PanshotImage> _images);
+
+	/**
+	 * Called on the loading thread, in loading order.
+	 *
+	 * @param _image
+	 *            the image with its gray face, angles, angle index and user
+	 *            set.
+	 */
+	void onImageLoaded(PanshotImage _image);
+}
@@ -0,0 +1,31 @@
+package at.usmile.panshot.util;
+
+import at.usmile.panshot.PanshotImage;
+
+/**
+ * Preprocesses images right after
+ * {@link DataUtil#loadTrainingData(android.content.Context, boolean, float, at.usmile.panshot.User, PanshotImagePreprocessor, PanshotImageLoadListener)}
+ * decoded them, e.g. energy normalisation and resizing.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public interface PanshotImagePreprocessor {
+
+	/**
+	 * Called on worker threads, concurrently for different images.
+	 *
+	 * @param _image
+	 *            the image with its gray face, angles, angle index and user
+	 *            set. gets modified in place.
+	 */
+	void preprocess(PanshotImage _image);
+
+	/**
+	 * @return identifies the preprocessing (e.g. its parameters): faces
+	 *         preprocessed with the same key are interchangeable and get
+	 *         cached, see {@link FaceCache}. null disables caching.
+	 */
+	String getParameterKey();
+}
@@ -2,6 +2,7 @@ package at.usmile.panshot.util;
 
 import java.util.List;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 
 /**
@@ -15,6 +16,15 @@ public class RecognitionUtil {
 
 	private static final String TAG = RecognitionUtil.class.getSimpleName();
 
+	/**
+	 * per thread scratch buffers for bulk pixel reads, grown on demand and
+	 * reused afterwards. per thread, as perspectives get trained and
+	 * classified in parallel.
+	 */
+	private static final ThreadLocal<byte[]> BYTE_SCRATCH = new ThreadLocal<byte[]>();
+	private static final ThreadLocal<float[]> FLOAT_SCRATCH = new ThreadLocal<float[]>();
+	private static final ThreadLocal<double[]> DOUBLE_SCRATCH = new ThreadLocal<double[]>();
+
 	/**
 	 * Get the pixel data from an image as double array.
 	 * 
@@ -23,42 +33,158 @@ public class RecognitionUtil {
 	 * @return
 	 */
 	public static double[] transformImageToFeatureVector(Mat _grayFace) {
-		int cols = _grayFace.cols();
-		int rows = _grayFace.rows();
-		double[] pixelData = new double[cols * rows];
+		double[] pixelData = new double[_grayFace.cols() * _grayFace.rows()];
+		transformImageToFeatureVector(_grayFace, pixelData, 0);
+		return pixelData;
+	}
 
-		for (int row = 0; row < rows; row++) {
-			for (int col = 0; col < cols; col++) {
-				double[] gray = _grayFace.get(row, col);
-				pixelData[row * cols + col] = gray[0];
+	/**
+	 * Copies the pixel data of an image into a float array, starting at
+	 * _offset, see {@link #readPixels(Mat)}. Pixels of CV_64F images get
+	 * rounded to float.
+	 *
+	 * @param _grayFace
+	 *            The pixel data as single channel Mat
+	 * @param _dst
+	 *            target array, needs at least _offset + rows * cols entries
+	 * @param _offset
+	 *            index of _dst the first pixel gets written to
+	 */
+	public static void transformImageToFeatureVector(Mat _grayFace, float[] _dst, int _offset) {
+		int pixelCount = _grayFace.rows() * _grayFace.cols();
+		Object pixels = readPixels(_grayFace);
+		if (pixels instanceof byte[]) {
+			byte[] bytes = (byte[]) pixels;
+			for (int i = 0; i < pixelCount; i++) {
+				_dst[_offset + i] = bytes[i] & 0xFF;
 			}
+		} else if (pixels instanceof double[]) {
+			double[] doubles = (double[]) pixels;
+			for (int i = 0; i < pixelCount; i++) {
+				_dst[_offset + i] = (float) doubles[i];
+			}
+		} else {
+			System.arraycopy((float[]) pixels, 0, _dst, _offset, pixelCount);
 		}
-		return pixelData;
+	}
+
+	/**
+	 * Same as {@link #transformImageToFeatureVector(Mat, float[], int)}, for
+	 * double arrays (e.g. libsvm). Pixels of CV_64F images keep their full
+	 * precision.
+	 */
+	public static void transformImageToFeatureVector(Mat _grayFace, double[] _dst, int _offset) {
+		int pixelCount = _grayFace.rows() * _grayFace.cols();
+		Object pixels = readPixels(_grayFace);
+		if (pixels instanceof byte[]) {
+			byte[] bytes = (byte[]) pixels;
+			for (int i = 0; i < pixelCount; i++) {
+				_dst[_offset + i] = bytes[i] & 0xFF;
+			}
+		} else if (pixels instanceof double[]) {
+			System.arraycopy((double[]) pixels, 0, _dst, _offset, pixelCount);
+		} else {
+			float[] floats = (float[]) pixels;
+			for (int i = 0; i < pixelCount; i++) {
+				_dst[_offset + i] = floats[i];
+			}
+		}
+	}
+
+	/**
+	 * Copies the raw pixels of an 8 bit single channel image into _dst.
+	 * 
+	 * @param _grayFace
+	 * @param _dst
+	 *            needs at least rows * cols entries.
+	 */
+	public static void transformImageToPixels(Mat _grayFace, byte[] _dst) {
+		if (_grayFace.depth() != CvType.CV_8U || _grayFace.channels() != 1) {
+			throw new IllegalArgumentException("need an 8 bit single channel image, got type " + _grayFace.type() + ".");
+		}
+		_grayFace.get(0, 0, _dst);
+	}
+
+	/**
+	 * Reads all pixels of a single channel image with one native call into a
+	 * pooled scratch buffer of the calling thread. Mat.get copies the rows of
+	 * non-continuous images (e.g. submats) one after the other, so those need
+	 * no extra copy either.
+	 * 
+	 * @return a byte[] (8 bit images), double[] (CV_64F images) or float[]
+	 *         (other depths, converted) of at least rows * cols entries,
+	 *         holding the pixels row by row. valid until the next call of the
+	 *         same thread.
+	 */
+	private static Object readPixels(Mat _grayFace) {
+		int pixelCount = _grayFace.rows() * _grayFace.cols();
+		if (_grayFace.depth() == CvType.CV_8U) {
+			byte[] bytes = BYTE_SCRATCH.get();
+			if (bytes == null || bytes.length < pixelCount) {
+				bytes = new byte[pixelCount];
+				BYTE_SCRATCH.set(bytes);
+			}
+			_grayFace.get(0, 0, bytes);
+			return bytes;
+		}
+		if (_grayFace.depth() == CvType.CV_64F) {
+			double[] doubles = DOUBLE_SCRATCH.get();
+			if (doubles == null || doubles.length < pixelCount) {
+				doubles = new double[pixelCount];
+				DOUBLE_SCRATCH.set(doubles);
+			}
+			_grayFace.get(0, 0, doubles);
+			return doubles;
+		}
+		Mat floatFace = _grayFace;
+		if (_grayFace.depth() != CvType.CV_32F) {
+			floatFace = new Mat();
+			_grayFace.convertTo(floatFace, CvType.CV_32F);
+		}
+		float[] floats = FLOAT_SCRATCH.get();
+		if (floats == null || floats.length < pixelCount) {
+			floats = new float[pixelCount];
+			FLOAT_SCRATCH.set(floats);
+		}
+		floatFace.get(0, 0, floats);
+		return floats;
 	}
 
 	/**
 	 * Takes K samples, each represented by MxN matrizes (e.g. image).
 	 * Transforms each sample into a single row of features and concatenates all
 	 * samples to a single matrix. Returns a mat with K rows (each row
-	 * represents a sample) and MxN columns (MxN features per sample).
+	 * represents a sample) and MxN columns (MxN features per sample). Pixels
+	 * get read in bulk per image and written with a single native call.
 	 * 
 	 * @param _mats
-	 * @return
+	 * @return a CV_32F Mat (CV_64F for double images).
 	 */
 	public static Mat transformImagesToFeatureMatrix(List<Mat> _mats) {
 		Mat firstMat = _mats.get(0);
 		int cols = firstMat.cols();
 		int rows = firstMat.rows();
-		Mat resultMat = new Mat(_mats.size(), firstMat.rows() * firstMat.cols(), firstMat.type());
-		for (int mNr = 0; mNr < _mats.size(); mNr++) {
-			Mat m = _mats.get(mNr);
+		int featureCount = rows * cols;
+		for (Mat m : _mats) {
 			if (m.rows() != rows || m.cols() != cols) {
 				throw new RuntimeException("Cannot concatenate features of matrizes of different size into one matrix.");
 			}
-			for (int row = 0; row < rows; row++) {
-				m.submat(row, row + 1, 0, cols).copyTo(resultMat.submat(mNr, mNr + 1, row * cols, (row + 1) * cols));
+		}
+		if (firstMat.depth() == CvType.CV_64F) {
+			double[] features = new double[_mats.size() * featureCount];
+			for (int mNr = 0; mNr < _mats.size(); mNr++) {
+				transformImageToFeatureVector(_mats.get(mNr), features, mNr * featureCount);
 			}
+			Mat resultMat = new Mat(_mats.size(), featureCount, CvType.CV_64F);
+			resultMat.put(0, 0, features);
+			return resultMat;
+		}
+		float[] features = new float[_mats.size() * featureCount];
+		for (int mNr = 0; mNr < _mats.size(); mNr++) {
+			transformImageToFeatureVector(_mats.get(mNr), features, mNr * featureCount);
 		}
+		Mat resultMat = new Mat(_mats.size(), featureCount, CvType.CV_32F);
+		resultMat.put(0, 0, features);
 		return resultMat;
 	}
 }
@@ -0,0 +1,170 @@
+package at.usmile.panshot.recognition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link LazyClassifierCache} loads classifiers once on first
+ * use, drops the least recently used ones beyond its capacity and never
+ * drops the frontal classifier.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class LazyClassifierCacheTest extends TestCase {
+
+	/** loads "classifier &lt;index&gt;", counts loads per index. */
+	private static class CountingLoader implements LazyClassifierCache.Loader<String> {
+		final int[] loads = new int[10];
+		int failures = 0;
+
+		@Override
+		public synchronized String load(int _classifierIndex) throws Exception {
+			loads[_classifierIndex]++;
+			if (failures > 0) {
+				failures--;
+				throw new Exception("failing as requested");
+			}
+			return "classifier " + _classifierIndex;
+		}
+	}
+
+	private final CountingLoader mLoader = new CountingLoader();
+
+	public void testLoadsOnFirstUseOnly() {
+		LazyClassifierCache<String> cache = newCache(3, 0, 1, 2);
+		assertFalse(cache.isLoaded(1));
+		assertEquals("classifier 1", cache.get(1));
+		assertEquals("classifier 1", cache.get(1));
+		assertTrue(cache.isLoaded(1));
+		assertEquals(1, mLoader.loads[1]);
+		// indices without classifier load nothing
+		assertNull(cache.get(5));
+		assertEquals(0, mLoader.loads[5]);
+		assertFalse(cache.isLoaded(5));
+	}
+
+	public void testDropsLeastRecentlyUsed() {
+		LazyClassifierCache<String> cache = newCache(3, 1, 2, 3, 4);
+		cache.get(1);
+		cache.get(2);
+		cache.get(3);
+		// 2 becomes the least recently used one
+		cache.get(1);
+		cache.get(4);
+		assertLoaded(cache, 1, 3, 4);
+		// dropped classifiers get loaded again
+		cache.get(2);
+		assertEquals(2, mLoader.loads[2]);
+		assertLoaded(cache, 1, 2, 4);
+	}
+
+	public void testPinsFrontalClassifier() {
+		LazyClassifierCache<String> cache = newCache(2, 0, 1, 2, 3, 4);
+		cache.get(0);
+		for (int classifierIndex = 1; classifierIndex <= 4; classifierIndex++) {
+			cache.get(classifierIndex);
+			assertLoaded(cache, 0, classifierIndex);
+		}
+		cache.get(0);
+		assertEquals(1, mLoader.loads[0]);
+	}
+
+	public void testPinsFrontalClassifierAtCapacityOne() {
+		LazyClassifierCache<String> cache = newCache(1, 0, 1);
+		cache.get(0);
+		// the classifier gets returned, but does not stay loaded
+		assertEquals("classifier 1", cache.get(1));
+		assertLoaded(cache, 0);
+	}
+
+	public void testRetriesFailedLoads() {
+		LazyClassifierCache<String> cache = newCache(2, 0, 1);
+		mLoader.failures = 1;
+		try {
+			cache.get(1);
+			fail("failed loads must be reported");
+		} catch (RuntimeException e) {
+			assertEquals(Exception.class, e.getCause().getClass());
+		}
+		assertFalse(cache.isLoaded(1));
+		assertEquals("classifier 1", cache.get(1));
+		assertEquals(2, mLoader.loads[1]);
+	}
+
+	public void testConcurrentRequestsLoadOnce() throws InterruptedException {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger loads = new AtomicInteger();
+		LazyClassifierCache.Loader<String> loader = new LazyClassifierCache.Loader<String>() {
+			@Override
+			public String load(int _classifierIndex) throws Exception {
+				loads.incrementAndGet();
+				loading.countDown();
+				release.await();
+				return "classifier " + _classifierIndex;
+			}
+		};
+		final LazyClassifierCache<String> cache = new LazyClassifierCache<String>(new HashSet<Integer>(
+				Arrays.asList(0, 1)), loader, 2);
+		final List<String> results = new ArrayList<String>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int threadNr = 0; threadNr < 4; threadNr++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					String classifier = cache.get(1);
+					synchronized (results) {
+						results.add(classifier);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		assertTrue(loading.await(10, TimeUnit.SECONDS));
+		// threads requesting the loading classifier wait for it
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+		assertEquals(1, loads.get());
+		assertEquals(Arrays.asList("classifier 1", "classifier 1", "classifier 1", "classifier 1"), results);
+	}
+
+	public void testRejectsEmptyCapacity() {
+		try {
+			newCache(0, 0);
+			fail("capacity 0 must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private LazyClassifierCache<String> newCache(int _capacity, Integer... _classifierIndices) {
+		return new LazyClassifierCache<String>(new HashSet<Integer>(Arrays.asList(_classifierIndices)), mLoader,
+				_capacity);
+	}
+
+	/**
+	 * Asserts exactly the given classifiers (of indices below 10) are loaded.
+	 */
+	private static void assertLoaded(LazyClassifierCache<String> _cache, int... _classifierIndices) {
+		boolean[] expected = new boolean[10];
+		for (int classifierIndex : _classifierIndices) {
+			expected[classifierIndex] = true;
+		}
+		for (int classifierIndex = 0; classifierIndex < expected.length; classifierIndex++) {
+			assertEquals("classifier " + classifierIndex, expected[classifierIndex], _cache.isLoaded(classifierIndex));
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.usmile.panshot.User;
+import at.usmile.panshot.recognition.pca.PcaBasis;
+import at.usmile.panshot.util.LittleEndianInput;
+import at.usmile.panshot.util.LittleEndianOutput;
+
+/**
+ * Checks that KNN galleries (see {@link KnnGalleryFormat}) and the binary
+ * KNN format read back exactly what got written, and that broken galleries
+ * get rejected.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class KnnGalleryTest extends TestCase {
+
+	private static final int SAMPLE_COUNT = 30;
+	private static final int FEATURE_COUNT = 8;
+	private static final int PIXEL_COUNT = 20;
+
+	public void testGalleryRoundTrip() throws IOException {
+		KnnClassifier classifier = newClassifier(3, true);
+		byte[] written = writeGallery(classifier);
+		// galleries are sections of larger files, start behind some padding
+		ByteBuffer src = ByteBuffer.allocate(KnnGalleryFormat.FEATURES_ALIGNMENT + written.length);
+		src.position(KnnGalleryFormat.FEATURES_ALIGNMENT);
+		src.put(written);
+		src.position(KnnGalleryFormat.FEATURES_ALIGNMENT);
+
+		KnnClassifier read = KnnClassifier.readGallery(src);
+		assertEquals(src.capacity(), src.position());
+		assertTrue(read.isMapped());
+		assertEquals(SAMPLE_COUNT, read.getSampleCount());
+		assertEquals(classifier.getUsers(), read.getUsers());
+		assertTrue(Arrays.equals(classifier.getPcaBasis().getMean(), read.getPcaBasis().getMean()));
+		assertTrue(Arrays.equals(classifier.getPcaBasis().getEigenvectors(), read.getPcaBasis().getEigenvectors()));
+		assertTrue(Arrays.equals(written, writeGallery(read)));
+	}
+
+	public void testGalleryWithoutOptionalPartsRoundTrip() throws IOException {
+		KnnClassifier classifier = newClassifier(2, false);
+		byte[] written = writeGallery(classifier);
+		KnnClassifier read = KnnClassifier.readGallery(ByteBuffer.wrap(written));
+		assertNull(read.getPcaBasis());
+		assertEquals(classifier.getUsers(), read.getUsers());
+		assertTrue(Arrays.equals(written, writeGallery(read)));
+	}
+
+	public void testGalleryFileRoundTrip() throws IOException {
+		KnnClassifier classifier = newClassifier(3, true);
+		File file = File.createTempFile("gallery", ".bin");
+		try {
+			classifier.writeGallery(file);
+			assertEquals(classifier.getGallerySize(), file.length());
+			KnnClassifier read = KnnClassifier.openGallery(file);
+			assertTrue(read.isMapped());
+			assertTrue(Arrays.equals(writeGallery(classifier), writeGallery(read)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testBinaryRoundTrip() throws IOException {
+		KnnClassifier classifier = newClassifier(3, true);
+		LittleEndianOutput out = new LittleEndianOutput(1024);
+		classifier.writeBinary(out);
+		byte[] written = Arrays.copyOf(out.getArray(), out.getSize());
+
+		KnnClassifier read = KnnClassifier.readBinary(new LittleEndianInput(ByteBuffer.wrap(written)));
+		assertFalse(read.isMapped());
+		assertEquals(classifier.getUsers(), read.getUsers());
+		LittleEndianOutput rewritten = new LittleEndianOutput(1024);
+		read.writeBinary(rewritten);
+		assertTrue(Arrays.equals(written, Arrays.copyOf(rewritten.getArray(), rewritten.getSize())));
+	}
+
+	public void testRejectsTruncatedGallery() throws IOException {
+		byte[] written = writeGallery(newClassifier(3, true));
+		assertRejected(Arrays.copyOf(written, written.length - 4));
+		assertRejected(Arrays.copyOf(written, 12));
+	}
+
+	public void testRejectsWrongMagic() throws IOException {
+		byte[] written = writeGallery(newClassifier(3, true));
+		written[0] ^= 1;
+		assertRejected(written);
+	}
+
+	public void testRejectsUnknownLabels() throws IOException {
+		KnnClassifier classifier = newClassifier(3, false);
+		// the last sample refers to a user that does not exist
+		List<User> users = classifier.getUsers().subList(0, 2);
+		int[] labels = new int[SAMPLE_COUNT];
+		labels[SAMPLE_COUNT - 1] = 2;
+		KnnClassifier broken = new KnnClassifier(users, labels, SAMPLE_COUNT, FEATURE_COUNT, null, null,
+				FloatBuffer.wrap(new float[SAMPLE_COUNT * FEATURE_COUNT]));
+		assertRejected(writeGallery(broken));
+	}
+
+	private static void assertRejected(byte[] _gallery) {
+		try {
+			KnnClassifier.readGallery(ByteBuffer.wrap(_gallery));
+			fail("broken gallery must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static byte[] writeGallery(KnnClassifier _classifier) throws IOException {
+		ByteBuffer dst = ByteBuffer.allocate((int) _classifier.getGallerySize());
+		_classifier.writeGallery(dst);
+		assertEquals(dst.capacity(), dst.position());
+		return dst.array();
+	}
+
+	/**
+	 * @return a trained classifier with random features of _userCount users,
+	 *         optionally with a feature order and PCA basis.
+	 */
+	private static KnnClassifier newClassifier(int _userCount, boolean _optionalParts) {
+		Random random = new Random(5);
+		List<User> users = new ArrayList<User>();
+		for (int userNr = 0; userNr < _userCount; userNr++) {
+			// null names have to survive the round trip as well
+			users.add(new User("id" + userNr, userNr == 1 ? null : "user \u00e4" + userNr));
+		}
+		int[] labels = new int[SAMPLE_COUNT];
+		float[] features = new float[SAMPLE_COUNT * FEATURE_COUNT];
+		for (int sampleNr = 0; sampleNr < SAMPLE_COUNT; sampleNr++) {
+			labels[sampleNr] = sampleNr % _userCount;
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				features[sampleNr * FEATURE_COUNT + f] = (float) random.nextGaussian();
+			}
+		}
+		int[] featureOrder = null;
+		PcaBasis pcaBasis = null;
+		if (_optionalParts) {
+			featureOrder = new int[FEATURE_COUNT];
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				featureOrder[f] = FEATURE_COUNT - 1 - f;
+			}
+			float[] mean = new float[PIXEL_COUNT];
+			float[] eigenvectors = new float[FEATURE_COUNT * PIXEL_COUNT];
+			for (int i = 0; i < eigenvectors.length; i++) {
+				eigenvectors[i] = (float) random.nextGaussian();
+			}
+			for (int i = 0; i < mean.length; i++) {
+				mean[i] = random.nextInt(256);
+			}
+			pcaBasis = new PcaBasis(mean, eigenvectors, FEATURE_COUNT);
+		}
+		return new KnnClassifier(users, labels, SAMPLE_COUNT, FEATURE_COUNT, featureOrder, pcaBasis,
+				FloatBuffer.wrap(features));
+	}
+}
@@ -0,0 +1,88 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link KnnNeighbourhood} keeps exactly the K nearest of all
+ * offered samples.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class KnnNeighbourhoodTest extends TestCase {
+
+	public void testKeepsNearestSamples() {
+		Random random = new Random(42);
+		KnnNeighbourhood neighbourhood = new KnnNeighbourhood(1);
+		for (int run = 0; run < 200; run++) {
+			int sampleCount = 1 + random.nextInt(100);
+			int k = 1 + random.nextInt(20);
+			double[] distances = new double[sampleCount];
+			neighbourhood.reset(k);
+			for (int sampleNr = 0; sampleNr < sampleCount; sampleNr++) {
+				distances[sampleNr] = random.nextInt(50);
+				neighbourhood.offer(sampleNr, distances[sampleNr]);
+			}
+			int expectedSize = Math.min(k, sampleCount);
+			assertEquals(expectedSize, neighbourhood.size());
+			assertEquals(k <= sampleCount, neighbourhood.isFull());
+
+			double[] sorted = distances.clone();
+			Arrays.sort(sorted);
+			double[] kept = new double[expectedSize];
+			boolean[] seen = new boolean[sampleCount];
+			for (int i = 0; i < expectedSize; i++) {
+				int index = neighbourhood.getIndex(i);
+				assertFalse("sample kept twice", seen[index]);
+				seen[index] = true;
+				assertEquals(distances[index], neighbourhood.getDistance(i), 0);
+				kept[i] = neighbourhood.getDistance(i);
+			}
+			Arrays.sort(kept);
+			assertTrue(Arrays.equals(Arrays.copyOf(sorted, expectedSize), kept));
+			if (neighbourhood.isFull()) {
+				assertEquals(sorted[k - 1], neighbourhood.getMaxDistance(), 0);
+			} else {
+				assertEquals(Double.POSITIVE_INFINITY, neighbourhood.getMaxDistance(), 0);
+			}
+		}
+	}
+
+	public void testRejectsSamplesNotNearer() {
+		KnnNeighbourhood neighbourhood = new KnnNeighbourhood(2);
+		assertTrue(neighbourhood.offer(0, 1));
+		assertTrue(neighbourhood.offer(1, 3));
+		assertFalse(neighbourhood.offer(2, 3));
+		assertFalse(neighbourhood.offer(3, 4));
+		assertTrue(neighbourhood.offer(4, 2));
+		assertEquals(2, neighbourhood.getMaxDistance(), 0);
+	}
+
+	public void testResetKeepsBuffersOfLargerCapacity() {
+		KnnNeighbourhood neighbourhood = new KnnNeighbourhood(5);
+		for (int i = 0; i < 5; i++) {
+			neighbourhood.offer(i, i);
+		}
+		neighbourhood.reset(2);
+		assertEquals(0, neighbourhood.size());
+		assertEquals(2, neighbourhood.getCapacity());
+		neighbourhood.offer(7, 5);
+		neighbourhood.offer(8, 1);
+		neighbourhood.offer(9, 3);
+		assertTrue(neighbourhood.isFull());
+		assertEquals(3, neighbourhood.getMaxDistance(), 0);
+	}
+
+	public void testRejectsEmptyCapacity() {
+		try {
+			new KnnNeighbourhood(0);
+			fail("capacity 0 must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
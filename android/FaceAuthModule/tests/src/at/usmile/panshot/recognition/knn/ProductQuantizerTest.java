@@ -0,0 +1,88 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link ProductQuantizer} codebooks grow with the gallery and
+ * need less memory than the features they encode.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class ProductQuantizerTest extends TestCase {
+
+	private static final int FEATURE_COUNT = 64;
+	private static final int FEATURES_PER_SUBSPACE = 4;
+
+	public void testSmallGalleryNeedsLessMemory() {
+		assertMemoryRatio(100, 3);
+	}
+
+	public void testLargeGalleryNeedsLessMemory() {
+		assertMemoryRatio(4000, 7);
+	}
+
+	public void testCodebookGrowsWithGallery() {
+		int codeBytes = 100 * FEATURE_COUNT / FEATURES_PER_SUBSPACE;
+		ProductQuantizer quantizer = new ProductQuantizer(randomFeatures(100), 100, FEATURE_COUNT, FEATURES_PER_SUBSPACE);
+		int centroidCount = 100 / ProductQuantizer.SAMPLES_PER_CENTROID;
+		assertEquals(codeBytes + 4L * centroidCount * FEATURE_COUNT, quantizer.getMemoryBytes());
+	}
+
+	public void testCodesOfTrainingSamplesAreNearest() {
+		int sampleCount = 400;
+		float[] features = randomFeatures(sampleCount);
+		ProductQuantizer quantizer = new ProductQuantizer(features, sampleCount, FEATURE_COUNT, FEATURES_PER_SUBSPACE);
+		DistanceMetric metric = DistanceMetrics.forLNormPower(2f);
+		assertTrue(quantizer.supports(metric, FEATURE_COUNT));
+		// the approximate distance of a sample to itself is its quantisation
+		// error, which must be small compared to distances between samples
+		KnnNeighbourhood neighbourhood = new KnnNeighbourhood(10);
+		int found = 0;
+		for (int sampleNr = 0; sampleNr < sampleCount; sampleNr++) {
+			float[] query = new float[FEATURE_COUNT];
+			System.arraycopy(features, sampleNr * FEATURE_COUNT, query, 0, FEATURE_COUNT);
+			neighbourhood.reset(10);
+			quantizer.search(query, neighbourhood);
+			for (int i = 0; i < neighbourhood.size(); i++) {
+				if (neighbourhood.getIndex(i) == sampleNr) {
+					found++;
+					break;
+				}
+			}
+		}
+		assertTrue("samples found among their own 10 nearest: " + found, found > sampleCount * 9 / 10);
+	}
+
+	private static void assertMemoryRatio(int _sampleCount, double _minRatio) {
+		float[] features = randomFeatures(_sampleCount);
+		ProductQuantizer quantizer = new ProductQuantizer(features, _sampleCount, FEATURE_COUNT, FEATURES_PER_SUBSPACE);
+		double ratio = 4.0 * features.length / quantizer.getMemoryBytes();
+		assertTrue("memory ratio " + ratio, ratio >= _minRatio);
+	}
+
+	/**
+	 * @return clustered samples whose variance decays with the feature index,
+	 *         like PCA features of a few users.
+	 */
+	private static float[] randomFeatures(int _sampleCount) {
+		Random random = new Random(3);
+		float[][] users = new float[10][FEATURE_COUNT];
+		for (float[] user : users) {
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				user[f] = (float) (random.nextGaussian() * 30 / Math.sqrt(1 + f));
+			}
+		}
+		float[] features = new float[_sampleCount * FEATURE_COUNT];
+		for (int sampleNr = 0; sampleNr < _sampleCount; sampleNr++) {
+			float[] user = users[sampleNr % users.length];
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				features[sampleNr * FEATURE_COUNT + f] = user[f] + (float) (random.nextGaussian() * 15 / Math.sqrt(1 + f));
+			}
+		}
+		return features;
+	}
+}
@@ -0,0 +1,90 @@
+package at.usmile.panshot.recognition.knn;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link VpTree} queries find the same neighbours as an exact
+ * linear scan.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class VpTreeTest extends TestCase {
+
+	private static final int SAMPLE_COUNT = 500;
+	private static final int FEATURE_COUNT = 16;
+	private static final int QUERY_COUNT = 100;
+
+	public void testL1MatchesLinearScan() {
+		assertMatchesLinearScan(1f, 5);
+	}
+
+	public void testL2MatchesLinearScan() {
+		assertMatchesLinearScan(2f, 5);
+	}
+
+	public void testL3MatchesLinearScan() {
+		assertMatchesLinearScan(3f, 5);
+	}
+
+	public void testSingleNeighbourMatchesLinearScan() {
+		assertMatchesLinearScan(2f, 1);
+	}
+
+	public void testSupportsOnlyItsNorm() {
+		float[] features = randomFeatures(new Random(1), SAMPLE_COUNT * FEATURE_COUNT);
+		VpTree tree = new VpTree(features, SAMPLE_COUNT, FEATURE_COUNT, 2);
+		assertTrue(tree.supports(DistanceMetrics.forLNormPower(2f), FEATURE_COUNT));
+		assertFalse(tree.supports(DistanceMetrics.forLNormPower(1f), FEATURE_COUNT));
+		assertFalse(tree.supports(DistanceMetrics.forLNormPower(2f), FEATURE_COUNT - 1));
+		assertFalse(tree.supports(DistanceMetrics.create(DistanceMetrics.Type.COSINE, 2f), FEATURE_COUNT));
+	}
+
+	private void assertMatchesLinearScan(float _power, int _k) {
+		Random random = new Random(7);
+		float[] features = randomFeatures(random, SAMPLE_COUNT * FEATURE_COUNT);
+		DistanceMetric metric = DistanceMetrics.forLNormPower(_power);
+		VpTree tree = new VpTree(features, SAMPLE_COUNT, FEATURE_COUNT, _power);
+		assertTrue(tree.supports(metric, FEATURE_COUNT));
+
+		KnnNeighbourhood exact = new KnnNeighbourhood(_k);
+		KnnNeighbourhood indexed = new KnnNeighbourhood(_k);
+		for (int queryNr = 0; queryNr < QUERY_COUNT; queryNr++) {
+			float[] query = randomFeatures(random, FEATURE_COUNT);
+			exact.reset(_k);
+			for (int sampleNr = 0; sampleNr < SAMPLE_COUNT; sampleNr++) {
+				exact.offer(sampleNr, metric.distance(features, sampleNr * FEATURE_COUNT, query, 0, FEATURE_COUNT));
+			}
+			indexed.reset(_k);
+			tree.search(features, query, metric, indexed);
+			assertTrue("query " + queryNr, Arrays.equals(sortedIndices(exact), sortedIndices(indexed)));
+		}
+		// the tree must actually prune
+		assertTrue(tree.getDistanceComputations() < (long) QUERY_COUNT * SAMPLE_COUNT);
+	}
+
+	private static int[] sortedIndices(KnnNeighbourhood _neighbourhood) {
+		int[] indices = new int[_neighbourhood.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = _neighbourhood.getIndex(i);
+		}
+		Arrays.sort(indices);
+		return indices;
+	}
+
+	/**
+	 * @return random samples whose variance decays with the feature index,
+	 *         like PCA features.
+	 */
+	private static float[] randomFeatures(Random _random, int _length) {
+		float[] features = new float[_length];
+		for (int i = 0; i < _length; i++) {
+			features[i] = (float) (_random.nextGaussian() / (1 + i % FEATURE_COUNT));
+		}
+		return features;
+	}
+}
@@ -0,0 +1,178 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks {@link JacobiEigen} on matrices with known spectra.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class JacobiEigenTest extends TestCase {
+
+	private static final double TOLERANCE = 1e-10;
+
+	public void testDiagonalMatrix() {
+		double[][] matrix = { { 1, 0, 0 }, { 0, 5, 0 }, { 0, 0, 3 } };
+		double[][] eigenvectors = new double[3][3];
+		double[] eigenvalues = JacobiEigen.decompose(matrix, eigenvectors);
+		assertSpectrum(new double[] { 5, 3, 1 }, eigenvalues);
+		assertEquals(1, Math.abs(eigenvectors[0][1]), TOLERANCE);
+		assertEquals(1, Math.abs(eigenvectors[1][2]), TOLERANCE);
+		assertEquals(1, Math.abs(eigenvectors[2][0]), TOLERANCE);
+	}
+
+	public void testTwoByTwo() {
+		double[][] matrix = { { 2, 1 }, { 1, 2 } };
+		double[][] eigenvectors = new double[2][2];
+		double[] eigenvalues = JacobiEigen.decompose(matrix, eigenvectors);
+		assertSpectrum(new double[] { 3, 1 }, eigenvalues);
+		double sqrtHalf = Math.sqrt(0.5);
+		assertEquals(sqrtHalf, Math.abs(eigenvectors[0][0]), TOLERANCE);
+		assertEquals(eigenvectors[0][0], eigenvectors[0][1], TOLERANCE);
+		assertEquals(sqrtHalf, Math.abs(eigenvectors[1][0]), TOLERANCE);
+		assertEquals(-eigenvectors[1][0], eigenvectors[1][1], TOLERANCE);
+		assertDecomposes(matrix, eigenvalues, eigenvectors);
+	}
+
+	/**
+	 * The second difference matrix (2 on the diagonal, -1 next to it) has
+	 * eigenvalues 2 - 2 cos(k pi / (n + 1)), k = 1..n.
+	 */
+	public void testSecondDifferenceMatrix() {
+		int n = 30;
+		double[][] matrix = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			matrix[i][i] = 2;
+			if (i > 0) {
+				matrix[i][i - 1] = -1;
+				matrix[i - 1][i] = -1;
+			}
+		}
+		double[] expected = new double[n];
+		for (int k = 1; k <= n; k++) {
+			expected[n - k] = 2 - 2 * Math.cos(k * Math.PI / (n + 1));
+		}
+		double[][] eigenvectors = new double[n][n];
+		double[] eigenvalues = JacobiEigen.decompose(matrix, eigenvectors);
+		assertSpectrum(expected, eigenvalues);
+		assertDecomposes(matrix, eigenvalues, eigenvectors);
+	}
+
+	/**
+	 * Q diag(lambda) Q^T for a random orthogonal Q (a product of Householder
+	 * reflections) has the eigenvalues lambda.
+	 */
+	public void testRotatedDiagonalMatrix() {
+		int n = 40;
+		Random random = new Random(17);
+		double[] expected = new double[n];
+		for (int i = 0; i < n; i++) {
+			// decaying like a PCA spectrum, including a zero eigenvalue
+			expected[i] = i == n - 1 ? 0 : 100.0 / (1 + i);
+		}
+		double[][] matrix = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			matrix[i][i] = expected[i];
+		}
+		for (int reflection = 0; reflection < 3; reflection++) {
+			reflect(matrix, randomUnitVector(random, n));
+		}
+		double[][] original = new double[n][];
+		for (int i = 0; i < n; i++) {
+			original[i] = matrix[i].clone();
+		}
+		double[][] eigenvectors = new double[n][n];
+		double[] eigenvalues = JacobiEigen.decompose(matrix, eigenvectors);
+		for (int i = 0; i < n; i++) {
+			assertTrue("input must stay unchanged", Arrays.equals(original[i], matrix[i]));
+		}
+		assertSpectrum(expected, eigenvalues);
+		assertDecomposes(matrix, eigenvalues, eigenvectors);
+	}
+
+	private static void assertSpectrum(double[] _expected, double[] _actual) {
+		assertEquals(_expected.length, _actual.length);
+		for (int i = 0; i < _expected.length; i++) {
+			assertEquals("eigenvalue " + i, _expected[i], _actual[i], TOLERANCE * Math.max(1, Math.abs(_expected[0])));
+		}
+	}
+
+	/**
+	 * Asserts that the eigenvectors are orthonormal and that A v = lambda v.
+	 */
+	private static void assertDecomposes(double[][] _matrix, double[] _eigenvalues, double[][] _eigenvectors) {
+		int n = _matrix.length;
+		double scale = Math.max(1, Math.abs(_eigenvalues[0]));
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double dot = 0;
+				for (int k = 0; k < n; k++) {
+					dot += _eigenvectors[i][k] * _eigenvectors[j][k];
+				}
+				assertEquals("v" + i + " * v" + j, i == j ? 1 : 0, dot, TOLERANCE);
+			}
+			for (int row = 0; row < n; row++) {
+				double product = 0;
+				for (int k = 0; k < n; k++) {
+					product += _matrix[row][k] * _eigenvectors[i][k];
+				}
+				assertEquals("(A v" + i + ")[" + row + "]", _eigenvalues[i] * _eigenvectors[i][row], product, TOLERANCE
+						* scale);
+			}
+		}
+	}
+
+	/**
+	 * _matrix = H _matrix H with the Householder reflection H = I - 2 u u^T.
+	 */
+	private static void reflect(double[][] _matrix, double[] _u) {
+		int n = _matrix.length;
+		// H A
+		for (int col = 0; col < n; col++) {
+			double dot = 0;
+			for (int k = 0; k < n; k++) {
+				dot += _u[k] * _matrix[k][col];
+			}
+			for (int row = 0; row < n; row++) {
+				_matrix[row][col] -= 2 * _u[row] * dot;
+			}
+		}
+		// (H A) H
+		for (int row = 0; row < n; row++) {
+			double dot = 0;
+			for (int k = 0; k < n; k++) {
+				dot += _matrix[row][k] * _u[k];
+			}
+			for (int col = 0; col < n; col++) {
+				_matrix[row][col] -= 2 * dot * _u[col];
+			}
+		}
+		// remove rounding asymmetry
+		for (int row = 0; row < n; row++) {
+			for (int col = 0; col < row; col++) {
+				double mean = (_matrix[row][col] + _matrix[col][row]) / 2;
+				_matrix[row][col] = mean;
+				_matrix[col][row] = mean;
+			}
+		}
+	}
+
+	private static double[] randomUnitVector(Random _random, int _length) {
+		double[] u = new double[_length];
+		double norm = 0;
+		for (int i = 0; i < _length; i++) {
+			u[i] = _random.nextGaussian();
+			norm += u[i] * u[i];
+		}
+		norm = Math.sqrt(norm);
+		for (int i = 0; i < _length; i++) {
+			u[i] /= norm;
+		}
+		return u;
+	}
+}
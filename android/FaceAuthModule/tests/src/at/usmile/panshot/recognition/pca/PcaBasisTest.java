@@ -0,0 +1,68 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the projections of {@link PcaBasis} against a double precision
+ * reference.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class PcaBasisTest extends TestCase {
+
+	private static final int FEATURE_COUNT = 2500;
+	/** not a multiple of 4, so blocked and remaining components get used. */
+	private static final int COMPONENT_COUNT = 22;
+
+	public void testPixelAndFeatureProjectionsMatchReference() {
+		Random random = new Random(8);
+		float[] mean = new float[FEATURE_COUNT];
+		for (int f = 0; f < FEATURE_COUNT; f++) {
+			mean[f] = 128 + (float) random.nextGaussian() * 20;
+		}
+		float[] eigenvectors = new float[COMPONENT_COUNT * FEATURE_COUNT];
+		for (int i = 0; i < eigenvectors.length; i++) {
+			eigenvectors[i] = (float) (random.nextGaussian() / Math.sqrt(FEATURE_COUNT));
+		}
+		PcaBasis basis = new PcaBasis(mean, eigenvectors, COMPONENT_COUNT);
+
+		byte[] pixels = new byte[FEATURE_COUNT];
+		float[] features = new float[FEATURE_COUNT + 3];
+		float[] fromPixels = new float[COMPONENT_COUNT];
+		float[] fromFeatures = new float[COMPONENT_COUNT + 1];
+		for (int probeNr = 0; probeNr < 20; probeNr++) {
+			random.nextBytes(pixels);
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				features[3 + f] = pixels[f] & 0xFF;
+			}
+			basis.project(pixels, fromPixels, 0);
+			basis.project(features, 3, fromFeatures, 1);
+			for (int c = 0; c < COMPONENT_COUNT; c++) {
+				double expected = 0;
+				for (int f = 0; f < FEATURE_COUNT; f++) {
+					expected += ((pixels[f] & 0xFF) - (double) mean[f]) * eigenvectors[c * FEATURE_COUNT + f];
+				}
+				double tolerance = 1e-5 * Math.max(1, Math.abs(expected));
+				assertEquals("pixels, component " + c, expected, fromPixels[c], tolerance);
+				assertEquals("features, component " + c, expected, fromFeatures[1 + c], tolerance);
+			}
+		}
+	}
+
+	public void testKeepsLeadingComponents() {
+		float[] mean = { 1, 2 };
+		float[] eigenvectors = { 1, 0, 0, 1, 1, 1 };
+		PcaBasis basis = new PcaBasis(mean, eigenvectors, 2);
+		assertEquals(2, basis.getFeatureCount());
+		assertEquals(2, basis.getComponentCount());
+		float[] projection = new float[2];
+		basis.project(new float[] { 4, 7 }, 0, projection, 0);
+		assertEquals(3, projection[0], 0);
+		assertEquals(5, projection[1], 0);
+		assertEquals(4L * (2 + 4), basis.getMemoryBytes());
+	}
+}
@@ -0,0 +1,110 @@
+package at.usmile.panshot.recognition.pca;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import at.usmile.tuple.GenericTuple3;
+
+/**
+ * Compares {@link RandomizedPca} with the exact {@link GramPca}.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class RandomizedPcaTest extends TestCase {
+
+	private static final int SAMPLE_COUNT = 300;
+	private static final int FEATURE_COUNT = 400;
+
+	private float[] mSamples;
+
+	@Override
+	protected void setUp() throws Exception {
+		mSamples = randomSamples(new Random(9));
+	}
+
+	public void testEigenvectorsScaleWithComponents() {
+		for (int k : new int[] { 5, 10, 20 }) {
+			GenericTuple3<float[], float[], float[]> pca = RandomizedPca.compute(mSamples, SAMPLE_COUNT, FEATURE_COUNT, k);
+			assertEquals(FEATURE_COUNT, pca.value1.length);
+			assertEquals(k * FEATURE_COUNT, pca.value2.length);
+			assertEquals(k * SAMPLE_COUNT, pca.value3.length);
+		}
+	}
+
+	public void testCapturesVarianceOfExactPca() {
+		int maxK = 20;
+		float[] exact = GramPca.compute(mSamples, SAMPLE_COUNT, FEATURE_COUNT, maxK).value3;
+		for (int k : new int[] { 5, 10, maxK }) {
+			// variance captured by the leading k exact components
+			double exactVariance = 0;
+			for (int sampleNr = 0; sampleNr < SAMPLE_COUNT; sampleNr++) {
+				for (int c = 0; c < k; c++) {
+					exactVariance += exact[sampleNr * maxK + c] * (double) exact[sampleNr * maxK + c];
+				}
+			}
+			GenericTuple3<float[], float[], float[]> approximate = RandomizedPca.compute(mSamples, SAMPLE_COUNT,
+					FEATURE_COUNT, k);
+			double ratio = sumOfSquares(approximate.value3) / exactVariance;
+			assertTrue("k=" + k + ": captured variance ratio " + ratio, ratio > 0.99 && ratio < 1 + 1e-4);
+		}
+	}
+
+	public void testEigenvectorsAreOrthonormal() {
+		int k = 10;
+		float[] eigenvectors = RandomizedPca.compute(mSamples, SAMPLE_COUNT, FEATURE_COUNT, k).value2;
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < k; j++) {
+				double dot = 0;
+				for (int f = 0; f < FEATURE_COUNT; f++) {
+					dot += eigenvectors[i * FEATURE_COUNT + f] * eigenvectors[j * FEATURE_COUNT + f];
+				}
+				assertEquals("v" + i + " * v" + j, i == j ? 1 : 0, dot, 1e-4);
+			}
+		}
+	}
+
+	public void testIsDeterministic() {
+		GenericTuple3<float[], float[], float[]> first = RandomizedPca.compute(mSamples, SAMPLE_COUNT, FEATURE_COUNT, 10);
+		GenericTuple3<float[], float[], float[]> second = RandomizedPca.compute(mSamples, SAMPLE_COUNT, FEATURE_COUNT, 10);
+		assertTrue(Arrays.equals(first.value2, second.value2));
+		assertTrue(Arrays.equals(first.value3, second.value3));
+	}
+
+	private static double sumOfSquares(float[] _values) {
+		double sum = 0;
+		for (float v : _values) {
+			sum += v * (double) v;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return face-like samples: pixel values around 128, a few strong and
+	 *         many weak directions of variance.
+	 */
+	private static float[] randomSamples(Random _random) {
+		int directionCount = 30;
+		float[][] directions = new float[directionCount][FEATURE_COUNT];
+		for (float[] direction : directions) {
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				direction[f] = (float) _random.nextGaussian();
+			}
+		}
+		float[] samples = new float[SAMPLE_COUNT * FEATURE_COUNT];
+		for (int sampleNr = 0; sampleNr < SAMPLE_COUNT; sampleNr++) {
+			for (int f = 0; f < FEATURE_COUNT; f++) {
+				samples[sampleNr * FEATURE_COUNT + f] = 128 + (float) _random.nextGaussian();
+			}
+			for (int d = 0; d < directionCount; d++) {
+				double weight = _random.nextGaussian() * 20 / (1 + d);
+				for (int f = 0; f < FEATURE_COUNT; f++) {
+					samples[sampleNr * FEATURE_COUNT + f] += weight * directions[d][f];
+				}
+			}
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,59 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import libsvm.svm;
+import libsvm.svm_model;
+
+/**
+ * Checks that a compiled {@link LinearSvmModel} predicts the same labels and
+ * probabilities as libsvm's svm_predict_probability on the model it got
+ * compiled from.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class LinearSvmModelTest extends TestCase {
+
+	private static final int PROBE_COUNT = 50;
+	/** maximum tolerated difference of probabilities. */
+	private static final double MAX_PROBABILITY_DIFFERENCE = 1e-12;
+
+	@Override
+	protected void setUp() throws Exception {
+		SvmTestProblems.quietLibsvm();
+	}
+
+	public void testPredictsLikeLibsvm() {
+		for (long seed = 1; seed <= 5; seed++) {
+			assertPredictsLikeLibsvm(seed, 20);
+		}
+	}
+
+	public void testPredictsLikeLibsvmOnManyFeatures() {
+		assertPredictsLikeLibsvm(6, 200);
+	}
+
+	private static void assertPredictsLikeLibsvm(long _seed, int _featureCount) {
+		Random random = new Random(_seed);
+		double[][] features = SvmTestProblems.randomSamples(random, _featureCount);
+		svm_model model = svm.svm_train(SvmTestProblems.problem(features), SvmTestProblems.linearParams());
+		LinearSvmModel linearModel = LinearSvmModel.compile(model);
+		assertNotNull("linear model could not be compiled", linearModel);
+
+		double[] expected = new double[SvmTestProblems.CLASS_COUNT];
+		double[] actual = new double[SvmTestProblems.CLASS_COUNT];
+		for (int probeNr = 0; probeNr < PROBE_COUNT; probeNr++) {
+			double[] probe = SvmTestProblems.randomSample(random, probeNr % SvmTestProblems.CLASS_COUNT, _featureCount);
+			int expectedLabel = (int) svm.svm_predict_probability(model, SvmTestProblems.toNodes(probe), expected);
+			int actualLabel = linearModel.predictProbability(probe, probe.length, actual);
+			assertEquals("label of probe " + probeNr, expectedLabel, actualLabel);
+			for (int classNr = 0; classNr < SvmTestProblems.CLASS_COUNT; classNr++) {
+				assertEquals("probability of probe " + probeNr, expected[classNr], actual[classNr],
+						MAX_PROBABILITY_DIFFERENCE);
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+/**
+ * Checks that training on the precomputed linear kernel matrix, the way
+ * {@link SvmClassifier} does for small galleries, yields the same model as
+ * training with the LINEAR kernel directly.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class PrecomputedKernelTest extends TestCase {
+
+	/** maximum tolerated difference of rho values. */
+	private static final double MAX_RHO_DIFFERENCE = 1e-9;
+
+	@Override
+	protected void setUp() throws Exception {
+		SvmTestProblems.quietLibsvm();
+	}
+
+	public void testSameModelAsLinearKernel() {
+		for (long seed = 1; seed <= 5; seed++) {
+			assertSameModelAsLinearKernel(seed, 200);
+		}
+	}
+
+	private static void assertSameModelAsLinearKernel(long _seed, int _featureCount) {
+		Random random = new Random(_seed);
+		double[][] features = SvmTestProblems.randomSamples(random, _featureCount);
+		svm_parameter params = SvmTestProblems.linearParams();
+		params.probability = 0;
+		svm_problem problem = SvmTestProblems.problem(features);
+		svm_model expected = svm.svm_train(problem, params);
+
+		svm_parameter precomputedParams = (svm_parameter) params.clone();
+		precomputedParams.kernel_type = svm_parameter.PRECOMPUTED;
+		problem.x = SvmParameterSearch.precomputedRows(SvmParameterSearch.gramMatrix(features), svm_parameter.LINEAR,
+				params.gamma);
+		svm_model actual = svm.svm_train(problem, precomputedParams);
+		SvmClassifier.restoreSupportVectors(actual, features, svm_parameter.LINEAR);
+
+		assertEquals("support vectors", expected.l, actual.l);
+		for (int sv = 0; sv < expected.l; sv++) {
+			for (int featureNr = 0; featureNr < _featureCount; featureNr++) {
+				assertEquals("support vector " + sv, expected.SV[sv][featureNr].value, actual.SV[sv][featureNr].value, 0);
+			}
+		}
+		assertEquals(expected.rho.length, actual.rho.length);
+		for (int pair = 0; pair < expected.rho.length; pair++) {
+			assertEquals("rho of pair " + pair, expected.rho[pair], actual.rho[pair], MAX_RHO_DIFFERENCE);
+		}
+	}
+}
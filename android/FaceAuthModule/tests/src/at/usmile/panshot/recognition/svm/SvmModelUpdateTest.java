@@ -0,0 +1,120 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+/**
+ * Checks that models updated by {@link SvmModelUpdate} decide like models
+ * fully retrained on the same classes.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class SvmModelUpdateTest extends TestCase {
+
+	private static final int FEATURE_COUNT = 20;
+	private static final int PROBE_COUNT = 50;
+	/** maximum tolerated difference of decision values. */
+	private static final double MAX_DECISION_DIFFERENCE = 1e-9;
+
+	private double[][] mFeatures;
+	private svm_parameter mParams;
+
+	@Override
+	protected void setUp() throws Exception {
+		SvmTestProblems.quietLibsvm();
+		mFeatures = SvmTestProblems.randomSamples(new Random(11), FEATURE_COUNT);
+		mParams = SvmTestProblems.linearParams();
+		mParams.probability = 0;
+	}
+
+	public void testAddClassDecidesLikeFullTraining() {
+		int newLabel = SvmTestProblems.CLASS_COUNT - 1;
+		svm_model model = train(labelsBelow(newLabel));
+		List<svm_model> binaryModels = new ArrayList<svm_model>();
+		for (int classNr = 0; classNr < model.nr_class; classNr++) {
+			binaryModels.add(train(new int[] { model.label[classNr], newLabel }));
+		}
+		svm_model updated = SvmModelUpdate.addClass(model, newLabel, binaryModels);
+		assertDecidesLike(train(labelsBelow(SvmTestProblems.CLASS_COUNT)), updated);
+	}
+
+	public void testRemoveClassDecidesLikeFullTraining() {
+		int removedLabel = 1;
+		svm_model updated = SvmModelUpdate.removeClass(train(labelsBelow(SvmTestProblems.CLASS_COUNT)), removedLabel);
+		assertDecidesLike(train(new int[] { 0, 2, 3 }), updated);
+	}
+
+	public void testRemoveUnknownClassFails() {
+		try {
+			SvmModelUpdate.removeClass(train(labelsBelow(2)), 3);
+			fail("unknown labels must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private void assertDecidesLike(svm_model _expected, svm_model _actual) {
+		assertEquals(_expected.nr_class, _actual.nr_class);
+		for (int classNr = 0; classNr < _expected.nr_class; classNr++) {
+			assertEquals(_expected.label[classNr], _actual.label[classNr]);
+		}
+		int pairCount = _expected.nr_class * (_expected.nr_class - 1) / 2;
+		double[] expected = new double[pairCount];
+		double[] actual = new double[pairCount];
+		Random random = new Random(5);
+		for (int probeNr = 0; probeNr < PROBE_COUNT; probeNr++) {
+			svm_node[] probe = SvmTestProblems.toNodes(SvmTestProblems.randomSample(random, probeNr
+					% SvmTestProblems.CLASS_COUNT, FEATURE_COUNT));
+			double expectedLabel = svm.svm_predict_values(_expected, probe, expected);
+			double actualLabel = svm.svm_predict_values(_actual, probe, actual);
+			assertEquals("label of probe " + probeNr, expectedLabel, actualLabel, 0);
+			for (int pair = 0; pair < pairCount; pair++) {
+				assertEquals("decision value of probe " + probeNr, expected[pair], actual[pair], MAX_DECISION_DIFFERENCE);
+			}
+		}
+	}
+
+	/**
+	 * @return a model trained on the samples of _labels only.
+	 */
+	private svm_model train(int[] _labels) {
+		List<double[]> features = new ArrayList<double[]>();
+		List<Integer> labels = new ArrayList<Integer>();
+		for (int sampleNr = 0; sampleNr < mFeatures.length; sampleNr++) {
+			int label = sampleNr % SvmTestProblems.CLASS_COUNT;
+			for (int l : _labels) {
+				if (l == label) {
+					features.add(mFeatures[sampleNr]);
+					labels.add(label);
+				}
+			}
+		}
+		svm_problem problem = new svm_problem();
+		problem.l = features.size();
+		problem.y = new double[problem.l];
+		problem.x = new svm_node[problem.l][];
+		for (int sampleNr = 0; sampleNr < problem.l; sampleNr++) {
+			problem.y[sampleNr] = labels.get(sampleNr);
+			problem.x[sampleNr] = SvmTestProblems.toNodes(features.get(sampleNr));
+		}
+		return svm.svm_train(problem, mParams);
+	}
+
+	private static int[] labelsBelow(int _classCount) {
+		int[] labels = new int[_classCount];
+		for (int label = 0; label < _classCount; label++) {
+			labels[label] = label;
+		}
+		return labels;
+	}
+}
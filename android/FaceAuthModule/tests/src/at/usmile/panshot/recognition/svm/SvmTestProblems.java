@@ -0,0 +1,102 @@
+package at.usmile.panshot.recognition.svm;
+
+import java.util.Random;
+
+import libsvm.svm;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_print_interface;
+import libsvm.svm_problem;
+
+/**
+ * Random multi-class problems for comparing the SVM shortcuts with plain
+ * libsvm.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+final class SvmTestProblems {
+
+	// ================================================================================================================
+	// MEMBERS
+
+	static final int CLASS_COUNT = 4;
+	static final int SAMPLES_PER_CLASS = 15;
+
+	// ================================================================================================================
+	// METHODS
+
+	private SvmTestProblems() {
+	}
+
+	/**
+	 * Silences the training output of libsvm.
+	 */
+	static void quietLibsvm() {
+		svm.svm_set_print_string_function(new svm_print_interface() {
+			@Override
+			public void print(String _s) {
+			}
+		});
+	}
+
+	/**
+	 * @return samples of {@link #CLASS_COUNT} classes with different means,
+	 *         class of sample i is i % {@link #CLASS_COUNT}.
+	 */
+	static double[][] randomSamples(Random _random, int _featureCount) {
+		double[][] samples = new double[CLASS_COUNT * SAMPLES_PER_CLASS][];
+		for (int sampleNr = 0; sampleNr < samples.length; sampleNr++) {
+			samples[sampleNr] = randomSample(_random, sampleNr % CLASS_COUNT, _featureCount);
+		}
+		return samples;
+	}
+
+	static double[] randomSample(Random _random, int _class, int _featureCount) {
+		double[] sample = new double[_featureCount];
+		for (int featureNr = 0; featureNr < _featureCount; featureNr++) {
+			sample[featureNr] = _class * 0.5 * (featureNr % 3) + _random.nextGaussian();
+		}
+		return sample;
+	}
+
+	/**
+	 * @return the problem of _features, with labels as of
+	 *         {@link #randomSamples(Random, int)}.
+	 */
+	static svm_problem problem(double[][] _features) {
+		svm_problem problem = new svm_problem();
+		problem.l = _features.length;
+		problem.y = new double[_features.length];
+		problem.x = new svm_node[_features.length][];
+		for (int sampleNr = 0; sampleNr < _features.length; sampleNr++) {
+			problem.y[sampleNr] = sampleNr % CLASS_COUNT;
+			problem.x[sampleNr] = toNodes(_features[sampleNr]);
+		}
+		return problem;
+	}
+
+	static svm_parameter linearParams() {
+		svm_parameter params = new svm_parameter();
+		params.svm_type = svm_parameter.C_SVC;
+		params.kernel_type = svm_parameter.LINEAR;
+		params.C = 1;
+		params.gamma = 0.5;
+		params.nu = 0.5;
+		params.eps = 0.001;
+		params.cache_size = 10;
+		params.probability = 1;
+		return params;
+	}
+
+	static svm_node[] toNodes(double[] _features) {
+		svm_node[] nodes = new svm_node[_features.length];
+		for (int featureNr = 0; featureNr < _features.length; featureNr++) {
+			nodes[featureNr] = new svm_node();
+			nodes[featureNr].index = featureNr;
+			nodes[featureNr].value = _features[featureNr];
+		}
+		return nodes;
+	}
+}
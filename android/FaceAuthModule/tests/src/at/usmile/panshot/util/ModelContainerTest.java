@@ -0,0 +1,201 @@
+package at.usmile.panshot.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+import at.usmile.panshot.recognition.RecognitionModule;
+import at.usmile.panshot.recognition.knn.KnnClassifier;
+
+/**
+ * Checks that {@link ModelContainer}s read back the classifiers they got
+ * written with, reject broken sections by their checksum, and that modules
+ * of earlier versions stay on disk until a container replaces them.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class ModelContainerTest extends TestCase {
+
+	private static final int SAMPLE_COUNT = 40;
+	private static final int FEATURE_COUNT = 12;
+
+	private File mDirectory;
+
+	@Override
+	protected void setUp() throws Exception {
+		mDirectory = File.createTempFile("modelcontainer", "");
+		mDirectory.delete();
+		mDirectory.mkdir();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : mDirectory.listFiles()) {
+			file.delete();
+		}
+		mDirectory.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		Map<Integer, KnnClassifier> classifiers = newClassifiers(0, 2, 3);
+		File file = writeContainer(classifiers);
+
+		ModelContainer container = new ModelContainer(file);
+		assertEquals(classifiers.keySet(), container.getKnnClassifierIndices());
+		assertTrue(container.getSvmClassifierIndices().isEmpty());
+		assertNull(container.readKnnClassifier(1));
+		assertNull(container.readSvmClassifier(0));
+		for (Integer classifierIndex : classifiers.keySet()) {
+			KnnClassifier read = container.readKnnClassifier(classifierIndex);
+			assertTrue(read.isMapped());
+			assertTrue(Arrays.equals(toGallery(classifiers.get(classifierIndex)), toGallery(read)));
+		}
+		RecognitionModule module = container.readRecognitionModule();
+		assertEquals(classifiers.keySet(), new TreeSet<Integer>(module.getKnnClassifiers().keySet()));
+	}
+
+	public void testRejectsBrokenSection() throws IOException {
+		Map<Integer, KnnClassifier> classifiers = newClassifiers(0, 1);
+		File file = writeContainer(classifiers);
+		// sections are written in order, the last bytes are features of the
+		// last classifier
+		flipByte(file, file.length() - 1);
+
+		ModelContainer container = new ModelContainer(file);
+		assertTrue(Arrays.equals(toGallery(classifiers.get(0)), toGallery(container.readKnnClassifier(0))));
+		try {
+			container.readKnnClassifier(1);
+			fail("broken section must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			container.readRecognitionModule();
+			fail("module with a broken section must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testRejectsBrokenHeader() throws IOException {
+		File file = writeContainer(newClassifiers(0, 1));
+		// the length of the first section
+		flipByte(file, 12 + 4 + 4 + 8);
+		assertNoContainer(file);
+	}
+
+	public void testRejectsOtherFiles() throws IOException {
+		File file = new File(mDirectory, "other.bin");
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			byte[] content = new byte[256];
+			new Random(1).nextBytes(content);
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		assertNoContainer(file);
+	}
+
+	public void testLegacyModuleStaysUntilReplaced() throws IOException, ClassNotFoundException {
+		File legacyFile = new File(mDirectory, "recognition_module.ser");
+		assertTrue(legacyFile.createNewFile());
+		try {
+			DataUtil.deserializeRecognitiosModule(mDirectory);
+			fail("modules of earlier versions cannot be read");
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+		assertTrue(legacyFile.exists());
+
+		RecognitionModule module = new RecognitionModule();
+		module.setKnnClassifiers(newClassifiers(0));
+		DataUtil.serializeRecognitionModule(mDirectory, module);
+		assertFalse(legacyFile.exists());
+		assertEquals(1, DataUtil.deserializeRecognitiosModule(mDirectory).getKnnClassifiers().size());
+	}
+
+	private static void assertNoContainer(File _file) {
+		try {
+			new ModelContainer(_file);
+			fail(_file + " must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private File writeContainer(Map<Integer, KnnClassifier> _classifiers) throws IOException {
+		RecognitionModule module = new RecognitionModule();
+		module.setKnnClassifiers(_classifiers);
+		File file = new File(mDirectory, "module.bin");
+		ModelContainer.write(file, module);
+		return file;
+	}
+
+	private static void flipByte(File _file, long _position) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(_file, "rw");
+		try {
+			file.seek(_position);
+			int value = file.read();
+			file.seek(_position);
+			file.write(value ^ 1);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static byte[] toGallery(KnnClassifier _classifier) throws IOException {
+		ByteBuffer dst = ByteBuffer.allocate((int) _classifier.getGallerySize());
+		_classifier.writeGallery(dst);
+		return dst.array();
+	}
+
+	/**
+	 * @return trained KNN classifiers with random features, decoded from
+	 *         their binary form.
+	 */
+	private static Map<Integer, KnnClassifier> newClassifiers(int... _classifierIndices) throws IOException {
+		Random random = new Random(11);
+		Map<Integer, KnnClassifier> classifiers = new HashMap<Integer, KnnClassifier>();
+		for (int classifierIndex : _classifierIndices) {
+			LittleEndianOutput out = new LittleEndianOutput(4 * SAMPLE_COUNT * (FEATURE_COUNT + 1));
+			// users
+			out.putInt(2);
+			for (int userNr = 0; userNr < 2; userNr++) {
+				out.putString("id" + userNr);
+				out.putString("user" + userNr);
+			}
+			out.putInt(SAMPLE_COUNT);
+			out.putInt(FEATURE_COUNT);
+			float[] features = new float[SAMPLE_COUNT * FEATURE_COUNT];
+			int[] labels = new int[SAMPLE_COUNT];
+			for (int sampleNr = 0; sampleNr < SAMPLE_COUNT; sampleNr++) {
+				labels[sampleNr] = sampleNr % 2;
+				for (int f = 0; f < FEATURE_COUNT; f++) {
+					features[sampleNr * FEATURE_COUNT + f] = (float) random.nextGaussian() + classifierIndex;
+				}
+			}
+			out.putFloats(features);
+			out.putInts(labels);
+			// no feature order, re-rank candidates, VP-tree, codes, PCA basis
+			out.putInts(null);
+			out.putInt(0);
+			out.putBoolean(false);
+			out.putBoolean(false);
+			out.putBoolean(false);
+			classifiers.put(classifierIndex,
+					KnnClassifier.readBinary(new LittleEndianInput(ByteBuffer.wrap(out.getArray(), 0, out.getSize()))));
+		}
+		return classifiers;
+	}
+}
@@ -0,0 +1,51 @@
+package at.usmile.panshot.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.opencv.android.InstallCallbackInterface;
+import org.opencv.android.LoaderCallbackInterface;
+import org.opencv.android.OpenCVLoader;
+
+import android.content.Context;
+
+/**
+ * Loads OpenCV for tests that run on a device.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+final class OpenCvTestUtil {
+
+	private OpenCvTestUtil() {
+	}
+
+	/**
+	 * Loads OpenCV via the OpenCV Manager and waits for it, fails if it cannot
+	 * be loaded.
+	 */
+	static void loadOpenCv(Context _context) throws InterruptedException {
+		final CountDownLatch loaded = new CountDownLatch(1);
+		final boolean[] success = new boolean[1];
+		boolean connecting = OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_2_4_3, _context,
+				new LoaderCallbackInterface() {
+					@Override
+					public void onPackageInstall(int _operation, InstallCallbackInterface _callback) {
+						_callback.cancel();
+						loaded.countDown();
+					}
+
+					@Override
+					public void onManagerConnected(int _status) {
+						success[0] = _status == LoaderCallbackInterface.SUCCESS;
+						loaded.countDown();
+					}
+				});
+		Assert.assertTrue("cannot connect to OpenCV Manager", connecting);
+		Assert.assertTrue("OpenCV did not load in time", loaded.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue("OpenCV could not be loaded", success[0]);
+	}
+}
@@ -0,0 +1,113 @@
+package at.usmile.panshot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import at.usmile.panshot.PanshotImage;
+import at.usmile.panshot.util.PCAUtil.PcaEngine;
+import at.usmile.tuple.GenericTuple3;
+
+/**
+ * Compares duration, eigenvector memory and captured variance of the PCA
+ * engines on the device, against OpenCV's PCACompute. Results get logged with
+ * tag PcaEngineBenchmark. Needs the OpenCV Manager installed.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class PcaEngineBenchmark extends InstrumentationTestCase {
+
+	private static final String TAG = PcaEngineBenchmark.class.getSimpleName();
+
+	/** same as the default face size setting. */
+	private static final int FACE_SIZE = 50;
+	private static final int[] IMAGE_COUNTS = { 400, 1000 };
+	private static final int[] COMPONENT_COUNTS = { 20, 50, 100 };
+	private static final PcaEngine[] ENGINES = { PcaEngine.OPENCV, PcaEngine.GRAM, PcaEngine.RANDOMIZED,
+			PcaEngine.STREAMING };
+
+	@Override
+	protected void setUp() throws Exception {
+		OpenCvTestUtil.loadOpenCv(getInstrumentation().getTargetContext());
+	}
+
+	public void testEnginesAgainstOpenCv() {
+		for (int imageCount : IMAGE_COUNTS) {
+			List<PanshotImage> images = randomImages(new Random(imageCount), imageCount);
+			for (int componentCount : COMPONENT_COUNTS) {
+				double openCvVariance = -1;
+				for (PcaEngine engine : ENGINES) {
+					long start = System.nanoTime();
+					GenericTuple3<Mat, Mat, Mat> pca = PCAUtil.pcaCompute(images, componentCount, engine);
+					long duration = (System.nanoTime() - start) / 1000000;
+					Mat eigenvectors = pca.value2;
+					long eigenvectorBytes = (long) eigenvectors.rows() * eigenvectors.cols() * eigenvectors.elemSize();
+					double variance = capturedVariance(pca.value3);
+					if (engine == PcaEngine.OPENCV) {
+						openCvVariance = variance;
+					}
+					Log.i(TAG, imageCount + " images, " + componentCount + " components, " + engine + ": " + duration
+							+ " ms, " + eigenvectors.rows() + " eigenvectors of " + eigenvectorBytes
+							+ " bytes, captured variance " + variance / openCvVariance + " of OpenCV's.");
+					// the stored eigenspace must grow with the kept components,
+					// not with the images
+					assertEquals(engine.name(), componentCount, eigenvectors.rows());
+					assertEquals(engine.name(), FACE_SIZE * FACE_SIZE, eigenvectors.cols());
+					if (engine == PcaEngine.GRAM || engine == PcaEngine.RANDOMIZED) {
+						assertTrue(engine.name(), variance > 0.99 * openCvVariance);
+					}
+				}
+			}
+		}
+		Log.i(TAG, "AUTO uses " + PCAUtil.chooseEngine(1000, FACE_SIZE * FACE_SIZE, 100)
+				+ " for 1000 images and 100 components.");
+	}
+
+	/**
+	 * @return sum of squared projections per image.
+	 */
+	private static double capturedVariance(Mat _projections) {
+		Mat projections = new Mat();
+		_projections.convertTo(projections, CvType.CV_32F);
+		float[] values = new float[projections.rows() * projections.cols()];
+		projections.get(0, 0, values);
+		double variance = 0;
+		for (float v : values) {
+			variance += v * (double) v;
+		}
+		return variance / Math.max(1, projections.rows());
+	}
+
+	/**
+	 * @return face-like 8 bit images: 20 users, each with a mean face plus
+	 *         noise.
+	 */
+	private static List<PanshotImage> randomImages(Random _random, int _count) {
+		int featureCount = FACE_SIZE * FACE_SIZE;
+		double[][] users = new double[20][featureCount];
+		for (double[] user : users) {
+			for (int f = 0; f < featureCount; f++) {
+				user[f] = 128 + _random.nextGaussian() * 40;
+			}
+		}
+		List<PanshotImage> images = new ArrayList<PanshotImage>();
+		byte[] pixels = new byte[featureCount];
+		for (int imageNr = 0; imageNr < _count; imageNr++) {
+			double[] user = users[imageNr % users.length];
+			for (int f = 0; f < featureCount; f++) {
+				pixels[f] = (byte) Math.max(0, Math.min(255, Math.round(user[f] + _random.nextGaussian() * 10)));
+			}
+			Mat face = new Mat(FACE_SIZE, FACE_SIZE, CvType.CV_8U);
+			face.put(0, 0, pixels);
+			images.add(new PanshotImage(null, face, null, null, null, 0));
+		}
+		return images;
+	}
+}
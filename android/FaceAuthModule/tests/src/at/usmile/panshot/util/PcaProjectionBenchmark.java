@@ -0,0 +1,131 @@
+package at.usmile.panshot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import at.usmile.panshot.PanshotImage;
+import at.usmile.panshot.recognition.pca.PcaBasis;
+
+/**
+ * Micro-benchmark of projecting a single probe into an eigenspace: via a
+ * feature matrix and Core.PCAProject, as
+ * {@link PCAUtil#pcaProject(List, Mat, Mat)} does, vs. via
+ * {@link PCAUtil#pcaProject(Mat, PcaBasis, byte[], float[], float[])} with
+ * reused buffers, as classifiers do per query. Results get logged with tag
+ * PcaProjectionBenchmark. Needs the OpenCV Manager installed.
+ *
+ * @author Rainhard Findling
+ * @date 18 Oct 2026
+ * @version 1
+ */
+public class PcaProjectionBenchmark extends InstrumentationTestCase {
+
+	private static final String TAG = PcaProjectionBenchmark.class.getSimpleName();
+
+	/** same as the default face size setting. */
+	private static final int FACE_SIZE = 50;
+	private static final int[] COMPONENT_COUNTS = { 20, 100 };
+	/** projections per path, after as many warm up projections. */
+	private static final int ITERATIONS = 2000;
+
+	@Override
+	protected void setUp() throws Exception {
+		OpenCvTestUtil.loadOpenCv(getInstrumentation().getTargetContext());
+	}
+
+	public void testProjectionPerProbe() {
+		Random random = new Random(4);
+		int featureCount = FACE_SIZE * FACE_SIZE;
+		byte[] pixels = new byte[featureCount];
+		random.nextBytes(pixels);
+		Mat face = new Mat(FACE_SIZE, FACE_SIZE, CvType.CV_8U);
+		face.put(0, 0, pixels);
+		List<PanshotImage> probe = new ArrayList<PanshotImage>();
+		probe.add(new PanshotImage(null, face, null, null, null, 0));
+
+		for (int componentCount : COMPONENT_COUNTS) {
+			PcaBasis basis = randomBasis(random, featureCount, componentCount);
+			Mat mean = toMat(basis.getMean(), 1, featureCount);
+			Mat eigenvectors = toMat(basis.getEigenvectors(), componentCount, featureCount);
+			byte[] pixelBuffer = new byte[featureCount];
+			float[] projection = new float[componentCount];
+
+			long matNs = 0;
+			long basisNs = 0;
+			Mat matProjection = null;
+			for (int round = 0; round < 2; round++) {
+				// round 0 warms up
+				long start = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++) {
+					matProjection = PCAUtil.pcaProject(probe, mean, eigenvectors);
+				}
+				matNs = (System.nanoTime() - start) / ITERATIONS;
+				start = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++) {
+					PCAUtil.pcaProject(face, basis, pixelBuffer, null, projection);
+				}
+				basisNs = (System.nanoTime() - start) / ITERATIONS;
+			}
+			Log.i(TAG, componentCount + " components of " + featureCount + " pixels: Core.PCAProject " + matNs
+					+ " ns per probe, PcaBasis " + basisNs + " ns per probe.");
+
+			// both paths must agree
+			float[] expected = new float[componentCount];
+			Mat expectedMat = new Mat();
+			matProjection.convertTo(expectedMat, CvType.CV_32F);
+			expectedMat.get(0, 0, expected);
+			for (int c = 0; c < componentCount; c++) {
+				assertEquals("component " + c, expected[c], projection[c], 1e-3f * Math.max(1, Math.abs(expected[c])));
+			}
+		}
+	}
+
+	/**
+	 * @return a basis with a random mean and random orthonormal eigenvectors.
+	 */
+	private static PcaBasis randomBasis(Random _random, int _featureCount, int _componentCount) {
+		float[] mean = new float[_featureCount];
+		for (int f = 0; f < _featureCount; f++) {
+			mean[f] = 128 + (float) _random.nextGaussian() * 20;
+		}
+		double[][] vectors = new double[_componentCount][_featureCount];
+		float[] eigenvectors = new float[_componentCount * _featureCount];
+		for (int c = 0; c < _componentCount; c++) {
+			for (int f = 0; f < _featureCount; f++) {
+				vectors[c][f] = _random.nextGaussian();
+			}
+			// Gram-Schmidt against the previous vectors
+			for (int prev = 0; prev < c; prev++) {
+				double dot = 0;
+				for (int f = 0; f < _featureCount; f++) {
+					dot += vectors[c][f] * vectors[prev][f];
+				}
+				for (int f = 0; f < _featureCount; f++) {
+					vectors[c][f] -= dot * vectors[prev][f];
+				}
+			}
+			double norm = 0;
+			for (int f = 0; f < _featureCount; f++) {
+				norm += vectors[c][f] * vectors[c][f];
+			}
+			norm = Math.sqrt(norm);
+			for (int f = 0; f < _featureCount; f++) {
+				vectors[c][f] /= norm;
+				eigenvectors[c * _featureCount + f] = (float) vectors[c][f];
+			}
+		}
+		return new PcaBasis(mean, eigenvectors, _componentCount);
+	}
+
+	private static Mat toMat(float[] _data, int _rows, int _cols) {
+		Mat mat = new Mat(_rows, _cols, CvType.CV_32F);
+		mat.put(0, 0, _data);
+		return mat;
+	}
+}